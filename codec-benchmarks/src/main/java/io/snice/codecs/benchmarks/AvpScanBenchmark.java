@@ -0,0 +1,85 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.impl.AvpTable;
+import io.snice.codecs.codec.diameter.impl.DiameterCursor;
+import io.snice.codecs.codec.diameter.impl.DiameterParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the different ways of walking the AVPs of a diameter message: the
+ * {@link AvpTable} scanning straight over a byte-array/{@link ByteBuffer}, the
+ * {@link DiameterCursor} going through the {@link Buffer} and the regular framing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvpScanBenchmark {
+
+    @Param({
+            "ula.raw",
+            "ulr.raw",
+            "005_diameter_credit_control_request.raw"
+    })
+    private String resource;
+
+    private byte[] array;
+    private ByteBuffer direct;
+    private Buffer buffer;
+
+    @Setup
+    public void setup() {
+        array = BenchmarkResources.loadDiameterBytes(resource);
+        buffer = Buffer.of(array);
+        direct = ByteBuffer.allocateDirect(array.length);
+        direct.put(array);
+        direct.flip();
+    }
+
+    @Benchmark
+    public AvpTable scanArray() {
+        return AvpTable.scan(array, 0);
+    }
+
+    @Benchmark
+    public AvpTable scanDirectBuffer() {
+        return AvpTable.scan(direct);
+    }
+
+    @Benchmark
+    public int walkCursor() throws Exception {
+        final DiameterCursor cursor = DiameterParser.cursor(buffer);
+        int count = 0;
+        while (cursor.next()) {
+            ++count;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public DiameterMessage frameArray() {
+        return DiameterParser.frame(array, 0);
+    }
+
+    @Benchmark
+    public DiameterMessage frame() {
+        return DiameterParser.frame(buffer);
+    }
+}
@@ -0,0 +1,57 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The benchmarks are using the very same raw captures as the unit tests of the
+ * various codecs (see the resources section of the pom.xml for this module)
+ * and this is just a small helper for loading them off of the classpath.
+ */
+public final class BenchmarkResources {
+
+    public static final String DIAMETER = "/io/snice/codecs/codec/diameter/";
+    public static final String GTP = "/io/snice/codecs/codec/gtp/";
+
+    private BenchmarkResources() {
+        // just static helper methods so no instance of this one
+    }
+
+    public static Buffer loadDiameter(final String resource) {
+        return load(DIAMETER + resource);
+    }
+
+    public static Buffer loadGtp(final String resource) {
+        return load(GTP + resource);
+    }
+
+    /**
+     * Load the raw bytes for the given resource.
+     *
+     * @throws IllegalArgumentException in case the resource doesn't exist or cannot be read, in which
+     *                                  case we want the benchmark to fail fast.
+     */
+    public static Buffer load(final String resource) throws IllegalArgumentException {
+        return Buffer.of(loadBytes(resource));
+    }
+
+    public static byte[] loadDiameterBytes(final String resource) {
+        return loadBytes(DIAMETER + resource);
+    }
+
+    /**
+     * Same as {@link #load(String)} but for those benchmarks that need the raw byte-array.
+     */
+    public static byte[] loadBytes(final String resource) throws IllegalArgumentException {
+        try (InputStream is = BenchmarkResources.class.getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IllegalArgumentException("Unable to find resource \"" + resource + "\"");
+            }
+            return is.readAllBytes();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Unable to read resource \"" + resource + "\"", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.impl.DiameterParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for framing Diameter messages, see {@link DiameterBuildBenchmark} for building them.
+ * Run with the gc profiler to also get the allocation rate, which is just as important as the raw ops/sec:
+ *
+ * <pre>
+ *     java -jar codec-benchmarks/target/benchmarks.jar DiameterBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiameterBenchmark {
+
+    /**
+     * ULA (with a large Subscription-Data), CCR/CCA and a ULR which are the
+     * bread and butter of any S6a and Gx node.
+     */
+    @Param({
+            "ula.raw",
+            "ulr.raw",
+            "005_diameter_credit_control_request.raw",
+            "006_diameter_credit_control_answer.raw"
+    })
+    private String resource;
+
+    private Buffer raw;
+
+    @Setup
+    public void setup() {
+        raw = BenchmarkResources.loadDiameter(resource);
+    }
+
+    @Benchmark
+    public DiameterMessage frame() {
+        return DiameterParser.frame(raw);
+    }
+
+    /**
+     * Frame the message and then access those AVPs that pretty much every application
+     * is going to look at.
+     */
+    @Benchmark
+    public void frameAndAccess(final Blackhole bh) {
+        final DiameterMessage msg = DiameterParser.frame(raw);
+        bh.consume(msg.getOriginHost());
+        bh.consume(msg.getOriginRealm());
+        bh.consume(msg.getDestinationRealm());
+        bh.consume(msg.getDestinationHost());
+    }
+
+    /**
+     * What a relay agent typically does, look at the header and the Destination-Realm/Host
+     * to figure out where to forward the message, with the AVPs framed lazily.
+     */
+    @Benchmark
+    public void frameLazyAndRoute(final Blackhole bh) {
+        final DiameterMessage msg = DiameterParser.frameLazy(raw);
+        bh.consume(msg.getHeader().getCommandCode());
+        bh.consume(msg.getDestinationRealm());
+        bh.consume(msg.getDestinationHost());
+    }
+
+    /**
+     * Same as {@link #frameLazyAndRoute(Blackhole)} but with all the AVPs framed up front
+     * so that the two can be compared.
+     */
+    @Benchmark
+    public void frameAndRoute(final Blackhole bh) {
+        final DiameterMessage msg = DiameterParser.frame(raw);
+        bh.consume(msg.getHeader().getCommandCode());
+        bh.consume(msg.getDestinationRealm());
+        bh.consume(msg.getDestinationHost());
+    }
+}
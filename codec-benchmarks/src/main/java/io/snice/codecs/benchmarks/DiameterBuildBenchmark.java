@@ -0,0 +1,94 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SubscriptionData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for building Diameter messages. These always build the same messages so unlike
+ * the {@link DiameterBenchmark}, they are not run once per raw message. Run with the gc profiler
+ * to also get the allocation rate:
+ *
+ * <pre>
+ *     java -jar codec-benchmarks/target/benchmarks.jar DiameterBuildBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiameterBuildBenchmark {
+
+    private DiameterRequest ulr;
+
+    private Avp subscriptionData;
+
+    @Setup
+    public void setup() {
+        ulr = DiameterMessage.frame(BenchmarkResources.loadDiameter("ulr.raw")).toRequest();
+        subscriptionData = DiameterMessage.frame(BenchmarkResources.loadDiameter("ula.raw"))
+                .getAvp(SubscriptionData.CODE).get().ensure();
+    }
+
+    @Benchmark
+    public DiameterMessage buildRequest() {
+        return DiameterRequest.createULR()
+                .withSessionId("node.epc.mnc001.mcc001.3gppnetwork.org;1234;5678")
+                .withUserName("001001123456789")
+                .withOriginHost("node.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .withDestinationRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+    }
+
+    @Benchmark
+    public DiameterMessage buildAnswer() {
+        return ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(OriginHost.of("hss.epc.mnc001.mcc001.3gppnetwork.org"))
+                .withOriginRealm(OriginRealm.of("epc.mnc001.mcc001.3gppnetwork.org"))
+                .build();
+    }
+
+    /**
+     * A ULA carrying a multi-KB Subscription-Data, built into a single buffer...
+     */
+    @Benchmark
+    public DiameterMessage buildAnswerWithSubscriptionData() {
+        return ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(OriginHost.of("hss.epc.mnc001.mcc001.3gppnetwork.org"))
+                .withOriginRealm(OriginRealm.of("epc.mnc001.mcc001.3gppnetwork.org"))
+                .withAvp(subscriptionData)
+                .build();
+    }
+
+    /**
+     * ... and the same ULA but built gathered so the Subscription-Data is never copied.
+     */
+    @Benchmark
+    public GatheredDiameterMessage buildGatheredAnswerWithSubscriptionData() {
+        return ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(OriginHost.of("hss.epc.mnc001.mcc001.3gppnetwork.org"))
+                .withOriginRealm(OriginRealm.of("epc.mnc001.mcc001.3gppnetwork.org"))
+                .withAvp(subscriptionData)
+                .buildGathered();
+    }
+}
@@ -0,0 +1,92 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.gtp.GtpMessage;
+import io.snice.codecs.codec.gtp.gtpc.v1.Gtp1Message;
+import io.snice.codecs.codec.gtp.gtpc.v2.Gtp2Message;
+import io.snice.codecs.codec.gtp.gtpc.v2.Gtp2MessageType;
+import io.snice.codecs.codec.gtp.gtpc.v2.tliv.Imsi;
+import io.snice.codecs.codec.gtp.gtpc.v2.tliv.Msisdn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for framing and building GTPv1 (GTP-U) and GTPv2 (GTP-C) messages.
+ *
+ * <pre>
+ *     java -jar codec-benchmarks/target/benchmarks.jar GtpBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GtpBenchmark {
+
+    private static final Buffer TEID = Buffers.wrap((byte) 0x11, (byte) 0x22, (byte) 0x33, (byte) 0x44);
+
+    private Buffer createSessionResponse;
+    private Buffer gtpuDnsRequest;
+    private Buffer gtpuDnsResponse;
+
+    @Setup
+    public void setup() {
+        createSessionResponse = BenchmarkResources.loadGtp("create_session_response.raw");
+        gtpuDnsRequest = BenchmarkResources.loadGtp("gtp_u_dns_req_google_dot_com.raw");
+        gtpuDnsResponse = BenchmarkResources.loadGtp("gtp_u_dns_resp_google_dot_com.raw");
+    }
+
+    @Benchmark
+    public Gtp2Message frameCreateSessionResponse() {
+        return Gtp2Message.frame(createSessionResponse);
+    }
+
+    /**
+     * Frame the Create Session Response and then access the Cause, which is what
+     * pretty much every application will do first.
+     */
+    @Benchmark
+    public void frameCreateSessionResponseAndAccess(final Blackhole bh) {
+        final Gtp2Message msg = Gtp2Message.frame(createSessionResponse);
+        bh.consume(msg.getCause());
+    }
+
+    @Benchmark
+    public Gtp2Message buildCreateSessionRequest() {
+        return Gtp2Message.create(Gtp2MessageType.CREATE_SESSION_REQUEST)
+                .withTeid(TEID)
+                .withTliv(Imsi.ofValue("001001123456"))
+                .withTliv(Msisdn.ofValue("41555512345"))
+                .build();
+    }
+
+    @Benchmark
+    public void frameGtpu(final Blackhole bh) {
+        bh.consume(GtpMessage.frame(gtpuDnsRequest));
+        bh.consume(GtpMessage.frame(gtpuDnsResponse));
+    }
+
+    /**
+     * Frame the GTP-U message and also extract out the payload, which is what a user
+     * plane function will do for every single packet.
+     */
+    @Benchmark
+    public void frameGtpuPayload(final Blackhole bh) {
+        final Gtp1Message msg = GtpMessage.frame(gtpuDnsRequest).toGtp1Message();
+        bh.consume(msg.getPayload());
+    }
+}
@@ -0,0 +1,62 @@
+package io.snice.codecs.benchmarks;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.gtp.GtpMessage;
+import io.snice.codecs.codec.internet.ipv4.IPv4Message;
+import io.snice.codecs.codec.transport.UdpMessage;
+import io.snice.codecs.codec.transport.impl.UdpMessageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for framing IPv4 and UDP. The packets are the DNS request/response
+ * tunneled over GTP-U so we extract out the inner IPv4 packet once during setup
+ * and then just benchmark the IPv4 and UDP framing on top of those.
+ *
+ * <pre>
+ *     java -jar codec-benchmarks/target/benchmarks.jar Layers432Benchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Layers432Benchmark {
+
+    private Buffer ipv4;
+    private Buffer udp;
+
+    @Setup
+    public void setup() {
+        final Buffer gtpu = BenchmarkResources.loadGtp("gtp_u_dns_req_google_dot_com.raw");
+        ipv4 = GtpMessage.frame(gtpu).toGtp1Message().getPayload().get();
+        udp = IPv4Message.frame(ipv4).getPayload();
+    }
+
+    @Benchmark
+    public IPv4Message<Buffer> frameIPv4() {
+        return IPv4Message.frame(ipv4);
+    }
+
+    @Benchmark
+    public UdpMessage frameUdp() {
+        return UdpMessageImpl.frame(udp);
+    }
+
+    @Benchmark
+    public UdpMessage frameIPv4AndUdp() {
+        return UdpMessageImpl.frame(IPv4Message.frame(ipv4).getPayload());
+    }
+}
@@ -0,0 +1,127 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.codecs.codec.diameter.impl.AvpTable;
+import io.snice.codecs.codec.diameter.impl.DefaultCommandValidator;
+
+import java.util.Optional;
+
+/**
+ * Validates a {@link DiameterMessage} against the ABNF of its command, i.e. which AVPs the command
+ * requires, which ones it allows and how many times each of them may occur. The following is reported:
+ * <ul>
+ *     <li>{@link DiameterViolation#MISSING_AVP} for AVPs that occur fewer times than required.</li>
+ *     <li>{@link DiameterViolation#AVP_OCCURS_TOO_MANY_TIMES} for AVPs that occur more times than allowed.</li>
+ *     <li>{@link DiameterViolation#AVP_UNSUPPORTED} for AVPs that are not part of the ABNF but have
+ *     the 'M' bit set.</li>
+ *     <li>{@link DiameterViolation#AVP_NOT_ALLOWED} for AVPs that are not part of the ABNF of a
+ *     command that doesn't allow any other AVPs, i.e. doesn't end with <code>* [ AVP ]</code>.</li>
+ * </ul>
+ * Only the top level AVPs are validated and the order of the AVPs isn't checked, so a fixed AVP,
+ * such as <code>&lt; Session-Id &gt;</code>, is the same as a required one.
+ * <p>
+ * The ABNF of all the commands is compiled, once, when the validator is built. Every AVP mentioned
+ * by any of the commands is given a dense id and each command is turned into a bitset of the AVPs it
+ * allows, plus arrays of the min and max occurrences indexed by that id. Validating a message is
+ * therefore a single loop over its AVPs that doesn't allocate anything, unless the message
+ * breaks any of the rules.
+ * <p>
+ * Messages of commands the validator doesn't know about are not validated.
+ * <p>
+ * A validator is immutable and safe to use from multiple threads.
+ */
+public interface CommandValidator {
+
+    /**
+     * The max occurrences of an AVP that may occur any number of times, e.g. <code>* [ Route-Record ]</code>.
+     */
+    int UNBOUNDED = Integer.MAX_VALUE;
+
+    static Builder builder() {
+        return DefaultCommandValidator.builder();
+    }
+
+    /**
+     * Validate the given message against the ABNF of its command.
+     *
+     * @return the violations or an empty optional if the message follows the ABNF, or if the command
+     * isn't known to this validator.
+     */
+    Optional<DiameterViolations> validate(DiameterMessage msg);
+
+    /**
+     * Validate a message that has been scanned into an {@link AvpTable}, see {@link DiameterParser#frame(byte[], int)}.
+     */
+    Optional<DiameterViolations> validate(int commandCode, boolean isRequest, AvpTable table);
+
+    /**
+     * Check whether this validator knows the ABNF of the given command.
+     */
+    boolean isDefined(int commandCode, boolean isRequest);
+
+    interface Builder {
+
+        /**
+         * Add the ABNF of the commands of the base protocol, RFC 6733, i.e. the Capabilities-Exchange,
+         * Device-Watchdog and Disconnect-Peer requests and answers.
+         */
+        Builder withBaseProtocol();
+
+        /**
+         * Start defining the ABNF of the given request. If the request already has been defined,
+         * the new AVPs are added to the existing definition.
+         */
+        CommandBuilder withRequest(int commandCode);
+
+        /**
+         * Start defining the ABNF of the given answer.
+         *
+         * @see #withRequest(int)
+         */
+        CommandBuilder withAnswer(int commandCode);
+
+        CommandValidator build();
+    }
+
+    interface CommandBuilder extends Builder {
+
+        /**
+         * An AVP that must occur exactly once, i.e. <code>{ AVP }</code>.
+         */
+        default CommandBuilder withRequiredAvp(final long code) {
+            return withAvp(0, code, 1, 1);
+        }
+
+        default CommandBuilder withRequiredAvp(final long vendorId, final long code) {
+            return withAvp(vendorId, code, 1, 1);
+        }
+
+        /**
+         * An AVP that may occur at most once, i.e. <code>[ AVP ]</code>.
+         */
+        default CommandBuilder withOptionalAvp(final long code) {
+            return withAvp(0, code, 0, 1);
+        }
+
+        default CommandBuilder withOptionalAvp(final long vendorId, final long code) {
+            return withAvp(vendorId, code, 0, 1);
+        }
+
+        default CommandBuilder withAvp(final long code, final int min, final int max) {
+            return withAvp(0, code, min, max);
+        }
+
+        /**
+         * An AVP that must occur at least min and at most max times, i.e. <code>min * max AVP</code>.
+         *
+         * @param vendorId the vendor id, or zero if the AVP isn't vendor specific.
+         * @param max      the max occurrences, or {@link #UNBOUNDED}.
+         */
+        CommandBuilder withAvp(long vendorId, long code, int min, int max);
+
+        /**
+         * The ABNF of the command doesn't end with <code>* [ AVP ]</code>, so no other AVPs than the
+         * ones that are explicitly listed are allowed.
+         */
+        CommandBuilder withoutAnyAvp();
+    }
+}
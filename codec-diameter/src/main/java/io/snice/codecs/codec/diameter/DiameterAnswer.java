@@ -1,9 +1,13 @@
 package io.snice.codecs.codec.diameter;
 
+import io.snice.codecs.codec.diameter.avp.Avp;
 import io.snice.codecs.codec.diameter.avp.api.ExperimentalResult;
 import io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
 import io.snice.codecs.codec.diameter.avp.api.ResultCode;
 import io.snice.codecs.codec.diameter.impl.ImmutableDiameterAnswer;
+import io.snice.codecs.codec.diameter.impl.ResultCodes;
 import io.snice.functional.Either;
 
 /**
@@ -19,11 +23,138 @@ public interface DiameterAnswer extends DiameterMessage {
      */
     Either<ExperimentalResult, ResultCode> getResultCode();
 
+    /**
+     * The value of the {@link ResultCode}, or -1 if there is no Result-Code in this answer.
+     * <p>
+     * Unlike {@link #getResultCode()}, this never allocates anything and never throws, which makes it
+     * suitable for e.g. keeping metrics on every single answer. The default implementation is derived
+     * from {@link #getResultCode()} though, which doesn't come with those guarantees.
+     */
+    default long getResultCodeValue() {
+        final Either<ExperimentalResult, ResultCode> resultCode = findResultCode();
+        return resultCode != null && resultCode.isRight() ? ResultCodes.resultCode(resultCode.get().getData()) : ResultCodes.NONE;
+    }
+
+    /**
+     * The value of the {@link ExperimentalResultCode} within the {@link ExperimentalResult},
+     * or -1 if there is no Experimental-Result in this answer.
+     *
+     * @see #getResultCodeValue()
+     */
+    default long getExperimentalResultCodeValue() {
+        final Either<ExperimentalResult, ResultCode> resultCode = findResultCode();
+        return resultCode != null && resultCode.isLeft() ? ResultCodes.experimentalResultCode(resultCode.getLeft().getData()) : ResultCodes.NONE;
+    }
+
+    /**
+     * The Vendor-Id within the {@link ExperimentalResult}, or -1 if there is
+     * no Experimental-Result in this answer.
+     *
+     * @see #getResultCodeValue()
+     */
+    default long getExperimentalResultVendorId() {
+        final Either<ExperimentalResult, ResultCode> resultCode = findResultCode();
+        return resultCode != null && resultCode.isLeft() ? ResultCodes.vendorId(resultCode.getLeft().getData()) : ResultCodes.NONE;
+    }
+
+    /**
+     * Same as {@link #getResultCode()} but null rather than an exception when neither is present.
+     */
+    private Either<ExperimentalResult, ResultCode> findResultCode() {
+        try {
+            return getResultCode();
+        } catch (final DiameterParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The value of the {@link ResultCode} if present, otherwise the value of the
+     * {@link ExperimentalResultCode}, or -1 if neither is present.
+     */
+    default long getAnyResultCodeValue() {
+        final long resultCode = getResultCodeValue();
+        return resultCode != -1 ? resultCode : getExperimentalResultCodeValue();
+    }
+
     static Builder withResultCode(final ResultCode resultCode) {
         return ImmutableDiameterAnswer.withResultCode(resultCode);
     }
 
+    /**
+     * A builder for answers that are created straight off of the raw bytes of the request, as opposed to
+     * the regular {@link Builder}, which re-encodes every AVP. The diameter header of the request is
+     * copied, with the 'R' bit cleared, so the Hop-by-Hop and End-to-End identifiers are kept, and the
+     * Session-Id, any Proxy-Info AVPs and whatever other AVPs you ask for are referenced as slices
+     * of the request. Only the Origin-Host, Origin-Realm, the Result-Code (or Experimental-Result)
+     * and any AVPs added through {@link #withAvp(Avp)} are actually encoded.
+     * <p>
+     * As such, the answer is either copied into a single buffer once, through {@link #build()}, or not
+     * copied at all, through {@link #buildGathered()}, in which case the answer will hold on
+     * to the buffer of the request.
+     */
+    interface SlicedBuilder {
+
+        SlicedBuilder withOriginHost(OriginHost originHost);
+
+        SlicedBuilder withOriginHost(String originHost);
+
+        SlicedBuilder withOriginRealm(OriginRealm originRealm);
+
+        SlicedBuilder withOriginRealm(String originRealm);
+
+        /**
+         * Copy all the AVPs with the given code from the request into the answer, in the
+         * order they appear in the request, e.g. the Auth-Session-State or the
+         * Vendor-Specific-Application-Id. The Session-Id and any Proxy-Info AVPs are always copied.
+         */
+        default SlicedBuilder withCopiedAvp(final long code) {
+            return withCopiedAvp(0, code);
+        }
+
+        /**
+         * Copy all the vendor specific AVPs with the given vendor id and code from the request.
+         *
+         * @param vendorId the vendor id, or zero if the AVP isn't vendor specific.
+         */
+        SlicedBuilder withCopiedAvp(long vendorId, long code);
+
+        /**
+         * Add a brand new AVP to the answer.
+         */
+        SlicedBuilder withAvp(Avp avp);
+
+        /**
+         * Build the answer, which copies the AVPs referenced from the request, and the new ones,
+         * into a single buffer exactly once.
+         *
+         * @throws DiameterParseException in case any of the AVPs of the request turns out to be malformed.
+         * @throws IllegalStateException in case the answer would be larger than what fits within
+         *                               the 24 bit length of a diameter header.
+         * @throws IllegalArgumentException in case the Origin-Host or the Origin-Realm hasn't been specified.
+         */
+        DiameterAnswer build() throws DiameterParseException;
+
+        /**
+         * Build the answer without copying anything out of the request.
+         *
+         * @throws DiameterParseException in case any of the AVPs of the request turns out to be malformed.
+         * @throws IllegalStateException in case the answer would be larger than what fits within
+         *                               the 24 bit length of a diameter header.
+         * @throws IllegalArgumentException in case the Origin-Host or the Origin-Realm hasn't been specified.
+         * @see GatheredDiameterMessage
+         */
+        GatheredDiameterMessage buildGathered() throws DiameterParseException;
+    }
+
     interface Builder extends DiameterMessage.Builder<DiameterAnswer> {
 
+        /**
+         * Set the {@link ResultCode}, which typically is given when the builder is created but if the
+         * builder has been {@link #reset()}, it must be set again.
+         */
+        Builder withResultCode(ResultCode resultCode);
+
+        Builder withResultCode(ExperimentalResultCode resultCode);
     }
 }
@@ -0,0 +1,84 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.impl.DefaultDiameterBatch;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A batch of {@link DiameterMessage}s that are laid out back to back in a single {@link Buffer},
+ * e.g. a large chunk read off of a socket or a capture file being re-processed offline.
+ * <p>
+ * Scanning the buffer only reads the 20 byte diameter header of each message, and really only the
+ * version and the 24 bit length, in order to find where each message starts and ends. Nothing is
+ * framed and nothing but the table of offsets is allocated. Once the boundaries are known, the
+ * messages can be framed one by one, all at once into a pre-sized array, or in parallel since
+ * every message can be framed independently of all the others.
+ * <p>
+ * The messages are framed on top of slices of the original buffer, so no bytes are copied, but
+ * it also means that the buffer must not be modified after it has been handed over.
+ */
+public interface DiameterBatch {
+
+    /**
+     * Find all the diameter messages in the given buffer. Any trailing bytes that do not make up
+     * a full diameter message are ignored and it is up to the caller to keep them around, if needed,
+     * which is why you probably want to check {@link #getConsumedBytes()} when e.g. draining a socket.
+     *
+     * @throws DiameterParseException in case the buffer doesn't contain diameter messages, as detected
+     *                                by an invalid version or length of one of the headers.
+     */
+    static DiameterBatch scan(final Buffer buffer) throws DiameterParseException {
+        return DefaultDiameterBatch.scan(buffer);
+    }
+
+    /**
+     * The number of complete diameter messages found in the buffer.
+     */
+    int size();
+
+    /**
+     * The offset, within the buffer, of the given message.
+     */
+    int getOffset(int index);
+
+    /**
+     * The length of the given message, as specified by its diameter header.
+     */
+    int getLength(int index);
+
+    /**
+     * The number of bytes making up all the complete messages of the buffer, i.e., the offset
+     * of any trailing partial message.
+     */
+    int getConsumedBytes();
+
+    /**
+     * Frame the given message.
+     */
+    DiameterMessage frame(int index) throws DiameterParseException;
+
+    /**
+     * Frame all the messages, in the order they appear in the buffer, on the calling thread.
+     */
+    DiameterMessage[] frame() throws DiameterParseException;
+
+    /**
+     * Frame all the messages in parallel using the common {@link ForkJoinPool}.
+     *
+     * @see #frameParallel(ForkJoinPool)
+     */
+    default DiameterMessage[] frameParallel() throws DiameterParseException {
+        return frameParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Frame all the messages in parallel using the given pool. The messages are still returned in the
+     * order they appear in the buffer. This is meant for offline workloads where there are a lot of messages
+     * in a single buffer. For the few messages typically found in a single read off of a socket, the
+     * overhead of handing them over to other threads is larger than the time it takes to just frame them.
+     *
+     * @throws DiameterParseException in case any of the messages fails to frame.
+     */
+    DiameterMessage[] frameParallel(ForkJoinPool pool) throws DiameterParseException;
+}
@@ -0,0 +1,31 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.WritableBuffer;
+
+/**
+ * When a {@link DiameterMessage.Builder} builds a new message it needs a buffer to write the
+ * message into and it will ask the {@link DiameterBufferAllocator} for it. By default, a new
+ * buffer is allocated for every message but you can plug in your own allocator, e.g. one that
+ * carves the buffers out of larger chunks of memory.
+ * <p>
+ * Note that the message that is built is immutable and owns the buffer it was handed, which must
+ * therefore never be handed out again. In order to re-use the same buffer for every message, use
+ * {@link DiameterMessage.Builder#writeTo(io.snice.buffer.WritableBuffer)} instead, which doesn't
+ * produce a message that holds on to the buffer.
+ */
+@FunctionalInterface
+public interface DiameterBufferAllocator {
+
+    /**
+     * Allocates a new buffer for every message, which is the default.
+     */
+    DiameterBufferAllocator HEAP = WritableBuffer::of;
+
+    /**
+     * Allocate a new {@link WritableBuffer} that is able to hold at least the given number of bytes
+     * and whose writer index is at the very beginning of the buffer.
+     *
+     * @param size the size of the diameter message that is about to be built.
+     */
+    WritableBuffer allocate(int size);
+}
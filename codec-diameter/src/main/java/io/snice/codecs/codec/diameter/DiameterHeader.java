@@ -146,6 +146,22 @@ public interface DiameterHeader {
          */
         Builder withLength(int length);
 
+        /**
+         * Set or clear the 'P' bit of the command flags.
+         */
+        Builder withProxiable(boolean proxiable);
+
+        /**
+         * Set or clear the 'E' bit of the command flags.
+         */
+        Builder withError(boolean error);
+
+        /**
+         * Set or clear the 'T' bit of the command flags, which e.g. a relay agent must set when
+         * re-sending a request to another peer after a link failover.
+         */
+        Builder withPossiblyRetransmission(boolean retransmission);
+
         DiameterHeader build();
 
         Builder copy();
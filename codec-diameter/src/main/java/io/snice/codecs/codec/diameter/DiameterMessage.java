@@ -2,7 +2,11 @@ package io.snice.codecs.codec.diameter;
 
 import io.snice.buffer.Buffer;
 import io.snice.buffer.ReadableBuffer;
+import io.snice.buffer.WritableBuffer;
 import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.AvpPath;
+import io.snice.codecs.codec.diameter.avp.AvpTemplate;
 import io.snice.codecs.codec.diameter.avp.FramedAvp;
 import io.snice.codecs.codec.diameter.avp.api.DestinationHost;
 import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
@@ -12,7 +16,12 @@ import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
 import io.snice.codecs.codec.diameter.avp.api.ResultCode;
 import io.snice.codecs.codec.diameter.avp.api.SessionId;
 import io.snice.codecs.codec.diameter.avp.api.UserName;
+import io.snice.codecs.codec.diameter.impl.DiameterCursor;
 import io.snice.codecs.codec.diameter.impl.DiameterParser;
+import io.snice.codecs.codec.diameter.impl.ImmutableDiameterRelay;
+import io.snice.codecs.codec.diameter.impl.ImmutableGatheredDiameterMessage;
+import io.snice.codecs.codec.diameter.impl.SessionIdHash;
+import io.snice.codecs.codec.diameter.impl.SlicedDiameterAnswerBuilder;
 import io.snice.functional.Either;
 import io.snice.preconditions.PreConditions;
 import io.snice.preconditions.ValidationError;
@@ -45,7 +54,10 @@ public interface DiameterMessage extends Cloneable {
     Optional<FramedAvp> getAvp(long code);
 
     /**
-     * Retrieve all AVPs for the given code.
+     * Retrieve all AVPs for the given code, in the order they appear in the message.
+     *
+     * Note that the returned list may be a read-only view backed by this message so
+     * do not expect to be able to modify it.
      *
      * @param code
      * @return a list of AVPs, or an empty list of none were found.
@@ -54,6 +66,51 @@ public interface DiameterMessage extends Cloneable {
         return getAllAvps().stream().filter(avp -> avp.getCode() == code).collect(Collectors.toList());
     }
 
+    /**
+     * Get the first {@link FramedAvp} with the given vendor id and AVP code. Unlike
+     * {@link #getAvp(long)}, which matches on the code alone, this will not match an AVP
+     * with the same code defined by another vendor.
+     *
+     * @param vendorId the vendor id, or zero for an AVP that isn't vendor specific.
+     * @param code the AVP code.
+     */
+    default Optional<FramedAvp> getAvp(final long vendorId, final long code) {
+        final long key = AvpHeader.key(vendorId, code);
+        return getAllAvps().stream().filter(avp -> avp.getKey() == key).findFirst();
+    }
+
+    /**
+     * Retrieve all AVPs with the given vendor id and AVP code, in the order they appear in the message.
+     *
+     * @param vendorId the vendor id, or zero for an AVP that isn't vendor specific.
+     * @param code the AVP code.
+     */
+    default List<FramedAvp> getAvps(final long vendorId, final long code) {
+        final long key = AvpHeader.key(vendorId, code);
+        return getAllAvps().stream().filter(avp -> avp.getKey() == key).collect(Collectors.toList());
+    }
+
+    /**
+     * Find the data of the first AVP matching the given path through (possibly) nested grouped AVPs.
+     * The data is a slice of the underlying buffer of this message.
+     *
+     * @see AvpPath
+     */
+    default Optional<Buffer> getAvpData(final AvpPath path) {
+        PreConditions.assertNotNull(path, "The path cannot be null");
+        return path.findFirst(this);
+    }
+
+    /**
+     * Find the data of all the AVPs matching the given path through (possibly) nested grouped AVPs.
+     *
+     * @see AvpPath
+     */
+    default List<Buffer> getAllAvpData(final AvpPath path) {
+        PreConditions.assertNotNull(path, "The path cannot be null");
+        return path.findAll(this);
+    }
+
     /**
      * By default, no validation on the {@link DiameterMessage} is made since the philosophy of the
      * library is to give users maximum flexibility, including the ability to construct illegal
@@ -307,6 +364,35 @@ public interface DiameterMessage extends Cloneable {
 
     Optional<DestinationHost> getDestinationHost();
 
+    /**
+     * A hash of the Session-Id of this message, meant for spreading sessions across threads, event loops,
+     * processes etc, so that all the messages of a given session end up in the same place.
+     * <p>
+     * The hash is computed straight off of the raw bytes of the Session-Id AVP, without allocating
+     * anything, and it is stable across JVMs. See {@link SessionIdHash} for the details.
+     *
+     * @return the hash of the Session-Id or zero if there is no Session-Id in this message, which
+     * is the case for e.g. the Capabilities-Exchange and Device-Watchdog messages.
+     */
+    default int getSessionIdHash() {
+        return getAvp(0, SessionId.CODE)
+                .map(FramedAvp::getData)
+                .map(data -> SessionIdHash.of(data, 0, data.capacity()))
+                .orElse(0);
+    }
+
+    /**
+     * Figure out which of the given number of shards this message belongs to, based on
+     * the {@link #getSessionIdHash()}.
+     *
+     * @param shards the number of shards, e.g. the number of event loops.
+     * @return a number between zero (inclusive) and the number of shards (exclusive).
+     */
+    default int getShardIndex(final int shards) {
+        PreConditions.assertArgument(shards > 0, "The number of shards must be greater than zero");
+        return SessionIdHash.shard(getSessionIdHash(), shards);
+    }
+
     static DiameterMessage frame(final Buffer buffer) {
         return DiameterParser.frame(buffer.toReadableBuffer());
     }
@@ -315,6 +401,66 @@ public interface DiameterMessage extends Cloneable {
         return DiameterParser.frame(buffer);
     }
 
+    /**
+     * Frame the message that starts at the given offset of the array.
+     *
+     * @see DiameterParser#frame(byte[], int)
+     */
+    static DiameterMessage frame(final byte[] array, final int offset) {
+        return DiameterParser.frame(array, offset);
+    }
+
+    /**
+     * Frame the message and validate it, according to the basic rules of RFC 6733, in the same pass.
+     *
+     * @see DiameterParser#frameValidated(Buffer)
+     */
+    static Either<DiameterViolations, DiameterMessage> frameValidated(final Buffer buffer) {
+        return DiameterParser.frameValidated(buffer);
+    }
+
+    /**
+     * Frame the message but hold off framing the AVPs until they are asked for.
+     *
+     * @see DiameterParser#frameLazy(Buffer)
+     */
+    static DiameterMessage frameLazy(final Buffer buffer) {
+        return DiameterParser.frameLazy(buffer);
+    }
+
+    /**
+     * Get a compact copy of this message, which is meant for messages that are kept around for a long
+     * time, such as the last request of every session. Only the raw bytes of the message and the offset
+     * of every AVP are kept and the AVPs are sliced out of those bytes every time they are asked for.
+     * Compacting an already compact message returns the very same message.
+     *
+     * @see DiameterParser#compact(DiameterMessage)
+     */
+    default DiameterMessage compact() {
+        return DiameterParser.compact(this);
+    }
+
+    /**
+     * Relay this message, which will produce a new message with a patched diameter header and any
+     * appended AVPs (such as a Route-Record) while the AVPs of this message are reused as is,
+     * nothing is copied or re-encoded. Note that this does not require the AVPs of this message to be
+     * framed so this works well with {@link #frameLazy(Buffer)}.
+     *
+     * @see DiameterRelay
+     */
+    default DiameterRelay.Builder relay() {
+        return ImmutableDiameterRelay.of(this);
+    }
+
+    /**
+     * Walk through the given raw diameter message without framing it.
+     *
+     * @see DiameterCursor
+     */
+    static DiameterCursor cursor(final Buffer buffer) {
+        return DiameterParser.cursor(buffer);
+    }
+
     /**
      * Create a new answer based on this {@link DiameterMessage}. If this
      * {@link DiameterMessage} is not a {@link DiameterRequest} then a
@@ -339,6 +485,40 @@ public interface DiameterMessage extends Cloneable {
                 + " into a " + DiameterAnswer.class.getName());
     }
 
+    /**
+     * Same as {@link #createAnswer(ResultCode)} but rather than creating a new builder, the given
+     * builder is {@link Builder#reset()} and re-used.
+     *
+     * @param builder the builder to re-use, which must not be in use for anything else.
+     */
+    default DiameterAnswer.Builder createAnswer(final ResultCode resultCode, final DiameterAnswer.Builder builder)
+            throws DiameterParseException, ClassCastException {
+        throw new ClassCastException("Unable to cast this " + getClass().getName()
+                + " into a " + DiameterAnswer.class.getName());
+    }
+
+    /**
+     * Create a new answer based on this {@link DiameterMessage} but rather than re-encoding the AVPs
+     * copied from the request, as {@link #createAnswer(ResultCode)} does, the AVPs are referenced straight
+     * off of the raw bytes of this request. If this {@link DiameterMessage} is not
+     * a {@link DiameterRequest} then a {@link ClassCastException} will be thrown.
+     *
+     * @see DiameterAnswer.SlicedBuilder
+     */
+    default DiameterAnswer.SlicedBuilder createSlicedAnswer(final ResultCode resultCode) throws ClassCastException {
+        if (!isRequest()) {
+            throw new ClassCastException("Unable to create an answer from a " + DiameterAnswer.class.getName());
+        }
+        return SlicedDiameterAnswerBuilder.of(this, resultCode);
+    }
+
+    default DiameterAnswer.SlicedBuilder createSlicedAnswer(final ExperimentalResultCode resultCode) throws ClassCastException {
+        if (!isRequest()) {
+            throw new ClassCastException("Unable to create an answer from a " + DiameterAnswer.class.getName());
+        }
+        return SlicedDiameterAnswerBuilder.of(this, resultCode);
+    }
+
     interface Builder<T extends DiameterMessage> {
 
         default boolean isDiameterRequestBuilder() {
@@ -425,8 +605,89 @@ public interface DiameterMessage extends Cloneable {
          */
         Builder<T> withDiameterHeader(final DiameterHeader.Builder header);
 
+        /**
+         * Add a block of pre-encoded AVPs, which will be written as is, at this position among the
+         * other AVPs of this message. Make sure you don't add the same AVPs both through the
+         * template and through any of the other with-methods.
+         * <p>
+         * Only one template can be used per message so adding a second one will replace the first.
+         * <p>
+         * By default, the AVPs of the template are simply added one by one through {@link #withAvp(Avp)},
+         * in which case they will be encoded again and a second template is added rather than replacing the first.
+         *
+         * @see AvpTemplate
+         */
+        default Builder<T> withAvpTemplate(final AvpTemplate template) {
+            PreConditions.assertNotNull(template, "The AVP template cannot be null");
+            final List<Avp> avps = template.getAvps();
+            for (int i = 0; i < avps.size(); ++i) {
+                withAvp(avps.get(i));
+            }
+            return this;
+        }
+
+        /**
+         * Reset this builder so that it can be re-used for building another message, which
+         * saves you from allocating a new builder, and its internal structures, for every message.
+         * All AVPs, the header and any {@link #onAvp(Function)} functions are cleared but
+         * the {@link DiameterBufferAllocator} is kept. Together with {@link #writeTo(WritableBuffer)},
+         * building a message allocates next to nothing.
+         * <p>
+         * Note that the builders are not thread safe so a re-usable builder is typically kept per thread.
+         *
+         * @throws IllegalStateException in case this builder cannot be re-used, which is the default.
+         */
+        default Builder<T> reset() throws IllegalStateException {
+            throw new IllegalStateException("This builder cannot be reset");
+        }
+
+        /**
+         * Specify the {@link DiameterBufferAllocator} to use for allocating the buffer that the message
+         * is written into when {@link #build()} is called. By default, a new buffer is allocated
+         * for every message.
+         *
+         * @throws IllegalStateException in case this builder doesn't support a different allocator, which is the default.
+         */
+        default Builder<T> withBufferAllocator(final DiameterBufferAllocator allocator) throws IllegalStateException {
+            throw new IllegalStateException("This builder doesn't support a different buffer allocator");
+        }
+
         T build();
 
+        /**
+         * Encode the message straight into the given buffer, at its writer index, rather than building a
+         * {@link DiameterMessage} that owns its bytes. Nothing refers to the written bytes afterwards so the
+         * same buffer, or its backing array, can be re-used for the next message once this one has been
+         * written to the network, which saves allocating a new buffer for every message.
+         *
+         * @return the number of bytes written, which is the length of the message.
+         * @throws IllegalArgumentException in case the buffer doesn't have room for the entire message.
+         */
+        default int writeTo(final WritableBuffer out) throws IllegalArgumentException {
+            PreConditions.assertNotNull(out, "The buffer to write the message to cannot be null");
+            final Buffer buffer = build().getBuffer();
+            PreConditions.assertArgument(out.getWritableBytes() >= buffer.capacity(), "The buffer only has room for "
+                    + out.getWritableBytes() + " bytes but the message is " + buffer.capacity() + " bytes");
+            buffer.writeTo(out);
+            return buffer.capacity();
+        }
+
+        /**
+         * Build the message but rather than copying all the AVPs into a single buffer, which is what
+         * {@link #build()} does, keep them as they are and return the message as a list of buffers
+         * that can be written to the network using a gathering write.
+         * This is useful when the message contains large AVPs that already have been encoded,
+         * such as AVPs copied from a request into its answer.
+         *
+         * <p>
+         * By default, the message is built as usual and then split into the header and all the AVPs.
+         *
+         * @see GatheredDiameterMessage
+         */
+        default GatheredDiameterMessage buildGathered() {
+            return ImmutableGatheredDiameterMessage.split(build());
+        }
+
         /**
          * After the {@link DiameterMessage} has been fully built and created, the "end result"
          * will be conveyed to the registered function. It is utterly important
@@ -0,0 +1,203 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.codecs.codec.diameter.impl.DefaultDiameterMetrics;
+import io.snice.codecs.codec.diameter.impl.DiameterInstrumentation;
+
+import java.util.List;
+
+/**
+ * The instrumentation SPI of the codec, which is told about every message that is framed by the
+ * {@link io.snice.codecs.codec.diameter.impl.DiameterParser} and every message that is built by a {@link DiameterMessage.Builder}, along
+ * with how long it took.
+ * <p>
+ * No metrics are collected until a {@link DiameterMetrics} has been installed through
+ * {@link #install(DiameterMetrics)}, at which point it is used by all threads. When nothing is installed,
+ * the cost is a single (volatile) read of the installed metrics when framing or building a message,
+ * the clock isn't even read.
+ * <p>
+ * The callbacks are invoked on the thread that framed, or built, the message and are as such on the
+ * hot path. An implementation must be thread safe and must neither block nor throw.
+ * <p>
+ * Use {@link #recorder()} for an implementation, without any dependencies, that keeps counters
+ * and latency histograms per command and application and which can be exported, e.g. to Prometheus,
+ * through its {@link Snapshot}.
+ */
+public interface DiameterMetrics {
+
+    /**
+     * The command code and application id of the {@link CommandSnapshot} that everything beyond the
+     * maximum number of tracked (command code, application id) pairs is folded into.
+     */
+    int OTHER = -1;
+
+    /**
+     * The default maximum number of (command code, application id) pairs a {@link Recorder} keeps
+     * track of.
+     */
+    int DEFAULT_MAX_COMMANDS = 256;
+
+    /**
+     * Install the given metrics, replacing any previously installed metrics.
+     */
+    static void install(final DiameterMetrics metrics) {
+        DiameterInstrumentation.install(metrics);
+    }
+
+    /**
+     * Stop collecting metrics.
+     */
+    static void uninstall() {
+        DiameterInstrumentation.install(null);
+    }
+
+    /**
+     * Create a new {@link Recorder}, which will not collect anything until it is installed.
+     */
+    static Recorder recorder() {
+        return recorder(DEFAULT_MAX_COMMANDS);
+    }
+
+    /**
+     * Create a new {@link Recorder} that keeps track of at most the given number of (command code,
+     * application id) pairs. Both come from the peer, so anything beyond that is folded into a single
+     * {@link #OTHER} entry rather than letting a peer make the recorder grow without bounds.
+     */
+    static Recorder recorder(final int maxCommands) {
+        return new DefaultDiameterMetrics(maxCommands);
+    }
+
+    /**
+     * A message has been framed.
+     *
+     * @param header the header of the framed message.
+     * @param avps   the number of top level AVPs of the message, or -1 if the message was framed
+     *               lazily, see {@link DiameterMessage#frameLazy(io.snice.buffer.Buffer)}, in which
+     *               case the AVPs haven't been framed yet.
+     * @param nanos  how long it took to frame the message.
+     */
+    void onFramed(DiameterHeader header, int avps, long nanos);
+
+    /**
+     * Framing a message failed.
+     */
+    void onFrameFailure(DiameterParseException e);
+
+    /**
+     * A message framed through {@link DiameterMessage#frameValidated(io.snice.buffer.Buffer)} broke one or
+     * more of the rules, which is reported here rather than as a failure to frame since the message may very
+     * well be well-formed, e.g. one that is only missing its Origin-Host.
+     *
+     * @param header the header of the message, or null if not even the header could be made sense of.
+     * @param violations all the violations of the message.
+     */
+    default void onFrameViolations(final DiameterHeader header, final DiameterViolations violations) {
+        // by default, violations are not kept track of
+    }
+
+    /**
+     * A message has been built.
+     *
+     * @param header the header of the new message, including its final length.
+     * @param avps   the number of top level AVPs of the message.
+     * @param nanos  how long it took to build the message.
+     */
+    void onBuilt(DiameterHeader header, int avps, long nanos);
+
+    /**
+     * The default {@link DiameterMetrics}, which keeps striped counters and a latency histogram, for
+     * both framing and building messages, per (command code, application id).
+     */
+    interface Recorder extends DiameterMetrics {
+
+        /**
+         * Take a snapshot of everything recorded so far. Since the counters keep being updated while
+         * the snapshot is taken, the snapshot is not an atomic view across all the counters, but every
+         * counter is always consistent in itself.
+         */
+        Snapshot snapshot();
+    }
+
+    interface Snapshot {
+
+        /**
+         * The number of messages that failed to be framed.
+         */
+        long getFrameFailures();
+
+        /**
+         * The number of messages framed through {@link DiameterMessage#frameValidated(io.snice.buffer.Buffer)}
+         * that broke any of the rules.
+         */
+        long getFrameViolations();
+
+        /**
+         * The metrics of all the (command code, application id) pairs that have been seen, sorted by
+         * command code and application id. If more pairs than the recorder keeps track of have been seen,
+         * the last one is the {@link #OTHER} entry.
+         */
+        List<CommandSnapshot> getCommands();
+    }
+
+    interface CommandSnapshot {
+
+        int getCommandCode();
+
+        long getApplicationId();
+
+        long getFramedRequests();
+
+        long getFramedAnswers();
+
+        /**
+         * The total number of AVPs of all the framed messages, not counting lazily framed messages.
+         */
+        long getFramedAvps();
+
+        long getBytesIn();
+
+        long getBuiltRequests();
+
+        long getBuiltAnswers();
+
+        long getBuiltAvps();
+
+        long getBytesOut();
+
+        LatencySnapshot getFrameLatency();
+
+        LatencySnapshot getBuildLatency();
+    }
+
+    /**
+     * A histogram of latencies, in nanoseconds, where the buckets grow exponentially, with eight
+     * linear buckets within every power of two, so every recorded value is within 12.5% of the
+     * bucket it ends up in.
+     */
+    interface LatencySnapshot {
+
+        long getCount();
+
+        long getSum();
+
+        long getMax();
+
+        /**
+         * The (upper bound of the bucket of the) value at the given percentile.
+         *
+         * @param percentile between 0 and 100.
+         */
+        long getValueAtPercentile(double percentile);
+
+        /**
+         * The number of buckets, for walking through the entire histogram, e.g. when exporting it.
+         */
+        int getBucketCount();
+
+        /**
+         * The largest value, inclusive, that ends up in the given bucket.
+         */
+        long getUpperBound(int bucket);
+
+        long getCount(int bucket);
+    }
+}
@@ -0,0 +1,51 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+
+/**
+ * A {@link DiameterMessage} as it is about to be forwarded by a relay or proxy agent.
+ * <p>
+ * When relaying a message, the agent must replace the Hop-by-Hop Identifier and append a
+ * Route-Record AVP (RFC 6733 section 6.1.9) but the rest of the message is left untouched. Therefore,
+ * rather than copying every single AVP into a new message, the relayed message is represented
+ * as a {@link GatheredDiameterMessage}: a new 20 byte diameter header, the untouched AVPs of the
+ * original message (a slice, not a copy) and any AVPs that the relay agent appended.
+ */
+public interface DiameterRelay extends GatheredDiameterMessage {
+
+    interface Builder {
+
+        /**
+         * Set the new Hop-by-Hop Identifier. If not set, the one from the original message will be kept.
+         */
+        Builder withHopByHopId(long id);
+
+        /**
+         * Set or clear the 'T' flag. If not set, the flag from the original message will be kept.
+         */
+        Builder withPossiblyRetransmission(boolean retransmission);
+
+        /**
+         * Append a Route-Record AVP, which should contain the identity of the peer
+         * from which the request was received.
+         */
+        Builder withRouteRecord(RouteRecord routeRecord);
+
+        Builder withRouteRecord(String identity);
+
+        Builder withRouteRecord(Buffer identity);
+
+        /**
+         * Append the given AVP to the end of the relayed message.
+         */
+        Builder withAvp(Avp avp);
+
+        /**
+         * @throws DiameterParseException in case the relayed message would end up being larger
+         *                                than what fits within the 24 bit length of a diameter header.
+         */
+        DiameterRelay build() throws DiameterParseException;
+    }
+}
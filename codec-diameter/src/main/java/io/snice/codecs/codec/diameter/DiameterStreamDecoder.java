@@ -0,0 +1,74 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.impl.DefaultDiameterStreamDecoder;
+
+import java.util.function.Consumer;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+
+/**
+ * For stream based transports, such as TCP and SCTP, the data we read off of the network will
+ * not line up with the diameter messages. A single read may contain half a diameter header, or
+ * three full messages and the beginning of a fourth. The {@link DiameterStreamDecoder} keeps
+ * track of where it is in the stream across calls to {@link #decode(Buffer, Consumer)} and emits
+ * fully framed {@link DiameterMessage}s as soon as enough data has arrived.
+ * <p>
+ * Messages that are fully contained within a single chunk are framed directly on top of that
+ * chunk, i.e., no bytes are copied. Only when a message spans multiple chunks are the bytes
+ * accumulated, and then they are copied exactly once into a buffer sized after the length found
+ * in the diameter header.
+ * <p>
+ * A decoder is meant to be used for a single connection and is not thread safe.
+ */
+public interface DiameterStreamDecoder {
+
+    /**
+     * The length field of the diameter header is 24 bits so no message can be larger than this.
+     */
+    int MAX_MESSAGE_SIZE = 0xFFFFFF;
+
+    static DiameterStreamDecoder create() {
+        return new DefaultDiameterStreamDecoder(MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Create a new {@link DiameterStreamDecoder} that will refuse any message that is larger than
+     * the given size, which is a good idea for any internet facing node since otherwise a peer
+     * can force you to allocate up to {@link #MAX_MESSAGE_SIZE} bytes per connection.
+     */
+    static DiameterStreamDecoder create(final int maxMessageSize) {
+        assertArgument(maxMessageSize >= 20 && maxMessageSize <= MAX_MESSAGE_SIZE,
+                "The max message size must be between 20 and " + MAX_MESSAGE_SIZE + " bytes");
+        return new DefaultDiameterStreamDecoder(maxMessageSize);
+    }
+
+    /**
+     * Decode the next chunk of data off of the stream and hand over every {@link DiameterMessage}
+     * that could be fully framed to the given consumer, in the order they appeared in the stream.
+     *
+     * @param chunk the next chunk of data. The decoder may hold on to (slices of) this buffer so
+     *              it must not be modified afterwards.
+     * @param consumer the consumer of all the messages that could be fully framed.
+     * @return the number of messages that were framed.
+     * @throws DiameterParseException in case the stream doesn't contain diameter, in which case
+     *                                the stream is beyond repair and the connection should be closed.
+     *                                If a message that is complete fails to frame, or the consumer throws,
+     *                                only that message is skipped and the rest of the chunk is still
+     *                                decoded after which the first such exception is re-thrown. The
+     *                                stream is then still intact and the connection can be kept. If the
+     *                                stream then turns out to be broken further into the same chunk, that
+     *                                earlier exception is attached to the one thrown as a suppressed exception.
+     */
+    int decode(Buffer chunk, Consumer<DiameterMessage> consumer) throws DiameterParseException;
+
+    /**
+     * The number of bytes belonging to a not yet complete message that the decoder is holding on to.
+     */
+    int getBufferedBytes();
+
+    /**
+     * Drop any partially received message.
+     */
+    void reset();
+}
@@ -0,0 +1,87 @@
+package io.snice.codecs.codec.diameter;
+
+/**
+ * The things that {@link DiameterMessage#frameValidated(io.snice.buffer.Buffer)} checks for while framing a
+ * message, and that a {@link CommandValidator} checks for. Each violation maps to the RFC 6733 Result-Code
+ * a diameter node is to answer with when rejecting the message.
+ * <p>
+ * The message of a violation is a template that is only rendered when asked for, see
+ * {@link DiameterViolations#getMessage(int)}, where the first argument is the value of the
+ * violation (typically the code of the offending AVP) and the second one the offset,
+ * relative to the beginning of the message, of where the violation was found.
+ */
+public enum DiameterViolation {
+
+    /**
+     * The version of the diameter header isn't 1. The value is the version.
+     */
+    UNSUPPORTED_VERSION(5011, "Unsupported diameter version %d"),
+
+    /**
+     * The length of the diameter header is less than 20, larger than the buffer or not a
+     * multiple of four. The value is the length.
+     */
+    INVALID_MESSAGE_LENGTH(5015, "Invalid message length %d"),
+
+    /**
+     * The 'E' bit is set on a request. The value is the command code.
+     */
+    INVALID_HEADER_BITS(3008, "The 'E' bit is set on request %d"),
+
+    /**
+     * The length of an AVP is less than its header or goes beyond the end of the message. The
+     * value is the code of the AVP.
+     */
+    INVALID_AVP_LENGTH(5014, "AVP %d at offset %d has an invalid length"),
+
+    /**
+     * The padding of an AVP isn't all zeros. The value is the code of the AVP.
+     */
+    INVALID_AVP_PADDING(5004, "AVP %d at offset %d has a padding that isn't zero"),
+
+    /**
+     * The 'M' bit of a base protocol AVP doesn't follow the rules of RFC 6733 section 4.5.
+     * The value is the code of the AVP.
+     */
+    INVALID_AVP_BITS(3009, "The 'M' bit of AVP %d at offset %d is invalid"),
+
+    /**
+     * An AVP with the 'M' bit set is not supported. The value is the code of the AVP.
+     */
+    AVP_UNSUPPORTED(5001, "AVP %d at offset %d has the 'M' bit set but is not supported"),
+
+    /**
+     * A mandatory AVP is missing. The value is the code of the AVP.
+     */
+    MISSING_AVP(5005, "Mandatory AVP %d is missing"),
+
+    /**
+     * An AVP is present where it is not allowed, e.g. a Destination-Realm in an answer.
+     * The value is the code of the AVP.
+     */
+    AVP_NOT_ALLOWED(5008, "AVP %d at offset %d is not allowed"),
+
+    /**
+     * An AVP is present more times than allowed. The value is the code of the AVP.
+     */
+    AVP_OCCURS_TOO_MANY_TIMES(5009, "AVP %d at offset %d occurs too many times");
+
+    private final long resultCode;
+    private final String template;
+
+    DiameterViolation(final long resultCode, final String template) {
+        this.resultCode = resultCode;
+        this.template = template;
+    }
+
+    /**
+     * The RFC 6733 Result-Code to answer with.
+     */
+    public long getResultCode() {
+        return resultCode;
+    }
+
+    public String format(final long value, final int offset) {
+        return String.format(template, value, offset);
+    }
+}
@@ -0,0 +1,58 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.preconditions.ValidationError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link DiameterViolation}s found by {@link DiameterMessage#frameValidated(io.snice.buffer.Buffer)}.
+ * <p>
+ * Each violation is kept as a compact (violation, offset, value) entry and nothing is rendered into
+ * a human readable message until {@link #getMessage(int)} is called, so rejecting a malformed message
+ * based on e.g. the {@link DiameterViolation#getResultCode()} of the first violation is cheap.
+ */
+public interface DiameterViolations {
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    DiameterViolation getViolation(int index);
+
+    /**
+     * The offset, relative to the beginning of the message, of where the violation was found.
+     */
+    int getOffset(int index);
+
+    /**
+     * The value of the violation, which typically is the code of the offending AVP.
+     * See {@link DiameterViolation} for what it is for each violation.
+     */
+    long getValue(int index);
+
+    default String getMessage(final int index) {
+        return getViolation(index).format(getValue(index), getOffset(index));
+    }
+
+    default List<String> getMessages() {
+        final List<String> messages = new ArrayList<>(size());
+        for (int i = 0; i < size(); ++i) {
+            messages.add(getMessage(i));
+        }
+        return messages;
+    }
+
+    /**
+     * Convert the violations into the same {@link ValidationError} as {@link DiameterMessage#validate()} produces.
+     */
+    default ValidationError<String> toValidationError() {
+        ValidationError<String> error = null;
+        for (int i = 0; i < size(); ++i) {
+            error = ValidationError.append(error, getMessage(i));
+        }
+        return error;
+    }
+}
@@ -0,0 +1,132 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.impl.DefaultDuplicateDetectionCache;
+
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * RFC 6733 section 3 states that duplicate requests, as identified by the End-to-End
+ * identifier and the Origin-Host (see {@link TransactionIdentifier}), SHOULD cause the same
+ * answer to be transmitted. Duplicates show up after a failover, where the client re-sends all
+ * of its outstanding requests to another peer, and if those requests are expensive to
+ * process, such as a ULR or an AIR that has to go to the subscriber database, it is much
+ * better to answer them straight out of memory.
+ * <p>
+ * The {@link DuplicateDetectionCache} keeps the encoded answer for each
+ * {@link TransactionIdentifier} for a configurable window, which by default is the 4 minutes
+ * the End-to-End identifier is required to stay unique. The cache is bounded in size and the
+ * oldest entries are evicted first once it is full. It is safe to share a single cache
+ * between all connections and threads.
+ */
+public interface DuplicateDetectionCache {
+
+    /**
+     * RFC 6733 says that the End-to-End identifier must remain locally unique for at least
+     * 4 minutes.
+     */
+    long DEFAULT_WINDOW_MS = 4 * 60 * 1000;
+
+    static DuplicateDetectionCache create(final int maxEntries) {
+        return create(maxEntries, DEFAULT_WINDOW_MS);
+    }
+
+    static DuplicateDetectionCache create(final int maxEntries, final long windowMs) {
+        return create(maxEntries, windowMs, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxEntries the max number of answers to keep in the cache.
+     * @param windowMs for how long, in milliseconds, an answer is kept in the cache.
+     * @param clock the clock, in milliseconds, used to figure out when an answer is too old.
+     */
+    static DuplicateDetectionCache create(final int maxEntries, final long windowMs, final LongSupplier clock) {
+        assertArgument(maxEntries > 0, "The max number of entries must be greater than zero");
+        assertArgument(windowMs > 0, "The window must be greater than zero");
+        assertNotNull(clock, "The clock cannot be null");
+        return new DefaultDuplicateDetectionCache(maxEntries, windowMs, clock);
+    }
+
+    /**
+     * Get the encoded answer that was previously sent for the given transaction, if any.
+     * Every call counts as either a hit or a miss.
+     */
+    Optional<Buffer> get(TransactionIdentifier transaction);
+
+    /**
+     * Get the previously sent answer to the given request, if any, with the hop-by-hop
+     * identifier changed to that of the given request, i.e., the answer is ready to be sent
+     * back to the peer as is.
+     */
+    default Optional<Buffer> get(final DiameterRequest request) {
+        assertNotNull(request, "The request cannot be null");
+        return get(TransactionIdentifier.from(request)).map(answer -> {
+            final long hopByHop = request.getHeader().getHopByHopId();
+            if (answer.getUnsignedInt(12) == hopByHop) {
+                return answer;
+            }
+
+            final WritableBuffer copy = WritableBuffer.of(answer.capacity());
+            answer.writeTo(copy);
+            copy.setUnsignedInt(12, hopByHop);
+            return copy.build();
+        });
+    }
+
+    /**
+     * Remember the encoded answer of the given transaction. The buffer is kept as is so it must
+     * not be modified afterwards.
+     */
+    void put(TransactionIdentifier transaction, Buffer answer);
+
+    default void put(final DiameterRequest request, final DiameterAnswer answer) {
+        assertNotNull(request, "The request cannot be null");
+        assertNotNull(answer, "The answer cannot be null");
+        put(TransactionIdentifier.from(request), answer.getBuffer());
+    }
+
+    /**
+     * Forget about the given transaction.
+     */
+    void remove(TransactionIdentifier transaction);
+
+    /**
+     * Evict all answers that are older than the window. Expired answers are also evicted as
+     * part of regular lookups and inserts so calling this is only needed to release memory
+     * during quiet periods.
+     *
+     * @return the number of evicted answers.
+     */
+    int evictExpired();
+
+    /**
+     * The number of answers in the cache, which may include some that are expired but not yet
+     * evicted.
+     */
+    int size();
+
+    /**
+     * The number of lookups that found an answer.
+     */
+    long getHits();
+
+    /**
+     * The number of lookups that did not find an answer.
+     */
+    long getMisses();
+
+    /**
+     * The number of answers that have been evicted, either because they were too old or
+     * because the cache was full.
+     */
+    long getEvictions();
+
+    void clear();
+}
@@ -0,0 +1,51 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+
+import java.util.List;
+
+/**
+ * An encoded {@link DiameterMessage} that hasn't been written into a single buffer but rather is
+ * represented as a list of buffers, which when written one after the other, makes up the message.
+ * The first buffer is always the 20 byte diameter header and the rest are the AVPs
+ * and their padding.
+ * <p>
+ * The point is to avoid copying AVPs that already have been encoded, which is the case for e.g.
+ * AVPs copied from a request into an answer, and which can be quite large (think Subscription-Data).
+ * The buffers are meant to be written straight to the network using a gathering write
+ * (e.g. {@link java.nio.channels.GatheringByteChannel#write(java.nio.ByteBuffer[])}), which is
+ * up to the transport to do since it knows how to get a hold of the bytes of each {@link Buffer}.
+ */
+public interface GatheredDiameterMessage {
+
+    /**
+     * The diameter header of the message.
+     */
+    DiameterHeader getHeader();
+
+    /**
+     * The total length of the message, same as the length in the {@link #getHeader()}, which
+     * is also the sum of the capacity of all the {@link #getBuffers()}.
+     */
+    int getLength();
+
+    /**
+     * All the buffers making up the message, in the order they should be written.
+     */
+    List<Buffer> getBuffers();
+
+    void writeTo(WritableBuffer out);
+
+    /**
+     * Write the entire message into a single {@link Buffer}. Note that this will copy all
+     * the bytes, which is what the {@link GatheredDiameterMessage} is trying to avoid in the first place.
+     */
+    Buffer toBuffer();
+
+    /**
+     * Turn this into a regular {@link DiameterMessage}, which will copy all the bytes
+     * into a new buffer, which is then framed lazily (see {@link DiameterMessage#frameLazy(Buffer)}).
+     */
+    DiameterMessage toDiameterMessage();
+}
@@ -0,0 +1,124 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.codecs.codec.diameter.impl.DefaultOutstandingRequests;
+
+import java.util.function.ObjLongConsumer;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+
+/**
+ * Every request sent to a peer has to be remembered until the answer comes back, or until the
+ * transaction times out (the Tx timer of RFC 6733 section 5.5.4). Answers are matched to
+ * their request through the hop-by-hop identifier, which is why this table is keyed directly on
+ * that primitive identifier, as found through {@link DiameterHeader#getHopByHopId()}.
+ * <p>
+ * The table is built to hold a very large number of in-flight transactions without creating
+ * any garbage per transaction. The hop-by-hop ids are kept in an open addressing hash table of
+ * primitive ints and the timeouts are tracked by a hashed timer wheel that is linked through
+ * the very same entries. As such, the capacity of the table is fixed at creation time and
+ * {@link #add(long, Object, long)} will refuse new transactions when the table is full, which
+ * is typically a good time to start pushing back on whoever is producing the requests anyway.
+ * <p>
+ * The table doesn't have a clock of its own. Instead, the current time is passed in to
+ * {@link #add(long, Object, long)} and {@link #expire(long, ObjLongConsumer)}, which makes it
+ * easy to drive the table from the event loop of the connection (and to test it).
+ * <p>
+ * A table is meant to be used for a single connection, or at least a single thread, and is not
+ * thread safe.
+ */
+public interface OutstandingRequests<T> {
+
+    /**
+     * The default value of the Tx timer, as recommended by RFC 6733.
+     */
+    long DEFAULT_TIMEOUT_MS = 30_000;
+
+    static <T> OutstandingRequests<T> create(final int capacity) {
+        return create(capacity, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Create a new table that can hold up to the given number of outstanding requests.
+     *
+     * @param capacity the maximum number of outstanding requests.
+     * @param timeoutMs the default timeout, in milliseconds, of each request.
+     */
+    static <T> OutstandingRequests<T> create(final int capacity, final long timeoutMs) {
+        assertArgument(capacity > 0 && capacity <= DefaultOutstandingRequests.MAX_CAPACITY,
+                "The capacity must be between 1 and " + DefaultOutstandingRequests.MAX_CAPACITY);
+        assertArgument(timeoutMs > 0, "The timeout must be greater than zero");
+        return new DefaultOutstandingRequests<>(capacity, timeoutMs);
+    }
+
+    /**
+     * Remember the given request until the answer comes back or it times out after the default
+     * timeout.
+     *
+     * @param hopByHopId the hop-by-hop identifier of the request, i.e. the unsigned 32 bit value
+     *                   as returned by {@link DiameterHeader#getHopByHopId()}.
+     * @param request the request, or whatever else the application wish to get back once
+     *                the answer arrives.
+     * @param now the current time in milliseconds.
+     * @return true if the request was added, false if there already is a request with the same
+     * hop-by-hop id or if the table is full.
+     */
+    boolean add(long hopByHopId, T request, long now);
+
+    /**
+     * Same as {@link #add(long, Object, long)} but with a timeout specific to this request.
+     */
+    boolean add(long hopByHopId, T request, long now, long timeoutMs);
+
+    /**
+     * Get the outstanding request for the given hop-by-hop id without removing it.
+     *
+     * @return the request or null if there is no such outstanding request.
+     */
+    T get(long hopByHopId);
+
+    /**
+     * Remove the outstanding request for the given hop-by-hop id, which is what you do when
+     * the answer arrives.
+     *
+     * @return the request or null if there is no such outstanding request, in which case the
+     * answer should be discarded (RFC 6733 section 6.2).
+     */
+    T remove(long hopByHopId);
+
+    /**
+     * Remove all requests that have timed out as of the given time and hand them over, along
+     * with their hop-by-hop id, to the given consumer.
+     * <p>
+     * This is supposed to be called periodically, typically once per tick of the event loop.
+     * Only the slots of the timer wheel that have passed since the last call are visited so
+     * the cost is proportional to the elapsed time and the number of expired requests, not to
+     * the number of outstanding requests.
+     * <p>
+     * The consumer may add new requests, e.g. when re-sending a request to another peer, but
+     * must not remove any other outstanding request while being called.
+     *
+     * @param now the current time in milliseconds.
+     * @param consumer the consumer of the requests that timed out.
+     * @return the number of requests that timed out.
+     */
+    int expire(long now, ObjLongConsumer<T> consumer);
+
+    /**
+     * The number of outstanding requests.
+     */
+    int size();
+
+    /**
+     * The maximum number of outstanding requests this table can hold.
+     */
+    int capacity();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Drop all outstanding requests without notifying anyone.
+     */
+    void clear();
+}
@@ -0,0 +1,151 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import io.snice.codecs.codec.diameter.impl.DefaultRoutingTable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The realm based routing table of RFC 6733 section 2.7, which maps a (realm, application-id)
+ * to what to do with a request, i.e. process it locally, relay, proxy or redirect it, and if it
+ * is to be sent somewhere else, the list of peers to send it to.
+ * <p>
+ * A request is matched against the table using its Destination-Realm and the application id of
+ * the {@link DiameterHeader}, in the following order:
+ * <ol>
+ *     <li>the realm and the application id</li>
+ *     <li>the realm and {@link #ANY_APPLICATION}</li>
+ *     <li>{@link #ANY_REALM} and the application id</li>
+ *     <li>{@link #ANY_REALM} and {@link #ANY_APPLICATION}, i.e. the default route</li>
+ * </ol>
+ * Realms are DNS names and are as such compared case-insensitively. They are matched directly
+ * against the raw bytes of the Destination-Realm AVP, without ever converting them to a String,
+ * and a lookup is a handful of hash table probes, no matter how many routes there are.
+ * <p>
+ * The table is safe to use from multiple threads. The routes are kept in an immutable table that
+ * is replaced every time the routes change, so looking up a route never takes a lock and never
+ * sees a half way updated table. Changing the routes is therefore more expensive and is expected
+ * to be rare. Use {@link #replaceAll(Collection)} for reconfiguring the entire table in one go.
+ */
+public interface RoutingTable {
+
+    /**
+     * The realm of a route that matches any realm.
+     */
+    String ANY_REALM = "*";
+
+    /**
+     * The application id of a route that matches any application.
+     */
+    long ANY_APPLICATION = -1;
+
+    static RoutingTable create() {
+        return new DefaultRoutingTable();
+    }
+
+    /**
+     * Find the route for the given message, which is based on its Destination-Realm and the
+     * application id of the header.
+     *
+     * @return the route, or an empty optional if there is no matching route or the message doesn't
+     * have a Destination-Realm, in which case the request is to be processed locally (RFC 6733
+     * section 6.1.4).
+     */
+    Optional<Route> lookup(DiameterMessage msg);
+
+    /**
+     * Find the route for the given realm and application id.
+     *
+     * @param realm the raw realm, e.g. the data of a {@link DestinationRealm} AVP.
+     */
+    Optional<Route> lookup(Buffer realm, long applicationId);
+
+    default Optional<Route> lookup(final String realm, final long applicationId) {
+        return lookup(Buffers.wrap(realm), applicationId);
+    }
+
+    /**
+     * Add the given route, replacing any existing route for the same (realm, application-id).
+     */
+    RoutingTable add(Route route);
+
+    /**
+     * Remove the route for the given (realm, application-id).
+     *
+     * @return true if there was such a route, false otherwise.
+     */
+    boolean remove(String realm, long applicationId);
+
+    /**
+     * Replace all the routes of this table with the given routes, as one atomic operation.
+     */
+    RoutingTable replaceAll(Collection<Route> routes);
+
+    /**
+     * All the routes of this table in the order they were added.
+     */
+    List<Route> getRoutes();
+
+    int size();
+
+    /**
+     * The Local Action of RFC 6733 section 2.7.
+     */
+    enum Action {
+        LOCAL, RELAY, PROXY, REDIRECT
+    }
+
+    interface Route {
+
+        static Builder of(final String realm) {
+            return DefaultRoutingTable.route(realm);
+        }
+
+        /**
+         * The realm of the route, all lower case, or {@link #ANY_REALM}.
+         */
+        String getRealm();
+
+        /**
+         * The application id of the route, or {@link #ANY_APPLICATION}.
+         */
+        long getApplicationId();
+
+        Action getAction();
+
+        /**
+         * The peers to relay or proxy the request to or, for {@link Action#REDIRECT}, the
+         * hosts to redirect to. Always empty for {@link Action#LOCAL}.
+         */
+        List<DiameterIdentity> getPeers();
+
+        interface Builder {
+
+            /**
+             * If not set, the route will match {@link #ANY_APPLICATION}.
+             */
+            Builder withApplicationId(long applicationId);
+
+            /**
+             * If not set, the action will be {@link Action#RELAY}.
+             */
+            Builder withAction(Action action);
+
+            Builder withPeer(DiameterIdentity peer);
+
+            Builder withPeer(String peer);
+
+            /**
+             * @throws IllegalArgumentException in case the route relays, proxies or redirects the
+             *                                  request but there are no peers to send it to, or in
+             *                                  case the route is local but there are peers.
+             */
+            Route build() throws IllegalArgumentException;
+        }
+    }
+}
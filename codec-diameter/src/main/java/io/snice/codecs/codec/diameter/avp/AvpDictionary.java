@@ -0,0 +1,81 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.codecs.codec.diameter.avp.impl.DefaultAvpDictionary;
+import io.snice.codecs.codec.diameter.avp.type.DiameterType;
+
+import java.util.function.Function;
+
+/**
+ * A compiled (vendor-id, AVP code) to parser dispatch table, used when a {@link FramedAvp} is
+ * turned into a fully parsed {@link Avp} through {@link FramedAvp#ensure()}.
+ * <p>
+ * The parsers are kept in one dense array per vendor, indexed directly by the AVP code, so
+ * finding the parser for an AVP is a couple of array lookups. The parsers themselves are the
+ * static <code>parse</code> methods of the generated AVPs, compiled into regular functions
+ * through {@link AvpReflection#getParser(Class)}, so no reflection is involved once an AVP has
+ * been registered.
+ * <p>
+ * AVPs are registered up front, typically at startup. The {@link #getDefault()} dictionary comes
+ * with the base protocol AVPs, and the 3GPP AVPs the codec itself works with, already registered.
+ * An AVP that hasn't been registered is handed over to the generated {@link AvpFramer}, and the
+ * dictionary is never changed as a result of parsing an AVP.
+ * <p>
+ * A dictionary is safe to use from multiple threads. Registering new AVPs is a copy-on-write
+ * operation so it is expected to be rare compared to parsing.
+ */
+public interface AvpDictionary {
+
+    /**
+     * The dictionary used by {@link FramedAvp#ensure()}.
+     */
+    static AvpDictionary getDefault() {
+        return DefaultAvpDictionary.DEFAULT;
+    }
+
+    /**
+     * Create a new, empty, dictionary that does not learn new AVPs as they are parsed. AVPs that
+     * haven't been registered are still handed over to the {@link AvpFramer}.
+     */
+    static AvpDictionary create() {
+        return new DefaultAvpDictionary();
+    }
+
+    /**
+     * Register the given AVP, which is not vendor specific.
+     *
+     * @throws AvpReflectionException in case the given class doesn't look like a generated AVP.
+     */
+    default AvpDictionary register(final Class<? extends Avp<? extends DiameterType>> avp) throws AvpReflectionException {
+        return register(0, avp);
+    }
+
+    /**
+     * Register the given vendor specific AVP.
+     *
+     * @throws AvpReflectionException in case the given class doesn't look like a generated AVP.
+     */
+    AvpDictionary register(long vendorId, Class<? extends Avp<? extends DiameterType>> avp) throws AvpReflectionException;
+
+    /**
+     * Register a parser for the given (vendor-id, code), which is useful for AVPs that aren't
+     * part of the generated code.
+     *
+     * @param vendorId the vendor id, or zero if the AVP isn't vendor specific.
+     */
+    AvpDictionary register(long vendorId, long code, Function<FramedAvp, ? extends Avp> parser);
+
+    /**
+     * Check whether there is a parser for the given (vendor-id, code) in this dictionary.
+     */
+    boolean isRegistered(long vendorId, long code);
+
+    /**
+     * Parse the given {@link FramedAvp} into its fully parsed {@link Avp}.
+     */
+    Avp parse(FramedAvp avp) throws AvpParseException;
+
+    /**
+     * The number of registered (vendor-id, code) pairs.
+     */
+    int size();
+}
@@ -16,6 +16,12 @@ import java.util.Optional;
  */
 public interface AvpHeader {
 
+    /**
+     * Returned by {@link #getVendorIdAsLong()} when there is no vendor id present. The vendor id
+     * is an unsigned 32 bit integer so it can never be negative.
+     */
+    long NO_VENDOR_ID = -1L;
+
     static AvpHeader frame(final ReadableBuffer buffer) { // throws DiameterParseException {
         return DiameterParser.frameAvpHeader(buffer);
     }
@@ -24,6 +30,33 @@ public interface AvpHeader {
         return ImmutableAvpHeader.withCode(code);
     }
 
+    /**
+     * Pack the vendor id and the AVP code, both of which are unsigned 32 bit values, into
+     * a single primitive key. AVPs that aren't vendor specific use a vendor id of zero, which
+     * means that the key of such an AVP is the same as its code.
+     *
+     * @param vendorId the vendor id or zero if the AVP isn't vendor specific.
+     * @param code the AVP code.
+     */
+    static long key(final long vendorId, final long code) {
+        return vendorId << 32 | code;
+    }
+
+    /**
+     * The AVP code of a key created through {@link #key(long, long)}.
+     */
+    static long codeOf(final long key) {
+        return key & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The vendor id of a key created through {@link #key(long, long)}, which is zero if
+     * the AVP isn't vendor specific.
+     */
+    static long vendorIdOf(final long key) {
+        return key >>> 32;
+    }
+
     /**
      * The length (in bytes) of the header itself.
      *
@@ -37,8 +70,27 @@ public interface AvpHeader {
 
     Optional<Long> getVendorId();
 
+    /**
+     * Same as {@link #getVendorId()} but without having to box the vendor id into a {@link Long}
+     * wrapped in an {@link Optional}, which matters when you are looking at every AVP of every message.
+     *
+     * @return the vendor id or {@link #NO_VENDOR_ID} if the vendor id isn't present.
+     */
+    default long getVendorIdAsLong() {
+        return getVendorId().orElse(NO_VENDOR_ID);
+    }
+
     boolean isVendorSpecific();
 
+    /**
+     * The vendor id and the AVP code packed into a single key, which is what identifies an AVP.
+     *
+     * @see #key(long, long)
+     */
+    default long getKey() {
+        return key(isVendorSpecific() ? getVendorIdAsLong() : 0, getCode());
+    }
+
     boolean isMandatory();
 
     boolean isProtected();
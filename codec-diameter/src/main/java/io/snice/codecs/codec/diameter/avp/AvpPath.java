@@ -0,0 +1,107 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.avp.impl.ImmutableAvpPath;
+import io.snice.codecs.codec.diameter.avp.type.Grouped;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A compiled path through nested grouped {@link Avp}s, such as
+ * Subscription-Data / APN-Configuration-Profile / APN-Configuration / Service-Selection.
+ * <p>
+ * Getting to the bottom of such a path through {@link Grouped} means framing every level,
+ * one {@link FramedAvp#ensure()} and one list of AVPs at a time. An {@link AvpPath} instead
+ * walks the raw bytes of the message directly, only descending into those grouped AVPs that
+ * match the path, and hands out the data of the matching AVPs as slices of the original
+ * buffer. Nothing is framed or copied along the way.
+ * <p>
+ * The typical usage is to compile the path once and then use it over and over again:
+ *
+ * <pre>
+ *     private static final AvpPath SERVICE_SELECTION =
+ *             AvpPath.of(SubscriptionData.CODE, 1429, 1430, ServiceSelection.CODE);
+ *
+ *     final List&lt;Buffer&gt; apns = SERVICE_SELECTION.findAll(ula);
+ * </pre>
+ * <p>
+ * An {@link AvpPath} is immutable and can safely be shared between threads.
+ */
+public interface AvpPath {
+
+    /**
+     * Create a path of the given AVP codes, outermost first, where the vendor of the
+     * AVPs does not matter.
+     */
+    static AvpPath of(final long code, final long... codes) {
+        final Builder builder = builder().with(code);
+        for (final long c : codes) {
+            builder.with(c);
+        }
+        return builder.build();
+    }
+
+    static Builder builder() {
+        return ImmutableAvpPath.builder();
+    }
+
+    /**
+     * The number of AVPs in this path.
+     */
+    int depth();
+
+    /**
+     * The AVP code at the given level of the path, where zero is the outermost AVP.
+     */
+    long getCode(int level);
+
+    /**
+     * The vendor id at the given level of the path, or an empty optional if any vendor
+     * (including none) matches.
+     */
+    Optional<Long> getVendorId(int level);
+
+    /**
+     * Find the data of the first AVP in the message that matches this path.
+     */
+    Optional<Buffer> findFirst(DiameterMessage msg);
+
+    /**
+     * Find the data of the first AVP that matches this path, where the path is relative to
+     * the given grouped AVP, i.e., the first code of the path is matched against the AVPs
+     * within the given grouped AVP.
+     */
+    Optional<Buffer> findFirst(FramedAvp grouped);
+
+    /**
+     * Find the data of all the AVPs in the message that match this path, in the order they
+     * appear in the message.
+     */
+    List<Buffer> findAll(DiameterMessage msg);
+
+    /**
+     * Hand the data of all the AVPs in the message that match this path, in the order they
+     * appear in the message, over to the given consumer.
+     *
+     * @return the number of matching AVPs.
+     */
+    int forEach(DiameterMessage msg, Consumer<Buffer> consumer);
+
+    interface Builder {
+
+        /**
+         * Add the next level of the path, matching any vendor.
+         */
+        Builder with(long code);
+
+        /**
+         * Add the next level of the path, matching only vendor specific AVPs of the given vendor.
+         */
+        Builder with(long code, long vendorId);
+
+        AvpPath build();
+    }
+}
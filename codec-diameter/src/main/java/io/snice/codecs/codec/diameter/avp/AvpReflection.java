@@ -1,88 +1,115 @@
 package io.snice.codecs.codec.diameter.avp;
 
-import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
 import io.snice.codecs.codec.diameter.avp.type.DiameterType;
-import io.snice.codecs.codec.diameter.avp.type.DiameterTypeUtils;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.function.Function;
 
 /**
  * Auxiliary class for reflection magic on AVPs. Mainly needed when building
  * tools for diameter, such as a Gatling plugin.
+ * <p>
+ * The reflective lookups are only done the first time a given AVP class is asked about. The
+ * result, be it the code, the type or one of the functions for creating or parsing an AVP, is
+ * cached for the lifetime of the class so tools such as load generators can safely call
+ * these methods for every message they produce. The functions returned by {@link #of(Class)}
+ * and {@link #getParser(Class)} are compiled into regular lambdas so invoking them is as fast as
+ * calling the static methods of the AVP directly.
  */
 public final class AvpReflection {
 
+    private static final ClassValue<Object> CODES = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> cls) {
+            try {
+                return readField(cls, "CODE");
+            } catch (final AvpReflectionException e) {
+                return e;
+            }
+        }
+    };
+
+    private static final ClassValue<Object> TYPES = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> cls) {
+            try {
+                return readField(cls, "TYPE");
+            } catch (final AvpReflectionException e) {
+                return e;
+            }
+        }
+    };
+
+    private static final ClassValue<Object> CREATORS = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> cls) {
+            try {
+                return readField(cls, "CREATOR");
+            } catch (final AvpReflectionException e) {
+                return e;
+            }
+        }
+    };
+
+    private static final ClassValue<Object> FACTORIES = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> cls) {
+            try {
+                return compile(findOf(cls));
+            } catch (final AvpReflectionException e) {
+                return e;
+            }
+        }
+    };
+
+    private static final ClassValue<Object> PARSERS = new ClassValue<>() {
+        @Override
+        protected Object computeValue(final Class<?> cls) {
+            try {
+                return compile(findParse(cls));
+            } catch (final AvpReflectionException e) {
+                return e;
+            }
+        }
+    };
+
     private AvpReflection() {
         // just static helper methods so no instance of this one
     }
 
     public static final <T extends DiameterType, C extends Avp<T>> Function<T, C> of(Class<C> cls) throws AvpReflectionException {
-        try {
-            final Method method = Arrays.stream(cls.getMethods())
-                    .filter(m -> "of".equals(m.getName()))
-                    .findFirst()
-                    .orElseThrow(() -> new NoSuchMethodException("of"));
-            return v -> {
-                try {
-                    return (C)method.invoke(null, v);
-                } catch (final IllegalAccessException e) {
-                    throw new AvpReflectionException("Unable to access the CODE field on AVP \""
-                            + cls + "\". Did the auto generated code change?", e);
-                } catch (final InvocationTargetException e) {
-                    throw new AvpReflectionException("Unable to access the CODE field on AVP \""
-                            + cls + "\". Did the auto generated code change?", e);
-                }
-            };
-        } catch (final NoSuchMethodException e) {
-            throw new AvpReflectionException("Unable to read the of field on AVP \""
-                    + cls + "\". Did the auto generated code change and the field has a new name?", e);
-        }
+        return (Function<T, C>) get(FACTORIES, cls);
     }
 
     public static final <T extends DiameterType, C extends Avp<T>> Function<T, C> getCreator(Class<C> cls) throws AvpReflectionException {
-        try {
-            final Field field = cls.getDeclaredField("CREATOR");
-            return (Function<T, C>)field.get(cls);
-        } catch (final NoSuchFieldException e) {
-            throw new AvpReflectionException("Unable to read the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change and the field has a new name?", e);
-        } catch (final IllegalAccessException e) {
-            throw new AvpReflectionException("Unable to access the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change?", e);
-        }
+        return (Function<T, C>) get(CREATORS, cls);
     }
 
     public static final <C extends Avp<? extends DiameterType>> Function<DiameterType, C> getCreator2(Class<C> cls) throws AvpReflectionException {
-        try {
-            final Field field = cls.getDeclaredField("CREATOR");
-            return (Function<DiameterType, C>)field.get(cls);
-        } catch (final NoSuchFieldException e) {
-            throw new AvpReflectionException("Unable to read the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change and the field has a new name?", e);
-        } catch (final IllegalAccessException e) {
-            throw new AvpReflectionException("Unable to access the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change?", e);
-        }
+        return (Function<DiameterType, C>) get(CREATORS, cls);
+    }
+
+    /**
+     * Get the function that parses a {@link FramedAvp} into the given AVP, i.e., the static
+     * <code>parse</code> method of the AVP.
+     */
+    public static final <C extends Avp<? extends DiameterType>> Function<FramedAvp, C> getParser(Class<C> cls) throws AvpReflectionException {
+        return (Function<FramedAvp, C>) get(PARSERS, cls);
     }
 
     /**
      * Extracting out the AVP code for a given AVP.
      */
     public static final int getCode(Class<? extends Avp<? extends DiameterType>> cls) throws AvpReflectionException {
-        try {
-            final Field field = cls.getDeclaredField("CODE");
-            return (int)field.get(cls);
-        } catch (final NoSuchFieldException e) {
-            throw new AvpReflectionException("Unable to read the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change and the field has a new name?", e);
-        } catch (final IllegalAccessException e) {
-            throw new AvpReflectionException("Unable to access the CODE field on AVP \""
-                    + cls + "\". Did the auto generated code change?", e);
-        }
+        return (int) get(CODES, cls);
     }
 
     /**
@@ -93,15 +120,86 @@ public final class AvpReflection {
      * to provide an easier to use interface.
      */
     public static final Class<? extends DiameterType> getDiameterType(Class<? extends Avp<? extends DiameterType>> cls) throws AvpReflectionException {
+        return (Class<? extends DiameterType>) get(TYPES, cls);
+    }
+
+    /**
+     * Failures are cached as well, so that asking over and over again about a class that isn't an AVP
+     * doesn't end up doing the reflective lookups over and over again.
+     */
+    private static Object get(final ClassValue<Object> cache, final Class<?> cls) {
+        final Object value = cache.get(cls);
+        if (value instanceof AvpReflectionException) {
+            final AvpReflectionException e = (AvpReflectionException) value;
+            throw new AvpReflectionException(e.getMessage(), e);
+        }
+        return value;
+    }
+
+    private static Object readField(final Class<?> cls, final String name) throws AvpReflectionException {
         try {
-            final Field typeField = cls.getDeclaredField("TYPE");
-            return (Class<? extends DiameterType>)typeField.get(cls);
+            final Field field = cls.getDeclaredField(name);
+            return field.get(cls);
         } catch (final NoSuchFieldException e) {
-            throw new AvpReflectionException("Unable to read the TYPE field on AVP \""
+            throw new AvpReflectionException("Unable to read the " + name + " field on AVP \""
                     + cls + "\". Did the auto generated code change and the field has a new name?", e);
         } catch (final IllegalAccessException e) {
-            throw new AvpReflectionException("Unable to access the TYPE field on AVP \""
+            throw new AvpReflectionException("Unable to access the " + name + " field on AVP \""
                     + cls + "\". Did the auto generated code change?", e);
         }
     }
+
+    /**
+     * The generated AVPs have several static <code>of</code> methods, we want the one that takes
+     * the {@link DiameterType} of the AVP.
+     */
+    private static Method findOf(final Class<?> cls) throws AvpReflectionException {
+        final Method[] methods = Arrays.stream(cls.getMethods())
+                .filter(m -> "of".equals(m.getName()))
+                .filter(m -> Modifier.isStatic(m.getModifiers()))
+                .filter(m -> m.getParameterCount() == 1)
+                .toArray(Method[]::new);
+
+        return Arrays.stream(methods)
+                .filter(m -> DiameterType.class.isAssignableFrom(m.getParameterTypes()[0]))
+                .findFirst()
+                .or(() -> Arrays.stream(methods).findFirst())
+                .orElseThrow(() -> new AvpReflectionException("Unable to find the static of method on AVP \""
+                        + cls + "\". Did the auto generated code change and the method has a new name?"));
+    }
+
+    private static Method findParse(final Class<?> cls) throws AvpReflectionException {
+        try {
+            final Method method = cls.getMethod("parse", FramedAvp.class);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                throw new NoSuchMethodException("parse");
+            }
+            return method;
+        } catch (final NoSuchMethodException e) {
+            throw new AvpReflectionException("Unable to find the static parse method on AVP \""
+                    + cls + "\". Did the auto generated code change and the method has a new name?", e);
+        }
+    }
+
+    /**
+     * Turn the given static method, taking a single argument, into a {@link Function}.
+     */
+    private static Function<Object, Object> compile(final Method method) throws AvpReflectionException {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final MethodHandle target = lookup.unreflect(method);
+            final CallSite site = LambdaMetafactory.metafactory(lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    target,
+                    target.type());
+            return (Function<Object, Object>) site.getTarget().invoke();
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new AvpReflectionException("Unable to compile the " + method.getName() + " method on AVP \""
+                    + method.getDeclaringClass() + "\"", t instanceof Exception ? (Exception) t : new RuntimeException(t));
+        }
+    }
 }
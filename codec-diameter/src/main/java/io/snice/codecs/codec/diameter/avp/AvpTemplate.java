@@ -0,0 +1,51 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.avp.impl.ImmutableAvpTemplate;
+
+import java.util.List;
+
+/**
+ * A frozen block of already encoded {@link Avp}s.
+ * <p>
+ * Many of the AVPs in a message are the same for every single message a node sends out, such as
+ * the Origin-Host, Origin-Realm, Auth-Session-State etc. Rather than encoding those over and over again,
+ * you encode them once into an {@link AvpTemplate}, which then is handed to the
+ * {@link DiameterMessage.Builder#withAvpTemplate(AvpTemplate)} and when the message is built,
+ * the entire block is written with a single write. Only the AVPs that are different
+ * for every message, such as the Session-Id and Result-Code, need to be encoded per message.
+ * <p>
+ * An {@link AvpTemplate} is immutable and can safely be shared between threads.
+ */
+public interface AvpTemplate {
+
+    static Builder of() {
+        return ImmutableAvpTemplate.of();
+    }
+
+    /**
+     * All the {@link Avp}s of this template, in the order they will be written.
+     */
+    List<Avp> getAvps();
+
+    /**
+     * The encoded AVPs, including any padding.
+     */
+    Buffer getBuffer();
+
+    /**
+     * The total length of the encoded AVPs, including padding, which is
+     * the number of bytes this template will add to a message.
+     */
+    default int getLength() {
+        return getBuffer().capacity();
+    }
+
+    interface Builder {
+
+        Builder withAvp(Avp avp);
+
+        AvpTemplate build();
+    }
+}
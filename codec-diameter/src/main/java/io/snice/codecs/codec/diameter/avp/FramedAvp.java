@@ -66,6 +66,16 @@ public interface FramedAvp {
         return getHeader().getCode();
     }
 
+    /**
+     * Convenience method for getting the vendor id and AVP code, packed into a single
+     * key, from the {@link AvpHeader}.
+     *
+     * @see AvpHeader#key(long, long)
+     */
+    default long getKey() {
+        return getHeader().getKey();
+    }
+
     Buffer getData();
 
     /**
@@ -0,0 +1,212 @@
+package io.snice.codecs.codec.diameter.avp.impl;
+
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpDictionary;
+import io.snice.codecs.codec.diameter.avp.AvpFramer;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.AvpParseException;
+import io.snice.codecs.codec.diameter.avp.AvpReflection;
+import io.snice.codecs.codec.diameter.avp.AvpReflectionException;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.Vendor;
+import io.snice.codecs.codec.diameter.avp.api.AccessRestrictionData;
+import io.snice.codecs.codec.diameter.avp.api.AcctApplicationId;
+import io.snice.codecs.codec.diameter.avp.api.ApnConfiguration;
+import io.snice.codecs.codec.diameter.avp.api.ApnConfigurationProfile;
+import io.snice.codecs.codec.diameter.avp.api.ApnOiReplacement;
+import io.snice.codecs.codec.diameter.avp.api.AuthApplicationId;
+import io.snice.codecs.codec.diameter.avp.api.AuthSessionState;
+import io.snice.codecs.codec.diameter.avp.api.DestinationHost;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.DsaFlags;
+import io.snice.codecs.codec.diameter.avp.api.ExperimentalResult;
+import io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode;
+import io.snice.codecs.codec.diameter.avp.api.ExpirationDate;
+import io.snice.codecs.codec.diameter.avp.api.HostIpAddress;
+import io.snice.codecs.codec.diameter.avp.api.Msisdn;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.api.ProductName;
+import io.snice.codecs.codec.diameter.avp.api.ProxyInfo;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+import io.snice.codecs.codec.diameter.avp.api.ServiceSelection;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import io.snice.codecs.codec.diameter.avp.api.SubscriberStatus;
+import io.snice.codecs.codec.diameter.avp.api.SubscriptionData;
+import io.snice.codecs.codec.diameter.avp.api.UserName;
+import io.snice.codecs.codec.diameter.avp.api.VendorId;
+import io.snice.codecs.codec.diameter.avp.api.VendorSpecificApplicationId;
+import io.snice.codecs.codec.diameter.avp.api.VisitedPlmnId;
+import io.snice.codecs.codec.diameter.avp.type.DiameterType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link AvpDictionary}. See that interface for details.
+ * <p>
+ * The table is two levels deep. The first level is the list of vendors, which in practice
+ * is a handful at the most (none, 3GPP, ETSI etc) so it is scanned linearly. The second level
+ * is an array of parsers, per vendor, indexed by the AVP code. Codes that are too large to be
+ * kept in a dense array, which are rare, end up in a regular map keyed by vendor and code.
+ * <p>
+ * The entire table is immutable and replaced on every registration, which means that parsing
+ * only ever needs a single volatile read. Parsing never changes the table, an AVP that isn't in the
+ * table is handed over to the {@link AvpFramer} as is, so what is on the wire, which is controlled by
+ * the peer, can't make the table grow.
+ */
+public final class DefaultAvpDictionary implements AvpDictionary {
+
+    public static final DefaultAvpDictionary DEFAULT = createDefault();
+
+    /**
+     * The largest AVP code kept in the dense arrays. The base protocol and all the 3GPP
+     * AVPs we know about are well below this.
+     */
+    private static final int MAX_DENSE_CODE = 1 << 14;
+
+    @SuppressWarnings("unchecked")
+    private volatile Table table = new Table(new long[0], new Function[0][], Map.of(), 0);
+
+    /**
+     * The default dictionary, which is built once, when this class is loaded, from the generated AVPs
+     * of the base protocol and the 3GPP AVPs that the codec itself works with.
+     */
+    private static DefaultAvpDictionary createDefault() {
+        final long tgpp = Vendor.TGPP.getCode();
+        final DefaultAvpDictionary dictionary = new DefaultAvpDictionary();
+        dictionary.register(AcctApplicationId.class)
+                .register(AuthApplicationId.class)
+                .register(AuthSessionState.class)
+                .register(DestinationHost.class)
+                .register(DestinationRealm.class)
+                .register(ExperimentalResult.class)
+                .register(ExperimentalResultCode.class)
+                .register(HostIpAddress.class)
+                .register(OriginHost.class)
+                .register(OriginRealm.class)
+                .register(ProductName.class)
+                .register(ProxyInfo.class)
+                .register(ResultCode.class)
+                .register(RouteRecord.class)
+                .register(ServiceSelection.class)
+                .register(SessionId.class)
+                .register(UserName.class)
+                .register(VendorId.class)
+                .register(VendorSpecificApplicationId.class)
+                .register(tgpp, AccessRestrictionData.class)
+                .register(tgpp, ApnConfiguration.class)
+                .register(tgpp, ApnConfigurationProfile.class)
+                .register(tgpp, ApnOiReplacement.class)
+                .register(tgpp, DsaFlags.class)
+                .register(tgpp, ExpirationDate.class)
+                .register(tgpp, Msisdn.class)
+                .register(tgpp, SubscriberStatus.class)
+                .register(tgpp, SubscriptionData.class)
+                .register(tgpp, VisitedPlmnId.class);
+        return dictionary;
+    }
+
+    @Override
+    public AvpDictionary register(final long vendorId, final Class<? extends Avp<? extends DiameterType>> avp) throws AvpReflectionException {
+        assertNotNull(avp, "The AVP class cannot be null");
+        return register(vendorId, AvpReflection.getCode(avp), AvpReflection.getParser(avp));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public AvpDictionary register(final long vendorId, final long code, final Function<FramedAvp, ? extends Avp> parser) {
+        assertArgument(vendorId >= 0 && vendorId <= 0xFFFFFFFFL, "The vendor id must be an unsigned 32 bit value");
+        assertArgument(code >= 0 && code <= 0xFFFFFFFFL, "The AVP code must be an unsigned 32 bit value");
+        assertNotNull(parser, "The parser cannot be null");
+        synchronized (this) {
+            table = table.with(vendorId, code, (Function<FramedAvp, Avp>) parser);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isRegistered(final long vendorId, final long code) {
+        return table.find(vendorId, code) != null;
+    }
+
+    @Override
+    public Avp parse(final FramedAvp avp) throws AvpParseException {
+        assertNotNull(avp, "The AVP cannot be null");
+        final AvpHeader header = avp.getHeader();
+        final long vendorId = header.isVendorSpecific() ? header.getVendorIdAsLong() : 0;
+        final long code = header.getCode();
+
+        final Function<FramedAvp, Avp> parser = table.find(vendorId, code);
+        return parser != null ? parser.apply(avp) : AvpFramer.parseAvp(avp);
+    }
+
+    @Override
+    public int size() {
+        return table.size;
+    }
+
+    private static final class Table {
+        private final long[] vendors;
+        private final Function<FramedAvp, Avp>[][] parsers;
+        private final Map<Long, Function<FramedAvp, Avp>> sparse;
+        private final int size;
+
+        private Table(final long[] vendors, final Function<FramedAvp, Avp>[][] parsers,
+                      final Map<Long, Function<FramedAvp, Avp>> sparse, final int size) {
+            this.vendors = vendors;
+            this.parsers = parsers;
+            this.sparse = sparse;
+            this.size = size;
+        }
+
+        private Function<FramedAvp, Avp> find(final long vendorId, final long code) {
+            if (code < MAX_DENSE_CODE) {
+                for (int i = 0; i < vendors.length; ++i) {
+                    if (vendors[i] == vendorId) {
+                        final Function<FramedAvp, Avp>[] byCode = parsers[i];
+                        return code < byCode.length ? byCode[(int) code] : null;
+                    }
+                }
+                return null;
+            }
+
+            return sparse.isEmpty() ? null : sparse.get(vendorId << 32 | code);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Table with(final long vendorId, final long code, final Function<FramedAvp, Avp> parser) {
+            final int newSize = find(vendorId, code) == null ? size + 1 : size;
+            if (code >= MAX_DENSE_CODE) {
+                final Map<Long, Function<FramedAvp, Avp>> copy = new HashMap<>(sparse);
+                copy.put(vendorId << 32 | code, parser);
+                return new Table(vendors, parsers, copy, newSize);
+            }
+
+            int index = 0;
+            while (index < vendors.length && vendors[index] != vendorId) {
+                ++index;
+            }
+
+            long[] newVendors = vendors;
+            if (index == vendors.length) {
+                newVendors = Arrays.copyOf(vendors, index + 1);
+                newVendors[index] = vendorId;
+            }
+
+            final Function<FramedAvp, Avp>[][] newParsers = Arrays.copyOf(parsers, newVendors.length);
+            final Function<FramedAvp, Avp>[] current = index < parsers.length ? parsers[index] : new Function[0];
+            final Function<FramedAvp, Avp>[] byCode = Arrays.copyOf(current, Math.max(current.length, (int) code + 1));
+            byCode[(int) code] = parser;
+            newParsers[index] = byCode;
+
+            return new Table(newVendors, newParsers, sparse, newSize);
+        }
+    }
+}
@@ -19,11 +19,20 @@ public class ImmutableAvpHeader implements AvpHeader {
     private static final String SEPARATOR = ":";
 
     private final Buffer buffer;
-    private final Optional<Long> vendorId;
+    private final long vendorId;
 
     public ImmutableAvpHeader(final Buffer buffer, final Optional<Long> vendorId) {
         this.buffer = buffer;
-        this.vendorId = vendorId;
+        this.vendorId = vendorId.isPresent() ? vendorId.get() : NO_VENDOR_ID;
+    }
+
+    /**
+     * Create a new {@link AvpHeader} where the vendor id (if present) is read straight
+     * out of the given buffer, which therefore must be 12 bytes long if the 'V' bit is set.
+     */
+    public ImmutableAvpHeader(final Buffer buffer) {
+        this.buffer = buffer;
+        this.vendorId = checkFirstFlag(buffer, 4) ? buffer.getUnsignedInt(8) : NO_VENDOR_ID;
     }
 
     public static Builder withCode(final long code) {
@@ -35,7 +44,7 @@ public class ImmutableAvpHeader implements AvpHeader {
     public int getHeaderLength() {
         // the AVP header length is always at least 8 bytes plus an additional 4 if
         // the optional vendor id is set.
-        return vendorId.isPresent() ? 12 : 8;
+        return vendorId == NO_VENDOR_ID ? 8 : 12;
     }
 
     @Override
@@ -64,6 +73,11 @@ public class ImmutableAvpHeader implements AvpHeader {
 
     @Override
     public Optional<Long> getVendorId() {
+        return vendorId == NO_VENDOR_ID ? Optional.empty() : Optional.of(vendorId);
+    }
+
+    @Override
+    public long getVendorIdAsLong() {
         return vendorId;
     }
 
@@ -93,7 +107,9 @@ public class ImmutableAvpHeader implements AvpHeader {
         sb.append(SEPARATOR);
         sb.append(getLength());
         sb.append(SEPARATOR);
-        vendorId.ifPresent(sb::append);
+        if (vendorId != NO_VENDOR_ID) {
+            sb.append(vendorId);
+        }
         sb.append(SEPARATOR);
         return sb.toString();
     }
@@ -0,0 +1,182 @@
+package io.snice.codecs.codec.diameter.avp.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.avp.AvpParseException;
+import io.snice.codecs.codec.diameter.avp.AvpPath;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+public final class ImmutableAvpPath implements AvpPath {
+
+    private static final int DIAMETER_HEADER_LENGTH = 20;
+
+    /**
+     * Marks a level of the path where any vendor is accepted.
+     */
+    private static final long ANY_VENDOR = -1;
+
+    private final long[] codes;
+    private final long[] vendors;
+
+    private ImmutableAvpPath(final long[] codes, final long[] vendors) {
+        this.codes = codes;
+        this.vendors = vendors;
+    }
+
+    public static AvpPath.Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int depth() {
+        return codes.length;
+    }
+
+    @Override
+    public long getCode(final int level) {
+        return codes[level];
+    }
+
+    @Override
+    public Optional<Long> getVendorId(final int level) {
+        return vendors[level] == ANY_VENDOR ? Optional.empty() : Optional.of(vendors[level]);
+    }
+
+    @Override
+    public Optional<Buffer> findFirst(final DiameterMessage msg) {
+        assertNotNull(msg, "The diameter message cannot be null");
+        final Buffer[] match = new Buffer[1];
+        walk(msg.getBuffer(), DIAMETER_HEADER_LENGTH, msg.getHeader().getLength(), 0, data -> match[0] = data, true);
+        return Optional.ofNullable(match[0]);
+    }
+
+    @Override
+    public Optional<Buffer> findFirst(final FramedAvp grouped) {
+        assertNotNull(grouped, "The grouped AVP cannot be null");
+        final Buffer data = grouped.getData();
+        final Buffer[] match = new Buffer[1];
+        walk(data, 0, data.capacity(), 0, avp -> match[0] = avp, true);
+        return Optional.ofNullable(match[0]);
+    }
+
+    @Override
+    public List<Buffer> findAll(final DiameterMessage msg) {
+        final List<Buffer> matches = new ArrayList<>();
+        forEach(msg, matches::add);
+        return matches;
+    }
+
+    @Override
+    public int forEach(final DiameterMessage msg, final Consumer<Buffer> consumer) {
+        assertNotNull(msg, "The diameter message cannot be null");
+        assertNotNull(consumer, "The consumer cannot be null");
+        return walk(msg.getBuffer(), DIAMETER_HEADER_LENGTH, msg.getHeader().getLength(), 0, consumer, false);
+    }
+
+    /**
+     * Walk through the AVPs found between start and end, which are either the AVPs of the
+     * message itself or the data of a grouped AVP that matched the previous level of the path,
+     * and descend into those AVPs that match the given level.
+     *
+     * @return the number of matches found.
+     */
+    private int walk(final Buffer buffer, final int start, final int end, final int level,
+                     final Consumer<Buffer> consumer, final boolean firstOnly) {
+        final long code = codes[level];
+        final long vendor = vendors[level];
+        final boolean last = level == codes.length - 1;
+
+        int count = 0;
+        int offset = start;
+        while (offset < end) {
+            if (end - offset < 8) {
+                throw new AvpParseException(offset, "Not enough bytes left for an AVP header");
+            }
+
+            final int length = buffer.getIntFromThreeOctets(offset + 5);
+            final boolean isVendor = (buffer.getByte(offset + 4) & 0x80) == 0x80;
+            final int headerLength = isVendor ? 12 : 8;
+            if (length < headerLength || offset + length > end) {
+                throw new AvpParseException(offset, "Invalid AVP length " + length);
+            }
+
+            if (buffer.getUnsignedInt(offset) == code
+                    && (vendor == ANY_VENDOR || isVendor && buffer.getUnsignedInt(offset + 8) == vendor)) {
+                if (last) {
+                    consumer.accept(buffer.slice(offset + headerLength, offset + length));
+                    ++count;
+                } else {
+                    count += walk(buffer, offset + headerLength, offset + length, level + 1, consumer, firstOnly);
+                }
+
+                if (firstOnly && count > 0) {
+                    return count;
+                }
+            }
+
+            offset += (length + 3) & ~3;
+        }
+
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AVP Path [");
+        for (int i = 0; i < codes.length; ++i) {
+            if (i > 0) {
+                sb.append(" / ");
+            }
+            sb.append(codes[i]);
+            if (vendors[i] != ANY_VENDOR) {
+                sb.append(":").append(vendors[i]);
+            }
+        }
+        return sb.append("]").toString();
+    }
+
+    private static class Builder implements AvpPath.Builder {
+
+        private long[] codes = new long[4];
+        private long[] vendors = new long[4];
+        private int depth;
+
+        @Override
+        public AvpPath.Builder with(final long code) {
+            return add(code, ANY_VENDOR);
+        }
+
+        @Override
+        public AvpPath.Builder with(final long code, final long vendorId) {
+            assertArgument(vendorId >= 0 && vendorId <= 0xFFFFFFFFL, "The vendor id must be an unsigned 32 bit value");
+            return add(code, vendorId);
+        }
+
+        private AvpPath.Builder add(final long code, final long vendorId) {
+            assertArgument(code >= 0 && code <= 0xFFFFFFFFL, "The AVP code must be an unsigned 32 bit value");
+            if (depth == codes.length) {
+                codes = Arrays.copyOf(codes, depth * 2);
+                vendors = Arrays.copyOf(vendors, depth * 2);
+            }
+            codes[depth] = code;
+            vendors[depth] = vendorId;
+            ++depth;
+            return this;
+        }
+
+        @Override
+        public AvpPath build() {
+            assertArgument(depth > 0, "An AVP path must contain at least one AVP");
+            return new ImmutableAvpPath(Arrays.copyOf(codes, depth), Arrays.copyOf(vendors, depth));
+        }
+    }
+}
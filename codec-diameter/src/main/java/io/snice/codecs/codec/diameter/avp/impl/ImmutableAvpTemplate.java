@@ -0,0 +1,68 @@
+package io.snice.codecs.codec.diameter.avp.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+public final class ImmutableAvpTemplate implements AvpTemplate {
+
+    private final List<Avp> avps;
+    private final Buffer buffer;
+
+    private ImmutableAvpTemplate(final List<Avp> avps, final Buffer buffer) {
+        this.avps = avps;
+        this.buffer = buffer;
+    }
+
+    public static AvpTemplate.Builder of() {
+        return new Builder();
+    }
+
+    @Override
+    public List<Avp> getAvps() {
+        return avps;
+    }
+
+    @Override
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public String toString() {
+        return "AVP Template [AVP Count: " + avps.size() + ", Length: " + buffer.capacity() + "]";
+    }
+
+    private static class Builder implements AvpTemplate.Builder {
+
+        private final List<Avp> avps = new ArrayList<>();
+
+        @Override
+        public AvpTemplate.Builder withAvp(final Avp avp) {
+            assertNotNull(avp, "The AVP cannot be null");
+            avps.add(avp.ensure());
+            return this;
+        }
+
+        @Override
+        public AvpTemplate build() {
+            assertArgument(!avps.isEmpty(), "An AVP template must contain at least one AVP");
+
+            int length = 0;
+            for (final Avp avp : avps) {
+                length += avp.getLength() + avp.getPadding();
+            }
+
+            final WritableBuffer writable = WritableBuffer.of(length);
+            avps.forEach(avp -> avp.writeTo(writable));
+            return new ImmutableAvpTemplate(List.copyOf(avps), writable.build());
+        }
+    }
+}
@@ -3,7 +3,7 @@ package io.snice.codecs.codec.diameter.avp.impl;
 import io.snice.buffer.Buffer;
 import io.snice.buffer.WritableBuffer;
 import io.snice.codecs.codec.diameter.avp.Avp;
-import io.snice.codecs.codec.diameter.avp.AvpFramer;
+import io.snice.codecs.codec.diameter.avp.AvpDictionary;
 import io.snice.codecs.codec.diameter.avp.AvpHeader;
 import io.snice.codecs.codec.diameter.avp.FramedAvp;
 import io.snice.codecs.codec.diameter.avp.type.OctetString;
@@ -74,7 +74,7 @@ public class ImmutableFramedAvp implements FramedAvp {
 
     @Override
     public Avp ensure() {
-        return AvpFramer.parseAvp(this);
+        return AvpDictionary.getDefault().parse(this);
     }
 
 }
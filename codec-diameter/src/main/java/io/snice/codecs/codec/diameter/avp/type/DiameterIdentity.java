@@ -35,6 +35,14 @@ public interface DiameterIdentity extends DiameterType {
     class DefaultDiameterIdentity implements DiameterIdentity {
         final Buffer value;
 
+        /**
+         * Identities are typically used as keys when routing messages, so both the String
+         * and the hash code are computed once and then kept around. Same as for {@link String},
+         * there is no need to synchronize since they are always computed to the same value.
+         */
+        private String string;
+        private int hash;
+
         private DefaultDiameterIdentity(final Buffer value) {
             this.value = value;
         }
@@ -46,12 +54,17 @@ public interface DiameterIdentity extends DiameterType {
 
         @Override
         public String toString() {
-            return value.toString();
+            return asString();
         }
 
         @Override
         public String asString() {
-            return value.toString();
+            String s = string;
+            if (s == null) {
+                s = value.toString();
+                string = s;
+            }
+            return s;
         }
 
         @Override
@@ -69,7 +82,12 @@ public interface DiameterIdentity extends DiameterType {
 
         @Override
         public int hashCode() {
-            return Objects.hash(value);
+            int h = hash;
+            if (h == 0) {
+                h = Objects.hash(value);
+                hash = h;
+            }
+            return h;
         }
     }
 }
@@ -0,0 +1,214 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, primitive, index over the AVPs of a {@link DiameterMessage} so that
+ * looking up an AVP by its code doesn't require a linear scan over all the AVPs.
+ * <p>
+ * It is an open-addressed hash table keyed on the AVP code where each slot points
+ * to the position of the first AVP with that code. AVPs that are present multiple
+ * times are then chained together through the <code>next</code> array, which is indexed
+ * by the position of the AVP in the message, and the chain is always in the same order
+ * as the AVPs appear in the message.
+ * <p>
+ * There are actually two such tables. One keyed on the AVP code alone, which is what
+ * {@link DiameterMessage#getAvp(long)} uses, and one keyed on the vendor id and AVP code
+ * packed into a single long (see {@link AvpHeader#key(long, long)}), which is what the vendor
+ * qualified lookups use. If none of the AVPs are vendor specific, the two are the same and
+ * only one table is built.
+ * <p>
+ * The index is built once, when the message is framed (or built), and is then immutable.
+ * None of the lookups allocate anything.
+ */
+final class AvpIndex {
+
+    /**
+     * Marks the end of a chain or, for the slots, an empty slot.
+     */
+    static final int NONE = -1;
+
+    private static final AvpIndex EMPTY = new Builder(0).build();
+
+    private final Chains byCode;
+    private final Chains byKey;
+
+    private AvpIndex(final Chains byCode, final Chains byKey) {
+        this.byCode = byCode;
+        this.byKey = byKey;
+    }
+
+    static Builder builder(final int sizeHint) {
+        return new Builder(sizeHint);
+    }
+
+    /**
+     * Build an index for an already existing list of AVPs. Used when building a new
+     * {@link DiameterMessage} as opposed to framing one, in which case the index is
+     * built as part of the framing.
+     */
+    static AvpIndex of(final List<? extends FramedAvp> avps) {
+        if (avps.isEmpty()) {
+            return EMPTY;
+        }
+
+        final Builder builder = new Builder(avps.size());
+        for (int i = 0; i < avps.size(); ++i) {
+            builder.add(avps.get(i).getKey());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the position of the first AVP with the given code, regardless of vendor.
+     *
+     * @return the position of the AVP or {@link #NONE} if there is no such AVP.
+     */
+    int first(final long code) {
+        return byCode.first(code);
+    }
+
+    /**
+     * Get the position of the next AVP with the same code as the AVP at the given position.
+     *
+     * @return the position of the next AVP or {@link #NONE} if there are no more.
+     */
+    int next(final int position) {
+        return byCode.next[position];
+    }
+
+    /**
+     * The number of AVPs with the given code, regardless of vendor.
+     */
+    int count(final long code) {
+        return byCode.count(code);
+    }
+
+    /**
+     * Same as {@link #first(long)} but for the vendor id and code packed into a single key.
+     */
+    int firstByKey(final long key) {
+        return byKey.first(key);
+    }
+
+    /**
+     * Same as {@link #next(int)} but following the AVPs with the same vendor id and code.
+     */
+    int nextByKey(final int position) {
+        return byKey.next[position];
+    }
+
+    /**
+     * Same as {@link #count(long)} but for the vendor id and code packed into a single key.
+     */
+    int countByKey(final long key) {
+        return byKey.count(key);
+    }
+
+    private static int hash(final long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private static final class Chains {
+        private final long[] keys;
+        private final int[] heads;
+        private final int[] counts;
+        private final int[] next;
+        private final int mask;
+
+        private Chains(final long[] keys, final int[] heads, final int[] counts, final int[] next) {
+            this.keys = keys;
+            this.heads = heads;
+            this.counts = counts;
+            this.next = next;
+            this.mask = keys.length - 1;
+        }
+
+        private int first(final long key) {
+            final int slot = find(key);
+            return slot == NONE ? NONE : heads[slot];
+        }
+
+        private int count(final long key) {
+            final int slot = find(key);
+            return slot == NONE ? 0 : counts[slot];
+        }
+
+        private int find(final long key) {
+            int slot = hash(key) & mask;
+            while (heads[slot] != NONE) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NONE;
+        }
+
+        private static Chains build(final long[] all, final int count, final long keyMask) {
+            // keep the load factor at or below 0.5 so the probe sequences stay short.
+            final int size = Math.max(8, Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1);
+            final int mask = size - 1;
+            final long[] keys = new long[size];
+            final int[] heads = new int[size];
+            final int[] counts = new int[size];
+            final int[] next = new int[count];
+            Arrays.fill(heads, NONE);
+
+            // walking backwards and pushing each AVP onto the front of its chain
+            // means that the chain ends up in the same order as the message.
+            for (int i = count - 1; i >= 0; --i) {
+                final long key = all[i] & keyMask;
+                int slot = hash(key) & mask;
+                while (heads[slot] != NONE && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+
+                keys[slot] = key;
+                next[i] = heads[slot];
+                heads[slot] = i;
+                ++counts[slot];
+            }
+
+            return new Chains(keys, heads, counts, next);
+        }
+    }
+
+    /**
+     * The AVP keys are recorded as the AVPs are framed and then the actual hash tables
+     * are built in one go once we know exactly how many AVPs there are.
+     */
+    static final class Builder {
+
+        private long[] keys;
+        private int count;
+        private boolean hasVendorSpecific;
+
+        private Builder(final int sizeHint) {
+            keys = new long[Math.max(sizeHint, 8)];
+        }
+
+        /**
+         * @param key the vendor id and code of the AVP as packed by {@link AvpHeader#key(long, long)}.
+         */
+        Builder add(final long key) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            keys[count++] = key;
+            hasVendorSpecific |= AvpHeader.vendorIdOf(key) != 0;
+            return this;
+        }
+
+        AvpIndex build() {
+            final Chains byCode = Chains.build(keys, count, 0xFFFFFFFFL);
+            final Chains byKey = hasVendorSpecific ? Chains.build(keys, count, -1L) : byCode;
+            return new AvpIndex(byCode, byKey);
+        }
+    }
+}
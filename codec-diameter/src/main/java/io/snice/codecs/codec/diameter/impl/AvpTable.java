@@ -0,0 +1,278 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A compact table describing where every AVP of a diameter message is, produced by walking the
+ * message in a single pass straight over a <code>byte[]</code> or a {@link ByteBuffer}.
+ * <p>
+ * The first 8 bytes of an AVP header are the code (4 bytes) followed by the flags (1 byte) and the
+ * length (3 bytes) and all of that is read with a single big-endian 8 byte load. Only if the
+ * vendor bit is set do we do another 4 byte load for the vendor id. For every AVP, four ints are
+ * stored in the table:
+ *
+ * <pre>
+ *     [offset, code, flags &lt;&lt; 24 | length, vendor-id]
+ * </pre>
+ *
+ * where the offset is relative to the start of the diameter message and the vendor-id is zero
+ * if the vendor bit isn't set.
+ * <p>
+ * The table is what backs {@link DiameterParser#frame(byte[], int)}, which uses it to frame the
+ * AVPs without going through the {@link io.snice.buffer.ReadableBuffer}.
+ */
+public final class AvpTable {
+
+    private static final VarHandle ARRAY_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ARRAY_INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle BUFFER_LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle BUFFER_INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final int HEADER_LENGTH = 20;
+
+    /**
+     * The number of ints per AVP in the table.
+     */
+    private static final int ENTRY_SIZE = 4;
+
+    private static final int OFFSET = 0;
+    private static final int CODE = 1;
+    private static final int FLAGS_AND_LENGTH = 2;
+    private static final int VENDOR_ID = 3;
+
+    private static final int VENDOR_BIT = 0x80000000;
+
+    /**
+     * Most messages have fewer AVPs than this.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final int messageLength;
+    private int[] entries;
+    private int count;
+
+    private AvpTable(final int messageLength) {
+        this.messageLength = messageLength;
+        this.entries = new int[DEFAULT_CAPACITY * ENTRY_SIZE];
+    }
+
+    /**
+     * Scan the diameter message that starts at the given offset of the array.
+     *
+     * @throws DiameterParseException in case the array doesn't contain a full diameter message
+     *                                or any of the AVPs are malformed.
+     */
+    public static AvpTable scan(final byte[] array, final int offset) throws DiameterParseException {
+        return scan(array, offset, array.length);
+    }
+
+    /**
+     * Scan the diameter message that starts at the given offset of the array, where nothing at or beyond
+     * the given limit belongs to the message, no matter what the array holds there.
+     */
+    private static AvpTable scan(final byte[] array, final int offset, final int limit) throws DiameterParseException {
+        if (limit - offset < HEADER_LENGTH) {
+            throw new DiameterParseException(0, "Cannot be a Diameter message because the header is less than 20 bytes");
+        }
+
+        // version is the first byte and the length the three following
+        final int length = (int) ARRAY_INT.get(array, offset) & 0xFFFFFF;
+        final int end = ensureMessageLength(offset, length, limit);
+        final AvpTable table = new AvpTable(length);
+
+        int position = offset + HEADER_LENGTH;
+        while (position < end) {
+            if (end - position < 8) {
+                throw notEnoughData(position - offset);
+            }
+
+            final long word = (long) ARRAY_LONG.get(array, position);
+            final int flagsAndLength = (int) word;
+            final boolean isVendorSpecific = (flagsAndLength & VENDOR_BIT) != 0;
+            final int avpLength = ensureAvpLength(position - offset, flagsAndLength, isVendorSpecific, end - position);
+            final int vendorId = isVendorSpecific ? (int) ARRAY_INT.get(array, position + 8) : 0;
+
+            table.add(position - offset, (int) (word >>> 32), flagsAndLength, vendorId);
+            position += (avpLength + 3) & ~3;
+        }
+
+        return table;
+    }
+
+    /**
+     * Scan the diameter message that starts at the current position of the {@link ByteBuffer}. The position
+     * of the buffer is not changed and the byte order of the buffer doesn't matter, diameter is always
+     * big-endian.
+     *
+     * @throws DiameterParseException in case the buffer doesn't contain a full diameter message
+     *                                or any of the AVPs are malformed.
+     */
+    public static AvpTable scan(final ByteBuffer buffer) throws DiameterParseException {
+        if (buffer.hasArray()) {
+            // the backing array may hold stale bytes beyond the limit so that is where the message must end.
+            return scan(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.arrayOffset() + buffer.limit());
+        }
+
+        final int offset = buffer.position();
+        if (buffer.limit() - offset < HEADER_LENGTH) {
+            throw new DiameterParseException(0, "Cannot be a Diameter message because the header is less than 20 bytes");
+        }
+
+        final int length = (int) BUFFER_INT.get(buffer, offset) & 0xFFFFFF;
+        final int end = ensureMessageLength(offset, length, buffer.limit());
+        final AvpTable table = new AvpTable(length);
+
+        int position = offset + HEADER_LENGTH;
+        while (position < end) {
+            if (end - position < 8) {
+                throw notEnoughData(position - offset);
+            }
+
+            final long word = (long) BUFFER_LONG.get(buffer, position);
+            final int flagsAndLength = (int) word;
+            final boolean isVendorSpecific = (flagsAndLength & VENDOR_BIT) != 0;
+            final int avpLength = ensureAvpLength(position - offset, flagsAndLength, isVendorSpecific, end - position);
+            final int vendorId = isVendorSpecific ? (int) BUFFER_INT.get(buffer, position + 8) : 0;
+
+            table.add(position - offset, (int) (word >>> 32), flagsAndLength, vendorId);
+            position += (avpLength + 3) & ~3;
+        }
+
+        return table;
+    }
+
+    private static int ensureMessageLength(final int offset, final int length, final int limit) throws DiameterParseException {
+        if (length < HEADER_LENGTH || length > limit - offset) {
+            throw new DiameterParseException(1, "The length of the Diameter message is " + length
+                    + " but there are only " + (limit - offset) + " bytes available");
+        }
+        return offset + length;
+    }
+
+    private static int ensureAvpLength(final int offset, final int flagsAndLength, final boolean isVendorSpecific,
+                                       final int available) throws DiameterParseException {
+        final int length = flagsAndLength & 0xFFFFFF;
+        if (length < (isVendorSpecific ? 12 : 8) || length > available) {
+            throw new DiameterParseException(offset, "AVP at offset " + offset + " has an invalid length of " + length);
+        }
+        return length;
+    }
+
+    private static DiameterParseException notEnoughData(final int offset) {
+        return new DiameterParseException(offset, "Unable to read 8 bytes from the buffer, not enough data to frame AVP.");
+    }
+
+    private void add(final int offset, final int code, final int flagsAndLength, final int vendorId) {
+        final int index = count * ENTRY_SIZE;
+        if (index == entries.length) {
+            final int[] grown = new int[entries.length * 2];
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+            entries = grown;
+        }
+
+        entries[index + OFFSET] = offset;
+        entries[index + CODE] = code;
+        entries[index + FLAGS_AND_LENGTH] = flagsAndLength;
+        entries[index + VENDOR_ID] = vendorId;
+        ++count;
+    }
+
+    /**
+     * The length of the diameter message as found in the diameter header.
+     */
+    public int getMessageLength() {
+        return messageLength;
+    }
+
+    /**
+     * The number of AVPs in the message.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * The offset of the given AVP, relative to the start of the diameter message.
+     */
+    public int getOffset(final int avp) {
+        return entries[avp * ENTRY_SIZE + OFFSET];
+    }
+
+    public long getCode(final int avp) {
+        return entries[avp * ENTRY_SIZE + CODE] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The length of the AVP, including the AVP header but excluding any padding.
+     */
+    public int getLength(final int avp) {
+        return entries[avp * ENTRY_SIZE + FLAGS_AND_LENGTH] & 0xFFFFFF;
+    }
+
+    public int getHeaderLength(final int avp) {
+        return isVendorSpecific(avp) ? 12 : 8;
+    }
+
+    public boolean isVendorSpecific(final int avp) {
+        return (entries[avp * ENTRY_SIZE + FLAGS_AND_LENGTH] & VENDOR_BIT) != 0;
+    }
+
+    public boolean isMandatory(final int avp) {
+        return (entries[avp * ENTRY_SIZE + FLAGS_AND_LENGTH] & 0x40000000) != 0;
+    }
+
+    public boolean isProtected(final int avp) {
+        return (entries[avp * ENTRY_SIZE + FLAGS_AND_LENGTH] & 0x20000000) != 0;
+    }
+
+    /**
+     * The vendor id of the given AVP or zero if the vendor bit isn't set.
+     */
+    public long getVendorId(final int avp) {
+        return entries[avp * ENTRY_SIZE + VENDOR_ID] & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The vendor id and AVP code of the given AVP packed into a single key.
+     *
+     * @see AvpHeader#key(long, long)
+     */
+    public long getKey(final int avp) {
+        return AvpHeader.key(getVendorId(avp), getCode(avp));
+    }
+
+    /**
+     * Find the first AVP with the given vendor id and code.
+     *
+     * @return the index of the AVP within the table or -1 if not found.
+     */
+    public int indexOf(final long vendorId, final long code) {
+        final long key = AvpHeader.key(vendorId, code);
+        for (int i = 0; i < count; ++i) {
+            if (getKey(i) == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first AVP with the given code, regardless of vendor.
+     *
+     * @return the index of the AVP within the table or -1 if not found.
+     */
+    public int indexOf(final long code) {
+        for (int i = 0; i < count; ++i) {
+            if (getCode(i) == code) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
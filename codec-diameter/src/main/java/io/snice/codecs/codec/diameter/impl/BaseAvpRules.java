@@ -0,0 +1,97 @@
+package io.snice.codecs.codec.diameter.impl;
+
+/**
+ * The 'M' bit rules of the base protocol AVPs, as found in the AVP flag rules table of
+ * RFC 6733 section 4.5 (plus the RADIUS AVPs that the base protocol re-uses). All the
+ * base protocol AVP codes are small so the rules are kept in an array indexed directly
+ * by the AVP code.
+ */
+final class BaseAvpRules {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte MUST = 1;
+    private static final byte MUST_NOT = 2;
+
+    private static final byte[] MANDATORY_BIT = new byte[512];
+
+    static {
+        final int[] must = {
+                1,   // User-Name
+                25,  // Class
+                27,  // Session-Timeout
+                33,  // Proxy-State
+                44,  // Accounting-Session-Id
+                50,  // Acct-Multi-Session-Id
+                55,  // Event-Timestamp
+                85,  // Acct-Interim-Interval
+                257, // Host-IP-Address
+                258, // Auth-Application-Id
+                259, // Acct-Application-Id
+                260, // Vendor-Specific-Application-Id
+                261, // Redirect-Host-Usage
+                262, // Redirect-Max-Cache-Time
+                263, // Session-Id
+                264, // Origin-Host
+                265, // Supported-Vendor-Id
+                266, // Vendor-Id
+                268, // Result-Code
+                270, // Session-Binding
+                271, // Session-Server-Failover
+                272, // Multi-Round-Time-Out
+                273, // Disconnect-Cause
+                274, // Auth-Request-Type
+                276, // Auth-Grace-Period
+                277, // Auth-Session-State
+                278, // Origin-State-Id
+                279, // Failed-AVP
+                280, // Proxy-Host
+                282, // Route-Record
+                283, // Destination-Realm
+                284, // Proxy-Info
+                285, // Re-Auth-Request-Type
+                287, // Accounting-Sub-Session-Id
+                291, // Authorization-Lifetime
+                292, // Redirect-Host
+                293, // Destination-Host
+                296, // Origin-Realm
+                297, // Experimental-Result
+                298, // Experimental-Result-Code
+                299, // Inband-Security-Id
+                480, // Accounting-Record-Type
+                483, // Accounting-Realtime-Required
+                485, // Accounting-Record-Number
+        };
+
+        final int[] mustNot = {
+                267, // Firmware-Revision
+                269, // Product-Name
+                281, // Error-Message
+                294, // Error-Reporting-Host
+        };
+
+        for (final int code : must) {
+            MANDATORY_BIT[code] = MUST;
+        }
+
+        for (final int code : mustNot) {
+            MANDATORY_BIT[code] = MUST_NOT;
+        }
+    }
+
+    private BaseAvpRules() {
+        // only static functions
+    }
+
+    /**
+     * Check whether the 'M' bit of the given, non vendor specific, AVP follows the rules. AVPs we
+     * don't know the rules for are always valid.
+     */
+    static boolean isMandatoryBitValid(final long code, final boolean isMandatory) {
+        if (code >= MANDATORY_BIT.length) {
+            return true;
+        }
+
+        final byte rule = MANDATORY_BIT[(int) code];
+        return rule == UNKNOWN || (rule == MUST) == isMandatory;
+    }
+}
@@ -0,0 +1,94 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.CommandValidator;
+
+import static io.snice.codecs.codec.diameter.CommandValidator.UNBOUNDED;
+
+/**
+ * The ABNF of the commands of the base protocol, as found in RFC 6733 section 5.
+ */
+final class BaseProtocolCommands {
+
+    private static final int CAPABILITIES_EXCHANGE = 257;
+    private static final int DEVICE_WATCHDOG = 280;
+    private static final int DISCONNECT_PEER = 282;
+
+    private static final long HOST_IP_ADDRESS = 257;
+    private static final long AUTH_APPLICATION_ID = 258;
+    private static final long ACCT_APPLICATION_ID = 259;
+    private static final long VENDOR_SPECIFIC_APPLICATION_ID = 260;
+    private static final long SUPPORTED_VENDOR_ID = 265;
+    private static final long VENDOR_ID = 266;
+    private static final long FIRMWARE_REVISION = 267;
+    private static final long RESULT_CODE = 268;
+    private static final long PRODUCT_NAME = 269;
+    private static final long DISCONNECT_CAUSE = 273;
+    private static final long ORIGIN_STATE_ID = 278;
+    private static final long FAILED_AVP = 279;
+    private static final long ERROR_MESSAGE = 281;
+    private static final long ORIGIN_HOST = 264;
+    private static final long ORIGIN_REALM = 296;
+    private static final long INBAND_SECURITY_ID = 299;
+
+    private BaseProtocolCommands() {
+        // only static functions
+    }
+
+    static void define(final CommandValidator.Builder builder) {
+        builder.withRequest(CAPABILITIES_EXCHANGE)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withAvp(HOST_IP_ADDRESS, 1, UNBOUNDED)
+                .withRequiredAvp(VENDOR_ID)
+                .withRequiredAvp(PRODUCT_NAME)
+                .withOptionalAvp(ORIGIN_STATE_ID)
+                .withAvp(SUPPORTED_VENDOR_ID, 0, UNBOUNDED)
+                .withAvp(AUTH_APPLICATION_ID, 0, UNBOUNDED)
+                .withAvp(INBAND_SECURITY_ID, 0, UNBOUNDED)
+                .withAvp(ACCT_APPLICATION_ID, 0, UNBOUNDED)
+                .withAvp(VENDOR_SPECIFIC_APPLICATION_ID, 0, UNBOUNDED)
+                .withOptionalAvp(FIRMWARE_REVISION);
+
+        builder.withAnswer(CAPABILITIES_EXCHANGE)
+                .withRequiredAvp(RESULT_CODE)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withAvp(HOST_IP_ADDRESS, 1, UNBOUNDED)
+                .withRequiredAvp(VENDOR_ID)
+                .withRequiredAvp(PRODUCT_NAME)
+                .withOptionalAvp(ORIGIN_STATE_ID)
+                .withOptionalAvp(ERROR_MESSAGE)
+                .withOptionalAvp(FAILED_AVP)
+                .withAvp(SUPPORTED_VENDOR_ID, 0, UNBOUNDED)
+                .withAvp(AUTH_APPLICATION_ID, 0, UNBOUNDED)
+                .withAvp(INBAND_SECURITY_ID, 0, UNBOUNDED)
+                .withAvp(ACCT_APPLICATION_ID, 0, UNBOUNDED)
+                .withAvp(VENDOR_SPECIFIC_APPLICATION_ID, 0, UNBOUNDED)
+                .withOptionalAvp(FIRMWARE_REVISION);
+
+        builder.withRequest(DEVICE_WATCHDOG)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withOptionalAvp(ORIGIN_STATE_ID);
+
+        builder.withAnswer(DEVICE_WATCHDOG)
+                .withRequiredAvp(RESULT_CODE)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withOptionalAvp(ERROR_MESSAGE)
+                .withOptionalAvp(FAILED_AVP)
+                .withOptionalAvp(ORIGIN_STATE_ID);
+
+        builder.withRequest(DISCONNECT_PEER)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withRequiredAvp(DISCONNECT_CAUSE);
+
+        builder.withAnswer(DISCONNECT_PEER)
+                .withRequiredAvp(RESULT_CODE)
+                .withRequiredAvp(ORIGIN_HOST)
+                .withRequiredAvp(ORIGIN_REALM)
+                .withOptionalAvp(ERROR_MESSAGE)
+                .withOptionalAvp(FAILED_AVP);
+    }
+}
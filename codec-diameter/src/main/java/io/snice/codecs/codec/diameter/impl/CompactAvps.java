@@ -0,0 +1,171 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The AVPs of a {@link DiameterMessage#compact() compacted} message, which are nothing more than the
+ * raw bytes of the message and the offset of every AVP within it.
+ * <p>
+ * Nothing else is kept around. The code, flags and vendor id of an AVP are read straight off of the
+ * bytes when looking for an AVP and the {@link FramedAvp}s are sliced out every time they are asked for,
+ * and then forgotten about again, so the only thing that is retained per AVP is a single int.
+ */
+final class CompactAvps {
+
+    private static final VarHandle ARRAY_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle ARRAY_INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final byte[] array;
+
+    /**
+     * The offset of every AVP, relative to the start of the message.
+     */
+    private final int[] offsets;
+
+    private CompactAvps(final byte[] array, final int[] offsets) {
+        this.array = array;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Copy the given buffer into an array of the exact same size, eight bytes at a time.
+     */
+    static byte[] copy(final Buffer buffer) {
+        final int length = buffer.capacity();
+        final byte[] array = new byte[length];
+
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            ARRAY_LONG.set(array, i, buffer.getLong(i));
+        }
+        for (; i < length; ++i) {
+            array[i] = buffer.getByte(i);
+        }
+        return array;
+    }
+
+    /**
+     * Scan the diameter message held by the given array, which must contain that message
+     * and nothing else.
+     */
+    static CompactAvps scan(final byte[] array) throws DiameterParseException {
+        final AvpTable table = AvpTable.scan(array, 0);
+        final int[] offsets = new int[table.size()];
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = table.getOffset(i);
+        }
+        return new CompactAvps(array, offsets);
+    }
+
+    int size() {
+        return offsets.length;
+    }
+
+    long getCode(final int avp) {
+        return (int) ARRAY_INT.get(array, offsets[avp]) & 0xFFFFFFFFL;
+    }
+
+    long getKey(final int avp) {
+        final int offset = offsets[avp];
+        final long vendorId = isVendorSpecific(offset) ? (int) ARRAY_INT.get(array, offset + 8) & 0xFFFFFFFFL : 0;
+        return AvpHeader.key(vendorId, getCode(avp));
+    }
+
+    /**
+     * Slice out the given AVP from the raw message, which must be the message backed by the
+     * array of this table.
+     */
+    FramedAvp get(final Buffer raw, final int avp) {
+        final int offset = offsets[avp];
+        final int length = (int) ARRAY_INT.get(array, offset + 4) & 0xFFFFFF;
+        final int dataOffset = offset + (isVendorSpecific(offset) ? 12 : 8);
+        return DiameterParser.sliceAvp(raw, offset, dataOffset, offset + length);
+    }
+
+    /**
+     * Find the first AVP with the given code, regardless of vendor, or the given vendor id and code
+     * packed into a single key.
+     *
+     * @return the index of the AVP or {@link AvpIndex#NONE} if there is no such AVP.
+     */
+    int first(final long codeOrKey, final boolean byKey) {
+        return next(AvpIndex.NONE, codeOrKey, byKey);
+    }
+
+    /**
+     * Same as {@link #first(long, boolean)} but starting after the given AVP.
+     */
+    int next(final int avp, final long codeOrKey, final boolean byKey) {
+        for (int i = avp + 1; i < offsets.length; ++i) {
+            if ((byKey ? getKey(i) : getCode(i)) == codeOrKey) {
+                return i;
+            }
+        }
+        return AvpIndex.NONE;
+    }
+
+    /**
+     * All the AVPs with the given code, regardless of vendor, or with the given vendor id and code
+     * packed into a single key. Since the same AVP is rarely present more than a few times, these
+     * are sliced out and copied into a new list.
+     */
+    List<FramedAvp> getAll(final Buffer raw, final long codeOrKey, final boolean byKey) {
+        int avp = first(codeOrKey, byKey);
+        if (avp == AvpIndex.NONE) {
+            return Collections.emptyList();
+        }
+
+        final List<FramedAvp> list = new ArrayList<>(2);
+        while (avp != AvpIndex.NONE) {
+            list.add(get(raw, avp));
+            avp = next(avp, codeOrKey, byKey);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * A read-only view of all the AVPs where every AVP is sliced out of the raw message
+     * as it is accessed.
+     */
+    List<FramedAvp> view(final Buffer raw) {
+        return new View(raw);
+    }
+
+    private boolean isVendorSpecific(final int offset) {
+        return (array[offset + 4] & 0x80) != 0;
+    }
+
+    private final class View extends AbstractList<FramedAvp> implements RandomAccess {
+        private final Buffer raw;
+
+        private View(final Buffer raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public FramedAvp get(final int i) {
+            if (i < 0 || i >= offsets.length) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + offsets.length);
+            }
+            return CompactAvps.this.get(raw, i);
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.CommandValidator;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterViolation;
+import io.snice.codecs.codec.diameter.DiameterViolations;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link CommandValidator}. See that interface for details.
+ * <p>
+ * The occurrences of the AVPs are counted in per-thread scratch arrays, indexed by the dense id of the AVP.
+ * Rather than clearing the counters before every message, every counter is stamped with the "generation",
+ * which is bumped for every message, and a counter with an old stamp is simply treated as zero.
+ */
+public final class DefaultCommandValidator implements CommandValidator {
+
+    private static final int UNKNOWN_AVP = -1;
+
+    /**
+     * All the AVP keys mentioned by any of the commands, in an open addressing hash table
+     * mapping the key to its dense id.
+     */
+    private final long[] avpKeys;
+    private final int[] avpIds;
+    private final int avpMask;
+    private final int avpCount;
+
+    private final Command[] commands;
+    private final int commandMask;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    private DefaultCommandValidator(final Map<Long, Integer> ids, final List<Command> commands) {
+        final int size = tableSize(ids.size());
+        avpKeys = new long[size];
+        avpIds = new int[size];
+        avpMask = size - 1;
+        avpCount = ids.size();
+        Arrays.fill(avpIds, UNKNOWN_AVP);
+        ids.forEach((key, id) -> {
+            int slot = mix(key) & avpMask;
+            while (avpIds[slot] != UNKNOWN_AVP) {
+                slot = (slot + 1) & avpMask;
+            }
+            avpKeys[slot] = key;
+            avpIds[slot] = id;
+        });
+
+        final int commandSize = tableSize(commands.size());
+        this.commands = new Command[commandSize];
+        commandMask = commandSize - 1;
+        for (final Command command : commands) {
+            int slot = mix(command.key) & commandMask;
+            while (this.commands[slot] != null) {
+                slot = (slot + 1) & commandMask;
+            }
+            this.commands[slot] = command;
+        }
+
+        scratch = ThreadLocal.withInitial(() -> new Scratch(avpCount));
+    }
+
+    public static Builder builder() {
+        return new ValidatorBuilder();
+    }
+
+    @Override
+    public Optional<DiameterViolations> validate(final DiameterMessage msg) {
+        assertNotNull(msg, "The message cannot be null");
+        final Buffer buffer = msg.getBuffer();
+        final Command command = find(buffer.getIntFromThreeOctets(5), buffer.getBit7(4));
+        if (command == null) {
+            return Optional.empty();
+        }
+
+        final Scratch counts = scratch.get();
+        counts.next();
+
+        PackedDiameterViolations violations = null;
+        final int length = buffer.getIntFromThreeOctets(1);
+        int offset = 20;
+        while (offset < length) {
+            if (length - offset < 8) {
+                // not even room for an AVP header, and possibly not even for the code.
+                final long code = length - offset >= 4 ? buffer.getUnsignedInt(offset) : 0;
+                return Optional.of(add(violations, DiameterViolation.INVALID_AVP_LENGTH, offset, code));
+            }
+
+            final long code = buffer.getUnsignedInt(offset);
+            final byte flags = buffer.getByte(offset + 4);
+            final boolean isVendorSpecific = (flags & 0b10000000) == 0b10000000;
+            final int avpLength = buffer.getIntFromThreeOctets(offset + 5);
+            // also guarantees that the vendor id, if present, is within the message.
+            if (avpLength < (isVendorSpecific ? 12 : 8) || offset + avpLength > length) {
+                return Optional.of(add(violations, DiameterViolation.INVALID_AVP_LENGTH, offset, code));
+            }
+
+            final long key = isVendorSpecific ? AvpHeader.key(buffer.getUnsignedInt(offset + 8), code) : code;
+            violations = check(command, counts, violations, key, code, (flags & 0b01000000) == 0b01000000, offset);
+            offset += avpLength + ((4 - (avpLength & 0b11)) & 0b11);
+        }
+
+        return done(command, counts, violations);
+    }
+
+    @Override
+    public Optional<DiameterViolations> validate(final int commandCode, final boolean isRequest, final AvpTable table) {
+        assertNotNull(table, "The AVP table cannot be null");
+        final Command command = find(commandCode, isRequest);
+        if (command == null) {
+            return Optional.empty();
+        }
+
+        final Scratch counts = scratch.get();
+        counts.next();
+
+        PackedDiameterViolations violations = null;
+        for (int i = 0; i < table.size(); ++i) {
+            violations = check(command, counts, violations, table.getKey(i), table.getCode(i),
+                    table.isMandatory(i), table.getOffset(i));
+        }
+
+        return done(command, counts, violations);
+    }
+
+    @Override
+    public boolean isDefined(final int commandCode, final boolean isRequest) {
+        return find(commandCode, isRequest) != null;
+    }
+
+    private PackedDiameterViolations check(final Command command, final Scratch counts, final PackedDiameterViolations violations,
+                                           final long key, final long code, final boolean isMandatory, final int offset) {
+        final int id = idOf(key);
+        if (id == UNKNOWN_AVP || !command.isAllowed(id)) {
+            if (isMandatory) {
+                return add(violations, DiameterViolation.AVP_UNSUPPORTED, offset, code);
+            }
+            return command.allowsAnyAvp ? violations : add(violations, DiameterViolation.AVP_NOT_ALLOWED, offset, code);
+        }
+
+        // only report it the first time we go above the max, not for every occurrence after that.
+        if (counts.increment(id) == command.max[id] + 1L) {
+            return add(violations, DiameterViolation.AVP_OCCURS_TOO_MANY_TIMES, offset, code);
+        }
+        return violations;
+    }
+
+    private static Optional<DiameterViolations> done(final Command command, final Scratch counts,
+                                                     final PackedDiameterViolations found) {
+        PackedDiameterViolations violations = found;
+        for (int i = 0; i < command.required.length; ++i) {
+            if (counts.get(command.required[i]) < command.min[i]) {
+                violations = add(violations, DiameterViolation.MISSING_AVP, 0, command.requiredCodes[i]);
+            }
+        }
+        return violations == null ? Optional.empty() : Optional.of(violations);
+    }
+
+    private static PackedDiameterViolations add(final PackedDiameterViolations violations, final DiameterViolation violation,
+                                                final int offset, final long value) {
+        final PackedDiameterViolations v = violations != null ? violations : new PackedDiameterViolations();
+        v.add(violation, offset, value);
+        return v;
+    }
+
+    private int idOf(final long key) {
+        int slot = mix(key) & avpMask;
+        int id;
+        while ((id = avpIds[slot]) != UNKNOWN_AVP) {
+            if (avpKeys[slot] == key) {
+                return id;
+            }
+            slot = (slot + 1) & avpMask;
+        }
+        return UNKNOWN_AVP;
+    }
+
+    private Command find(final int commandCode, final boolean isRequest) {
+        final long key = commandKey(commandCode, isRequest);
+        int slot = mix(key) & commandMask;
+        Command command;
+        while ((command = commands[slot]) != null) {
+            if (command.key == key) {
+                return command;
+            }
+            slot = (slot + 1) & commandMask;
+        }
+        return null;
+    }
+
+    private static long commandKey(final int commandCode, final boolean isRequest) {
+        return ((long) commandCode << 1) | (isRequest ? 1 : 0);
+    }
+
+    private static int mix(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Keep the tables at most half full so that the probe sequences stay short.
+     */
+    private static int tableSize(final int count) {
+        return Integer.highestOneBit(Math.max(count, 4) * 2 - 1) << 1;
+    }
+
+    private static final class Scratch {
+        private final int[] counts;
+        private final int[] stamps;
+        private int generation;
+
+        private Scratch(final int size) {
+            counts = new int[size];
+            stamps = new int[size];
+        }
+
+        private void next() {
+            if (++generation == 0) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+        }
+
+        private int increment(final int id) {
+            if (stamps[id] != generation) {
+                stamps[id] = generation;
+                counts[id] = 0;
+            }
+            return ++counts[id];
+        }
+
+        private int get(final int id) {
+            return stamps[id] == generation ? counts[id] : 0;
+        }
+    }
+
+    /**
+     * The compiled ABNF of a single command.
+     */
+    private static final class Command {
+        private final long key;
+        private final boolean allowsAnyAvp;
+
+        /**
+         * Bitset of the AVPs, by dense id, that are part of the ABNF.
+         */
+        private final long[] allowed;
+
+        /**
+         * The max occurrences, by dense id.
+         */
+        private final int[] max;
+
+        /**
+         * The dense ids, the codes and the min occurrences of the AVPs that must be present.
+         */
+        private final int[] required;
+        private final long[] requiredCodes;
+        private final int[] min;
+
+        private Command(final long key, final boolean allowsAnyAvp, final long[] allowed, final int[] max,
+                        final int[] required, final long[] requiredCodes, final int[] min) {
+            this.key = key;
+            this.allowsAnyAvp = allowsAnyAvp;
+            this.allowed = allowed;
+            this.max = max;
+            this.required = required;
+            this.requiredCodes = requiredCodes;
+            this.min = min;
+        }
+
+        private boolean isAllowed(final int id) {
+            return (allowed[id >>> 6] & (1L << id)) != 0;
+        }
+    }
+
+    /**
+     * A single line of the ABNF of a command.
+     */
+    private static final class Rule {
+        private final long key;
+        private final long code;
+        private final int min;
+        private final int max;
+
+        private Rule(final long key, final long code, final int min, final int max) {
+            this.key = key;
+            this.code = code;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private static final class CommandDefinition {
+        private final long key;
+        private final Map<Long, Rule> rules = new LinkedHashMap<>();
+        private boolean allowsAnyAvp = true;
+
+        private CommandDefinition(final long key) {
+            this.key = key;
+        }
+    }
+
+    private static final class ValidatorBuilder implements CommandBuilder {
+
+        private final Map<Long, CommandDefinition> definitions = new LinkedHashMap<>();
+        private CommandDefinition current;
+
+        @Override
+        public Builder withBaseProtocol() {
+            BaseProtocolCommands.define(this);
+            current = null;
+            return this;
+        }
+
+        @Override
+        public CommandBuilder withRequest(final int commandCode) {
+            return command(commandCode, true);
+        }
+
+        @Override
+        public CommandBuilder withAnswer(final int commandCode) {
+            return command(commandCode, false);
+        }
+
+        private CommandBuilder command(final int commandCode, final boolean isRequest) {
+            assertArgument(commandCode >= 0 && commandCode <= 0xFFFFFF, "The command code must be an unsigned 24 bit value");
+            current = definitions.computeIfAbsent(commandKey(commandCode, isRequest), CommandDefinition::new);
+            return this;
+        }
+
+        @Override
+        public CommandBuilder withAvp(final long vendorId, final long code, final int min, final int max) {
+            assertArgument(vendorId >= 0 && vendorId <= 0xFFFFFFFFL, "The vendor id must be an unsigned 32 bit value");
+            assertArgument(code >= 0 && code <= 0xFFFFFFFFL, "The AVP code must be an unsigned 32 bit value");
+            assertArgument(min >= 0 && max >= 1 && min <= max, "The min occurrences must be between zero and max, and max at least one");
+            ensureCommand().rules.put(AvpHeader.key(vendorId, code), new Rule(AvpHeader.key(vendorId, code), code, min, max));
+            return this;
+        }
+
+        @Override
+        public CommandBuilder withoutAnyAvp() {
+            ensureCommand().allowsAnyAvp = false;
+            return this;
+        }
+
+        private CommandDefinition ensureCommand() {
+            if (current == null) {
+                throw new IllegalStateException("You must start defining a command, through withRequest or withAnswer, first");
+            }
+            return current;
+        }
+
+        @Override
+        public CommandValidator build() {
+            final Map<Long, Integer> ids = new LinkedHashMap<>();
+            for (final CommandDefinition definition : definitions.values()) {
+                for (final Long key : definition.rules.keySet()) {
+                    ids.putIfAbsent(key, ids.size());
+                }
+            }
+
+            final List<Command> commands = new ArrayList<>(definitions.size());
+            for (final CommandDefinition definition : definitions.values()) {
+                final long[] allowed = new long[(ids.size() + 63) >>> 6];
+                final int[] max = new int[ids.size()];
+                final List<Rule> required = new ArrayList<>();
+
+                for (final Rule rule : definition.rules.values()) {
+                    final int id = ids.get(rule.key);
+                    allowed[id >>> 6] |= 1L << id;
+                    max[id] = rule.max;
+                    if (rule.min > 0) {
+                        required.add(rule);
+                    }
+                }
+
+                final int[] requiredIds = new int[required.size()];
+                final long[] requiredCodes = new long[required.size()];
+                final int[] min = new int[required.size()];
+                for (int i = 0; i < required.size(); ++i) {
+                    requiredIds[i] = ids.get(required.get(i).key);
+                    requiredCodes[i] = required.get(i).code;
+                    min[i] = required.get(i).min;
+                }
+
+                commands.add(new Command(definition.key, definition.allowsAnyAvp, allowed, max, requiredIds, requiredCodes, min));
+            }
+
+            return new DefaultCommandValidator(ids, commands);
+        }
+    }
+}
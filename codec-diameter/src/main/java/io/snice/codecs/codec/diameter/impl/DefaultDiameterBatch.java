@@ -0,0 +1,176 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterBatch;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link DiameterBatch}. See that interface for details.
+ * <p>
+ * The boundaries are kept as two parallel int arrays, the offset and the length of each message.
+ */
+public final class DefaultDiameterBatch implements DiameterBatch {
+
+    private static final int HEADER_LENGTH = 20;
+
+    /**
+     * When framing in parallel, a range of messages that is this small is framed directly
+     * rather than being split up any further.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private final Buffer buffer;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int size;
+    private final int consumed;
+
+    private DefaultDiameterBatch(final Buffer buffer, final int[] offsets, final int[] lengths, final int size, final int consumed) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.size = size;
+        this.consumed = consumed;
+    }
+
+    public static DiameterBatch scan(final Buffer buffer) throws DiameterParseException {
+        assertNotNull(buffer, "The buffer cannot be null");
+
+        // see DiameterParser#frame for why we need to do toBuffer
+        final Buffer orig = buffer.toBuffer();
+        final int end = orig.capacity();
+
+        // most diameter messages are a few hundred bytes so this is a decent guess,
+        // which at worst means a couple of extra array copies.
+        int[] offsets = new int[Math.max(end / 256, 4)];
+        int[] lengths = new int[offsets.length];
+        int size = 0;
+        int position = 0;
+
+        while (end - position >= HEADER_LENGTH) {
+            final byte version = orig.getByte(position);
+            if (version != 1) {
+                throw new DiameterParseException(position, "Not a diameter message at offset %d. Expected version 1 but got " + version);
+            }
+
+            final int length = orig.getIntFromThreeOctets(position + 1);
+            if (length < HEADER_LENGTH) {
+                throw new DiameterParseException(position, "Invalid diameter message length " + length + " at offset %d");
+            }
+
+            if (end - position < length) {
+                break;
+            }
+
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+
+            offsets[size] = position;
+            lengths[size] = length;
+            ++size;
+            position += length;
+        }
+
+        return new DefaultDiameterBatch(orig, offsets, lengths, size, position);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getOffset(final int index) {
+        ensureIndex(index);
+        return offsets[index];
+    }
+
+    @Override
+    public int getLength(final int index) {
+        ensureIndex(index);
+        return lengths[index];
+    }
+
+    @Override
+    public int getConsumedBytes() {
+        return consumed;
+    }
+
+    @Override
+    public DiameterMessage frame(final int index) throws DiameterParseException {
+        ensureIndex(index);
+        return frameMessage(index);
+    }
+
+    @Override
+    public DiameterMessage[] frame() throws DiameterParseException {
+        final DiameterMessage[] messages = new DiameterMessage[size];
+        for (int i = 0; i < size; ++i) {
+            messages[i] = frameMessage(i);
+        }
+        return messages;
+    }
+
+    @Override
+    public DiameterMessage[] frameParallel(final ForkJoinPool pool) throws DiameterParseException {
+        assertNotNull(pool, "The pool cannot be null");
+        final DiameterMessage[] messages = new DiameterMessage[size];
+        if (size <= PARALLEL_THRESHOLD) {
+            for (int i = 0; i < size; ++i) {
+                messages[i] = frameMessage(i);
+            }
+        } else {
+            pool.invoke(new FrameTask(messages, 0, size));
+        }
+        return messages;
+    }
+
+    @Override
+    public String toString() {
+        return "DiameterBatch[messages=" + size + ", bytes=" + consumed + "]";
+    }
+
+    private DiameterMessage frameMessage(final int index) {
+        final int offset = offsets[index];
+        return DiameterParser.frame(buffer.slice(offset, offset + lengths[index]));
+    }
+
+    private void ensureIndex(final int index) {
+        assertArgument(index >= 0 && index < size, "The index must be between 0 and " + size);
+    }
+
+    private final class FrameTask extends RecursiveAction {
+        private final DiameterMessage[] messages;
+        private final int from;
+        private final int to;
+
+        private FrameTask(final DiameterMessage[] messages, final int from, final int to) {
+            this.messages = messages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; ++i) {
+                    messages[i] = frameMessage(i);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new FrameTask(messages, from, middle), new FrameTask(messages, middle, to));
+        }
+    }
+}
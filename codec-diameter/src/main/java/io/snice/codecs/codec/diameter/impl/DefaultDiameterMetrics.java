@@ -0,0 +1,349 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMetrics;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterViolations;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+
+/**
+ * Default implementation of the {@link DiameterMetrics.Recorder}. See that interface for details.
+ * <p>
+ * The metrics of every (command code, application id) are kept in an open addressing hash table, with
+ * linear probing, that is replaced, under a lock, every time a new pair is seen. Since that happens a
+ * handful of times during the lifetime of a node, finding the metrics of a message is a lock free
+ * lookup that doesn't allocate anything. All the counters are {@link LongAdder}s, so threads framing
+ * messages of the same command don't contend on a single counter.
+ * <p>
+ * Since both the command code and the application id come straight from the peer, the number of pairs
+ * that are tracked is capped and everything beyond that is folded into a single
+ * {@link DiameterMetrics#OTHER} entry. Once the cap has been reached, unknown pairs go straight
+ * to that entry without taking the lock.
+ */
+public final class DefaultDiameterMetrics implements DiameterMetrics.Recorder {
+
+    private final LongAdder frameFailures = new LongAdder();
+    private final LongAdder frameViolations = new LongAdder();
+
+    private final int maxCommands;
+
+    private final CommandMetrics other = new CommandMetrics(DiameterMetrics.OTHER, DiameterMetrics.OTHER, -1);
+
+    private volatile CommandMetrics[] table = new CommandMetrics[16];
+
+    /**
+     * Set once the table holds the maximum number of pairs, after which it never changes.
+     */
+    private volatile boolean full;
+
+    /**
+     * The number of entries in the table, only accessed while holding the lock.
+     */
+    private int size;
+
+    public DefaultDiameterMetrics(final int maxCommands) {
+        assertArgument(maxCommands > 0, "The maximum number of commands must be greater than zero");
+        this.maxCommands = maxCommands;
+    }
+
+    @Override
+    public void onFramed(final DiameterHeader header, final int avps, final long nanos) {
+        final CommandMetrics metrics = metrics(header.getCommandCode(), header.getApplicationId());
+        if (header.isRequest()) {
+            metrics.framedRequests.increment();
+        } else {
+            metrics.framedAnswers.increment();
+        }
+
+        if (avps > 0) {
+            metrics.framedAvps.add(avps);
+        }
+        metrics.bytesIn.add(header.getLength());
+        metrics.frameLatency.record(nanos);
+    }
+
+    @Override
+    public void onFrameFailure(final DiameterParseException e) {
+        frameFailures.increment();
+    }
+
+    @Override
+    public void onFrameViolations(final DiameterHeader header, final DiameterViolations violations) {
+        frameViolations.increment();
+    }
+
+    @Override
+    public void onBuilt(final DiameterHeader header, final int avps, final long nanos) {
+        final CommandMetrics metrics = metrics(header.getCommandCode(), header.getApplicationId());
+        if (header.isRequest()) {
+            metrics.builtRequests.increment();
+        } else {
+            metrics.builtAnswers.increment();
+        }
+
+        metrics.builtAvps.add(avps);
+        metrics.bytesOut.add(header.getLength());
+        metrics.buildLatency.record(nanos);
+    }
+
+    @Override
+    public DiameterMetrics.Snapshot snapshot() {
+        final List<DiameterMetrics.CommandSnapshot> commands = new ArrayList<>();
+        for (final CommandMetrics metrics : table) {
+            if (metrics != null) {
+                commands.add(metrics.snapshot());
+            }
+        }
+
+        commands.sort(Comparator.comparingInt(DiameterMetrics.CommandSnapshot::getCommandCode)
+                .thenComparingLong(DiameterMetrics.CommandSnapshot::getApplicationId));
+        if (full) {
+            commands.add(other.snapshot());
+        }
+        return new ImmutableSnapshot(frameFailures.sum(), frameViolations.sum(), List.copyOf(commands));
+    }
+
+    private CommandMetrics metrics(final int commandCode, final long applicationId) {
+        final long key = key(commandCode, applicationId);
+        final CommandMetrics metrics = find(table, key);
+        if (metrics != null) {
+            return metrics;
+        }
+        return full ? other : add(commandCode, applicationId, key);
+    }
+
+    private static CommandMetrics find(final CommandMetrics[] table, final long key) {
+        final int mask = table.length - 1;
+        int slot = mix(key) & mask;
+        CommandMetrics metrics;
+        while ((metrics = table[slot]) != null) {
+            if (metrics.key == key) {
+                return metrics;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private synchronized CommandMetrics add(final int commandCode, final long applicationId, final long key) {
+        // someone else may have added it while we were waiting for the lock
+        final CommandMetrics existing = find(table, key);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (size == maxCommands) {
+            full = true;
+            return other;
+        }
+
+        final CommandMetrics metrics = new CommandMetrics(commandCode, applicationId, key);
+
+        // keep the table at most half full so that the probe sequences stay short.
+        final CommandMetrics[] current = table;
+        final CommandMetrics[] next = new CommandMetrics[(size + 1) * 2 > current.length ? current.length * 2 : current.length];
+        for (final CommandMetrics m : current) {
+            if (m != null) {
+                insert(next, m);
+            }
+        }
+        insert(next, metrics);
+
+        ++size;
+        table = next;
+        return metrics;
+    }
+
+    private static void insert(final CommandMetrics[] table, final CommandMetrics metrics) {
+        final int mask = table.length - 1;
+        int slot = mix(metrics.key) & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = metrics;
+    }
+
+    /**
+     * The command code is 24 bits and the application id 32 bits, so they both fit in a single long.
+     */
+    private static long key(final int commandCode, final long applicationId) {
+        return (applicationId << 24) | commandCode;
+    }
+
+    private static int mix(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class CommandMetrics {
+        private final int commandCode;
+        private final long applicationId;
+        private final long key;
+
+        private final LongAdder framedRequests = new LongAdder();
+        private final LongAdder framedAnswers = new LongAdder();
+        private final LongAdder framedAvps = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder builtRequests = new LongAdder();
+        private final LongAdder builtAnswers = new LongAdder();
+        private final LongAdder builtAvps = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LatencyHistogram frameLatency = new LatencyHistogram();
+        private final LatencyHistogram buildLatency = new LatencyHistogram();
+
+        private CommandMetrics(final int commandCode, final long applicationId, final long key) {
+            this.commandCode = commandCode;
+            this.applicationId = applicationId;
+            this.key = key;
+        }
+
+        private DiameterMetrics.CommandSnapshot snapshot() {
+            return new ImmutableCommandSnapshot(commandCode, applicationId,
+                    framedRequests.sum(), framedAnswers.sum(), framedAvps.sum(), bytesIn.sum(),
+                    builtRequests.sum(), builtAnswers.sum(), builtAvps.sum(), bytesOut.sum(),
+                    frameLatency.snapshot(), buildLatency.snapshot());
+        }
+    }
+
+    private static final class ImmutableSnapshot implements DiameterMetrics.Snapshot {
+        private final long frameFailures;
+        private final long frameViolations;
+        private final List<DiameterMetrics.CommandSnapshot> commands;
+
+        private ImmutableSnapshot(final long frameFailures, final long frameViolations,
+                                  final List<DiameterMetrics.CommandSnapshot> commands) {
+            this.frameFailures = frameFailures;
+            this.frameViolations = frameViolations;
+            this.commands = commands;
+        }
+
+        @Override
+        public long getFrameFailures() {
+            return frameFailures;
+        }
+
+        @Override
+        public long getFrameViolations() {
+            return frameViolations;
+        }
+
+        @Override
+        public List<DiameterMetrics.CommandSnapshot> getCommands() {
+            return commands;
+        }
+
+        @Override
+        public String toString() {
+            return "DiameterMetrics[frameFailures=" + frameFailures + ", frameViolations=" + frameViolations
+                    + ", commands=" + commands + "]";
+        }
+    }
+
+    private static final class ImmutableCommandSnapshot implements DiameterMetrics.CommandSnapshot {
+        private final int commandCode;
+        private final long applicationId;
+        private final long framedRequests;
+        private final long framedAnswers;
+        private final long framedAvps;
+        private final long bytesIn;
+        private final long builtRequests;
+        private final long builtAnswers;
+        private final long builtAvps;
+        private final long bytesOut;
+        private final DiameterMetrics.LatencySnapshot frameLatency;
+        private final DiameterMetrics.LatencySnapshot buildLatency;
+
+        private ImmutableCommandSnapshot(final int commandCode, final long applicationId,
+                                         final long framedRequests, final long framedAnswers,
+                                         final long framedAvps, final long bytesIn,
+                                         final long builtRequests, final long builtAnswers,
+                                         final long builtAvps, final long bytesOut,
+                                         final DiameterMetrics.LatencySnapshot frameLatency,
+                                         final DiameterMetrics.LatencySnapshot buildLatency) {
+            this.commandCode = commandCode;
+            this.applicationId = applicationId;
+            this.framedRequests = framedRequests;
+            this.framedAnswers = framedAnswers;
+            this.framedAvps = framedAvps;
+            this.bytesIn = bytesIn;
+            this.builtRequests = builtRequests;
+            this.builtAnswers = builtAnswers;
+            this.builtAvps = builtAvps;
+            this.bytesOut = bytesOut;
+            this.frameLatency = frameLatency;
+            this.buildLatency = buildLatency;
+        }
+
+        @Override
+        public int getCommandCode() {
+            return commandCode;
+        }
+
+        @Override
+        public long getApplicationId() {
+            return applicationId;
+        }
+
+        @Override
+        public long getFramedRequests() {
+            return framedRequests;
+        }
+
+        @Override
+        public long getFramedAnswers() {
+            return framedAnswers;
+        }
+
+        @Override
+        public long getFramedAvps() {
+            return framedAvps;
+        }
+
+        @Override
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        @Override
+        public long getBuiltRequests() {
+            return builtRequests;
+        }
+
+        @Override
+        public long getBuiltAnswers() {
+            return builtAnswers;
+        }
+
+        @Override
+        public long getBuiltAvps() {
+            return builtAvps;
+        }
+
+        @Override
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        @Override
+        public DiameterMetrics.LatencySnapshot getFrameLatency() {
+            return frameLatency;
+        }
+
+        @Override
+        public DiameterMetrics.LatencySnapshot getBuildLatency() {
+            return buildLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "Command[" + commandCode + ", " + applicationId + ", framed=" + (framedRequests + framedAnswers)
+                    + ", built=" + (builtRequests + builtAnswers) + ", frameLatency=" + frameLatency + "]";
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterStreamDecoder;
+
+import java.util.function.Consumer;
+
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link DiameterStreamDecoder}. See that interface for details.
+ */
+public final class DefaultDiameterStreamDecoder implements DiameterStreamDecoder {
+
+    private static final int HEADER_LENGTH = 20;
+
+    private final int maxMessageSize;
+
+    /**
+     * If we only got parts of the diameter header we don't know how large the message is
+     * going to be so we keep the header bytes in here until we have all 20 of them.
+     */
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private int headerBytes;
+
+    /**
+     * Once we know the length of a message that spans multiple chunks, the bytes are accumulated
+     * in here, which is sized to fit the message exactly.
+     */
+    private byte[] message;
+    private WritableBuffer messageWriter;
+    private int messageBytes;
+
+    /**
+     * The first failure to frame, or consume, a complete message within the current chunk. The
+     * message is skipped and the rest of the chunk decoded before this is re-thrown.
+     */
+    private RuntimeException failure;
+
+    public DefaultDiameterStreamDecoder(final int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public int decode(final Buffer chunk, final Consumer<DiameterMessage> consumer) throws DiameterParseException {
+        assertNotNull(chunk, "The chunk cannot be null");
+        assertNotNull(consumer, "The consumer cannot be null");
+
+        // same as when framing, a ReadableBuffer slices relative to its reader index while the
+        // absolute getters don't, so lock the chunk in place before doing either.
+        final Buffer data = chunk.toBuffer();
+        final int end = data.capacity();
+        int position = 0;
+        int count = 0;
+
+        while (position < end) {
+            if (message != null) {
+                // we are in the middle of a message that started in a previous chunk.
+                final int needed = message.length - messageBytes;
+                final int available = Math.min(needed, end - position);
+                data.slice(position, position + available).writeTo(messageWriter);
+                messageBytes += available;
+                position += available;
+
+                if (messageBytes == message.length) {
+                    count += emitMessage(consumer);
+                }
+            } else if (headerBytes > 0) {
+                // we have parts of the header from a previous chunk
+                while (headerBytes < HEADER_LENGTH && position < end) {
+                    header[headerBytes++] = data.getByte(position++);
+                }
+
+                if (headerBytes == HEADER_LENGTH) {
+                    final int length = validateHeader(header[0], ((header[1] & 0xFF) << 16)
+                            | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF), count);
+                    startMessage(length);
+                    System.arraycopy(header, 0, message, 0, HEADER_LENGTH);
+                    messageBytes = HEADER_LENGTH;
+                    messageWriter.setWriterIndex(HEADER_LENGTH);
+                    headerBytes = 0;
+
+                    // a message without any AVPs is complete as soon as we have the header so
+                    // don't wait for the next chunk, which may never come, to emit it.
+                    if (messageBytes == message.length) {
+                        count += emitMessage(consumer);
+                    }
+                }
+            } else if (end - position >= HEADER_LENGTH) {
+                final int length = validateHeader(data.getByte(position), data.getIntFromThreeOctets(position + 1), count);
+                if (end - position >= length) {
+                    // the entire message is within this chunk so no need to copy anything
+                    final Buffer complete = data.slice(position, position + length);
+                    position += length;
+                    count += emit(complete, consumer);
+                } else {
+                    startMessage(length);
+                    data.slice(position, end).writeTo(messageWriter);
+                    messageBytes = end - position;
+                    position = end;
+                }
+            } else {
+                while (position < end) {
+                    header[headerBytes++] = data.getByte(position++);
+                }
+            }
+        }
+
+        if (failure != null) {
+            final RuntimeException e = failure;
+            failure = null;
+            throw e;
+        }
+
+        return count;
+    }
+
+    /**
+     * The message that has been accumulated across chunks is complete so let it go.
+     */
+    private int emitMessage(final Consumer<DiameterMessage> consumer) {
+        final Buffer complete = Buffers.wrap(message);
+        message = null;
+        messageWriter = null;
+        messageBytes = 0;
+        return emit(complete, consumer);
+    }
+
+    /**
+     * Frame the complete message and hand it over to the consumer. Any failure to do so only
+     * concerns this message, whose bytes have already been accounted for, so it is kept until
+     * the rest of the chunk has been decoded so that we don't lose track of where we are in the stream.
+     *
+     * @return 1 if the message was framed and consumed, 0 otherwise.
+     */
+    private int emit(final Buffer complete, final Consumer<DiameterMessage> consumer) {
+        try {
+            consumer.accept(DiameterParser.frame(complete));
+            return 1;
+        } catch (final RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public int getBufferedBytes() {
+        return message != null ? messageBytes : headerBytes;
+    }
+
+    @Override
+    public void reset() {
+        failure = null;
+        dropMessage();
+    }
+
+    private void dropMessage() {
+        headerBytes = 0;
+        message = null;
+        messageWriter = null;
+        messageBytes = 0;
+    }
+
+    private void startMessage(final int length) {
+        message = new byte[length];
+        messageWriter = WritableBuffer.of(message);
+    }
+
+    /**
+     * @param count the number of messages of the current chunk that already have been handed over
+     *              to the consumer, which otherwise is lost when we throw.
+     */
+    private int validateHeader(final byte version, final int length, final int count) throws DiameterParseException {
+        if (version != 1) {
+            throw streamFailure(new DiameterParseException(0, "Not a diameter stream. Expected version 1 but got "
+                    + version + ". " + count + " messages of this chunk were framed before that"));
+        }
+
+        if (length < HEADER_LENGTH || length > maxMessageSize) {
+            throw streamFailure(new DiameterParseException(1, "Invalid diameter message length " + length
+                    + ". Must be between " + HEADER_LENGTH + " and " + maxMessageSize + " bytes. "
+                    + count + " messages of this chunk were framed before that"));
+        }
+
+        return length;
+    }
+
+    /**
+     * The stream is beyond repair so drop whatever we have buffered but make sure that any
+     * earlier failure within the same chunk isn't lost along with it.
+     */
+    private DiameterParseException streamFailure(final DiameterParseException e) {
+        dropMessage();
+        if (failure != null) {
+            e.addSuppressed(failure);
+            failure = null;
+        }
+        return e;
+    }
+}
@@ -0,0 +1,205 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DuplicateDetectionCache;
+import io.snice.codecs.codec.diameter.TransactionIdentifier;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link DuplicateDetectionCache}. See that interface for details.
+ * <p>
+ * The cache is split into a number of segments, each one guarded by its own lock, and the
+ * {@link TransactionIdentifier} decides which segment an answer goes into. Every segment keeps
+ * its answers in insertion order and since all answers are kept for the same amount of time,
+ * the oldest answer is always first in line, which makes both the time and the size based
+ * eviction a matter of chopping off the head of the segment.
+ */
+public final class DefaultDuplicateDetectionCache implements DuplicateDetectionCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final long windowMs;
+    private final LongSupplier clock;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DefaultDuplicateDetectionCache(final int maxEntries, final long windowMs, final LongSupplier clock) {
+        assertArgument(maxEntries > 0, "The max number of entries must be greater than zero");
+        assertArgument(windowMs > 0, "The window must be greater than zero");
+        this.windowMs = windowMs;
+        this.clock = assertNotNull(clock, "The clock cannot be null");
+
+        final int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxEntries));
+        final int maxPerSegment = maxEntries / count;
+        segments = new Segment[count];
+        for (int i = 0; i < count; ++i) {
+            segments[i] = new Segment(maxPerSegment);
+        }
+        segmentMask = count - 1;
+    }
+
+    @Override
+    public Optional<Buffer> get(final TransactionIdentifier transaction) {
+        assertNotNull(transaction, "The transaction identifier cannot be null");
+        final Buffer answer = segment(transaction).get(transaction, clock.getAsLong());
+        if (answer == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(answer);
+    }
+
+    @Override
+    public void put(final TransactionIdentifier transaction, final Buffer answer) {
+        assertNotNull(transaction, "The transaction identifier cannot be null");
+        assertNotNull(answer, "The answer cannot be null");
+        segment(transaction).put(transaction, answer, clock.getAsLong());
+    }
+
+    @Override
+    public void remove(final TransactionIdentifier transaction) {
+        assertNotNull(transaction, "The transaction identifier cannot be null");
+        segment(transaction).remove(transaction);
+    }
+
+    @Override
+    public int evictExpired() {
+        final long now = clock.getAsLong();
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.evictExpired(now);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segment(final TransactionIdentifier transaction) {
+        final int h = transaction.hashCode() * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    private static final class Entry {
+        private final Buffer answer;
+        private final long expires;
+
+        private Entry(final Buffer answer, final long expires) {
+            this.answer = answer;
+            this.expires = expires;
+        }
+    }
+
+    private final class Segment {
+
+        private final int maxEntries;
+
+        /**
+         * Insertion ordered, so the first entry is always the one that expires first.
+         */
+        private final LinkedHashMap<TransactionIdentifier, Entry> entries = new LinkedHashMap<>();
+
+        private Segment(final int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        private synchronized Buffer get(final TransactionIdentifier transaction, final long now) {
+            final Entry entry = entries.get(transaction);
+            if (entry == null) {
+                return null;
+            }
+
+            if (entry.expires <= now) {
+                evictExpired(now);
+                return null;
+            }
+
+            return entry.answer;
+        }
+
+        private synchronized void put(final TransactionIdentifier transaction, final Buffer answer, final long now) {
+            evictExpired(now);
+
+            // an existing entry has to be moved to the end to keep the entries in expiry order
+            entries.remove(transaction);
+            entries.put(transaction, new Entry(answer, now + windowMs));
+
+            int overflow = entries.size() - maxEntries;
+            if (overflow > 0) {
+                final Iterator<Entry> it = entries.values().iterator();
+                while (overflow-- > 0) {
+                    it.next();
+                    it.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        private synchronized void remove(final TransactionIdentifier transaction) {
+            entries.remove(transaction);
+        }
+
+        private synchronized int evictExpired(final long now) {
+            int count = 0;
+            final Iterator<Map.Entry<TransactionIdentifier, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext() && it.next().getValue().expires <= now) {
+                it.remove();
+                ++count;
+            }
+            evictions.add(count);
+            return count;
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
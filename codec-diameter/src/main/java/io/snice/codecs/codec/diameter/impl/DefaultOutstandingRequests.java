@@ -0,0 +1,297 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.OutstandingRequests;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link OutstandingRequests}. See that interface for details.
+ * <p>
+ * All state is kept in a handful of primitive arrays that are allocated up front:
+ * <ul>
+ *     <li>The entries live in a slab of parallel arrays (key, request, deadline, the two
+ *     links of the timer wheel and the slot it is linked into) indexed by an entry number.
+ *     Free entries are chained through the "next" link.</li>
+ *     <li>The hash table is an open addressing, linear probing, table of entry numbers
+ *     (offset by one so that zero means empty), sized to at least twice the capacity.
+ *     Removals use backward shift deletion so there are no tombstones that slowly degrade
+ *     the lookups.</li>
+ *     <li>The timer wheel is an array of list heads where every entry is linked into the
+ *     slot of its deadline. An entry with a deadline that is more than a full rotation away
+ *     simply stays in its slot until its deadline has actually passed.</li>
+ * </ul>
+ */
+public final class DefaultOutstandingRequests<T> implements OutstandingRequests<T> {
+
+    /**
+     * Keeps the hash table within the max size of an array.
+     */
+    public static final int MAX_CAPACITY = 1 << 29;
+
+    private static final long TICK_MS = 10;
+
+    private static final int MAX_WHEEL_SIZE = 1 << 16;
+
+    private static final int NONE = -1;
+
+    private final long defaultTimeoutMs;
+
+    private final int capacity;
+
+    private final int[] table;
+    private final int tableMask;
+
+    private final int[] keys;
+    private final Object[] requests;
+    private final long[] deadlines;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] buckets;
+    private int free;
+    private int size;
+
+    private final int[] wheel;
+    private final int wheelMask;
+
+    /**
+     * The tick the wheel has been processed up to, which is the first tick that will be
+     * visited on the next call to {@link #expire(long, ObjLongConsumer)}.
+     */
+    private long currentTick = Long.MIN_VALUE;
+
+    public DefaultOutstandingRequests(final int capacity, final long defaultTimeoutMs) {
+        assertArgument(capacity > 0 && capacity <= MAX_CAPACITY, "Invalid capacity");
+        assertArgument(defaultTimeoutMs > 0, "The timeout must be greater than zero");
+        this.capacity = capacity;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+
+        table = new int[Math.max(4, Integer.highestOneBit(capacity - 1 | 1) << 2)];
+        tableMask = table.length - 1;
+
+        keys = new int[capacity];
+        requests = new Object[capacity];
+        deadlines = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        buckets = new int[capacity];
+        initFreeList();
+
+        final long ticks = Math.min(MAX_WHEEL_SIZE, defaultTimeoutMs / TICK_MS + 1);
+        wheel = new int[Integer.highestOneBit((int) ticks - 1 | 1) << 1];
+        wheelMask = wheel.length - 1;
+        Arrays.fill(wheel, NONE);
+    }
+
+    @Override
+    public boolean add(final long hopByHopId, final T request, final long now) {
+        return add(hopByHopId, request, now, defaultTimeoutMs);
+    }
+
+    @Override
+    public boolean add(final long hopByHopId, final T request, final long now, final long timeoutMs) {
+        assertNotNull(request, "The request cannot be null");
+        assertArgument(timeoutMs >= 0, "The timeout cannot be negative");
+        if (free == NONE) {
+            return false;
+        }
+
+        final int key = (int) hopByHopId;
+        int slot = hash(key) & tableMask;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return false;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+
+        final int entry = free;
+        free = next[entry];
+
+        keys[entry] = key;
+        requests[entry] = request;
+        deadlines[entry] = now + timeoutMs;
+        table[slot] = entry + 1;
+        ++size;
+
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = now / TICK_MS;
+        }
+        link(entry, Math.max(currentTick, deadlines[entry] / TICK_MS));
+        return true;
+    }
+
+    @Override
+    public T get(final long hopByHopId) {
+        final int slot = find((int) hopByHopId);
+        return slot == NONE ? null : request(table[slot] - 1);
+    }
+
+    @Override
+    public T remove(final long hopByHopId) {
+        final int slot = find((int) hopByHopId);
+        if (slot == NONE) {
+            return null;
+        }
+
+        final int entry = table[slot] - 1;
+        final T request = request(entry);
+        deleteSlot(slot);
+        unlink(entry);
+        release(entry);
+        return request;
+    }
+
+    @Override
+    public int expire(final long now, final ObjLongConsumer<T> consumer) {
+        assertNotNull(consumer, "The consumer cannot be null");
+        final long nowTick = now / TICK_MS;
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = nowTick;
+        }
+
+        if (size == 0 || nowTick < currentTick) {
+            currentTick = Math.max(currentTick, nowTick);
+            return 0;
+        }
+
+        // no point going around the wheel more than once
+        final long from = Math.max(currentTick, nowTick - wheelMask);
+        int count = 0;
+        for (long tick = from; tick <= nowTick && size > 0; ++tick) {
+            int entry = wheel[(int) (tick & wheelMask)];
+            while (entry != NONE) {
+                final int following = next[entry];
+                if (deadlines[entry] <= now) {
+                    final long hopByHopId = keys[entry] & 0xFFFFFFFFL;
+                    final T request = request(entry);
+                    deleteSlot(find(keys[entry]));
+                    unlink(entry);
+                    release(entry);
+                    consumer.accept(request, hopByHopId);
+                    ++count;
+                }
+                entry = following;
+            }
+        }
+
+        // the current tick may still hold entries that are due later within the same tick
+        // so it has to be visited again next time around.
+        currentTick = nowTick;
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(requests, null);
+        Arrays.fill(wheel, NONE);
+        initFreeList();
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T request(final int entry) {
+        return (T) requests[entry];
+    }
+
+    /**
+     * Hop-by-hop ids are typically handed out sequentially so we need to spread them out
+     * over the table, which the fibonacci hash does well.
+     */
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(final int key) {
+        int slot = hash(key) & tableMask;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Backward shift deletion. Every entry following the removed slot, up until the next
+     * empty slot, is moved back into the hole unless that would move it to before its ideal
+     * slot.
+     */
+    private void deleteSlot(final int slot) {
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & tableMask;
+            final int e = table[i];
+            if (e == 0) {
+                break;
+            }
+
+            final int ideal = hash(keys[e - 1]) & tableMask;
+            final boolean stays = hole <= i ? hole < ideal && ideal <= i : hole < ideal || ideal <= i;
+            if (!stays) {
+                table[hole] = e;
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void link(final int entry, final long tick) {
+        final int bucket = (int) (tick & wheelMask);
+        final int head = wheel[bucket];
+        buckets[entry] = bucket;
+        prev[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            prev[head] = entry;
+        }
+        wheel[bucket] = entry;
+    }
+
+    private void unlink(final int entry) {
+        final int p = prev[entry];
+        final int n = next[entry];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            wheel[buckets[entry]] = n;
+        }
+
+        if (n != NONE) {
+            prev[n] = p;
+        }
+    }
+
+    private void release(final int entry) {
+        requests[entry] = null;
+        next[entry] = free;
+        prev[entry] = NONE;
+        free = entry;
+        --size;
+    }
+
+    private void initFreeList() {
+        for (int i = 0; i < capacity - 1; ++i) {
+            next[i] = i + 1;
+        }
+        next[capacity - 1] = NONE;
+        free = 0;
+    }
+}
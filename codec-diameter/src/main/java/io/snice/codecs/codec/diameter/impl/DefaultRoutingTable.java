@@ -0,0 +1,354 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.RoutingTable;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotEmpty;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * Default implementation of the {@link RoutingTable}. See that interface for details.
+ * <p>
+ * The routes are kept in an open addressing hash table, with linear probing, keyed by the
+ * (realm, application-id) of the route. The hash of the realm is computed over the lower case
+ * version of its bytes, so when looking up a route, the hash is computed straight off of the
+ * raw Destination-Realm, once, and then combined with the application id for each of the (at most)
+ * four probes. Each entry also keeps the {@link Optional} that is handed out by the lookup so that
+ * looking up a route doesn't allocate anything.
+ */
+public final class DefaultRoutingTable implements RoutingTable {
+
+    private volatile Table table = new Table(List.of());
+
+    public static Route.Builder route(final String realm) {
+        assertNotEmpty(realm, "The realm cannot be null or the empty string");
+        return new RouteBuilder(realm);
+    }
+
+    @Override
+    public Optional<Route> lookup(final DiameterMessage msg) {
+        assertNotNull(msg, "The message cannot be null");
+        final Optional<DestinationRealm> realm = msg.getDestinationRealm();
+        if (realm.isEmpty()) {
+            return Optional.empty();
+        }
+        return table.find(realm.get().getData(), msg.getHeader().getApplicationId());
+    }
+
+    @Override
+    public Optional<Route> lookup(final Buffer realm, final long applicationId) {
+        assertNotNull(realm, "The realm cannot be null");
+        return table.find(realm, applicationId);
+    }
+
+    @Override
+    public RoutingTable add(final Route route) {
+        assertNotNull(route, "The route cannot be null");
+        synchronized (this) {
+            final List<Route> routes = new ArrayList<>(table.routes);
+            final int index = indexOf(routes, route.getRealm(), route.getApplicationId());
+            if (index == -1) {
+                routes.add(route);
+            } else {
+                routes.set(index, route);
+            }
+            table = new Table(routes);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean remove(final String realm, final long applicationId) {
+        assertNotNull(realm, "The realm cannot be null");
+        final String lowerCase = toLowerCase(realm);
+        synchronized (this) {
+            final List<Route> routes = new ArrayList<>(table.routes);
+            final int index = indexOf(routes, lowerCase, applicationId);
+            if (index == -1) {
+                return false;
+            }
+            routes.remove(index);
+            table = new Table(routes);
+            return true;
+        }
+    }
+
+    @Override
+    public RoutingTable replaceAll(final Collection<Route> routes) {
+        assertNotNull(routes, "The routes cannot be null");
+        final List<Route> unique = new ArrayList<>(routes.size());
+        for (final Route route : routes) {
+            assertNotNull(route, "The route cannot be null");
+            final int index = indexOf(unique, route.getRealm(), route.getApplicationId());
+            if (index == -1) {
+                unique.add(route);
+            } else {
+                unique.set(index, route);
+            }
+        }
+
+        final Table newTable = new Table(unique);
+        synchronized (this) {
+            table = newTable;
+        }
+        return this;
+    }
+
+    @Override
+    public List<Route> getRoutes() {
+        return table.routes;
+    }
+
+    @Override
+    public int size() {
+        return table.routes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingTable" + table.routes;
+    }
+
+    private static int indexOf(final List<Route> routes, final String realm, final long applicationId) {
+        for (int i = 0; i < routes.size(); ++i) {
+            final Route route = routes.get(i);
+            if (route.getApplicationId() == applicationId && route.getRealm().equals(realm)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Realms are DNS names and as such, only the ASCII letters are folded.
+     */
+    private static int toLowerCase(final int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static String toLowerCase(final String realm) {
+        final byte[] bytes = realm.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) toLowerCase(bytes[i]);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int hash(final byte[] realm) {
+        int hash = 1;
+        for (final byte b : realm) {
+            hash = 31 * hash + toLowerCase(b);
+        }
+        return hash;
+    }
+
+    private static int hash(final Buffer realm) {
+        int hash = 1;
+        for (int i = 0; i < realm.capacity(); ++i) {
+            hash = 31 * hash + toLowerCase(realm.getByte(i));
+        }
+        return hash;
+    }
+
+    private static int hash(final int realmHash, final long applicationId) {
+        final int h = realmHash * 31 + Long.hashCode(applicationId);
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+        private final List<Route> routes;
+        private final Entry[] entries;
+        private final int mask;
+
+        private Table(final List<Route> routes) {
+            this.routes = List.copyOf(routes);
+
+            // keep the table at most half full so that the probe sequences stay short.
+            final int size = Integer.highestOneBit(Math.max(routes.size(), 4) * 2 - 1) << 1;
+            entries = new Entry[size];
+            mask = size - 1;
+
+            for (final Route route : routes) {
+                final Entry entry = new Entry(route);
+                int slot = entry.hash & mask;
+                while (entries[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                entries[slot] = entry;
+            }
+        }
+
+        private Optional<Route> find(final Buffer realm, final long applicationId) {
+            if (routes.isEmpty()) {
+                return Optional.empty();
+            }
+
+            final int realmHash = hash(realm);
+            Entry entry = probe(realm, realmHash, applicationId);
+            if (entry == null) {
+                entry = probe(realm, realmHash, ANY_APPLICATION);
+            }
+            if (entry == null) {
+                entry = probe(null, Entry.ANY_REALM_HASH, applicationId);
+            }
+            if (entry == null) {
+                entry = probe(null, Entry.ANY_REALM_HASH, ANY_APPLICATION);
+            }
+            return entry == null ? Optional.empty() : entry.optional;
+        }
+
+        /**
+         * @param realm the realm to look for, or null for {@link #ANY_REALM}.
+         */
+        private Entry probe(final Buffer realm, final int realmHash, final long applicationId) {
+            int slot = hash(realmHash, applicationId) & mask;
+            Entry entry;
+            while ((entry = entries[slot]) != null) {
+                if (entry.applicationId == applicationId && entry.realmHash == realmHash && entry.matches(realm)) {
+                    return entry;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private static final int ANY_REALM_HASH = hash(new byte[0]);
+
+        /**
+         * The lower case realm or null if this entry is for {@link #ANY_REALM}.
+         */
+        private final byte[] realm;
+        private final int realmHash;
+        private final long applicationId;
+        private final int hash;
+        private final Optional<Route> optional;
+
+        private Entry(final Route route) {
+            realm = ANY_REALM.equals(route.getRealm()) ? null : toLowerCase(route.getRealm()).getBytes(StandardCharsets.UTF_8);
+            realmHash = realm == null ? ANY_REALM_HASH : DefaultRoutingTable.hash(realm);
+            applicationId = route.getApplicationId();
+            hash = DefaultRoutingTable.hash(realmHash, applicationId);
+            optional = Optional.of(route);
+        }
+
+        private boolean matches(final Buffer other) {
+            if (realm == null || other == null) {
+                return realm == null && other == null;
+            }
+
+            if (realm.length != other.capacity()) {
+                return false;
+            }
+
+            for (int i = 0; i < realm.length; ++i) {
+                if (realm[i] != toLowerCase(other.getByte(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ImmutableRoute implements Route {
+        private final String realm;
+        private final long applicationId;
+        private final Action action;
+        private final List<DiameterIdentity> peers;
+
+        private ImmutableRoute(final String realm, final long applicationId, final Action action,
+                               final List<DiameterIdentity> peers) {
+            this.realm = realm;
+            this.applicationId = applicationId;
+            this.action = action;
+            this.peers = peers;
+        }
+
+        @Override
+        public String getRealm() {
+            return realm;
+        }
+
+        @Override
+        public long getApplicationId() {
+            return applicationId;
+        }
+
+        @Override
+        public Action getAction() {
+            return action;
+        }
+
+        @Override
+        public List<DiameterIdentity> getPeers() {
+            return peers;
+        }
+
+        @Override
+        public String toString() {
+            return "Route[" + realm + ", " + (applicationId == ANY_APPLICATION ? "*" : applicationId)
+                    + ", " + action + ", " + peers + "]";
+        }
+    }
+
+    private static final class RouteBuilder implements Route.Builder {
+        private final String realm;
+        private long applicationId = ANY_APPLICATION;
+        private Action action = Action.RELAY;
+        private final List<DiameterIdentity> peers = new ArrayList<>();
+
+        private RouteBuilder(final String realm) {
+            this.realm = toLowerCase(realm);
+        }
+
+        @Override
+        public Route.Builder withApplicationId(final long applicationId) {
+            assertArgument(applicationId == ANY_APPLICATION || (applicationId >= 0 && applicationId <= 0xFFFFFFFFL),
+                    "The application id must be an unsigned 32 bit value");
+            this.applicationId = applicationId;
+            return this;
+        }
+
+        @Override
+        public Route.Builder withAction(final Action action) {
+            assertNotNull(action, "The action cannot be null");
+            this.action = action;
+            return this;
+        }
+
+        @Override
+        public Route.Builder withPeer(final DiameterIdentity peer) {
+            assertNotNull(peer, "The peer cannot be null");
+            peers.add(peer);
+            return this;
+        }
+
+        @Override
+        public Route.Builder withPeer(final String peer) {
+            assertNotEmpty(peer, "The peer cannot be null or the empty string");
+            return withPeer(DiameterIdentity.parse(peer));
+        }
+
+        @Override
+        public Route build() throws IllegalArgumentException {
+            if (action == Action.LOCAL) {
+                assertArgument(peers.isEmpty(), "A local route cannot have any peers");
+            } else {
+                assertArgument(!peers.isEmpty(), "A " + action + " route must have at least one peer");
+            }
+            return new ImmutableRoute(realm, applicationId, action, List.copyOf(peers));
+        }
+    }
+}
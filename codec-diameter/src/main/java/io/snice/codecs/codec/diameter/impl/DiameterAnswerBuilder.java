@@ -9,6 +9,8 @@ import io.snice.codecs.codec.diameter.avp.api.ResultCode;
 
 import java.util.List;
 
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
 public class DiameterAnswerBuilder extends DiameterMessageBuilder<DiameterAnswer> implements DiameterAnswer.Builder {
 
     public DiameterAnswerBuilder(final ResultCode resultCode) {
@@ -23,6 +25,19 @@ public class DiameterAnswerBuilder extends DiameterMessageBuilder<DiameterAnswer
         super(avpSizeHint, header);
     }
 
+    @Override
+    public DiameterAnswer.Builder withResultCode(final ResultCode resultCode) {
+        addResultCode(resultCode);
+        return this;
+    }
+
+    @Override
+    public DiameterAnswer.Builder withResultCode(final ExperimentalResultCode resultCode) {
+        assertNotNull(resultCode, "The ExperimentalResultCode cannot be null");
+        addExperimentalResult(ExperimentalResultHelper.map(resultCode));
+        return this;
+    }
+
     @Override
     protected DiameterMessageBuilder<DiameterAnswer> internalCopy(DiameterHeader.Builder header) {
         return new DiameterAnswerBuilder(10, header);
@@ -33,7 +48,7 @@ public class DiameterAnswerBuilder extends DiameterMessageBuilder<DiameterAnswer
                                            final short indexOfOriginHost, final short indexOfOriginRealm,
                                            final short indexOfDestinationHost, final short indexOfDestinationRealm,
                                            final short indexResultCode, final short indexExperimentalResultCode) {
-        return new ImmutableDiameterAnswer(message, header, avps, indexOfOriginHost, indexOfOriginRealm,
+        return new ImmutableDiameterAnswer(message, header, avps, AvpIndex.of(avps), indexOfOriginHost, indexOfOriginRealm,
                 indexOfDestinationHost, indexOfDestinationRealm, indexResultCode, indexExperimentalResultCode);
     }
 }
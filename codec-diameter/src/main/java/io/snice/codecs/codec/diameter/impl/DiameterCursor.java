@@ -0,0 +1,341 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.impl.ImmutableAvpHeader;
+import io.snice.codecs.codec.diameter.avp.impl.ImmutableFramedAvp;
+
+import java.util.Optional;
+
+/**
+ * A flyweight over a raw diameter message that allows you to walk through the AVPs
+ * of the message without framing them. All the accessors, both for the {@link DiameterHeader}
+ * fields and for the {@link AvpHeader} of the AVP the cursor is currently positioned at,
+ * read straight out of the underlying buffer so no matter how many AVPs there are in the
+ * message, walking through them does not allocate anything.
+ * <p>
+ * The typical usage is:
+ *
+ * <pre>
+ *     final DiameterCursor cursor = DiameterParser.cursor(buffer);
+ *     while (cursor.next()) {
+ *         if (cursor.getCode() == DestinationRealm.CODE) {
+ *             ...
+ *         }
+ *     }
+ * </pre>
+ * <p>
+ * Note that the cursor itself is the {@link AvpHeader} of the current AVP and as such, it
+ * is only valid until the next call to {@link #next()}. If you need to hold on to an AVP,
+ * then call {@link #toFramedAvp()}, which will frame the current AVP.
+ * <p>
+ * The cursor is not thread safe.
+ */
+public final class DiameterCursor implements AvpHeader {
+
+    private static final int HEADER_LENGTH = 20;
+
+    /**
+     * The full diameter message.
+     */
+    private final Buffer buffer;
+
+    /**
+     * The length of the diameter message as stated in the diameter header.
+     */
+    private final int end;
+
+    /**
+     * The offset of the AVP we are currently positioned at or -1 if {@link #next()} hasn't been
+     * called yet.
+     */
+    private int offset = -1;
+
+    private int nextOffset = HEADER_LENGTH;
+
+    DiameterCursor(final Buffer buffer) throws DiameterParseException {
+        if (buffer.capacity() < HEADER_LENGTH) {
+            throw new DiameterParseException(0, "Cannot be a Diameter message because the header is less than 20 bytes");
+        }
+
+        final int length = buffer.getIntFromThreeOctets(1);
+        if (length < HEADER_LENGTH || length > buffer.capacity()) {
+            throw new DiameterParseException(0, "The length of the Diameter message is " + length
+                    + " but the buffer only contains " + buffer.capacity() + " bytes");
+        }
+
+        this.buffer = buffer;
+        this.end = length;
+    }
+
+    // ----------------------------------------------------------------------
+    // ----------------------- Diameter Header ------------------------------
+    // ----------------------------------------------------------------------
+
+    /**
+     * The total length of the diameter message, as found in the {@link DiameterHeader}.
+     */
+    public int getMessageLength() {
+        return end;
+    }
+
+    public boolean isRequest() {
+        return buffer.getBit7(4);
+    }
+
+    public boolean isAnswer() {
+        return !isRequest();
+    }
+
+    public boolean isProxiable() {
+        return buffer.getBit6(4);
+    }
+
+    public boolean isError() {
+        return buffer.getBit5(4);
+    }
+
+    public boolean isPossiblyRetransmission() {
+        return buffer.getBit4(4);
+    }
+
+    public int getCommandCode() {
+        return buffer.getIntFromThreeOctets(5);
+    }
+
+    public long getApplicationId() {
+        return buffer.getUnsignedInt(8);
+    }
+
+    public long getHopByHopId() {
+        return buffer.getUnsignedInt(12);
+    }
+
+    public long getEndToEndId() {
+        return buffer.getUnsignedInt(16);
+    }
+
+    // ----------------------------------------------------------------------
+    // ---------------------------- Cursor ----------------------------------
+    // ----------------------------------------------------------------------
+
+    /**
+     * Move the cursor to the next AVP.
+     *
+     * @return true if the cursor is now positioned at a new AVP, false if there are no more AVPs.
+     * @throws DiameterParseException in case the next AVP is malformed, e.g. its length
+     *                                goes beyond the end of the message.
+     */
+    public boolean next() throws DiameterParseException {
+        if (nextOffset >= end) {
+            offset = end;
+            return false;
+        }
+
+        if (end - nextOffset < 8) {
+            throw new DiameterParseException(nextOffset, "Unable to read 8 bytes from the buffer, not enough data to frame AVP.");
+        }
+
+        final int length = buffer.getIntFromThreeOctets(nextOffset + 5);
+        final int headerLength = (buffer.getByte(nextOffset + 4) & 0b10000000) == 0b10000000 ? 12 : 8;
+        if (length < headerLength || nextOffset + length > end) {
+            throw new DiameterParseException(nextOffset, "AVP at offset " + nextOffset + " has an invalid length of " + length);
+        }
+
+        offset = nextOffset;
+        nextOffset = offset + length + padding(length);
+        return true;
+    }
+
+    /**
+     * Move the cursor forward until it is positioned at an AVP with the given code.
+     * <p>
+     * Note that only the code is compared, the vendor is ignored, so a vendor specific AVP that happens
+     * to have the same code as the AVP you are looking for is a match too. Use {@link #find(long, long)}
+     * if that matters.
+     *
+     * @return true if an AVP with the given code was found, false if we reached the end of the message.
+     */
+    public boolean find(final long code) throws DiameterParseException {
+        while (next()) {
+            if (getCode() == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the cursor forward until it is positioned at an AVP with the given vendor id and code.
+     *
+     * @param vendorId the vendor id or zero if the AVP isn't vendor specific.
+     * @param code the AVP code.
+     * @return true if such an AVP was found, false if we reached the end of the message.
+     * @see AvpHeader#key(long, long)
+     */
+    public boolean find(final long vendorId, final long code) throws DiameterParseException {
+        final long key = AvpHeader.key(vendorId, code);
+        while (next()) {
+            if (getKey() == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the cursor back to the beginning of the message so that the next call to {@link #next()}
+     * will position the cursor at the very first AVP.
+     */
+    public void reset() {
+        offset = -1;
+        nextOffset = HEADER_LENGTH;
+    }
+
+    /**
+     * The offset, relative to the beginning of the diameter message, of the AVP the cursor
+     * is currently positioned at.
+     */
+    public int getOffset() {
+        ensurePositioned();
+        return offset;
+    }
+
+    /**
+     * The offset, relative to the beginning of the diameter message, of where the data
+     * of the current AVP starts.
+     */
+    public int getDataOffset() {
+        return getOffset() + getHeaderLength();
+    }
+
+    /**
+     * The length of the data of the current AVP (so excluding the AVP header and any padding).
+     */
+    public int getDataLength() {
+        return getLength() - getHeaderLength();
+    }
+
+    /**
+     * The amount of padding following the current AVP.
+     */
+    public int getPadding() {
+        return padding(getLength());
+    }
+
+    /**
+     * Get the data of the current AVP. Note that this will slice the underlying buffer and
+     * as such, does allocate a new {@link Buffer}, although the bytes are not copied.
+     */
+    public Buffer getData() {
+        final int dataOffset = getDataOffset();
+        return buffer.slice(dataOffset, dataOffset + getDataLength());
+    }
+
+    /**
+     * Frame the AVP the cursor is currently positioned at so that it can outlive the cursor.
+     */
+    public FramedAvp toFramedAvp() {
+        final int dataOffset = getDataOffset();
+        final AvpHeader header = new ImmutableAvpHeader(buffer.slice(offset, dataOffset));
+        return new ImmutableFramedAvp(header, buffer.slice(dataOffset, offset + getLength()));
+    }
+
+    /**
+     * Frame the full {@link DiameterMessage} this cursor is walking over.
+     */
+    public DiameterMessage toDiameterMessage() {
+        return DiameterParser.frame(buffer);
+    }
+
+    // ----------------------------------------------------------------------
+    // -------------------- AVP Header of current AVP -----------------------
+    // ----------------------------------------------------------------------
+
+    @Override
+    public int getHeaderLength() {
+        return isVendorSpecific() ? 12 : 8;
+    }
+
+    @Override
+    public long getCode() {
+        ensurePositioned();
+        return buffer.getUnsignedInt(offset);
+    }
+
+    @Override
+    public int getLength() {
+        ensurePositioned();
+        return buffer.getIntFromThreeOctets(offset + 5);
+    }
+
+    @Override
+    public Optional<Long> getVendorId() {
+        final long vendorId = getVendorIdAsLong();
+        return vendorId == NO_VENDOR_ID ? Optional.empty() : Optional.of(vendorId);
+    }
+
+    @Override
+    public long getVendorIdAsLong() {
+        return isVendorSpecific() ? buffer.getUnsignedInt(offset + 8) : NO_VENDOR_ID;
+    }
+
+    @Override
+    public boolean isVendorSpecific() {
+        return (flags() & 0b10000000) == 0b10000000;
+    }
+
+    @Override
+    public boolean isMandatory() {
+        return (flags() & 0b01000000) == 0b01000000;
+    }
+
+    @Override
+    public boolean isProtected() {
+        return (flags() & 0b00100000) == 0b00100000;
+    }
+
+    /**
+     * Note that this will slice the underlying buffer, which allocates a new {@link Buffer}.
+     */
+    @Override
+    public Buffer getBuffer() {
+        ensurePositioned();
+        return buffer.slice(offset, offset + getHeaderLength());
+    }
+
+    @Override
+    public void writeTo(final WritableBuffer out) {
+        getBuffer().writeTo(out);
+    }
+
+    @Override
+    public String toString() {
+        if (offset < 0 || offset >= end) {
+            return "DiameterCursor [Cmd Code: " + getCommandCode() + ", Length: " + end + "]";
+        }
+        return "DiameterCursor [Cmd Code: " + getCommandCode() + ", AVP: " + getCode()
+                + " at offset " + offset + "]";
+    }
+
+    private byte flags() {
+        ensurePositioned();
+        return buffer.getByte(offset + 4);
+    }
+
+    private void ensurePositioned() {
+        if (offset < 0 || offset >= end) {
+            throw new IllegalStateException("The cursor is not positioned at an AVP. Did you call next()?");
+        }
+    }
+
+    private static int padding(final int length) {
+        final int padding = length % 4;
+        return padding == 0 ? 0 : 4 - padding;
+    }
+}
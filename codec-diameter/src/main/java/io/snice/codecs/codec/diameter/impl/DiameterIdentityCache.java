@@ -0,0 +1,222 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+
+import java.util.Arrays;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+/**
+ * An interning cache for the AVPs carrying a DiameterIdentity, i.e. Origin-Host, Origin-Realm,
+ * Destination-Host and Destination-Realm, which the {@link DiameterParser} always parses when
+ * framing a message.
+ * <p>
+ * The set of peers and realms a node talks to is small and stable, so rather than parsing
+ * those AVPs over and over again, the raw bytes of the AVP (header and data) are used as the key
+ * into this cache and if the very same AVP has been seen before, the already parsed AVP is
+ * returned. That parsed AVP is backed by its own copy of the bytes, so it doesn't keep the
+ * message it was first seen in alive, and its DiameterIdentity caches both its hash code and
+ * its String representation, so e.g. a routing table asking for the realm of every message
+ * will get the same String instance back every time.
+ * <p>
+ * The cache is a fixed size, two-way set associative, table and when both slots of a set
+ * are taken, the least recently added one is replaced. There is no locking. The entries are
+ * immutable and, at worst, two threads racing to add an entry means that one of them is lost,
+ * which is fine for a cache.
+ * <p>
+ * Note that the AVPs are compared byte by byte, including the flags of the AVP header,
+ * so two AVPs with the same value but e.g. different M-bits are cached as two different entries.
+ */
+public final class DiameterIdentityCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final DiameterIdentityCache DEFAULT = new DiameterIdentityCache(DEFAULT_CAPACITY);
+
+    /**
+     * A DiameterIdentity is an FQDN, which is limited to 255 octets, plus the AVP header.
+     * Anything longer than that is parsed as usual but never cached.
+     */
+    private static final int MAX_AVP_LENGTH = 255 + 12;
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param capacity the maximum number of AVPs to keep in the cache. Will be rounded up
+     *                 to the nearest power of two.
+     */
+    public DiameterIdentityCache(final int capacity) {
+        assertArgument(capacity >= 2 && capacity <= 1 << 20, "The capacity must be between 2 and 2^20");
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size];
+        mask = (size - 1) & ~1;
+    }
+
+    /**
+     * Get the parsed AVP that is found in the given array.
+     *
+     * @param offset the offset of the AVP within the array.
+     * @param length the length of the AVP, as specified by the AVP header, i.e. excluding any padding.
+     */
+    public FramedAvp intern(final byte[] array, final int offset, final int length) throws DiameterParseException {
+        if (length > MAX_AVP_LENGTH) {
+            return parse(Buffers.wrap(array).slice(offset, offset + length));
+        }
+
+        int hash = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            hash = 31 * hash + array[i];
+        }
+
+        final int set = set(hash);
+        for (int i = set; i <= set + 1; ++i) {
+            final Entry entry = entries[i];
+            if (entry != null && entry.hash == hash
+                    && Arrays.equals(entry.bytes, 0, entry.bytes.length, array, offset, offset + length)) {
+                return entry.avp;
+            }
+        }
+
+        return add(set, hash, Arrays.copyOfRange(array, offset, offset + length));
+    }
+
+    /**
+     * Get the parsed AVP that is found in the given buffer.
+     *
+     * @param offset the offset of the AVP within the buffer.
+     * @param length the length of the AVP, as specified by the AVP header, i.e. excluding any padding.
+     */
+    public FramedAvp intern(final Buffer buffer, final int offset, final int length) throws DiameterParseException {
+        if (length > MAX_AVP_LENGTH) {
+            return parse(buffer.slice(offset, offset + length));
+        }
+
+        final int hash = hash(1, buffer, offset, offset + length);
+        final int set = set(hash);
+        for (int i = set; i <= set + 1; ++i) {
+            final Entry entry = entries[i];
+            if (entry != null && entry.hash == hash && entry.bytes.length == length
+                    && matches(entry.bytes, 0, buffer, offset, offset + length)) {
+                return entry.avp;
+            }
+        }
+
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = buffer.getByte(offset + i);
+        }
+        return add(set, hash, bytes);
+    }
+
+    /**
+     * Get the parsed version of the given, already framed, AVP.
+     */
+    public FramedAvp intern(final FramedAvp avp) throws DiameterParseException {
+        assertNotNull(avp, "The AVP cannot be null");
+        final AvpHeader header = avp.getHeader();
+        final int length = header.getLength();
+        if (length > MAX_AVP_LENGTH) {
+            return avp.ensure();
+        }
+
+        final Buffer headerBytes = header.getBuffer();
+        final Buffer data = avp.getData();
+        final int headerLength = headerBytes.capacity();
+        final int hash = hash(hash(1, headerBytes, 0, headerLength), data, 0, data.capacity());
+        final int set = set(hash);
+        for (int i = set; i <= set + 1; ++i) {
+            final Entry entry = entries[i];
+            if (entry != null && entry.hash == hash && entry.bytes.length == headerLength + data.capacity()
+                    && matches(entry.bytes, 0, headerBytes, 0, headerLength)
+                    && matches(entry.bytes, headerLength, data, 0, data.capacity())) {
+                return entry.avp;
+            }
+        }
+
+        final byte[] bytes = new byte[headerLength + data.capacity()];
+        for (int i = 0; i < headerLength; ++i) {
+            bytes[i] = headerBytes.getByte(i);
+        }
+        for (int i = 0; i < data.capacity(); ++i) {
+            bytes[headerLength + i] = data.getByte(i);
+        }
+        return add(set, hash, bytes);
+    }
+
+    /**
+     * The number of AVPs currently in the cache. Note that this walks through the entire
+     * cache so it is not something to call for every message.
+     */
+    public int size() {
+        int size = 0;
+        for (final Entry entry : entries) {
+            if (entry != null) {
+                ++size;
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public void clear() {
+        Arrays.fill(entries, null);
+    }
+
+    private FramedAvp add(final int set, final int hash, final byte[] bytes) throws DiameterParseException {
+        final Entry entry = new Entry(hash, bytes, parse(Buffers.wrap(bytes)));
+        if (entries[set] == null) {
+            entries[set] = entry;
+        } else {
+            // the most recently added always goes first so the one being
+            // pushed out of the set is the one that has been around the longest.
+            entries[set + 1] = entries[set];
+            entries[set] = entry;
+        }
+        return entry.avp;
+    }
+
+    private int set(final int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static FramedAvp parse(final Buffer avp) throws DiameterParseException {
+        return FramedAvp.frame(avp.toReadableBuffer()).ensure();
+    }
+
+    private static int hash(int hash, final Buffer buffer, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            hash = 31 * hash + buffer.getByte(i);
+        }
+        return hash;
+    }
+
+    private static boolean matches(final byte[] bytes, final int offset, final Buffer buffer, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            if (bytes[offset + i - from] != buffer.getByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final FramedAvp avp;
+
+        private Entry(final int hash, final byte[] bytes, final FramedAvp avp) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.avp = avp;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMetrics;
+
+/**
+ * Keeps track of the installed {@link DiameterMetrics}, if any. See {@link DiameterMetrics#install(DiameterMetrics)}.
+ */
+public final class DiameterInstrumentation {
+
+    private static volatile DiameterMetrics metrics;
+
+    private DiameterInstrumentation() {
+        // only static functions
+    }
+
+    public static void install(final DiameterMetrics metrics) {
+        DiameterInstrumentation.metrics = metrics;
+    }
+
+    /**
+     * The installed metrics or null if no metrics are to be collected.
+     */
+    static DiameterMetrics metrics() {
+        return metrics;
+    }
+}
@@ -1,11 +1,16 @@
 package io.snice.codecs.codec.diameter.impl;
 
 import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
 import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterBufferAllocator;
 import io.snice.codecs.codec.diameter.DiameterHeader;
 import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterMetrics;
 import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
 import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpTemplate;
 import io.snice.codecs.codec.diameter.avp.FramedAvp;
 import io.snice.codecs.codec.diameter.avp.api.DestinationHost;
 import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
@@ -18,15 +23,28 @@ import io.snice.codecs.codec.diameter.avp.api.SessionId;
 import io.snice.codecs.codec.diameter.avp.api.UserName;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static io.snice.preconditions.PreConditions.assertArgument;
 import static io.snice.preconditions.PreConditions.assertNotNull;
 import static io.snice.preconditions.PreConditions.ensureNotNull;
 
 public abstract class DiameterMessageBuilder<T extends DiameterMessage> implements DiameterMessage.Builder<T> {
 
+    /**
+     * AVPs are padded to a 4 byte boundary with zeros so we only ever need
+     * these three, which are shared between all messages.
+     */
+    private static final Buffer[] PADDING = new Buffer[]{
+            null,
+            Buffers.wrap(new byte[1]),
+            Buffers.wrap(new byte[2]),
+            Buffers.wrap(new byte[3])
+    };
+
     private DiameterHeader.Builder header;
 
     /**
@@ -39,6 +57,19 @@ public abstract class DiameterMessageBuilder<T extends DiameterMessage> implemen
 
     private Function<Avp, Avp> onAvpFunction;
 
+    private DiameterBufferAllocator allocator = DiameterBufferAllocator.HEAP;
+
+    /**
+     * The pre-encoded AVPs, if any, and where among the other {@link #avps} they should go.
+     */
+    private AvpTemplate template;
+    private int templatePosition = -1;
+
+    /**
+     * Where in the final list of AVPs the template AVPs start, as figured out when building the message.
+     */
+    private int templateStart = -1;
+
     private short indexOfResultCode = -1;
     private short indexOfExperimentalResult = -1;
     private short indexOfOriginHost = -1;
@@ -123,12 +154,60 @@ public abstract class DiameterMessageBuilder<T extends DiameterMessage> implemen
 
         builderCopy.avps.addAll(avps);
         builderCopy.onAvpFunction = onAvpFunction;
+        builderCopy.allocator = allocator;
+        builderCopy.template = template;
+        builderCopy.templatePosition = templatePosition;
 
         return builderCopy;
     }
 
     protected abstract DiameterMessageBuilder<T> internalCopy(DiameterHeader.Builder header);
 
+    @Override
+    public DiameterMessage.Builder<T> reset() {
+        // clear keeps the capacity of the list, which is the point of re-using the builder.
+        avps.clear();
+        header = null;
+        onAvpFunction = null;
+        template = null;
+        templatePosition = -1;
+
+        indexOfResultCode = -1;
+        indexOfExperimentalResult = -1;
+        indexOfOriginHost = -1;
+        indexOfOriginRealm = -1;
+        indexOfDestinationHost = -1;
+        indexOfDestinationRealm = -1;
+        indexOfUserName = -1;
+        indexOfSessionId = -1;
+        return this;
+    }
+
+    @Override
+    public DiameterMessage.Builder<T> withBufferAllocator(final DiameterBufferAllocator allocator) {
+        assertNotNull(allocator, "The buffer allocator cannot be null");
+        this.allocator = allocator;
+        return this;
+    }
+
+    @Override
+    public DiameterMessage.Builder<T> withAvpTemplate(final AvpTemplate template) {
+        assertNotNull(template, "The AVP template cannot be null");
+        this.template = template;
+        this.templatePosition = avps.size();
+        return this;
+    }
+
+    protected void addResultCode(final ResultCode resultCode) {
+        assertNotNull(resultCode, "The ResultCode cannot be null");
+        indexOfResultCode = addTrackedAvp(indexOfResultCode, resultCode);
+    }
+
+    protected void addExperimentalResult(final ExperimentalResult experimentalResult) {
+        assertNotNull(experimentalResult, "The ExperimentalResult cannot be null");
+        indexOfExperimentalResult = addTrackedAvp(indexOfExperimentalResult, experimentalResult);
+    }
+
     // ----------------------------------------------------------------------
     // -------------------------- Origin Host -------------------------------
     // ----------------------------------------------------------------------
@@ -283,48 +362,186 @@ public abstract class DiameterMessageBuilder<T extends DiameterMessage> implemen
 
     @Override
     public T build() {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        final long start = metrics == null ? 0 : System.nanoTime();
+
         ensureDiameterHeader();
 
-        // the diameter message header is 20 bytes so we'll start there.
-        int msgSize = 20;
+        final List<FramedAvp> finalAvps = processFinalAvps();
+
+        final int msgSize = calculateMessageSize(finalAvps);
+
+        // Note: if you want to avoid copying all the AVPs, use buildGathered instead.
+        final WritableBuffer writable = allocator.allocate(msgSize);
+        header.withLength(msgSize);
+        final DiameterHeader finalHeader = header.build();
+        encode(writable, finalHeader, finalAvps);
+
+        // the allocator may have handed us a larger buffer than we asked for
+        final Buffer written = writable.build();
+        final Buffer buffer = written.capacity() == msgSize ? written : written.slice(msgSize);
+
+        final T msg;
+        if (templateStart != -1) {
+            // the template may contain some of the AVPs we keep track of and it has also
+            // shifted the position of all the AVPs following it.
+            msg = internalBuild(buffer, finalHeader, finalAvps,
+                    lastIndexOf(finalAvps, OriginHost.CODE), lastIndexOf(finalAvps, OriginRealm.CODE),
+                    lastIndexOf(finalAvps, DestinationHost.CODE), lastIndexOf(finalAvps, DestinationRealm.CODE),
+                    lastIndexOf(finalAvps, ResultCode.CODE), lastIndexOf(finalAvps, ExperimentalResult.CODE));
+        } else {
+            msg = internalBuild(buffer, finalHeader, finalAvps, indexOfOriginHost, indexOfOriginRealm,
+                    indexOfDestinationHost, indexOfDestinationRealm, indexOfResultCode, indexOfExperimentalResult);
+        }
+
+        if (metrics != null) {
+            metrics.onBuilt(finalHeader, finalAvps.size(), System.nanoTime() - start);
+        }
+        return msg;
+    }
+
+    @Override
+    public int writeTo(final WritableBuffer out) {
+        assertNotNull(out, "The buffer to write the message to cannot be null");
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        final long start = metrics == null ? 0 : System.nanoTime();
+
+        ensureDiameterHeader();
+
+        final List<FramedAvp> finalAvps = processFinalAvps();
+        final int msgSize = calculateMessageSize(finalAvps);
+        assertArgument(out.getWritableBytes() >= msgSize, "The buffer only has room for "
+                + out.getWritableBytes() + " bytes but the message is " + msgSize + " bytes");
+
+        header.withLength(msgSize);
+        final DiameterHeader finalHeader = header.build();
+        encode(out, finalHeader, finalAvps);
 
+        if (metrics != null) {
+            metrics.onBuilt(finalHeader, finalAvps.size(), System.nanoTime() - start);
+        }
+        return msgSize;
+    }
+
+    private void encode(final WritableBuffer writable, final DiameterHeader finalHeader, final List<FramedAvp> finalAvps) {
+        finalHeader.getBuffer().writeTo(writable);
+        for (int i = 0; i < finalAvps.size(); ++i) {
+            if (i == templateStart) {
+                // the template is already encoded so write it all in one go
+                template.getBuffer().writeTo(writable);
+                i += template.getAvps().size() - 1;
+            } else {
+                finalAvps.get(i).writeTo(writable);
+            }
+        }
+    }
+
+    @Override
+    public GatheredDiameterMessage buildGathered() {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        final long start = metrics == null ? 0 : System.nanoTime();
+
+        ensureDiameterHeader();
+
+        final List<FramedAvp> finalAvps = processFinalAvps();
+        final int msgSize = calculateMessageSize(finalAvps);
+        header.withLength(msgSize);
+        final DiameterHeader finalHeader = header.build();
+
+        // every AVP is already encoded, we just need to point to the header and data of each one of them.
+        final List<Buffer> buffers = new ArrayList<>(1 + finalAvps.size() * 2);
+        buffers.add(finalHeader.getBuffer());
+        for (int i = 0; i < finalAvps.size(); ++i) {
+            if (i == templateStart) {
+                buffers.add(template.getBuffer());
+                i += template.getAvps().size() - 1;
+                continue;
+            }
+
+            final FramedAvp avp = finalAvps.get(i);
+            buffers.add(avp.getHeader().getBuffer());
+
+            final Buffer data = avp.getData();
+            if (!data.isEmpty()) {
+                buffers.add(data);
+            }
+
+            final int padding = avp.getPadding();
+            if (padding > 0) {
+                buffers.add(PADDING[padding]);
+            }
+        }
+
+        if (metrics != null) {
+            metrics.onBuilt(finalHeader, finalAvps.size(), System.nanoTime() - start);
+        }
+        return new ImmutableGatheredDiameterMessage(finalHeader, Collections.unmodifiableList(buffers));
+    }
+
+    private List<FramedAvp> processFinalAvps() {
         // TODO: following my SIP implementation here and I'm not sure if in Diameter
         // there are AVPs that has to be grouped together etc and if so, we have to deal
         // with in the same way. See the SipMessageBuilder in pkts.io (soon to be copied
         // to this project too)
         final int avpCount = avps.size();
-        final List<FramedAvp> finalAvps = new ArrayList<>(avpCount);
+        final List<FramedAvp> finalAvps = new ArrayList<>(template == null ? avpCount : avpCount + template.getAvps().size());
+        templateStart = -1;
 
         // Note, the avps.size() makes no sense at this point since we just did avpCount above.
         // However, there is a reason for this and has to do with how SIP works and since i'm just
         // copying that concept, I'm keeping it as is and then we'll see if in Diameter there are
         // AVPs, like e.g. the Via-headers in SIP, that must be grouped
         for (int i = 0; i < avps.size(); ++i) {
+            if (i == templatePosition) {
+                addTemplate(finalAvps);
+            }
+
             final Avp avp = avps.get(i);
 
             if (avp != null) {
                 final Avp finalAvp = processFinalAvp((short) finalAvps.size(), avp);
                 if (finalAvp != null) {
-                    // padding is not part of the length field according to spec so need to add it to the
-                    // overall buffer size since we will be writing zeros into those padded slots.
-                    // See RFC 6733 section 4
-                    msgSize += avp.getLength() + avp.getPadding();
                     finalAvps.add(finalAvp);
                 }
             }
         }
 
-        // TODO: instead of copying over, create a composite buffer
-        final WritableBuffer writable = WritableBuffer.of(msgSize);
-        header.withLength(msgSize);
-        final DiameterHeader finalHeader = header.build();
-        finalHeader.getBuffer().writeTo(writable);
-        finalAvps.forEach(avp -> avp.writeTo(writable));
+        if (template != null && templateStart == -1) {
+            addTemplate(finalAvps);
+        }
+
+        return finalAvps;
+    }
 
-        final Buffer buffer = writable.build();
+    /**
+     * Note that the AVPs of the template are frozen and as such, they will not be
+     * processed by any {@link #onAvp(Function)} function.
+     */
+    private void addTemplate(final List<FramedAvp> finalAvps) {
+        templateStart = finalAvps.size();
+        finalAvps.addAll(template.getAvps());
+    }
 
-        return internalBuild(buffer, finalHeader, finalAvps, indexOfOriginHost, indexOfOriginRealm,
-                indexOfDestinationHost, indexOfDestinationRealm, indexOfResultCode, indexOfExperimentalResult);
+    private static short lastIndexOf(final List<FramedAvp> avps, final long key) {
+        for (int i = avps.size() - 1; i >= 0; --i) {
+            if (avps.get(i).getKey() == key) {
+                return (short) i;
+            }
+        }
+        return -1;
+    }
+
+    private static int calculateMessageSize(final List<FramedAvp> avps) {
+        // the diameter message header is 20 bytes so we'll start there.
+        int msgSize = 20;
+        for (int i = 0; i < avps.size(); ++i) {
+            // padding is not part of the length field according to spec so need to add it to the
+            // overall buffer size since we will be writing zeros into those padded slots.
+            // See RFC 6733 section 4
+            final FramedAvp avp = avps.get(i);
+            msgSize += avp.getLength() + avp.getPadding();
+        }
+        return msgSize;
     }
 
     /**
@@ -358,10 +575,22 @@ public abstract class DiameterMessageBuilder<T extends DiameterMessage> implemen
     }
 
     private void processAvp(final Avp avp) {
-        if (avp.getCode() == OriginHost.CODE) {
+        // only base protocol AVPs are tracked, for which the key is the same as the code.
+        // Other than the Origin-Host and Origin-Realm, which are replaced, an AVP that is added
+        // more than once is kept as is and we just keep track of the last one.
+        final long key = avp.getKey();
+        if (key == OriginHost.CODE) {
             indexOfOriginHost = addTrackedAvp(indexOfOriginHost, avp);
-        } else if (avp.getCode() == OriginRealm.CODE) {
+        } else if (key == OriginRealm.CODE) {
             indexOfOriginRealm = addTrackedAvp(indexOfOriginRealm, avp);
+        } else if (key == DestinationHost.CODE) {
+            indexOfDestinationHost = addAvp(avp.ensure());
+        } else if (key == DestinationRealm.CODE) {
+            indexOfDestinationRealm = addAvp(avp.ensure());
+        } else if (key == ResultCode.CODE) {
+            indexOfResultCode = addAvp(avp.ensure());
+        } else if (key == ExperimentalResult.CODE) {
+            indexOfExperimentalResult = addAvp(avp.ensure());
         } else {
             addAvp(avp);
         }
@@ -1,10 +1,15 @@
 package io.snice.codecs.codec.diameter.impl;
 
 import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
 import io.snice.buffer.ReadableBuffer;
 import io.snice.codecs.codec.diameter.DiameterHeader;
 import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterMetrics;
 import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterStreamDecoder;
+import io.snice.codecs.codec.diameter.DiameterViolation;
+import io.snice.codecs.codec.diameter.DiameterViolations;
 import io.snice.codecs.codec.diameter.avp.AvpHeader;
 import io.snice.codecs.codec.diameter.avp.FramedAvp;
 import io.snice.codecs.codec.diameter.avp.api.DestinationHost;
@@ -13,20 +18,44 @@ import io.snice.codecs.codec.diameter.avp.api.ExperimentalResult;
 import io.snice.codecs.codec.diameter.avp.api.OriginHost;
 import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
 import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
 import io.snice.codecs.codec.diameter.avp.impl.ImmutableAvpHeader;
 import io.snice.codecs.codec.diameter.avp.impl.ImmutableFramedAvp;
+import io.snice.functional.Either;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * @author jonas@jonasborjesson.com
  */
 public class DiameterParser {
 
+    /**
+     * The Origin-Host/Realm and Destination-Host/Realm AVPs are always parsed and since
+     * they are the same for every message from the same peer, they are interned.
+     */
+    private static final DiameterIdentityCache IDENTITIES = DiameterIdentityCache.DEFAULT;
+
     public static DiameterMessage frame(final Buffer buffer) throws DiameterParseException {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        if (metrics == null) {
+            return frameMessage(buffer);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final DiameterMessage msg = frameMessage(buffer);
+            metrics.onFramed(msg.getHeader(), msg.getAllAvps().size(), System.nanoTime() - start);
+            return msg;
+        } catch (final DiameterParseException e) {
+            metrics.onFrameFailure(e);
+            throw e;
+        }
+    }
+
+    private static DiameterMessage frameMessage(final Buffer buffer) throws DiameterParseException {
 
         // this is somewhat of an annoying side effect of how the Buffer is structured.
         // For a readable buffer, which inherits from Buffer, the toSlice is affected by where the reader index is.
@@ -36,13 +65,430 @@ public class DiameterParser {
         // so if the passed in Buffer above is actually a ReadableBuffer, it will convert it
         // to a proper immutable Buffer.
         final var orig = buffer.toBuffer();
-        final ReadableBuffer readable = buffer.toReadableBuffer();
-        final DiameterHeader header = frameHeader(readable);
+        final DiameterHeader header = frameHeader(orig.toReadableBuffer());
+        final Buffer entireMsg = sliceMessage(orig, header);
+        final ImmutableDiameterMessage.FramedAvps avps = frameAvps(entireMsg, header);
+
+        if (header.isRequest()) {
+            return new ImmutableDiameterRequest(entireMsg, header, avps);
+        }
+        return new ImmutableDiameterAnswer(entireMsg, header, avps);
+    }
+
+    /**
+     * Frame the {@link DiameterMessage} that starts at the given offset of the array. Rather than reading
+     * the AVPs through a {@link ReadableBuffer}, the message is first scanned into an {@link AvpTable},
+     * which then is used to slice out the AVPs.
+     * <p>
+     * Note that the array is not copied so it must not be modified after being handed over.
+     */
+    public static DiameterMessage frame(final byte[] array, final int offset) throws DiameterParseException {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        if (metrics == null) {
+            return frameMessage(array, offset);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final DiameterMessage msg = frameMessage(array, offset);
+            metrics.onFramed(msg.getHeader(), msg.getAllAvps().size(), System.nanoTime() - start);
+            return msg;
+        } catch (final DiameterParseException e) {
+            metrics.onFrameFailure(e);
+            throw e;
+        }
+    }
+
+    private static DiameterMessage frameMessage(final byte[] array, final int offset) throws DiameterParseException {
+        final AvpTable table = AvpTable.scan(array, offset);
+        final int length = table.getMessageLength();
+        final Buffer msg = Buffers.wrap(array).slice(offset, offset + length);
+        final DiameterHeader header = new ImmutableDiameterHeader(msg.slice(20));
+
+        final int count = table.size();
+        final List<FramedAvp> list = new ArrayList<>(count);
+        final AvpIndex.Builder index = AvpIndex.builder(count);
+
+        short indexOfResultCode = -1;
+        short indexOfExperimentalCode = -1;
+        short indexOfOrigHost = -1;
+        short indexOfOrigRealm = -1;
+        short indexOfDestHost = -1;
+        short indexOfDestRealm = -1;
+        int sessionIdHash = 0;
+        // only the first Session-Id counts, same as DiameterMessage#getSessionIdHash
+        boolean hasSessionId = false;
+
+        for (int i = 0; i < count; ++i) {
+            final int avpOffset = table.getOffset(i);
+            final int dataOffset = avpOffset + table.getHeaderLength(i);
+            final long key = table.getKey(i);
+            final int avpLength = table.getLength(i);
+
+            // the identity AVPs are looked up straight from the bytes so for
+            // the peers and realms we've seen before, nothing is allocated.
+            final FramedAvp avp;
+            if (OriginHost.CODE == key) {
+                indexOfOrigHost = (short) i;
+                avp = IDENTITIES.intern(array, offset + avpOffset, avpLength);
+            } else if (OriginRealm.CODE == key) {
+                indexOfOrigRealm = (short) i;
+                avp = IDENTITIES.intern(array, offset + avpOffset, avpLength);
+            } else if (DestinationRealm.CODE == key) {
+                indexOfDestRealm = (short) i;
+                avp = IDENTITIES.intern(array, offset + avpOffset, avpLength);
+            } else if (DestinationHost.CODE == key) {
+                indexOfDestHost = (short) i;
+                avp = IDENTITIES.intern(array, offset + avpOffset, avpLength);
+            } else if (ResultCode.CODE == key) {
+                indexOfResultCode = (short) i;
+                avp = sliceAvp(msg, avpOffset, dataOffset, avpOffset + avpLength).ensure();
+            } else if (ExperimentalResult.CODE == key) {
+                indexOfExperimentalCode = (short) i;
+                avp = sliceAvp(msg, avpOffset, dataOffset, avpOffset + avpLength).ensure();
+            } else if (SessionId.CODE == key && !hasSessionId) {
+                hasSessionId = true;
+                sessionIdHash = SessionIdHash.of(array, offset + dataOffset, offset + avpOffset + avpLength);
+                avp = sliceAvp(msg, avpOffset, dataOffset, avpOffset + avpLength);
+            } else {
+                avp = sliceAvp(msg, avpOffset, dataOffset, avpOffset + avpLength);
+            }
+
+            list.add(avp);
+            index.add(key);
+        }
+
+        final ImmutableDiameterMessage.FramedAvps avps = new ImmutableDiameterMessage.FramedAvps(list, index.build(),
+                indexOfOrigHost, indexOfOrigRealm, indexOfDestHost, indexOfDestRealm, indexOfResultCode, indexOfExperimentalCode,
+                sessionIdHash);
+
+        if (header.isRequest()) {
+            return new ImmutableDiameterRequest(msg, header, avps);
+        }
+        return new ImmutableDiameterAnswer(msg, header, avps);
+    }
+
+    /**
+     * Frame the message while, in the very same pass, validating it according to the basic rules of
+     * RFC 6733, which is cheaper than framing it and then calling {@link DiameterMessage#validate()}.
+     * The following is checked:
+     * <ul>
+     *     <li>the version and length of the header, where the length must be a multiple of four,
+     *     and that the 'E' bit isn't set on a request.</li>
+     *     <li>the length of every AVP and that its padding is all zeros.</li>
+     *     <li>the 'M' bit of the base protocol AVPs, as specified in RFC 6733 section 4.5.</li>
+     *     <li>that there is exactly one Origin-Host and Origin-Realm and, for answers, a Result-Code
+     *     or Experimental-Result but no Destination-Host nor Destination-Realm.</li>
+     * </ul>
+     * Only the top level AVPs are checked, the AVPs within grouped AVPs are not, except for the
+     * Experimental-Result. The AVPs that are parsed while framing, i.e. the identities, the Result-Code
+     * and the Experimental-Result, are checked before being parsed so that a malformed one is reported
+     * as a violation rather than blowing up.
+     * <p>
+     * A header, or an AVP, with a length that can't be trusted stops the validation right there since
+     * there is no way to find the next AVP. Everything else is collected so that all the violations of
+     * the message are reported at once.
+     *
+     * @return the framed message or, if it broke any of the rules, the violations.
+     */
+    public static Either<DiameterViolations, DiameterMessage> frameValidated(final Buffer buffer) {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        if (metrics == null) {
+            return frameValidatedMessage(buffer);
+        }
+
+        final long start = System.nanoTime();
+        final Either<DiameterViolations, DiameterMessage> result = frameValidatedMessage(buffer);
+        if (result.isRight()) {
+            final DiameterMessage msg = result.get();
+            metrics.onFramed(msg.getHeader(), msg.getAllAvps().size(), System.nanoTime() - start);
+        } else {
+            metrics.onFrameViolations(headerOrNull(buffer), result.getLeft());
+        }
+        return result;
+    }
+
+    /**
+     * The header of a message that failed validation, as long as there is a diameter header to speak of.
+     */
+    private static DiameterHeader headerOrNull(final Buffer buffer) {
+        final var orig = buffer.toBuffer();
+        if (orig.capacity() < 20 || orig.getUnsignedByte(0) != 1) {
+            return null;
+        }
+        return new ImmutableDiameterHeader(orig.slice(20));
+    }
+
+    private static Either<DiameterViolations, DiameterMessage> frameValidatedMessage(final Buffer buffer) {
+        final var orig = buffer.toBuffer();
+        if (orig.capacity() < 20) {
+            return Either.left(add(null, DiameterViolation.INVALID_MESSAGE_LENGTH, 0, orig.capacity()));
+        }
+
+        final int version = orig.getUnsignedByte(0);
+        if (version != 1) {
+            return Either.left(add(null, DiameterViolation.UNSUPPORTED_VERSION, 0, version));
+        }
+
+        final int length = orig.getIntFromThreeOctets(1);
+        if (length < 20 || length > orig.capacity() || (length & 0b11) != 0) {
+            return Either.left(add(null, DiameterViolation.INVALID_MESSAGE_LENGTH, 1, length));
+        }
+
+        final Buffer msg = orig.slice(length);
+        final DiameterHeader header = new ImmutableDiameterHeader(msg.slice(20));
+        final boolean isAnswer = header.isAnswer();
+
+        PackedDiameterViolations violations = null;
+        if (!isAnswer && header.isError()) {
+            violations = add(violations, DiameterViolation.INVALID_HEADER_BITS, 4, header.getCommandCode());
+        }
+
+        final List<FramedAvp> list = new ArrayList<>();
+        final AvpIndex.Builder index = AvpIndex.builder(16);
+
+        short indexOfResultCode = -1;
+        short indexOfExperimentalCode = -1;
+        short indexOfOrigHost = -1;
+        short indexOfOrigRealm = -1;
+        short indexOfDestHost = -1;
+        short indexOfDestRealm = -1;
+        int sessionIdHash = 0;
+        boolean hasSessionId = false;
+
+        int avpOffset = 20;
+        while (avpOffset < length) {
+            // the length of the message is a multiple of four so there are at least four bytes left.
+            final long code = msg.getUnsignedInt(avpOffset);
+            if (length - avpOffset < 8) {
+                return Either.left(add(violations, DiameterViolation.INVALID_AVP_LENGTH, avpOffset, code));
+            }
+
+            final byte flags = msg.getByte(avpOffset + 4);
+            final boolean isVendorSpecific = (flags & 0b10000000) == 0b10000000;
+            final int headerLength = isVendorSpecific ? 12 : 8;
+            final int avpLength = msg.getIntFromThreeOctets(avpOffset + 5);
+            if (avpLength < headerLength || avpOffset + avpLength > length) {
+                return Either.left(add(violations, DiameterViolation.INVALID_AVP_LENGTH, avpOffset, code));
+            }
+
+            final int end = avpOffset + avpLength;
+            final int next = end + ((4 - (avpLength & 0b11)) & 0b11);
+            for (int i = end; i < next; ++i) {
+                if (msg.getByte(i) != 0) {
+                    violations = add(violations, DiameterViolation.INVALID_AVP_PADDING, avpOffset, code);
+                    break;
+                }
+            }
+
+            final long key;
+            if (isVendorSpecific) {
+                key = AvpHeader.key(msg.getUnsignedInt(avpOffset + 8), code);
+            } else {
+                key = code;
+                if (!BaseAvpRules.isMandatoryBitValid(code, (flags & 0b01000000) == 0b01000000)) {
+                    violations = add(violations, DiameterViolation.INVALID_AVP_BITS, avpOffset, code);
+                }
+            }
 
-        // don't need to do this. just keep going..
-        final ReadableBuffer avps = readable.readBytes(header.getLength() - 20).toReadableBuffer();
+            final int dataOffset = avpOffset + headerLength;
+            final short position = (short) list.size();
+
+            // an empty DiameterIdentity can't be parsed
+            if (end == dataOffset && isIdentity(key)) {
+                violations = add(violations, DiameterViolation.INVALID_AVP_LENGTH, avpOffset, code);
+            }
+
+            final FramedAvp avp;
+            if (OriginHost.CODE == key) {
+                if (indexOfOrigHost != -1) {
+                    violations = add(violations, DiameterViolation.AVP_OCCURS_TOO_MANY_TIMES, avpOffset, code);
+                }
+                indexOfOrigHost = position;
+                avp = internIdentity(msg, avpOffset, dataOffset, end);
+            } else if (OriginRealm.CODE == key) {
+                if (indexOfOrigRealm != -1) {
+                    violations = add(violations, DiameterViolation.AVP_OCCURS_TOO_MANY_TIMES, avpOffset, code);
+                }
+                indexOfOrigRealm = position;
+                avp = internIdentity(msg, avpOffset, dataOffset, end);
+            } else if (DestinationRealm.CODE == key) {
+                if (isAnswer) {
+                    violations = add(violations, DiameterViolation.AVP_NOT_ALLOWED, avpOffset, code);
+                }
+                indexOfDestRealm = position;
+                avp = internIdentity(msg, avpOffset, dataOffset, end);
+            } else if (DestinationHost.CODE == key) {
+                if (isAnswer) {
+                    violations = add(violations, DiameterViolation.AVP_NOT_ALLOWED, avpOffset, code);
+                }
+                indexOfDestHost = position;
+                avp = internIdentity(msg, avpOffset, dataOffset, end);
+            } else if (ResultCode.CODE == key) {
+                indexOfResultCode = position;
+                if (end - dataOffset == 4) {
+                    avp = sliceAvp(msg, avpOffset, dataOffset, end).ensure();
+                } else {
+                    violations = add(violations, DiameterViolation.INVALID_AVP_LENGTH, avpOffset, code);
+                    avp = sliceAvp(msg, avpOffset, dataOffset, end);
+                }
+            } else if (ExperimentalResult.CODE == key) {
+                indexOfExperimentalCode = position;
+                if (ResultCodes.isValidExperimentalResult(msg, dataOffset, end)) {
+                    avp = sliceAvp(msg, avpOffset, dataOffset, end).ensure();
+                } else {
+                    violations = add(violations, DiameterViolation.INVALID_AVP_LENGTH, avpOffset, code);
+                    avp = sliceAvp(msg, avpOffset, dataOffset, end);
+                }
+            } else if (SessionId.CODE == key && !hasSessionId) {
+                hasSessionId = true;
+                sessionIdHash = SessionIdHash.of(msg, dataOffset, end);
+                avp = sliceAvp(msg, avpOffset, dataOffset, end);
+            } else {
+                avp = sliceAvp(msg, avpOffset, dataOffset, end);
+            }
+
+            list.add(avp);
+            index.add(key);
+            avpOffset = next;
+        }
+
+        if (indexOfOrigHost == -1) {
+            violations = add(violations, DiameterViolation.MISSING_AVP, 0, OriginHost.CODE);
+        }
+
+        if (indexOfOrigRealm == -1) {
+            violations = add(violations, DiameterViolation.MISSING_AVP, 0, OriginRealm.CODE);
+        }
+
+        if (isAnswer && indexOfResultCode == -1 && indexOfExperimentalCode == -1) {
+            violations = add(violations, DiameterViolation.MISSING_AVP, 0, ResultCode.CODE);
+        }
+
+        if (violations != null) {
+            return Either.left(violations);
+        }
+
+        final ImmutableDiameterMessage.FramedAvps avps = new ImmutableDiameterMessage.FramedAvps(list, index.build(),
+                indexOfOrigHost, indexOfOrigRealm, indexOfDestHost, indexOfDestRealm, indexOfResultCode, indexOfExperimentalCode,
+                sessionIdHash);
+
+        if (isAnswer) {
+            return Either.right(new ImmutableDiameterAnswer(msg, header, avps));
+        }
+        return Either.right(new ImmutableDiameterRequest(msg, header, avps));
+    }
+
+    /**
+     * The violations are only allocated once the first one is found, so a valid message doesn't pay for them.
+     */
+    private static PackedDiameterViolations add(final PackedDiameterViolations violations, final DiameterViolation violation,
+                                                final int offset, final long value) {
+        final PackedDiameterViolations v = violations != null ? violations : new PackedDiameterViolations();
+        v.add(violation, offset, value);
+        return v;
+    }
+
+    private static boolean isIdentity(final long key) {
+        return OriginHost.CODE == key || OriginRealm.CODE == key || DestinationRealm.CODE == key || DestinationHost.CODE == key;
+    }
+
+    /**
+     * An identity AVP without any data has already been reported as a violation, so it is only sliced out
+     * since parsing it would blow up.
+     */
+    private static FramedAvp internIdentity(final Buffer msg, final int avpOffset, final int dataOffset, final int end) {
+        if (end == dataOffset) {
+            return sliceAvp(msg, avpOffset, dataOffset, end);
+        }
+        return IDENTITIES.intern(msg, avpOffset, end - avpOffset);
+    }
+
+    static FramedAvp sliceAvp(final Buffer msg, final int avpOffset, final int dataOffset, final int end) {
+        final AvpHeader avpHeader = new ImmutableAvpHeader(msg.slice(avpOffset, dataOffset));
+        return new ImmutableFramedAvp(avpHeader, msg.slice(dataOffset, end));
+    }
+
+    /**
+     * Frame the {@link DiameterMessage} but only the {@link DiameterHeader}. The AVPs will not be
+     * framed until they are asked for, which is useful for e.g. a relay agent that only needs to look at
+     * the header and perhaps the Destination-Realm in order to forward the message, and then
+     * never look at the other AVPs at all.
+     * <p>
+     * The Origin-Host/Realm, Destination-Host/Realm, Result-Code and Experimental-Result AVPs
+     * are resolved without framing all the other AVPs, by a scan that only reads the AVP headers,
+     * the first time any of them is asked for.
+     * <p>
+     * Note that since the AVPs are not framed up front, a message with corrupt AVPs will not
+     * be detected until those AVPs are accessed, at which point a {@link DiameterParseException}
+     * will be thrown.
+     */
+    public static DiameterMessage frameLazy(final Buffer buffer) throws DiameterParseException {
+        final DiameterMetrics metrics = DiameterInstrumentation.metrics();
+        if (metrics == null) {
+            return frameLazyMessage(buffer);
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final DiameterMessage msg = frameLazyMessage(buffer);
+            metrics.onFramed(msg.getHeader(), -1, System.nanoTime() - start);
+            return msg;
+        } catch (final DiameterParseException e) {
+            metrics.onFrameFailure(e);
+            throw e;
+        }
+    }
+
+    private static DiameterMessage frameLazyMessage(final Buffer buffer) throws DiameterParseException {
+        final var orig = buffer.toBuffer();
+        final DiameterHeader header = frameHeader(orig.toReadableBuffer());
+        final Buffer entireMsg = sliceMessage(orig, header);
+
+        if (header.isRequest()) {
+            return new ImmutableDiameterRequest(entireMsg, header);
+        }
+        return new ImmutableDiameterAnswer(entireMsg, header);
+    }
+
+    private static Buffer sliceMessage(final Buffer buffer, final DiameterHeader header) throws DiameterParseException {
+        if (header.getLength() < 20 || header.getLength() > buffer.capacity()) {
+            throw new DiameterParseException(1, "The length of the Diameter message is " + header.getLength()
+                    + " but the buffer only contains " + buffer.capacity() + " bytes");
+        }
+        return buffer.slice(header.getLength());
+    }
+
+    /**
+     * Copy the given message into its compact form, which is meant for messages that are kept around
+     * for a long time, e.g. the last request of every session. The raw message is copied into an array
+     * of its exact size, so that it doesn't keep e.g. a large network buffer alive, and, rather than
+     * keeping all the framed AVPs around, only the offset of every AVP is kept. The AVPs are then sliced
+     * out of the array every time they are asked for.
+     *
+     * @see DiameterMessage#compact()
+     */
+    public static DiameterMessage compact(final DiameterMessage msg) throws DiameterParseException {
+        final byte[] array = CompactAvps.copy(msg.getBuffer());
+        final CompactAvps avps = CompactAvps.scan(array);
+        final Buffer raw = Buffers.wrap(array);
+        final DiameterHeader header = new ImmutableDiameterHeader(raw.slice(20));
+        if (header.isRequest()) {
+            return new ImmutableDiameterRequest(raw, header, avps);
+        }
+        return new ImmutableDiameterAnswer(raw, header, avps);
+    }
+
+    /**
+     * Frame all the AVPs of the given diameter message.
+     *
+     * @param msg the full diameter message, including the header.
+     */
+    static ImmutableDiameterMessage.FramedAvps frameAvps(final Buffer msg, final DiameterHeader header) throws DiameterParseException {
+        final ReadableBuffer avps = msg.slice(20, header.getLength()).toReadableBuffer();
 
         final List<FramedAvp> list = new ArrayList<>(); // TODO: what's a sensible default?
+        final AvpIndex.Builder index = AvpIndex.builder(16);
 
         // certain AVPs that are used in almost all messages we want to keep
         // track of since most applications will absolutely need them.
@@ -52,32 +498,46 @@ public class DiameterParser {
         short indexOfOrigRealm = -1;
         short indexOfDestHost = -1;
         short indexOfDestRealm = -1;
+        int sessionIdHash = 0;
+        boolean hasSessionId = false;
 
         while (avps.getReadableBytes() > 0) {
             final int readerIndex = avps.getReaderIndex();
             FramedAvp avp = FramedAvp.frame(avps);
 
-            if (OriginHost.CODE == avp.getCode()) {
+            // the AVPs we keep track of are all base protocol AVPs, i.e. not vendor specific,
+            // in which case the key is the same as the code. A vendor specific AVP that happens
+            // to share the code of one of them must not be mistaken for it.
+            final long key = avp.getKey();
+
+            if (OriginHost.CODE == key) {
                 indexOfOrigHost = (short) list.size();
-                avp = avp.ensure();
-            } else if (OriginRealm.CODE == avp.getCode()) {
+                avp = IDENTITIES.intern(avp);
+            } else if (OriginRealm.CODE == key) {
                 indexOfOrigRealm = (short) list.size();
-                avp = avp.ensure();
-            } else if (DestinationRealm.CODE == avp.getCode()) {
+                avp = IDENTITIES.intern(avp);
+            } else if (DestinationRealm.CODE == key) {
                 indexOfDestRealm = (short) list.size();
-                avp = avp.ensure();
-            } else if (ResultCode.CODE == avp.getCode()) {
+                avp = IDENTITIES.intern(avp);
+            } else if (ResultCode.CODE == key) {
                 indexOfResultCode = (short) list.size();
                 avp = avp.ensure();
-            } else if (ExperimentalResult.CODE == avp.getCode()) {
+            } else if (ExperimentalResult.CODE == key) {
                 indexOfExperimentalCode = (short) list.size();
                 avp = avp.ensure();
-            } else if (DestinationHost.CODE == avp.getCode()) {
+            } else if (DestinationHost.CODE == key) {
                 indexOfDestHost = (short) list.size();
-                avp = avp.ensure();
+                avp = IDENTITIES.intern(avp);
+            } else if (SessionId.CODE == key && !hasSessionId) {
+                // hash it straight off of the buffer we are reading from rather than
+                // slicing out the data of the AVP again.
+                final int dataOffset = readerIndex + avp.getHeader().getHeaderLength();
+                hasSessionId = true;
+                sessionIdHash = SessionIdHash.of(avps, dataOffset, readerIndex + avp.getHeader().getLength());
             }
 
             list.add(avp);
+            index.add(key);
 
             // fail safe - if we are not making any progress
             // then we need to bail out.
@@ -88,19 +548,59 @@ public class DiameterParser {
             }
         }
 
-        final Buffer entireMsg = orig.slice(header.getLength());
-        if (header.isRequest()) {
-            return new ImmutableDiameterRequest(entireMsg, header, list, indexOfOrigHost, indexOfOrigRealm,
-                    indexOfDestHost, indexOfDestRealm, indexOfResultCode, indexOfExperimentalCode);
+        return new ImmutableDiameterMessage.FramedAvps(list, index.build(), indexOfOrigHost, indexOfOrigRealm,
+                indexOfDestHost, indexOfDestRealm, indexOfResultCode, indexOfExperimentalCode, sessionIdHash);
+    }
+
+    /**
+     * Find the AVPs we keep track of without framing all the other AVPs. Only the AVP headers
+     * are read while walking the message and only the AVPs we are interested in are framed.
+     * Same as when framing all AVPs, if an AVP is present more than once, the last one wins.
+     *
+     * @param msg the full diameter message, including the header.
+     */
+    static ImmutableDiameterMessage.TrackedAvps scanTrackedAvps(final Buffer msg) throws DiameterParseException {
+        FramedAvp originHost = null;
+        FramedAvp originRealm = null;
+        FramedAvp destHost = null;
+        FramedAvp destRealm = null;
+        FramedAvp resultCode = null;
+        FramedAvp experimentalResult = null;
+        int sessionIdHash = 0;
+        boolean hasSessionId = false;
+
+        final DiameterCursor cursor = new DiameterCursor(msg);
+        while (cursor.next()) {
+            final long key = cursor.getKey();
+            if (OriginHost.CODE == key) {
+                originHost = IDENTITIES.intern(msg, cursor.getOffset(), cursor.getLength());
+            } else if (OriginRealm.CODE == key) {
+                originRealm = IDENTITIES.intern(msg, cursor.getOffset(), cursor.getLength());
+            } else if (DestinationRealm.CODE == key) {
+                destRealm = IDENTITIES.intern(msg, cursor.getOffset(), cursor.getLength());
+            } else if (ResultCode.CODE == key) {
+                resultCode = cursor.toFramedAvp().ensure();
+            } else if (ExperimentalResult.CODE == key) {
+                experimentalResult = cursor.toFramedAvp().ensure();
+            } else if (DestinationHost.CODE == key) {
+                destHost = IDENTITIES.intern(msg, cursor.getOffset(), cursor.getLength());
+            } else if (SessionId.CODE == key && !hasSessionId) {
+                hasSessionId = true;
+                sessionIdHash = SessionIdHash.of(msg, cursor.getDataOffset(), cursor.getDataOffset() + cursor.getDataLength());
+            }
         }
-        return new ImmutableDiameterAnswer(entireMsg, header, list, indexOfOrigHost, indexOfOrigRealm,
-                indexOfDestHost, indexOfDestRealm, indexOfResultCode, indexOfExperimentalCode);
+
+        return new ImmutableDiameterMessage.TrackedAvps(originHost, originRealm, destHost, destRealm,
+                resultCode, experimentalResult, sessionIdHash);
     }
 
     /**
      * For stream based protocols, we may not get all the data at the same time and as such, we need
      * to wait for more to arrive. This method simply checks if we have enough data in the buffer to
      * fully frame the {@link DiameterMessage}.
+     * <p>
+     * If you are reading off of a stream, consider using the {@link DiameterStreamDecoder} instead,
+     * which keeps track of where it is in the stream between reads.
      *
      * @param buffer
      * @return
@@ -111,17 +611,26 @@ public class DiameterParser {
         if (readable.getReadableBytes() < 20) {
             return false;
         }
-        final Buffer headerBuffer = readable.readBytes(20);
-        final DiameterHeader header = new ImmutableDiameterHeader(headerBuffer);
-
-        if (header.getLength() > readable.getReadableBytes() + 20) {
-            return false;
-        }
 
-        return true;
+        // no need to frame the entire header, we only need the length, which is
+        // the three octets following the version.
+        final int length = readable.getIntFromThreeOctets(readable.getReaderIndex() + 1);
+        return length <= readable.getReadableBytes();
     }
 
 
+    /**
+     * Create a {@link DiameterCursor} over the given buffer, which allows you to walk through
+     * the header and AVPs of the message without actually framing it. No matter how many AVPs
+     * there are in the message, the cursor will not allocate any new objects while you walk them.
+     *
+     * @param buffer the buffer containing (at least) one full diameter message.
+     * @throws DiameterParseException in case the buffer doesn't contain a full diameter message.
+     */
+    public static DiameterCursor cursor(final Buffer buffer) throws DiameterParseException {
+        return new DiameterCursor(buffer.toBuffer());
+    }
+
     public static DiameterHeader frameHeader(final ReadableBuffer buffer) throws DiameterParseException {
         if (buffer.getReadableBytes() < 20) {
             throw new DiameterParseException(0, "Cannot be a Diameter message because the header is less than 20 bytes");
@@ -181,8 +690,7 @@ public class DiameterParser {
         final byte flags = buffer.getByte(buffer.getReaderIndex() + 4);
         final boolean isVendorIdPresent = (flags & 0b10000000) == 0b10000000;
         final Buffer avpHeader = isVendorIdPresent ? buffer.readBytes(12) : buffer.readBytes(8);
-        final Optional<Long> vendorId = isVendorIdPresent ? Optional.of(avpHeader.getUnsignedInt(8)) : Optional.empty();
-        return new ImmutableAvpHeader(avpHeader, vendorId);
+        return new ImmutableAvpHeader(avpHeader);
 
     }
 
@@ -46,7 +46,7 @@ public class DiameterRequestBuilder extends DiameterMessageBuilder<DiameterReque
                                             final short indexOfOriginRealm, final short indexOfDestinationHost,
                                             final short indexOfDestinationRealm, final short indexResultCode,
                                             final short indexExperimentalResultCode) {
-        return new ImmutableDiameterRequest(message, header, avps, indexOfOriginHost, indexOfOriginRealm,
+        return new ImmutableDiameterRequest(message, header, avps, AvpIndex.of(avps), indexOfOriginHost, indexOfOriginRealm,
                 indexOfDestinationHost, indexOfDestinationRealm, indexResultCode, indexExperimentalResultCode);
     }
 }
@@ -18,13 +18,29 @@ public class ImmutableDiameterAnswer extends ImmutableDiameterMessage implements
     public ImmutableDiameterAnswer(final Buffer raw,
                                    final DiameterHeader header,
                                    final List<FramedAvp> avps,
+                                   final AvpIndex index,
                                    final short indexOriginHost,
                                    final short indexOriginRealm,
                                    final short indexDestinationHost,
                                    final short indexDestinationRealm,
                                    final short indexResultCode,
                                    final short indexExperimentalCode) {
-        super(raw, header, avps, indexOriginHost, indexOriginRealm, indexDestinationHost, indexDestinationRealm, indexResultCode, indexExperimentalCode);
+        super(raw, header, avps, index, indexOriginHost, indexOriginRealm, indexDestinationHost, indexDestinationRealm, indexResultCode, indexExperimentalCode);
+    }
+
+    ImmutableDiameterAnswer(final Buffer raw, final DiameterHeader header, final FramedAvps avps) {
+        super(raw, header, avps);
+    }
+
+    ImmutableDiameterAnswer(final Buffer raw, final DiameterHeader header, final CompactAvps avps) {
+        super(raw, header, avps);
+    }
+
+    /**
+     * Lazy version where the AVPs will be framed only when asked for.
+     */
+    public ImmutableDiameterAnswer(final Buffer raw, final DiameterHeader header) {
+        super(raw, header);
     }
 
     @Override
@@ -47,6 +63,21 @@ public class ImmutableDiameterAnswer extends ImmutableDiameterMessage implements
         return getInternalResultCode();
     }
 
+    @Override
+    public long getResultCodeValue() {
+        return getInternalResultCodeValue();
+    }
+
+    @Override
+    public long getExperimentalResultCodeValue() {
+        return getInternalExperimentalResultCodeValue();
+    }
+
+    @Override
+    public long getExperimentalResultVendorId() {
+        return getInternalExperimentalResultVendorId();
+    }
+
     public static DiameterAnswer.Builder withResultCode(final ResultCode resultCode) {
         assertNotNull(resultCode, "You must specify the result code");
         return new DiameterAnswerBuilder(resultCode);
@@ -205,6 +205,24 @@ public class ImmutableDiameterHeader implements DiameterHeader {
             return this;
         }
 
+        @Override
+        public DiameterHeader.Builder withProxiable(final boolean proxiable) {
+            buffer.setBit6(4, proxiable);
+            return this;
+        }
+
+        @Override
+        public DiameterHeader.Builder withError(final boolean error) {
+            buffer.setBit5(4, error);
+            return this;
+        }
+
+        @Override
+        public DiameterHeader.Builder withPossiblyRetransmission(final boolean retransmission) {
+            buffer.setBit4(4, retransmission);
+            return this;
+        }
+
         @Override
         public DiameterHeader build() {
             buffer.setBit0(0, true); // set version to 1 - the only allowed version at this time.
@@ -4,6 +4,7 @@ import io.snice.buffer.Buffer;
 import io.snice.codecs.codec.diameter.DiameterHeader;
 import io.snice.codecs.codec.diameter.DiameterMessage;
 import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
 import io.snice.codecs.codec.diameter.avp.FramedAvp;
 import io.snice.codecs.codec.diameter.avp.api.*;
 import io.snice.functional.Either;
@@ -21,40 +22,182 @@ public abstract class ImmutableDiameterMessage implements DiameterMessage {
     private final Buffer raw;
 
     protected final DiameterHeader header;
-    private final List<FramedAvp> avps;
 
-    private final short indexResultCode;
-    private final short indexExperimentalResultCode;
+    /**
+     * All the framed AVPs of this message. If this message was framed lazily, this will be null
+     * until someone asks for the AVPs. Note that we allow for a benign race here, same as
+     * {@link String#hashCode()} does, since two threads framing the same message at the same time
+     * will produce the exact same result and since {@link FramedAvps} only contains final fields,
+     * it is safely published.
+     */
+    private FramedAvps avps;
 
-    private final short indexOrigHost;
-    private final short indexOrigRealm;
+    /**
+     * The AVPs that we keep track of since almost all applications will need them,
+     * such as the Origin-Host, Destination-Realm etc. Same as the {@link #avps}, this will be
+     * null until asked for if this message was framed lazily.
+     */
+    private TrackedAvps tracked;
 
-    private final short indexDestHost;
-    private final short indexDestRealm;
+    /**
+     * Only set if this message has been compacted, see {@link DiameterMessage#compact()}, in which case
+     * the {@link #avps} are never framed and kept around but rather sliced out of the raw message
+     * every time they are asked for.
+     */
+    private final CompactAvps compact;
 
     public ImmutableDiameterMessage(final Buffer raw,
                                     final DiameterHeader header,
                                     final List<FramedAvp> avps,
+                                    final AvpIndex index,
                                     final short indexOrigHost,
                                     final short indexOrigRealm,
                                     final short indexDestHost,
                                     final short indexDestRealm,
                                     final short indexResultCode,
                                     final short indexExperimentalResultCode) {
+        this(raw, header, new FramedAvps(avps, index, indexOrigHost, indexOrigRealm, indexDestHost,
+                indexDestRealm, indexResultCode, indexExperimentalResultCode, sessionIdHash(avps, index)));
+    }
+
+    /**
+     * Messages that are built, rather than parsed, don't keep track of the Session-Id
+     * so we'll have to find it, which is a single lookup in the index.
+     */
+    private static int sessionIdHash(final List<FramedAvp> avps, final AvpIndex index) {
+        final int i = index.firstByKey(SessionId.CODE);
+        if (i == -1) {
+            return 0;
+        }
+        final Buffer data = avps.get(i).getData();
+        return SessionIdHash.of(data, 0, data.capacity());
+    }
+
+    ImmutableDiameterMessage(final Buffer raw, final DiameterHeader header, final FramedAvps avps) {
         this.raw = raw;
         this.header = header;
-        this.avps = Collections.unmodifiableList(avps);
-        this.indexOrigHost = indexOrigHost;
-        this.indexOrigRealm = indexOrigRealm;
-        this.indexDestHost = indexDestHost;
-        this.indexDestRealm = indexDestRealm;
-        this.indexResultCode = indexResultCode;
-        this.indexExperimentalResultCode = indexExperimentalResultCode;
+        this.avps = avps;
+        this.tracked = avps.tracked;
+        this.compact = null;
+    }
+
+    /**
+     * Create a lazy diameter message where the AVPs are not framed until they are asked for.
+     * The {@link TrackedAvps} are resolved separately, and without framing all the other AVPs,
+     * the first time any of them is asked for.
+     */
+    public ImmutableDiameterMessage(final Buffer raw, final DiameterHeader header) {
+        this.raw = raw;
+        this.header = header;
+        this.compact = null;
+    }
+
+    /**
+     * Create a compact diameter message where the raw message must be backed by the same
+     * array as the {@link CompactAvps}, and contain nothing else.
+     */
+    ImmutableDiameterMessage(final Buffer raw, final DiameterHeader header, final CompactAvps compact) {
+        this.raw = raw;
+        this.header = header;
+        this.compact = compact;
+    }
+
+    private FramedAvps avps() {
+        FramedAvps framed = avps;
+        if (framed == null) {
+            framed = DiameterParser.frameAvps(raw, header);
+            avps = framed;
+        }
+        return framed;
+    }
+
+    private TrackedAvps tracked() {
+        TrackedAvps t = tracked;
+        if (t == null) {
+            final FramedAvps framed = avps;
+            t = framed != null ? framed.tracked : DiameterParser.scanTrackedAvps(raw);
+            tracked = t;
+        }
+        return t;
+    }
+
+    /**
+     * Check whether the AVPs of this message have been framed, which they always are unless this
+     * message was framed lazily and no one has asked for any of the AVPs yet.
+     */
+    public boolean isFramed() {
+        return avps != null;
+    }
+
+    /**
+     * Check whether this message is in its compact form, see {@link DiameterMessage#compact()}.
+     */
+    public boolean isCompact() {
+        return compact != null;
+    }
+
+    @Override
+    public DiameterMessage compact() {
+        return compact != null ? this : DiameterMessage.super.compact();
     }
 
     @Override
     public Optional<FramedAvp> getAvp(final long code) {
-        return avps.stream().filter(avp -> avp.getCode() == code).findFirst();
+        if (compact != null) {
+            return getCompactAvp(code, false);
+        }
+
+        final FramedAvps framed = avps();
+        final int position = framed.index.first(code);
+        if (position == AvpIndex.NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(framed.list.get(position));
+    }
+
+    /**
+     * Note that the returned list is a view backed by this message, nothing is copied.
+     */
+    @Override
+    public List<FramedAvp> getAvps(final long code) {
+        if (compact != null) {
+            return compact.getAll(raw, code, false);
+        }
+
+        final FramedAvps framed = avps();
+        return IndexedAvpList.byCode(framed.list, framed.index, code);
+    }
+
+    @Override
+    public Optional<FramedAvp> getAvp(final long vendorId, final long code) {
+        if (compact != null) {
+            return getCompactAvp(AvpHeader.key(vendorId, code), true);
+        }
+
+        final FramedAvps framed = avps();
+        final int position = framed.index.firstByKey(AvpHeader.key(vendorId, code));
+        if (position == AvpIndex.NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(framed.list.get(position));
+    }
+
+    @Override
+    public List<FramedAvp> getAvps(final long vendorId, final long code) {
+        if (compact != null) {
+            return compact.getAll(raw, AvpHeader.key(vendorId, code), true);
+        }
+
+        final FramedAvps framed = avps();
+        return IndexedAvpList.byKey(framed.list, framed.index, AvpHeader.key(vendorId, code));
+    }
+
+    private Optional<FramedAvp> getCompactAvp(final long codeOrKey, final boolean byKey) {
+        final int avp = compact.first(codeOrKey, byKey);
+        if (avp == AvpIndex.NONE) {
+            return Optional.empty();
+        }
+        return Optional.of(compact.get(raw, avp));
     }
 
     @Override
@@ -64,7 +207,10 @@ public abstract class ImmutableDiameterMessage implements DiameterMessage {
 
     @Override
     public List<FramedAvp> getAllAvps() {
-        return avps;
+        if (compact != null) {
+            return compact.view(raw);
+        }
+        return avps().list;
     }
 
     @Override
@@ -84,55 +230,63 @@ public abstract class ImmutableDiameterMessage implements DiameterMessage {
 
     @Override
     public OriginHost getOriginHost() {
-        if (indexOrigHost == -1) {
-            return null;
-        }
-
-        return (OriginHost)avps.get(indexOrigHost).ensure();
+        return (OriginHost) tracked().originHost;
     }
 
     @Override
     public OriginRealm getOriginRealm() {
-        if (indexOrigRealm == -1) {
-            return null;
-        }
-        return (OriginRealm)avps.get(indexOrigRealm).ensure();
+        return (OriginRealm) tracked().originRealm;
     }
 
     public Optional<DestinationRealm> getDestinationRealm() {
-        if (indexDestRealm == -1) {
-            return Optional.empty();
-        }
-
-        return Optional.of((DestinationRealm)avps.get(indexDestRealm).ensure());
+        return Optional.ofNullable((DestinationRealm) tracked().destinationRealm);
     }
 
     public Optional<DestinationHost> getDestinationHost() {
-        if (indexDestHost == -1) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable((DestinationHost) tracked().destinationHost);
+    }
 
-        return Optional.of((DestinationHost)avps.get(indexDestHost).ensure());
+    @Override
+    public int getSessionIdHash() {
+        return tracked().sessionIdHash;
     }
 
     protected Either<ExperimentalResult, ResultCode> getInternalResultCode() {
-        if (indexResultCode != -1) {
-            return Either.right((ResultCode) avps.get(indexResultCode));
+        final TrackedAvps t = tracked();
+        if (t.resultCode != null) {
+            return Either.right((ResultCode) t.resultCode);
         }
 
-        if (indexExperimentalResultCode != -1) {
-            return Either.left((ExperimentalResult)avps.get(indexExperimentalResultCode).ensure());
+        if (t.experimentalResult != null) {
+            return Either.left((ExperimentalResult) t.experimentalResult);
         }
 
         // TODO: what's the best approach here? Neither was supplied so throw exception?
         throw new DiameterParseException("No Result-Code or Experimental-Result present in Answer");
     }
 
+    protected long getInternalResultCodeValue() {
+        return tracked().resultCodeValue;
+    }
+
+    protected long getInternalExperimentalResultCodeValue() {
+        return tracked().experimentalResultCodeValue;
+    }
+
+    protected long getInternalExperimentalResultVendorId() {
+        return tracked().experimentalResultVendorId;
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer();
         sb.append(header.toString());
-        sb.append(", AVP Count: ").append(avps.size());
+        // a lazy message is not to be framed just because someone logged it
+        if (isFramed() || isCompact()) {
+            sb.append(", AVP Count: ").append(getAllAvps().size());
+        } else {
+            sb.append(", AVP Count: lazy");
+        }
         return sb.toString();
     }
 
@@ -151,4 +305,79 @@ public abstract class ImmutableDiameterMessage implements DiameterMessage {
     }
 
 
+    /**
+     * All the framed AVPs of a message along with the index over them.
+     */
+    static final class FramedAvps {
+        private final List<FramedAvp> list;
+        private final AvpIndex index;
+        private final TrackedAvps tracked;
+
+        FramedAvps(final List<FramedAvp> list,
+                   final AvpIndex index,
+                   final short indexOrigHost,
+                   final short indexOrigRealm,
+                   final short indexDestHost,
+                   final short indexDestRealm,
+                   final short indexResultCode,
+                   final short indexExperimentalResultCode,
+                   final int sessionIdHash) {
+            this.list = Collections.unmodifiableList(list);
+            this.index = index;
+            this.tracked = new TrackedAvps(get(list, indexOrigHost), get(list, indexOrigRealm),
+                    get(list, indexDestHost), get(list, indexDestRealm),
+                    get(list, indexResultCode), get(list, indexExperimentalResultCode), sessionIdHash);
+        }
+
+        private static FramedAvp get(final List<FramedAvp> list, final short index) {
+            return index == -1 ? null : list.get(index).ensure();
+        }
+    }
+
+    /**
+     * The AVPs we keep track of, any of which may be null if it wasn't present in the message.
+     * For the Session-Id, we only keep its hash, which is zero if there is no Session-Id.
+     * <p>
+     * The values of the Result-Code and Experimental-Result are decoded once, up front, since
+     * they are read for pretty much every answer, e.g. by anything keeping metrics.
+     */
+    static final class TrackedAvps {
+        private final FramedAvp originHost;
+        private final FramedAvp originRealm;
+        private final FramedAvp destinationHost;
+        private final FramedAvp destinationRealm;
+        private final FramedAvp resultCode;
+        private final FramedAvp experimentalResult;
+        private final int sessionIdHash;
+        private final long resultCodeValue;
+        private final long experimentalResultCodeValue;
+        private final long experimentalResultVendorId;
+
+        TrackedAvps(final FramedAvp originHost,
+                    final FramedAvp originRealm,
+                    final FramedAvp destinationHost,
+                    final FramedAvp destinationRealm,
+                    final FramedAvp resultCode,
+                    final FramedAvp experimentalResult,
+                    final int sessionIdHash) {
+            this.originHost = originHost;
+            this.originRealm = originRealm;
+            this.destinationHost = destinationHost;
+            this.destinationRealm = destinationRealm;
+            this.resultCode = resultCode;
+            this.experimentalResult = experimentalResult;
+            this.sessionIdHash = sessionIdHash;
+
+            resultCodeValue = resultCode == null ? ResultCodes.NONE : ResultCodes.resultCode(resultCode.getData());
+            if (experimentalResult == null) {
+                experimentalResultCodeValue = ResultCodes.NONE;
+                experimentalResultVendorId = ResultCodes.NONE;
+            } else {
+                final Buffer data = experimentalResult.getData();
+                experimentalResultCodeValue = ResultCodes.experimentalResultCode(data);
+                experimentalResultVendorId = ResultCodes.vendorId(data);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,132 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterRelay;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.snice.preconditions.PreConditions.assertNotNull;
+
+public final class ImmutableDiameterRelay extends ImmutableGatheredDiameterMessage implements DiameterRelay {
+
+    private static final int MAX_LENGTH = 0xFFFFFF;
+
+    private ImmutableDiameterRelay(final DiameterHeader header, final List<Buffer> buffers) {
+        super(header, buffers);
+    }
+
+    public static DiameterRelay.Builder of(final DiameterMessage msg) {
+        assertNotNull(msg, "The message to relay cannot be null");
+        return new Builder(msg.getHeader(), msg.getBuffer());
+    }
+
+    @Override
+    public String toString() {
+        return "Relay of " + getHeader();
+    }
+
+    private static class Builder implements DiameterRelay.Builder {
+
+        private final DiameterHeader original;
+        private final Buffer raw;
+
+        private long hopByHopId = -1;
+        private Boolean retransmission;
+        private List<Avp> avps;
+
+        private Builder(final DiameterHeader original, final Buffer raw) {
+            this.original = original;
+            this.raw = raw;
+        }
+
+        @Override
+        public DiameterRelay.Builder withHopByHopId(final long id) {
+            this.hopByHopId = id;
+            return this;
+        }
+
+        @Override
+        public DiameterRelay.Builder withPossiblyRetransmission(final boolean retransmission) {
+            this.retransmission = retransmission;
+            return this;
+        }
+
+        @Override
+        public DiameterRelay.Builder withRouteRecord(final RouteRecord routeRecord) {
+            assertNotNull(routeRecord, "The RouteRecord cannot be null");
+            return withAvp(routeRecord);
+        }
+
+        @Override
+        public DiameterRelay.Builder withRouteRecord(final String identity) {
+            return withAvp(RouteRecord.of(identity));
+        }
+
+        @Override
+        public DiameterRelay.Builder withRouteRecord(final Buffer identity) {
+            return withAvp(RouteRecord.of(identity));
+        }
+
+        @Override
+        public DiameterRelay.Builder withAvp(final Avp avp) {
+            assertNotNull(avp, "The AVP cannot be null");
+            if (avps == null) {
+                avps = new ArrayList<>(2);
+            }
+            avps.add(avp.ensure());
+            return this;
+        }
+
+        @Override
+        public DiameterRelay build() throws DiameterParseException {
+            final int originalLength = original.getLength();
+
+            int appendedLength = 0;
+            if (avps != null) {
+                for (int i = 0; i < avps.size(); ++i) {
+                    appendedLength += avps.get(i).getLength() + avps.get(i).getPadding();
+                }
+            }
+
+            final int length = originalLength + appendedLength;
+            if (length > MAX_LENGTH) {
+                throw new DiameterParseException(1, "The relayed message would be " + length
+                        + " bytes, which is larger than the max length of a diameter message");
+            }
+
+            // the header is the only thing we copy out of the original message.
+            final DiameterHeader.Builder headerBuilder = original.copy();
+            headerBuilder.withLength(length);
+            if (hopByHopId != -1) {
+                headerBuilder.withHopToHopId(hopByHopId);
+            }
+            if (retransmission != null) {
+                headerBuilder.withPossiblyRetransmission(retransmission);
+            }
+            final DiameterHeader header = headerBuilder.build();
+
+            final List<Buffer> buffers = new ArrayList<>(3);
+            buffers.add(header.getBuffer());
+            if (originalLength > 20) {
+                buffers.add(raw.slice(20, originalLength));
+            }
+
+            if (appendedLength > 0) {
+                // these are new AVPs so they have to be encoded anyway, but write them all
+                // into a single buffer so the relayed message is at most three buffers.
+                final WritableBuffer appended = WritableBuffer.of(appendedLength);
+                avps.forEach(avp -> avp.writeTo(appended));
+                buffers.add(appended.build());
+            }
+
+            return new ImmutableDiameterRelay(header, List.copyOf(buffers));
+        }
+    }
+}
@@ -16,13 +16,29 @@ public class ImmutableDiameterRequest extends ImmutableDiameterMessage implement
     public ImmutableDiameterRequest(final Buffer raw,
                                     final DiameterHeader header,
                                     final List<FramedAvp> avps,
+                                    final AvpIndex index,
                                     final short indexOriginHost,
                                     final short indexOriginRealm,
                                     final short indexOfDestinationHost,
                                     final short indexOfDestinationRealm,
                                     final short indexResultCode,
                                     final short indexExperimentalResultCode) {
-        super(raw, header, avps, indexOriginHost, indexOriginRealm, indexOfDestinationHost, indexOfDestinationRealm, indexResultCode, indexExperimentalResultCode);
+        super(raw, header, avps, index, indexOriginHost, indexOriginRealm, indexOfDestinationHost, indexOfDestinationRealm, indexResultCode, indexExperimentalResultCode);
+    }
+
+    ImmutableDiameterRequest(final Buffer raw, final DiameterHeader header, final FramedAvps avps) {
+        super(raw, header, avps);
+    }
+
+    ImmutableDiameterRequest(final Buffer raw, final DiameterHeader header, final CompactAvps avps) {
+        super(raw, header, avps);
+    }
+
+    /**
+     * Lazy version where the AVPs will be framed only when asked for.
+     */
+    public ImmutableDiameterRequest(final Buffer raw, final DiameterHeader header) {
+        super(raw, header);
     }
 
     @Override
@@ -47,6 +63,14 @@ public class ImmutableDiameterRequest extends ImmutableDiameterMessage implement
         return internalCreateAnswer(builder);
     }
 
+    @Override
+    public DiameterAnswer.Builder createAnswer(final ResultCode resultCode, final DiameterAnswer.Builder builder)
+            throws DiameterParseException, ClassCastException {
+        builder.reset();
+        builder.withResultCode(resultCode);
+        return internalCreateAnswer(builder);
+    }
+
     /**
      * Follows the RFC 6733 6.2. Diameter Answer Processing. Meaning:
      * <ul>
@@ -0,0 +1,77 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
+
+import java.util.List;
+
+public class ImmutableGatheredDiameterMessage implements GatheredDiameterMessage {
+
+    private final DiameterHeader header;
+    private final List<Buffer> buffers;
+
+    /**
+     * @param header the diameter header, whose buffer must also be the first of the buffers.
+     * @param buffers all the buffers making up the message. This list is not copied so
+     *                it must not be modified after being handed over.
+     */
+    ImmutableGatheredDiameterMessage(final DiameterHeader header, final List<Buffer> buffers) {
+        this.header = header;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Represent an already encoded message as a {@link GatheredDiameterMessage}, which is then
+     * made up of the header followed by a single buffer holding all the AVPs.
+     */
+    public static GatheredDiameterMessage split(final DiameterMessage msg) {
+        final DiameterHeader header = msg.getHeader();
+        final Buffer buffer = msg.getBuffer();
+        if (buffer.capacity() == 20) {
+            return new ImmutableGatheredDiameterMessage(header, List.of(header.getBuffer()));
+        }
+        return new ImmutableGatheredDiameterMessage(header, List.of(header.getBuffer(), buffer.slice(20, buffer.capacity())));
+    }
+
+    @Override
+    public DiameterHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public int getLength() {
+        return header.getLength();
+    }
+
+    @Override
+    public List<Buffer> getBuffers() {
+        return buffers;
+    }
+
+    @Override
+    public void writeTo(final WritableBuffer out) {
+        for (int i = 0; i < buffers.size(); ++i) {
+            buffers.get(i).writeTo(out);
+        }
+    }
+
+    @Override
+    public Buffer toBuffer() {
+        final WritableBuffer writable = WritableBuffer.of(getLength());
+        writeTo(writable);
+        return writable.build();
+    }
+
+    @Override
+    public DiameterMessage toDiameterMessage() {
+        return DiameterParser.frameLazy(toBuffer());
+    }
+
+    @Override
+    public String toString() {
+        return header + ", Buffers: " + buffers.size();
+    }
+}
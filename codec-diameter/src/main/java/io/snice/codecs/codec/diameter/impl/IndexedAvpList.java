@@ -0,0 +1,80 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of all the AVPs in a message that share the same AVP code, or the same
+ * vendor id and AVP code. The AVPs themselves are not copied, only their positions, which are
+ * found by walking the chain in the {@link AvpIndex} once, when the view is created.
+ */
+final class IndexedAvpList extends AbstractList<FramedAvp> implements RandomAccess {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final List<FramedAvp> avps;
+
+    /**
+     * The position within the list of all AVPs of every AVP in this view.
+     */
+    private final int[] positions;
+
+    private IndexedAvpList(final List<FramedAvp> avps, final int[] positions) {
+        this.avps = avps;
+        this.positions = positions;
+    }
+
+    /**
+     * All the AVPs with the given code, regardless of vendor.
+     */
+    static IndexedAvpList byCode(final List<FramedAvp> avps, final AvpIndex index, final long code) {
+        final int count = index.count(code);
+        if (count == 0) {
+            return new IndexedAvpList(avps, EMPTY);
+        }
+
+        final int[] positions = new int[count];
+        int position = index.first(code);
+        for (int i = 0; i < count; ++i) {
+            positions[i] = position;
+            position = index.next(position);
+        }
+        return new IndexedAvpList(avps, positions);
+    }
+
+    /**
+     * All the AVPs with the given vendor id and code.
+     *
+     * @param key the vendor id and code packed by {@link io.snice.codecs.codec.diameter.avp.AvpHeader#key(long, long)}
+     */
+    static IndexedAvpList byKey(final List<FramedAvp> avps, final AvpIndex index, final long key) {
+        final int count = index.countByKey(key);
+        if (count == 0) {
+            return new IndexedAvpList(avps, EMPTY);
+        }
+
+        final int[] positions = new int[count];
+        int position = index.firstByKey(key);
+        for (int i = 0; i < count; ++i) {
+            positions[i] = position;
+            position = index.nextByKey(position);
+        }
+        return new IndexedAvpList(avps, positions);
+    }
+
+    @Override
+    public FramedAvp get(final int i) {
+        if (i < 0 || i >= positions.length) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + positions.length);
+        }
+        return avps.get(positions[i]);
+    }
+
+    @Override
+    public int size() {
+        return positions.length;
+    }
+}
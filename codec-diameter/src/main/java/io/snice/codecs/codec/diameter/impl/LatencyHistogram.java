@@ -0,0 +1,142 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMetrics.LatencySnapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram in the spirit of the HdrHistogram, with a fixed precision of three bits. The values
+ * below 16 get a bucket each and every power of two above that is split into eight linear buckets, so
+ * finding the bucket of a value is a couple of shifts and the entire range of a long fits in 488 buckets.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+
+    /**
+     * The largest positive long has its highest bit at 62.
+     */
+    static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int bucket(final long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS) << SUB_BUCKET_BITS) + subBucket + SUB_BUCKETS;
+    }
+
+    static long lowerBound(final int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+
+        final int exponent = ((bucket - SUB_BUCKETS) >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS;
+        final int subBucket = (bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1);
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long upperBound(final int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+
+    LatencySnapshot snapshot() {
+        final long[] snapshot = new long[BUCKETS];
+        int last = -1;
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) {
+                count += snapshot[i];
+                last = i;
+            }
+        }
+
+        return new ImmutableLatencySnapshot(Arrays.copyOf(snapshot, last + 1), count, sum.sum(), max.get());
+    }
+
+    private static final class ImmutableLatencySnapshot implements LatencySnapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private ImmutableLatencySnapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public long getSum() {
+            return sum;
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public int getBucketCount() {
+            return counts.length;
+        }
+
+        @Override
+        public long getUpperBound(final int bucket) {
+            return LatencyHistogram.upperBound(bucket);
+        }
+
+        @Override
+        public long getCount(final int bucket) {
+            return counts[bucket];
+        }
+
+        @Override
+        public String toString() {
+            return "Latency[count=" + count + ", p50=" + getValueAtPercentile(50) + ", p99="
+                    + getValueAtPercentile(99) + ", max=" + max + "]";
+        }
+    }
+}
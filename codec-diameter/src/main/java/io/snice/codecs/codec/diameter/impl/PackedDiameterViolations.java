@@ -0,0 +1,58 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterViolation;
+import io.snice.codecs.codec.diameter.DiameterViolations;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every violation packed into a single long, where the upper 8 bits are the ordinal of
+ * the {@link DiameterViolation}, the following 24 bits the offset (a diameter message is
+ * at most 24 bits long) and the lower 32 bits the value.
+ */
+final class PackedDiameterViolations implements DiameterViolations {
+
+    private static final DiameterViolation[] VIOLATIONS = DiameterViolation.values();
+
+    private long[] entries = new long[4];
+    private int size;
+
+    void add(final DiameterViolation violation, final int offset, final long value) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = ((long) violation.ordinal() << 56) | ((long) (offset & 0xFFFFFF) << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public DiameterViolation getViolation(final int index) {
+        return VIOLATIONS[(int) (entry(index) >>> 56)];
+    }
+
+    @Override
+    public int getOffset(final int index) {
+        return (int) (entry(index) >>> 32) & 0xFFFFFF;
+    }
+
+    @Override
+    public long getValue(final int index) {
+        return entry(index) & 0xFFFFFFFFL;
+    }
+
+    private long entry(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + size + " violations");
+        }
+        return entries[index];
+    }
+
+    @Override
+    public String toString() {
+        return "DiameterViolations" + getMessages();
+    }
+}
@@ -0,0 +1,98 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode;
+import io.snice.codecs.codec.diameter.avp.api.VendorId;
+
+/**
+ * Decodes the values of the Result-Code and the Experimental-Result AVPs straight off of the
+ * raw data of those AVPs, without parsing them into their {@link io.snice.codecs.codec.diameter.avp.Avp}
+ * representation. Rather than throwing an exception, a malformed AVP is treated the same as
+ * if the value wasn't present at all.
+ */
+public final class ResultCodes {
+
+    public static final long NONE = -1;
+
+    private ResultCodes() {
+        // just static helper methods so no instance of this one
+    }
+
+    /**
+     * @param data the data of the Result-Code AVP, which is an Unsigned32.
+     */
+    public static long resultCode(final Buffer data) {
+        return data.capacity() == 4 ? data.getUnsignedInt(0) : NONE;
+    }
+
+    /**
+     * @param data the data of the grouped Experimental-Result AVP.
+     */
+    public static long experimentalResultCode(final Buffer data) {
+        return findUnsigned32(data, ExperimentalResultCode.CODE);
+    }
+
+    /**
+     * @param data the data of the grouped Experimental-Result AVP.
+     */
+    public static long vendorId(final Buffer data) {
+        return findUnsigned32(data, VendorId.CODE);
+    }
+
+    /**
+     * Check that the AVPs within the grouped Experimental-Result, found between the given offsets of the
+     * message, are well formed and that the Experimental-Result-Code and Vendor-Id, if present, are
+     * Unsigned32s. I.e., that the Experimental-Result can be parsed without blowing up.
+     */
+    static boolean isValidExperimentalResult(final Buffer msg, final int start, final int end) {
+        int offset = start;
+        while (offset < end) {
+            if (end - offset < 8) {
+                return false;
+            }
+
+            final boolean isVendorSpecific = (msg.getByte(offset + 4) & 0b10000000) != 0;
+            final int headerLength = isVendorSpecific ? 12 : 8;
+            final int length = msg.getIntFromThreeOctets(offset + 5);
+            if (length < headerLength || length > end - offset) {
+                return false;
+            }
+
+            if (!isVendorSpecific && length - headerLength != 4) {
+                final long code = msg.getUnsignedInt(offset);
+                if (code == ExperimentalResultCode.CODE || code == VendorId.CODE) {
+                    return false;
+                }
+            }
+
+            offset += (length + 3) & ~3;
+        }
+
+        return true;
+    }
+
+    /**
+     * Walk through the AVPs of the given grouped AVP and find the first base protocol AVP
+     * with the given code that is an Unsigned32.
+     */
+    private static long findUnsigned32(final Buffer data, final long code) {
+        final int end = data.capacity();
+        int offset = 0;
+        while (end - offset >= 8) {
+            final boolean isVendorSpecific = (data.getByte(offset + 4) & 0b10000000) != 0;
+            final int headerLength = isVendorSpecific ? 12 : 8;
+            final int length = data.getIntFromThreeOctets(offset + 5);
+            if (length < headerLength || length > end - offset) {
+                return NONE;
+            }
+
+            if (!isVendorSpecific && data.getUnsignedInt(offset) == code) {
+                return length - headerLength == 4 ? data.getUnsignedInt(offset + headerLength) : NONE;
+            }
+
+            offset += (length + 3) & ~3;
+        }
+
+        return NONE;
+    }
+}
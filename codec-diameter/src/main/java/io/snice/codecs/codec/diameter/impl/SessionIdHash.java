@@ -0,0 +1,53 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+
+/**
+ * The hash of a Session-Id, as exposed through {@link io.snice.codecs.codec.diameter.DiameterMessage#getSessionIdHash()},
+ * which is the 32 bit FNV-1a hash of the raw bytes of the Session-Id, i.e. the data of the AVP,
+ * excluding the AVP header and any padding.
+ * <p>
+ * The hash is part of the contract, it will never change between versions, or between runs of the JVM,
+ * so it can safely be used for spreading sessions across processes, or be re-computed by other
+ * systems, such as a load balancer in front of a diameter cluster.
+ */
+public final class SessionIdHash {
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private SessionIdHash() {
+        // just static helper methods so no instance of this one
+    }
+
+    public static int of(final Buffer buffer, final int from, final int to) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; ++i) {
+            hash = (hash ^ (buffer.getByte(i) & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static int of(final byte[] array, final int from, final int to) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; ++i) {
+            hash = (hash ^ (array[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Map the given hash onto one of the given number of shards. The low bits of an FNV-1a hash
+     * aren't great, so the hash is first run through the finalizer of MurmurHash3 and the result is
+     * then scaled down to the range of shards, which avoids the division a modulo would need.
+     */
+    public static int shard(final int hash, final int shards) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xFFFFFFFFL) * shards) >>> 32);
+    }
+}
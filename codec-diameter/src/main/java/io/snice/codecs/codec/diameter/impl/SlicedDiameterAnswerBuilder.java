@@ -0,0 +1,249 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.api.ProxyInfo;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.snice.preconditions.PreConditions.assertArgument;
+import static io.snice.preconditions.PreConditions.assertNotNull;
+import static io.snice.preconditions.PreConditions.ensureNotNull;
+
+/**
+ * Builds an answer straight off of the raw bytes of the request. See {@link DiameterAnswer.SlicedBuilder}.
+ * <p>
+ * The AVPs to copy are found by walking the request with a {@link DiameterCursor}, which only reads
+ * the AVP headers, and are kept as ranges of the request. Ranges that are next to each other in the request
+ * are merged, so e.g. copying three AVPs that follow each other in the request is a single slice.
+ */
+public final class SlicedDiameterAnswerBuilder implements DiameterAnswer.SlicedBuilder {
+
+    private static final int MAX_LENGTH = 0xFFFFFF;
+
+    private final DiameterMessage request;
+    private final Avp result;
+
+    private Avp originHost;
+    private Avp originRealm;
+    private long[] keys = new long[4];
+    private int keyCount;
+    private List<Avp> avps;
+
+    private SlicedDiameterAnswerBuilder(final DiameterMessage request, final Avp result) {
+        this.request = request;
+        this.result = result;
+    }
+
+    public static DiameterAnswer.SlicedBuilder of(final DiameterMessage request, final ResultCode resultCode) {
+        assertNotNull(request, "The request cannot be null");
+        assertNotNull(resultCode, "You must specify the result code");
+        return new SlicedDiameterAnswerBuilder(request, resultCode);
+    }
+
+    public static DiameterAnswer.SlicedBuilder of(final DiameterMessage request, final ExperimentalResultCode resultCode) {
+        assertNotNull(request, "The request cannot be null");
+        assertNotNull(resultCode, "You must specify the result code");
+        return new SlicedDiameterAnswerBuilder(request, ExperimentalResultHelper.map(resultCode));
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withOriginHost(final OriginHost originHost) {
+        assertNotNull(originHost, "The Origin-Host cannot be null");
+        this.originHost = originHost;
+        return this;
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withOriginHost(final String originHost) {
+        return withOriginHost(OriginHost.of(originHost));
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withOriginRealm(final OriginRealm originRealm) {
+        assertNotNull(originRealm, "The Origin-Realm cannot be null");
+        this.originRealm = originRealm;
+        return this;
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withOriginRealm(final String originRealm) {
+        return withOriginRealm(OriginRealm.of(originRealm));
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withCopiedAvp(final long vendorId, final long code) {
+        assertArgument(vendorId >= 0 && vendorId <= 0xFFFFFFFFL, "The vendor id must be an unsigned 32 bit value");
+        assertArgument(code >= 0 && code <= 0xFFFFFFFFL, "The AVP code must be an unsigned 32 bit value");
+        if (keyCount == keys.length) {
+            keys = Arrays.copyOf(keys, keyCount * 2);
+        }
+        keys[keyCount++] = AvpHeader.key(vendorId, code);
+        return this;
+    }
+
+    @Override
+    public DiameterAnswer.SlicedBuilder withAvp(final Avp avp) {
+        assertNotNull(avp, "The AVP cannot be null");
+        if (avps == null) {
+            avps = new ArrayList<>(2);
+        }
+        avps.add(avp.ensure());
+        return this;
+    }
+
+    @Override
+    public DiameterAnswer build() throws DiameterParseException {
+        final Layout layout = layout();
+
+        // one single copy of everything straight into the final message, which then doesn't need
+        // to be framed any further than the header, since we built it.
+        final WritableBuffer writable = WritableBuffer.of(layout.header.getLength());
+        layout.header.getBuffer().writeTo(writable);
+        if (layout.sessionId != null) {
+            layout.sessionId.writeTo(writable);
+        }
+        writeEncoded(writable);
+        for (int i = 0; i < layout.copied.size(); ++i) {
+            layout.copied.get(i).writeTo(writable);
+        }
+        return DiameterParser.frameLazy(writable.build()).toAnswer();
+    }
+
+    @Override
+    public GatheredDiameterMessage buildGathered() throws DiameterParseException {
+        final Layout layout = layout();
+
+        // the new AVPs do have to be encoded but they all go into a single buffer.
+        final WritableBuffer encoded = WritableBuffer.of(layout.encodedLength);
+        writeEncoded(encoded);
+
+        final List<Buffer> buffers = new ArrayList<>(3 + layout.copied.size());
+        buffers.add(layout.header.getBuffer());
+        if (layout.sessionId != null) {
+            buffers.add(layout.sessionId);
+        }
+        buffers.add(encoded.build());
+        buffers.addAll(layout.copied);
+
+        return new ImmutableGatheredDiameterMessage(layout.header, List.copyOf(buffers));
+    }
+
+    /**
+     * Walk through the request and figure out what goes where in the answer.
+     */
+    private Layout layout() throws DiameterParseException {
+        ensureNotNull(originHost, "You must specify the Origin-Host of the answer");
+        ensureNotNull(originRealm, "You must specify the Origin-Realm of the answer");
+
+        final Buffer raw = request.getBuffer();
+        final DiameterCursor cursor = new DiameterCursor(raw);
+
+        Buffer sessionId = null;
+        final List<Buffer> copied = new ArrayList<>(4);
+        int copiedLength = 0;
+        int rangeStart = -1;
+        int rangeEnd = -1;
+
+        while (cursor.next()) {
+            final long key = cursor.getKey();
+            final int start = cursor.getOffset();
+            final int end = start + cursor.getLength() + cursor.getPadding();
+
+            if (key == SessionId.CODE) {
+                // the Session-Id must be the very first AVP of the answer. There should only be one
+                // but if not, go with the first one, same as getAvp would.
+                if (sessionId == null) {
+                    sessionId = raw.slice(start, end);
+                }
+            } else if (key == ProxyInfo.CODE || isCopied(key)) {
+                if (rangeEnd == start) {
+                    rangeEnd = end;
+                } else {
+                    if (rangeStart != -1) {
+                        copied.add(raw.slice(rangeStart, rangeEnd));
+                    }
+                    rangeStart = start;
+                    rangeEnd = end;
+                }
+                copiedLength += end - start;
+            }
+        }
+
+        if (rangeStart != -1) {
+            copied.add(raw.slice(rangeStart, rangeEnd));
+        }
+
+        int encodedLength = length(originHost) + length(originRealm) + length(result);
+        if (avps != null) {
+            for (int i = 0; i < avps.size(); ++i) {
+                encodedLength += length(avps.get(i));
+            }
+        }
+
+        final int length = 20 + (sessionId != null ? sessionId.capacity() : 0) + encodedLength + copiedLength;
+        if (length > MAX_LENGTH) {
+            throw new IllegalStateException("The answer would be " + length
+                    + " bytes, which is larger than the max length of a diameter message");
+        }
+
+        final DiameterHeader header = request.getHeader().copy().isAnswer().withLength(length).build();
+        return new Layout(header, sessionId, copied, encodedLength);
+    }
+
+    /**
+     * Write all the AVPs that are new to the answer, i.e., everything that isn't sliced out of the request.
+     */
+    private void writeEncoded(final WritableBuffer out) {
+        originHost.writeTo(out);
+        originRealm.writeTo(out);
+        result.writeTo(out);
+        if (avps != null) {
+            for (int i = 0; i < avps.size(); ++i) {
+                avps.get(i).writeTo(out);
+            }
+        }
+    }
+
+    private boolean isCopied(final long key) {
+        for (int i = 0; i < keyCount; ++i) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int length(final FramedAvp avp) {
+        return avp.getLength() + avp.getPadding();
+    }
+
+    private static final class Layout {
+        private final DiameterHeader header;
+        private final Buffer sessionId;
+        private final List<Buffer> copied;
+        private final int encodedLength;
+
+        private Layout(final DiameterHeader header, final Buffer sessionId, final List<Buffer> copied, final int encodedLength) {
+            this.header = header;
+            this.sessionId = sessionId;
+            this.copied = copied;
+            this.encodedLength = encodedLength;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.avp.api.DestinationHost;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.api.ProxyInfo;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import io.snice.codecs.codec.diameter.avp.api.UserName;
+import io.snice.codecs.codec.diameter.avp.api.VendorSpecificApplicationId;
+import io.snice.codecs.codec.diameter.impl.AvpTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static io.snice.codecs.codec.diameter.CommandValidator.UNBOUNDED;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CommandValidatorTest extends DiameterTestBase {
+
+    private static final int UPDATE_LOCATION = 316;
+    private static final long TGPP = 10415;
+
+    private CommandValidator validator;
+
+    /**
+     * The ULR of 3GPP TS 29.272, minus the optional AVPs our test message doesn't have.
+     */
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        validator = CommandValidator.builder()
+                .withBaseProtocol()
+                .withRequest(UPDATE_LOCATION)
+                .withRequiredAvp(SessionId.CODE)
+                .withOptionalAvp(VendorSpecificApplicationId.CODE)
+                .withRequiredAvp(277) // Auth-Session-State
+                .withRequiredAvp(OriginHost.CODE)
+                .withRequiredAvp(OriginRealm.CODE)
+                .withOptionalAvp(DestinationHost.CODE)
+                .withRequiredAvp(DestinationRealm.CODE)
+                .withRequiredAvp(UserName.CODE)
+                .withRequiredAvp(TGPP, 1032) // RAT-Type
+                .withRequiredAvp(TGPP, 1405) // ULR-Flags
+                .withRequiredAvp(TGPP, 1407) // Visited-PLMN-Id
+                .withAvp(ProxyInfo.CODE, 0, UNBOUNDED)
+                .withAvp(RouteRecord.CODE, 0, UNBOUNDED)
+                .build();
+    }
+
+    @Test
+    public void testValid() throws Exception {
+        ensureValid("ulr.raw");
+        ensureValid("capabilities_exchange_request.raw");
+        ensureValid("capabilities_exchange_answer.raw");
+        ensureValid("013_diameter_device_watchdog_request.raw");
+        ensureValid("014_diameter_device_watchdog_answer.raw");
+
+        // the validator doesn't know about the ULA so it is not validated
+        assertThat(validator.isDefined(UPDATE_LOCATION, false), is(false));
+        ensureValid("ula.raw");
+    }
+
+    @Test
+    public void testMissingAvp() throws Exception {
+        final CommandValidator validator = CommandValidator.builder()
+                .withRequest(UPDATE_LOCATION)
+                .withRequiredAvp(SessionId.CODE)
+                .withRequiredAvp(TGPP, 1408) // ULR-Flags is 1405
+                .build();
+
+        final DiameterViolations violations = validate(validator, "ulr.raw").get();
+        final int last = violations.size() - 1;
+        assertThat(violations.getViolation(last), is(DiameterViolation.MISSING_AVP));
+        assertThat(violations.getValue(last), is(1408L));
+    }
+
+    @Test
+    public void testTooManyOccurrences() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        final DiameterMessage msg = ulr.relay()
+                .withRouteRecord("a.epc.example.com")
+                .withRouteRecord("b.epc.example.com")
+                .build()
+                .toDiameterMessage();
+        assertThat(validator.validate(msg).isPresent(), is(false));
+
+        final CommandValidator once = CommandValidator.builder()
+                .withRequest(UPDATE_LOCATION)
+                .withAvp(RouteRecord.CODE, 0, 1)
+                .build();
+        final DiameterViolations violations = once.validate(msg).get();
+        final int index = indexOf(violations, DiameterViolation.AVP_OCCURS_TOO_MANY_TIMES);
+        assertThat(violations.getValue(index), is(RouteRecord.CODE));
+        assertThat(violations.getOffset(index), is(ulr.getHeader().getLength() + RouteRecord.of("a.epc.example.com").getLength() + 3));
+    }
+
+    /**
+     * AVPs that are not part of the ABNF are only a problem if they have the 'M' bit set, or if the
+     * command doesn't allow any other AVPs.
+     */
+    @Test
+    public void testUnknownAvps() throws Exception {
+        final CommandValidator lenient = CommandValidator.builder()
+                .withRequest(UPDATE_LOCATION)
+                .withRequiredAvp(SessionId.CODE)
+                .build();
+
+        // everything but the Session-Id, the RAT-Type (1032) and 1493 have the 'M' bit set
+        final DiameterViolations violations = validate(lenient, "ulr.raw").get();
+        for (int i = 0; i < violations.size(); ++i) {
+            assertThat(violations.getViolation(i), is(DiameterViolation.AVP_UNSUPPORTED));
+            assertThat(violations.getValue(i) == 1032L || violations.getValue(i) == 1493L, is(false));
+        }
+
+        final CommandValidator strict = CommandValidator.builder()
+                .withRequest(UPDATE_LOCATION)
+                .withRequiredAvp(SessionId.CODE)
+                .withoutAnyAvp()
+                .build();
+        final DiameterViolations strictViolations = validate(strict, "ulr.raw").get();
+        assertThat(strictViolations.size(), is(violations.size() + 2));
+    }
+
+    /**
+     * Validating the message straight off of the {@link AvpTable} must give the same result as
+     * validating the framed message.
+     */
+    @Test
+    public void testAvpTable() throws Exception {
+        final byte[] array = loadBytes("ulr.raw");
+
+        final AvpTable table = AvpTable.scan(array, 0);
+        assertThat(validator.validate(UPDATE_LOCATION, true, table).isPresent(), is(false));
+
+        final CommandValidator other = CommandValidator.builder()
+                .withRequest(UPDATE_LOCATION)
+                .withRequiredAvp(SessionId.CODE)
+                .withRequiredAvp(TGPP, 1408)
+                .build();
+        final DiameterViolations fromTable = other.validate(UPDATE_LOCATION, true, table).get();
+        final DiameterViolations fromMessage = validate(other, "ulr.raw").get();
+        assertThat(fromTable.getMessages(), is(fromMessage.getMessages()));
+    }
+
+    /**
+     * A message that ends with fewer bytes than an AVP header must be reported as such rather
+     * than the validator reading beyond the end of the message.
+     */
+    @Test
+    public void testTruncatedAvp() throws Exception {
+        final byte[] raw = loadBytes("ulr.raw");
+        final byte[] array = Arrays.copyOf(raw, raw.length + 4);
+        array[3] = (byte) (array[3] + 4);
+        array[raw.length + 3] = 1;
+
+        final DiameterMessage ulr = DiameterMessage.frameLazy(Buffers.wrap(array));
+        final DiameterViolations violations = validator.validate(ulr).get();
+        assertThat(violations.getViolation(0), is(DiameterViolation.INVALID_AVP_LENGTH));
+        assertThat(violations.getOffset(0), is(raw.length));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoCommand() {
+        ((CommandValidator.CommandBuilder) CommandValidator.builder()).withRequiredAvp(SessionId.CODE);
+    }
+
+    private void ensureValid(final String resource) throws Exception {
+        final Optional<DiameterViolations> violations = validate(validator, resource);
+        assertThat(resource + " " + violations, violations.isPresent(), is(false));
+    }
+
+    private static Optional<DiameterViolations> validate(final CommandValidator validator, final String resource) throws Exception {
+        return validator.validate(loadDiameterMessage(resource));
+    }
+
+    private static int indexOf(final DiameterViolations violations, final DiameterViolation violation) {
+        for (int i = 0; i < violations.size(); ++i) {
+            if (violations.getViolation(i) == violation) {
+                return i;
+            }
+        }
+        throw new AssertionError("Expected a " + violation + " in " + violations);
+    }
+}
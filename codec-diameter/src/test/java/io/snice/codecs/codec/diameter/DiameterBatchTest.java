@@ -0,0 +1,118 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.buffer.WritableBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiameterBatchTest extends DiameterTestBase {
+
+    /**
+     * All the raw diameter messages, back to back, repeated a number of times so that
+     * there are enough of them for the parallel framing to actually split up the work.
+     */
+    private Buffer batch;
+
+    private static final int ROUNDS = 50;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        int size = 0;
+        for (final RawDiameterMessageHolder holder : RAW_DIAMETER_MESSAGES) {
+            size += holder.length;
+        }
+
+        final WritableBuffer writable = WritableBuffer.of(size * ROUNDS);
+        for (int i = 0; i < ROUNDS; ++i) {
+            for (final RawDiameterMessageHolder holder : RAW_DIAMETER_MESSAGES) {
+                loadBuffer(holder.resource).writeTo(writable);
+            }
+        }
+        batch = writable.build();
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        final DiameterBatch scanned = DiameterBatch.scan(batch);
+        assertThat(scanned.size(), is(RAW_DIAMETER_MESSAGES.length * ROUNDS));
+        assertThat(scanned.getConsumedBytes(), is(batch.capacity()));
+
+        int offset = 0;
+        for (int i = 0; i < scanned.size(); ++i) {
+            assertThat(scanned.getOffset(i), is(offset));
+            assertThat(scanned.getLength(i), is(RAW_DIAMETER_MESSAGES[i % RAW_DIAMETER_MESSAGES.length].length));
+            offset += scanned.getLength(i);
+        }
+    }
+
+    @Test
+    public void testFrame() throws Exception {
+        ensureMessages(DiameterBatch.scan(batch).frame());
+    }
+
+    @Test
+    public void testFrameParallel() throws Exception {
+        ensureMessages(DiameterBatch.scan(batch).frameParallel());
+
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ensureMessages(DiameterBatch.scan(batch).frameParallel(pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A trailing partial message is not part of the batch.
+     */
+    @Test
+    public void testPartialMessage() throws Exception {
+        final int first = RAW_DIAMETER_MESSAGES[0].length;
+        final int second = RAW_DIAMETER_MESSAGES[1].length;
+
+        final DiameterBatch scanned = DiameterBatch.scan(batch.slice(first + second - 1));
+        assertThat(scanned.size(), is(1));
+        assertThat(scanned.getConsumedBytes(), is(first));
+        assertThat(scanned.frame(0).getHeader().getCommandCode(), is(RAW_DIAMETER_MESSAGES[0].commandCode));
+
+        // not even a full header
+        assertThat(DiameterBatch.scan(batch.slice(first + 10)).size(), is(1));
+        assertThat(DiameterBatch.scan(batch.slice(10)).size(), is(0));
+        assertThat(DiameterBatch.scan(batch.slice(10)).getConsumedBytes(), is(0));
+    }
+
+    @Test(expected = DiameterParseException.class)
+    public void testNotDiameter() throws Exception {
+        final byte[] header = new byte[20];
+        header[0] = 0x02; // version 2 doesn't exist
+        header[3] = 20;
+        DiameterBatch.scan(Buffers.wrap(header));
+    }
+
+    @Test(expected = DiameterParseException.class)
+    public void testBadLength() throws Exception {
+        final byte[] header = new byte[20];
+        header[0] = 0x01;
+        header[3] = 12;
+        DiameterBatch.scan(Buffers.wrap(header));
+    }
+
+    private static void ensureMessages(final DiameterMessage[] messages) throws Exception {
+        assertThat(messages.length, is(RAW_DIAMETER_MESSAGES.length * ROUNDS));
+        for (int i = 0; i < messages.length; ++i) {
+            final RawDiameterMessageHolder holder = RAW_DIAMETER_MESSAGES[i % RAW_DIAMETER_MESSAGES.length];
+            final DiameterMessage msg = messages[i];
+            assertThat(msg.getHeader().getLength(), is(holder.length));
+            assertThat(msg.getHeader().getCommandCode(), is(holder.commandCode));
+            assertThat(msg.getHeader().getHopByHopId(), is(holder.hopByHopId));
+            assertThat(msg.getAvps().size(), is(holder.avpCount));
+        }
+    }
+}
@@ -60,4 +60,17 @@ public class DiameterRequestTest extends DiameterTestBase {
         assertThat(header.getApplicationId(), is(16777251L));
         assertThat(header.getCommandCode(), is(316));
     }
+
+    /**
+     * Adding the same AVP more than once through withAvp must keep all of them and
+     * not replace the one that was added first.
+     */
+    @Test
+    public void testRepeatedDestinationHost() {
+        final var other = DestinationHost.of("other.epc.mnc001.mcc001.3gppnetwork.org");
+        final var cer = DiameterRequest.createCER().withAvp(dest).withAvp(other).build();
+        assertThat(cer.getAvps(DestinationHost.CODE).size(), is(2));
+        assertThat(cer.getAvps(DestinationHost.CODE).get(0).ensure(), is(dest));
+        assertThat(cer.getAvps(DestinationHost.CODE).get(1).ensure(), is(other));
+    }
 }
@@ -0,0 +1,231 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.buffer.ReadableBuffer;
+import io.snice.buffer.WritableBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiameterStreamDecoderTest extends DiameterTestBase {
+
+    /**
+     * All the raw diameter messages, back to back, as if they were read off of a TCP stream.
+     */
+    private Buffer stream;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        int size = 0;
+        for (final RawDiameterMessageHolder holder : RAW_DIAMETER_MESSAGES) {
+            size += holder.length;
+        }
+
+        final WritableBuffer writable = WritableBuffer.of(size);
+        for (final RawDiameterMessageHolder holder : RAW_DIAMETER_MESSAGES) {
+            loadBuffer(holder.resource).writeTo(writable);
+        }
+        stream = writable.build();
+    }
+
+    /**
+     * Regardless of how the stream is chopped up, we should get all the messages
+     * back out again, in the same order.
+     */
+    @Test
+    public void testDecodeChunks() throws Exception {
+        ensureDecode(stream.capacity());
+        ensureDecode(1);
+        ensureDecode(3);
+        ensureDecode(19);
+        ensureDecode(20);
+        ensureDecode(21);
+        ensureDecode(100);
+        ensureDecode(1000);
+    }
+
+    @Test
+    public void testBufferedBytes() throws Exception {
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final List<DiameterMessage> messages = new ArrayList<>();
+
+        assertThat(decoder.decode(stream.slice(10), messages::add), is(0));
+        assertThat(decoder.getBufferedBytes(), is(10));
+
+        // now we'll have the full header but not the full message
+        assertThat(decoder.decode(stream.slice(10, 30), messages::add), is(0));
+        assertThat(decoder.getBufferedBytes(), is(30));
+
+        final int length = RAW_DIAMETER_MESSAGES[0].length;
+        assertThat(decoder.decode(stream.slice(30, length + 5), messages::add), is(1));
+        assertThat(decoder.getBufferedBytes(), is(5));
+        assertThat(messages.get(0).getHeader().getLength(), is(length));
+
+        decoder.reset();
+        assertThat(decoder.getBufferedBytes(), is(0));
+    }
+
+    @Test
+    public void testNotDiameter() throws Exception {
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final byte[] header = new byte[20];
+        header[0] = 0x02; // version 2 doesn't exist
+        header[3] = 20;
+
+        try {
+            decoder.decode(Buffers.wrap(header), msg -> fail("Should not have framed anything"));
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMessageTooLarge() throws Exception {
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create(100);
+        try {
+            decoder.decode(stream, msg -> fail("Should not have framed anything"));
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+        assertThat(decoder.getBufferedBytes(), is(0));
+    }
+
+    /**
+     * A {@link ReadableBuffer} that has been partly read must be decoded from its reader index
+     * and onwards, both when looking at the header and when slicing out the message.
+     */
+    @Test
+    public void testPartlyReadChunk() throws Exception {
+        final WritableBuffer writable = WritableBuffer.of(stream.capacity() + 3);
+        writable.write((byte) 0xFF);
+        writable.write((byte) 0xFF);
+        writable.write((byte) 0xFF);
+        stream.writeTo(writable);
+
+        final ReadableBuffer chunk = writable.build().toReadableBuffer();
+        chunk.readByte();
+        chunk.readByte();
+        chunk.readByte();
+
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final List<DiameterMessage> messages = new ArrayList<>();
+        assertThat(decoder.decode(chunk, messages::add), is(RAW_DIAMETER_MESSAGES.length));
+        for (int i = 0; i < messages.size(); ++i) {
+            assertThat(messages.get(i).getHeader().getCommandCode(), is(RAW_DIAMETER_MESSAGES[i].commandCode));
+            assertThat(messages.get(i).getHeader().getLength(), is(RAW_DIAMETER_MESSAGES[i].length));
+        }
+    }
+
+    /**
+     * A consumer that blows up on one message must not cost us the rest of the messages
+     * in that chunk nor throw the decoder out of sync with the stream.
+     */
+    @Test
+    public void testConsumerThrows() throws Exception {
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final List<DiameterMessage> messages = new ArrayList<>();
+        final RuntimeException boom = new RuntimeException("boom");
+
+        try {
+            decoder.decode(stream, msg -> {
+                if (messages.isEmpty()) {
+                    messages.add(msg);
+                    throw boom;
+                }
+                messages.add(msg);
+            });
+            fail("Expected the exception thrown by the consumer");
+        } catch (final RuntimeException e) {
+            assertThat(e == boom, is(true));
+        }
+
+        assertThat(messages.size(), is(RAW_DIAMETER_MESSAGES.length));
+        assertThat(decoder.getBufferedBytes(), is(0));
+
+        // and the next chunk is decoded as usual
+        assertThat(decoder.decode(stream, msg -> {}), is(RAW_DIAMETER_MESSAGES.length));
+    }
+
+    /**
+     * A message without any AVPs is complete as soon as the header is, even when the header
+     * is split across two chunks and nothing follows it.
+     */
+    @Test
+    public void testHeaderOnlyMessage() throws Exception {
+        final byte[] header = new byte[20];
+        for (int i = 0; i < header.length; ++i) {
+            header[i] = stream.getByte(i);
+        }
+        header[1] = 0;
+        header[2] = 0;
+        header[3] = 20;
+
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final List<DiameterMessage> messages = new ArrayList<>();
+        assertThat(decoder.decode(Buffers.wrap(header).slice(0, 10), messages::add), is(0));
+        assertThat(decoder.decode(Buffers.wrap(header).slice(10, 20), messages::add), is(1));
+        assertThat(messages.get(0).getHeader().getLength(), is(20));
+        assertThat(decoder.getBufferedBytes(), is(0));
+    }
+
+    /**
+     * If the stream breaks after a message whose consumer threw, within the same chunk, the exception
+     * of the consumer must not be lost.
+     */
+    @Test
+    public void testBrokenStreamAfterConsumerThrows() throws Exception {
+        final byte[] first = loadBytes(RAW_DIAMETER_MESSAGES[0].resource);
+        final byte[] chunk = new byte[first.length + 20];
+        System.arraycopy(first, 0, chunk, 0, first.length);
+        chunk[first.length] = 0x02; // version 2 doesn't exist
+        chunk[first.length + 3] = 20;
+
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final RuntimeException boom = new RuntimeException("boom");
+        try {
+            decoder.decode(Buffers.wrap(chunk), msg -> {
+                throw boom;
+            });
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            assertThat(e.getSuppressed().length, is(1));
+            assertThat(e.getSuppressed()[0] == boom, is(true));
+        }
+        assertThat(decoder.getBufferedBytes(), is(0));
+    }
+
+    private void ensureDecode(final int chunkSize) throws Exception {
+        final DiameterStreamDecoder decoder = DiameterStreamDecoder.create();
+        final List<DiameterMessage> messages = new ArrayList<>();
+
+        int count = 0;
+        for (int i = 0; i < stream.capacity(); i += chunkSize) {
+            final int stop = Math.min(i + chunkSize, stream.capacity());
+            count += decoder.decode(stream.slice(i, stop), messages::add);
+        }
+
+        assertThat(count, is(RAW_DIAMETER_MESSAGES.length));
+        assertThat(messages.size(), is(RAW_DIAMETER_MESSAGES.length));
+        assertThat(decoder.getBufferedBytes(), is(0));
+
+        for (int i = 0; i < messages.size(); ++i) {
+            final RawDiameterMessageHolder holder = RAW_DIAMETER_MESSAGES[i];
+            final DiameterMessage msg = messages.get(i);
+            assertThat(msg.getHeader().getLength(), is(holder.length));
+            assertThat(msg.getHeader().getCommandCode(), is(holder.commandCode));
+            assertThat(msg.getHeader().getHopByHopId(), is(holder.hopByHopId));
+            assertThat(msg.getAvps().size(), is(holder.avpCount));
+            assertThat(msg.getBuffer(), is(loadBuffer(holder.resource).toBuffer()));
+        }
+    }
+}
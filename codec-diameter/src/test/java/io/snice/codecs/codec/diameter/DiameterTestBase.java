@@ -127,6 +127,16 @@ public class DiameterTestBase {
         return Buffers.wrap(buffer).toReadableBuffer();
     }
 
+    /**
+     * Load the raw bytes of the given resource into a brand new array, e.g. for tests that
+     * need to corrupt a message or frame it off of an array.
+     */
+    public static byte[] loadBytes(final String resource) throws Exception {
+        try (final var ios = DiameterTestBase.class.getResourceAsStream(resource)) {
+            return ios.readAllBytes();
+        }
+    }
+
     public static DiameterMessage loadDiameterMessage(final String resource) throws Exception {
         final ReadableBuffer buffer = loadBuffer(resource);
         return DiameterMessage.frame(buffer);
@@ -173,6 +183,7 @@ public class DiameterTestBase {
             assertThat("Incorrect length for resource " + resource, header.getLength(), is(length));
 
             assertThat("Incorrect vendor id for resource " + resource, header.getVendorId(), is(vendorId));
+            assertThat("Incorrect vendor id for resource " + resource, header.getVendorIdAsLong(), is(vendorId.orElse(AvpHeader.NO_VENDOR_ID)));
 
             assertThat("Incorrect vendor specific bit for resource " + resource, header.isVendorSpecific(), is(isVendor));
             assertThat("Incorrect mandatory bit for resource " + resource, header.isMandatory(), is(isMandatory));
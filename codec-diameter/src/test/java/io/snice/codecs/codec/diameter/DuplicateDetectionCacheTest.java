@@ -0,0 +1,107 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DuplicateDetectionCacheTest extends DiameterTestBase {
+
+    private final AtomicLong clock = new AtomicLong(1000);
+
+    private DiameterRequest ulr;
+    private DiameterAnswer ula;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        ulr = loadDiameterMessage("ulr.raw").toRequest();
+        ula = loadDiameterMessage("ula.raw").toAnswer();
+    }
+
+    private DuplicateDetectionCache cache(final int maxEntries) {
+        return DuplicateDetectionCache.create(maxEntries, DuplicateDetectionCache.DEFAULT_WINDOW_MS, clock::get);
+    }
+
+    private static TransactionIdentifier transaction(final long endToEnd) {
+        return TransactionIdentifier.of(endToEnd, OriginHost.of("hss.epc.mnc001.mcc001.3gppnetwork.org"));
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        final DuplicateDetectionCache cache = cache(100);
+        assertThat(cache.get(ulr).isPresent(), is(false));
+        assertThat(cache.getMisses(), is(1L));
+
+        cache.put(ulr, ula);
+        final Buffer answer = cache.get(ulr).get();
+        assertThat(answer, is(ula.getBuffer()));
+        assertThat(cache.getHits(), is(1L));
+
+        // an identical transaction identifier, but a different instance, must also hit.
+        final TransactionIdentifier transaction = TransactionIdentifier.of(ulr.getHeader().getEndToEndId(), ulr.getOriginHost());
+        assertThat(cache.get(transaction).isPresent(), is(true));
+        assertThat(cache.getHits(), is(2L));
+
+        cache.remove(transaction);
+        assertThat(cache.get(ulr).isPresent(), is(false));
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    /**
+     * A duplicate request arriving over another connection will have a different
+     * hop-by-hop id and the answer we send back must carry that new hop-by-hop id.
+     */
+    @Test
+    public void testHopByHopRewritten() throws Exception {
+        final DuplicateDetectionCache cache = cache(100);
+        cache.put(ulr, ula);
+
+        final DiameterRequest retransmission = ulr.relay().withHopByHopId(0x01020304L).build().toDiameterMessage().toRequest();
+        final Buffer answer = cache.get(retransmission).get();
+        final DiameterMessage parsed = DiameterMessage.frame(answer);
+        assertThat(parsed.getHeader().getHopByHopId(), is(0x01020304L));
+        assertThat(parsed.getHeader().getEndToEndId(), is(ula.getHeader().getEndToEndId()));
+        assertThat(parsed.getBuffer().slice(20, answer.capacity()), is(ula.getBuffer().slice(20, answer.capacity())));
+    }
+
+    @Test
+    public void testTimeWindow() {
+        final DuplicateDetectionCache cache = cache(100);
+        cache.put(transaction(1), ula.getBuffer());
+        clock.addAndGet(DuplicateDetectionCache.DEFAULT_WINDOW_MS / 2);
+        cache.put(transaction(2), ula.getBuffer());
+
+        clock.addAndGet(DuplicateDetectionCache.DEFAULT_WINDOW_MS / 2 - 1);
+        assertThat(cache.get(transaction(1)).isPresent(), is(true));
+
+        clock.incrementAndGet();
+        assertThat(cache.get(transaction(1)).isPresent(), is(false));
+        assertThat(cache.get(transaction(2)).isPresent(), is(true));
+
+        clock.addAndGet(DuplicateDetectionCache.DEFAULT_WINDOW_MS);
+        assertThat(cache.evictExpired(), is(1));
+        assertThat(cache.getEvictions(), is(2L));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testSizeBound() {
+        final DuplicateDetectionCache cache = cache(1000);
+        for (int i = 0; i < 10_000; ++i) {
+            cache.put(transaction(i), ula.getBuffer());
+        }
+
+        assertThat(cache.size() <= 1000, is(true));
+        assertThat(cache.getEvictions(), is(10_000L - cache.size()));
+
+        // the most recent ones should still be around
+        assertThat(cache.get(transaction(9999)).isPresent(), is(true));
+        assertThat(cache.get(transaction(0)).isPresent(), is(false));
+    }
+}
@@ -0,0 +1,83 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffer;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SubscriptionData;
+import io.snice.codecs.codec.diameter.impl.ImmutableGatheredDiameterMessage;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GatheredDiameterMessageTest extends DiameterTestBase {
+
+    /**
+     * Building the message gathered must produce the exact same bytes as when building
+     * it into a single buffer.
+     */
+    @Test
+    public void testBuildGathered() throws Exception {
+        final DiameterRequest ulr = loadDiameterMessage("ulr.raw").toRequest();
+        final DiameterMessage ula = loadDiameterMessage("ula.raw");
+        final Avp subscriptionData = ula.getAvp(SubscriptionData.CODE).get().ensure();
+
+        final var builder = ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(defaultOriginHost)
+                .withOriginRealm(defaultOriginRealm)
+                .withAvp(subscriptionData);
+
+        final DiameterMessage answer = builder.copy().build();
+        final GatheredDiameterMessage gathered = builder.copy().buildGathered();
+
+        assertThat(gathered.getLength(), is(answer.getHeader().getLength()));
+        assertThat(gathered.getHeader().getHopByHopId(), is(ulr.getHeader().getHopByHopId()));
+        assertThat(gathered.getBuffers().get(0).capacity(), is(20));
+
+        int length = 0;
+        boolean foundSubscriptionData = false;
+        for (final Buffer buffer : gathered.getBuffers()) {
+            length += buffer.capacity();
+            foundSubscriptionData |= buffer.equals(subscriptionData.getData());
+        }
+        assertThat(length, is(gathered.getLength()));
+
+        // the large Subscription-Data AVP should be in there as is
+        assertThat(foundSubscriptionData, is(true));
+
+        assertThat(gathered.toBuffer(), is(answer.getBuffer()));
+        assertThat(gathered.toDiameterMessage(), is(answer));
+        assertThat(gathered.toDiameterMessage().getAllAvps().size(), is(answer.getAllAvps().size()));
+    }
+
+    @Test
+    public void testBuildGatheredRequest() throws Exception {
+        final var builder = DiameterRequest.createULR()
+                .withSessionId("node.epc.mnc001.mcc001.3gppnetwork.org;1234;5678")
+                .withUserName("001001123456789")
+                .withOriginHost("node.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .withDestinationRealm("epc.mnc001.mcc001.3gppnetwork.org");
+
+        final GatheredDiameterMessage gathered = builder.buildGathered();
+        final DiameterMessage ulr = DiameterMessage.frame(gathered.toBuffer());
+        assertThat(ulr.getHeader().getLength(), is(gathered.getLength()));
+        assertThat(ulr.getOriginHost().getValue().asString(), is("node.epc.mnc001.mcc001.3gppnetwork.org"));
+        assertThat(ulr.getDestinationRealm().get().getValue().asString(), is("epc.mnc001.mcc001.3gppnetwork.org"));
+    }
+
+    /**
+     * A builder that doesn't know how to build gathered messages splits the built message
+     * into the header and the AVPs.
+     */
+    @Test
+    public void testSplitMessage() throws Exception {
+        final DiameterMessage ula = loadDiameterMessage("ula.raw");
+        final GatheredDiameterMessage gathered = ImmutableGatheredDiameterMessage.split(ula);
+
+        assertThat(gathered.getBuffers().size(), is(2));
+        assertThat(gathered.getBuffers().get(0).capacity(), is(20));
+        assertThat(gathered.getLength(), is(ula.getHeader().getLength()));
+        assertThat(gathered.toBuffer(), is(ula.getBuffer()));
+    }
+}
@@ -0,0 +1,158 @@
+package io.snice.codecs.codec.diameter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class OutstandingRequestsTest extends DiameterTestBase {
+
+    @Test
+    public void testAddGetRemove() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        final long hopByHop = ulr.getHeader().getHopByHopId();
+
+        final OutstandingRequests<DiameterMessage> table = OutstandingRequests.create(10);
+        assertThat(table.add(hopByHop, ulr, 1000), is(true));
+        assertThat(table.size(), is(1));
+        assertThat(table.get(hopByHop) == ulr, is(true));
+
+        // same hop-by-hop id again is a no-no
+        assertThat(table.add(hopByHop, ulr, 1000), is(false));
+
+        assertThat(table.remove(hopByHop) == ulr, is(true));
+        assertThat(table.remove(hopByHop), nullValue());
+        assertThat(table.get(hopByHop), nullValue());
+        assertThat(table.isEmpty(), is(true));
+    }
+
+    /**
+     * The hop-by-hop id is an unsigned 32 bit value so make sure the upper half of the
+     * range works as well.
+     */
+    @Test
+    public void testUnsignedHopByHop() {
+        final OutstandingRequests<String> table = OutstandingRequests.create(10);
+        table.add(0xFFFFFFFFL, "max", 0);
+        table.add(0x80000000L, "high", 0);
+        table.add(0L, "zero", 0);
+
+        assertThat(table.get(0xFFFFFFFFL), is("max"));
+        assertThat(table.get(0x80000000L), is("high"));
+        assertThat(table.get(0L), is("zero"));
+
+        final List<Long> expired = new ArrayList<>();
+        table.expire(OutstandingRequests.DEFAULT_TIMEOUT_MS, (request, hopByHop) -> expired.add(hopByHop));
+        assertThat(expired.size(), is(3));
+        assertThat(expired.contains(0xFFFFFFFFL), is(true));
+        assertThat(expired.contains(0x80000000L), is(true));
+    }
+
+    @Test
+    public void testFull() {
+        final OutstandingRequests<String> table = OutstandingRequests.create(3);
+        assertThat(table.add(1, "a", 0), is(true));
+        assertThat(table.add(2, "b", 0), is(true));
+        assertThat(table.add(3, "c", 0), is(true));
+        assertThat(table.add(4, "d", 0), is(false));
+
+        table.remove(2);
+        assertThat(table.add(4, "d", 0), is(true));
+        assertThat(table.get(4), is("d"));
+        assertThat(table.size(), is(3));
+
+        table.clear();
+        assertThat(table.isEmpty(), is(true));
+        assertThat(table.get(1), nullValue());
+        assertThat(table.add(1, "a", 0), is(true));
+    }
+
+    @Test
+    public void testExpire() {
+        final OutstandingRequests<String> table = OutstandingRequests.create(100, 1000);
+        table.add(1, "default", 0);
+        table.add(2, "short", 0, 100);
+        table.add(3, "long", 0, 5000);
+
+        final Map<Long, String> expired = new HashMap<>();
+        assertThat(table.expire(99, (r, h) -> expired.put(h, r)), is(0));
+
+        assertThat(table.expire(100, (r, h) -> expired.put(h, r)), is(1));
+        assertThat(expired.get(2L), is("short"));
+
+        // within the same tick as the deadline of the next one but not quite there yet.
+        assertThat(table.expire(995, (r, h) -> expired.put(h, r)), is(0));
+        assertThat(table.expire(1000, (r, h) -> expired.put(h, r)), is(1));
+        assertThat(expired.get(1L), is("default"));
+
+        // the long one is more than a full rotation of the wheel away
+        assertThat(table.expire(4999, (r, h) -> expired.put(h, r)), is(0));
+        assertThat(table.get(3), is("long"));
+        assertThat(table.expire(6000, (r, h) -> expired.put(h, r)), is(1));
+        assertThat(expired.get(3L), is("long"));
+        assertThat(table.isEmpty(), is(true));
+    }
+
+    /**
+     * Answers that arrive in time must not show up as timed out.
+     */
+    @Test
+    public void testRemovedDoesNotExpire() {
+        final OutstandingRequests<String> table = OutstandingRequests.create(100, 1000);
+        table.add(1, "a", 0);
+        table.add(2, "b", 0);
+        table.remove(1);
+
+        final List<String> expired = new ArrayList<>();
+        table.expire(2000, (r, h) -> expired.add(r));
+        assertThat(expired.size(), is(1));
+        assertThat(expired.get(0), is("b"));
+    }
+
+    /**
+     * Hammer the table with random operations and compare it to a regular map.
+     */
+    @Test
+    public void testRandomOperations() {
+        final Random random = new Random(42);
+        final int capacity = 1000;
+        final OutstandingRequests<Long> table = OutstandingRequests.create(capacity, 3000);
+        final Map<Long, Long> deadlines = new HashMap<>();
+        long now = 0;
+
+        for (int i = 0; i < 200_000; ++i) {
+            final long hopByHop = random.nextInt(2000) | (random.nextBoolean() ? 0x80000000L : 0);
+            final int op = random.nextInt(10);
+            if (op < 5) {
+                final long timeout = random.nextInt(5000);
+                final boolean expected = !deadlines.containsKey(hopByHop) && deadlines.size() < capacity;
+                assertThat(table.add(hopByHop, hopByHop, now, timeout), is(expected));
+                if (expected) {
+                    deadlines.put(hopByHop, now + timeout);
+                }
+            } else if (op < 7) {
+                final Long expected = deadlines.remove(hopByHop) == null ? null : hopByHop;
+                assertThat(table.remove(hopByHop), is(expected));
+            } else if (op < 8) {
+                final Long expected = deadlines.containsKey(hopByHop) ? hopByHop : null;
+                assertThat(table.get(hopByHop), is(expected));
+            } else {
+                now += random.nextInt(50);
+                final long time = now;
+                table.expire(now, (request, id) -> {
+                    assertThat(request, is(id));
+                    assertThat(deadlines.remove(id) <= time, is(true));
+                });
+                deadlines.values().forEach(deadline -> assertThat(deadline > time, is(true)));
+            }
+            assertThat(table.size(), is(deadlines.size()));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.snice.codecs.codec.diameter;
+
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.RoutingTable.Action;
+import io.snice.codecs.codec.diameter.RoutingTable.Route;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RoutingTableTest extends DiameterTestBase {
+
+    private static final long S6A = 16777251;
+
+    private RoutingTable table;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        table = RoutingTable.create();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(table.size(), is(0));
+        assertThat(table.lookup("epc.example.com", S6A).isPresent(), is(false));
+    }
+
+    @Test
+    public void testLookupOrder() {
+        table.add(Route.of("epc.example.com").withApplicationId(S6A).withPeer("hss.epc.example.com").build());
+        table.add(Route.of("epc.example.com").withAction(Action.LOCAL).build());
+        table.add(Route.of(RoutingTable.ANY_REALM).withApplicationId(4).withAction(Action.PROXY).withPeer("ocs.example.com").build());
+
+        assertRoute("epc.example.com", S6A, "epc.example.com", S6A, Action.RELAY);
+        assertRoute("epc.example.com", 4, "epc.example.com", RoutingTable.ANY_APPLICATION, Action.LOCAL);
+        assertRoute("other.example.com", 4, RoutingTable.ANY_REALM, 4, Action.PROXY);
+        assertThat(table.lookup("other.example.com", S6A).isPresent(), is(false));
+
+        table.add(Route.of(RoutingTable.ANY_REALM).withAction(Action.REDIRECT).withPeer("redirect.example.com").build());
+        assertRoute("other.example.com", S6A, RoutingTable.ANY_REALM, RoutingTable.ANY_APPLICATION, Action.REDIRECT);
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        table.add(Route.of("EPC.Example.Com").withApplicationId(S6A).withPeer("hss.epc.example.com").build());
+        assertThat(table.getRoutes().get(0).getRealm(), is("epc.example.com"));
+        assertRoute("epc.example.com", S6A, "epc.example.com", S6A, Action.RELAY);
+        assertRoute("EPC.EXAMPLE.COM", S6A, "epc.example.com", S6A, Action.RELAY);
+        assertThat(table.lookup(Buffers.wrap("ePc.eXample.coM"), S6A).isPresent(), is(true));
+    }
+
+    @Test
+    public void testLookupMessage() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        final String realm = ulr.getDestinationRealm().get().getValue().asString();
+        final long applicationId = ulr.getHeader().getApplicationId();
+
+        table.add(Route.of(realm).withApplicationId(applicationId).withPeer("hss.example.com").build());
+        final Route route = table.lookup(ulr).get();
+        assertThat(route.getPeers().get(0), is(DiameterIdentity.parse("hss.example.com")));
+
+        // answers typically don't have a Destination-Realm, in which case they are processed locally
+        final DiameterMessage ula = loadDiameterMessage("ula.raw");
+        assertThat(table.lookup(ula).isPresent(), is(false));
+    }
+
+    @Test
+    public void testAddReplacesAndRemove() {
+        table.add(Route.of("epc.example.com").withApplicationId(S6A).withPeer("hss1.example.com").build());
+        table.add(Route.of("epc.example.com").withApplicationId(S6A).withPeer("hss2.example.com").build());
+        assertThat(table.size(), is(1));
+        assertThat(table.lookup("epc.example.com", S6A).get().getPeers().get(0), is(DiameterIdentity.parse("hss2.example.com")));
+
+        assertThat(table.remove("EPC.example.com", S6A), is(true));
+        assertThat(table.remove("epc.example.com", S6A), is(false));
+        assertThat(table.lookup("epc.example.com", S6A).isPresent(), is(false));
+    }
+
+    @Test
+    public void testReplaceAll() {
+        table.add(Route.of("old.example.com").withPeer("peer.example.com").build());
+
+        final List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            routes.add(Route.of("realm" + i + ".example.com").withApplicationId(i % 7).withPeer("peer.example.com").build());
+        }
+        table.replaceAll(routes);
+
+        assertThat(table.size(), is(1000));
+        assertThat(table.lookup("old.example.com", 0).isPresent(), is(false));
+        for (int i = 0; i < 1000; ++i) {
+            assertThat(table.lookup("realm" + i + ".example.com", i % 7).get().getRealm(), is("realm" + i + ".example.com"));
+            assertThat(table.lookup("realm" + i + ".example.com", 8).isPresent(), is(false));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRelayWithoutPeers() {
+        Route.of("epc.example.com").withAction(Action.RELAY).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLocalWithPeers() {
+        Route.of("epc.example.com").withAction(Action.LOCAL).withPeer("hss.example.com").build();
+    }
+
+    private void assertRoute(final String realm, final long applicationId,
+                             final String expectedRealm, final long expectedApplicationId, final Action expectedAction) {
+        final Route route = table.lookup(realm, applicationId).get();
+        assertThat(route.getRealm(), is(expectedRealm));
+        assertThat(route.getApplicationId(), is(expectedApplicationId));
+        assertThat(route.getAction(), is(expectedAction));
+    }
+}
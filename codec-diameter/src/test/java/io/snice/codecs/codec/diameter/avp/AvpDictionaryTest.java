@@ -0,0 +1,107 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.api.SubscriptionData;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AvpDictionaryTest extends DiameterTestBase {
+
+    private static final long VENDOR_3GPP = 10415;
+
+    private DiameterMessage ula;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        ula = loadDiameterMessage("ula.raw");
+    }
+
+    @Test
+    public void testRegisterAndParse() {
+        final AvpDictionary dictionary = AvpDictionary.create()
+                .register(OriginHost.class)
+                .register(VENDOR_3GPP, SubscriptionData.class);
+
+        assertThat(dictionary.size(), is(2));
+        assertThat(dictionary.isRegistered(0, OriginHost.CODE), is(true));
+        assertThat(dictionary.isRegistered(VENDOR_3GPP, SubscriptionData.CODE), is(true));
+        assertThat(dictionary.isRegistered(0, SubscriptionData.CODE), is(false));
+        assertThat(dictionary.isRegistered(0, OriginRealm.CODE), is(false));
+
+        final Avp originHost = dictionary.parse(ula.getAvp(OriginHost.CODE).get());
+        assertThat(originHost.isOriginHost(), is(true));
+        assertThat(originHost.toOriginHost().getValue().asString(), is("127.0.0.1"));
+
+        final Avp subscriptionData = dictionary.parse(ula.getAvp(SubscriptionData.CODE).get());
+        assertThat(subscriptionData.getCode(), is((long) SubscriptionData.CODE));
+    }
+
+    /**
+     * AVPs that haven't been registered are still parsed, through the generated framer.
+     */
+    @Test
+    public void testNotRegistered() {
+        final AvpDictionary dictionary = AvpDictionary.create();
+        final Avp originRealm = dictionary.parse(ula.getAvp(OriginRealm.CODE).get());
+        assertThat(originRealm.isOriginRealm(), is(true));
+        assertThat(dictionary.isRegistered(0, OriginRealm.CODE), is(false));
+    }
+
+    /**
+     * The default dictionary is built up front and parsing an AVP it doesn't know about, which
+     * is under the control of the peer, must not change it.
+     */
+    @Test
+    public void testDefaultIsPopulated() {
+        final AvpDictionary dictionary = AvpDictionary.getDefault();
+        assertThat(dictionary.isRegistered(0, OriginRealm.CODE), is(true));
+        assertThat(dictionary.isRegistered(VENDOR_3GPP, SubscriptionData.CODE), is(true));
+
+        final int size = dictionary.size();
+        final FramedAvp raw = ula.getAvp(OriginRealm.CODE).get();
+        assertThat(raw.ensure().isOriginRealm(), is(true));
+
+        // ULA-Flags isn't part of the default dictionary
+        final FramedAvp ulaFlags = ula.getAvp(VENDOR_3GPP, 1406).get();
+        assertThat(ulaFlags.ensure().getCode(), is(1406L));
+        assertThat(dictionary.isRegistered(VENDOR_3GPP, 1406), is(false));
+        assertThat(dictionary.size(), is(size));
+    }
+
+    @Test
+    public void testReplaceParser() {
+        final AvpDictionary dictionary = AvpDictionary.create().register(OriginHost.class);
+        dictionary.register(0, OriginHost.CODE, raw -> OriginHost.of("replaced.node"));
+        assertThat(dictionary.size(), is(1));
+
+        final Avp originHost = dictionary.parse(ula.getAvp(OriginHost.CODE).get());
+        assertThat(originHost.toOriginHost().getValue().asString(), is("replaced.node"));
+    }
+
+    /**
+     * Tools, such as load generators, will ask for these over and over again so they
+     * must be cached.
+     */
+    @Test
+    public void testReflectionIsCached() {
+        assertThat(AvpReflection.getParser(OriginHost.class) == AvpReflection.getParser(OriginHost.class), is(true));
+        assertThat(AvpReflection.of(OriginHost.class) == AvpReflection.of(OriginHost.class), is(true));
+        assertThat(AvpReflection.getCreator(OriginHost.class) == AvpReflection.getCreator(OriginHost.class), is(true));
+
+        final OriginHost originHost = AvpReflection.of(OriginHost.class).apply(DiameterIdentity.parse("hello.3gppnetwork.org"));
+        assertThat(originHost.getValue().asString(), is("hello.3gppnetwork.org"));
+    }
+
+    @Test(expected = AvpReflectionException.class)
+    public void testNotAnAvp() {
+        AvpDictionary.create().register((Class) String.class);
+    }
+}
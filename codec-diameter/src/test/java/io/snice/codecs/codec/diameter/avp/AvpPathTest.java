@@ -0,0 +1,105 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.SubscriptionData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AvpPathTest extends DiameterTestBase {
+
+    private static final long VENDOR_3GPP = 10415;
+
+    /**
+     * Subscription-Data / APN-Configuration-Profile / APN-Configuration / Service-Selection
+     */
+    private static final AvpPath SERVICE_SELECTION = AvpPath.of(SubscriptionData.CODE, 1429, 1430, 493);
+
+    private DiameterMessage ula;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        ula = loadDiameterMessage("ula.raw");
+    }
+
+    @Test
+    public void testFindFirst() {
+        assertThat(SERVICE_SELECTION.findFirst(ula).get(), is(Buffers.wrap("wireless.twilio.com")));
+        assertThat(ula.getAvpData(SERVICE_SELECTION).get(), is(Buffers.wrap("wireless.twilio.com")));
+    }
+
+    @Test
+    public void testFindAll() {
+        final List<Buffer> apns = ula.getAllAvpData(SERVICE_SELECTION);
+        assertThat(apns.size(), is(2));
+        assertThat(apns.get(0), is(Buffers.wrap("wireless.twilio.com")));
+        assertThat(apns.get(1), is(Buffers.wrap("super")));
+
+        // Max-Requested-Bandwidth-UL exists in the AMBR of the subscription data
+        // itself as well as in the AMBR of each APN configuration.
+        assertThat(AvpPath.of(SubscriptionData.CODE, 1435, 516).findAll(ula).size(), is(1));
+        assertThat(AvpPath.of(SubscriptionData.CODE, 1429, 1430, 1435, 516).findAll(ula).size(), is(2));
+    }
+
+    @Test
+    public void testSingleLevel() {
+        assertThat(AvpPath.of(264).findFirst(ula).get(), is(Buffers.wrap("127.0.0.1")));
+        assertThat(AvpPath.of(296).findFirst(ula).get(), is(Buffers.wrap("epc.mnc001.mcc001.3gppnetwork.org")));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertThat(AvpPath.of(9999).findFirst(ula).isPresent(), is(false));
+        assertThat(AvpPath.of(SubscriptionData.CODE, 1429, 9999).findAll(ula).isEmpty(), is(true));
+
+        // Service-Selection does exist, but not directly under the subscription data.
+        assertThat(AvpPath.of(SubscriptionData.CODE, 493).findFirst(ula).isPresent(), is(false));
+    }
+
+    @Test
+    public void testVendor() {
+        final AvpPath withVendor = AvpPath.builder()
+                .with(SubscriptionData.CODE, VENDOR_3GPP)
+                .with(1429, VENDOR_3GPP)
+                .with(1430)
+                .with(493)
+                .build();
+        assertThat(withVendor.findAll(ula).size(), is(2));
+        assertThat(withVendor.getVendorId(0).get(), is(VENDOR_3GPP));
+        assertThat(withVendor.getVendorId(2).isPresent(), is(false));
+
+        final AvpPath wrongVendor = AvpPath.builder().with(SubscriptionData.CODE, 1).with(1429).build();
+        assertThat(wrongVendor.findFirst(ula).isPresent(), is(false));
+    }
+
+    /**
+     * A path can also be relative to a grouped AVP that has already been found.
+     */
+    @Test
+    public void testFindInGroupedAvp() {
+        final FramedAvp subscriptionData = ula.getAvp(SubscriptionData.CODE).get();
+        final AvpPath path = AvpPath.of(1429, 1430, 493);
+        assertThat(path.findFirst(subscriptionData).get(), is(Buffers.wrap("wireless.twilio.com")));
+    }
+
+    @Test(expected = DiameterParseException.class)
+    public void testBadNestedLength() throws Exception {
+        final byte[] bytes = loadBytes("ula.raw");
+
+        // the Subscription-Data starts right after the first four AVPs and its first
+        // child AVP (Subscriber-Status) claims to be way longer than its parent.
+        final int subscriptionData = 20 + 68 + 32 + 12 + 16;
+        bytes[subscriptionData + 12 + 5] = 0x7F;
+
+        AvpPath.of(SubscriptionData.CODE, 1429).findFirst(DiameterMessage.frame(Buffers.wrap(bytes)));
+    }
+}
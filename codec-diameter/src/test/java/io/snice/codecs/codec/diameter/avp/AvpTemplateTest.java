@@ -0,0 +1,103 @@
+package io.snice.codecs.codec.diameter.avp;
+
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import io.snice.codecs.codec.diameter.avp.api.UserName;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AvpTemplateTest extends DiameterTestBase {
+
+    private AvpTemplate template;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        template = AvpTemplate.of()
+                .withAvp(defaultOriginHost)
+                .withAvp(defaultOriginRealm)
+                .withAvp(defaultProductName)
+                .build();
+    }
+
+    @Test
+    public void testTemplate() {
+        assertThat(template.getAvps().size(), is(3));
+
+        final int expectedLength = defaultOriginHost.getLength() + defaultOriginHost.getPadding()
+                + defaultOriginRealm.getLength() + defaultOriginRealm.getPadding()
+                + defaultProductName.getLength() + defaultProductName.getPadding();
+        assertThat(template.getLength(), is(expectedLength));
+    }
+
+    /**
+     * A message built with a template must be exactly the same as one where
+     * all the AVPs were added one by one.
+     */
+    @Test
+    public void testAnswerFromTemplate() throws Exception {
+        final DiameterRequest ulr = loadDiameterMessage("ulr.raw").toRequest();
+
+        final DiameterAnswer fromTemplate = ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withAvpTemplate(template)
+                .build();
+
+        final DiameterAnswer expected = ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(defaultOriginHost)
+                .withOriginRealm(defaultOriginRealm)
+                .withAvp(defaultProductName)
+                .build();
+
+        assertThat(fromTemplate.getBuffer(), is(expected.getBuffer()));
+        assertThat(fromTemplate.getOriginHost().getValue().asString(), is(defaultOriginHost.getValue().asString()));
+        assertThat(fromTemplate.getOriginRealm().getValue().asString(), is(defaultOriginRealm.getValue().asString()));
+        assertThat(fromTemplate.getResultCode().get(), is(ResultCode.DiameterSuccess2001));
+
+        final DiameterMessage framed = DiameterMessage.frame(fromTemplate.getBuffer());
+        assertThat(framed.getAllAvps().size(), is(5));
+        assertThat(framed.getOriginHost().getValue().asString(), is(defaultOriginHost.getValue().asString()));
+    }
+
+    /**
+     * The template goes where it was added among the other AVPs.
+     */
+    @Test
+    public void testTemplatePosition() throws Exception {
+        final DiameterMessage ulr = DiameterRequest.createULR()
+                .withSessionId("node.epc.mnc001.mcc001.3gppnetwork.org;1234;5678")
+                .withAvpTemplate(template)
+                .withUserName("001001123456789")
+                .withDestinationRealm("epc.mnc999.mcc999.3gppnetwork.org")
+                .build();
+
+        final DiameterMessage framed = DiameterMessage.frame(ulr.getBuffer());
+        assertThat(framed.getAllAvps().size(), is(6));
+        assertThat(framed.getAllAvps().get(0).getCode(), is((long) SessionId.CODE));
+        assertThat(framed.getAllAvps().get(1).getCode(), is(defaultOriginHost.getCode()));
+        assertThat(framed.getAllAvps().get(3).getCode(), is(defaultProductName.getCode()));
+        assertThat(framed.getAllAvps().get(4).getCode(), is((long) UserName.CODE));
+
+        assertThat(ulr.getOriginHost().getValue().asString(), is(defaultOriginHost.getValue().asString()));
+        assertThat(ulr.getDestinationRealm().get().getValue().asString(), is("epc.mnc999.mcc999.3gppnetwork.org"));
+    }
+
+    @Test
+    public void testGatheredTemplate() throws Exception {
+        final DiameterRequest ulr = loadDiameterMessage("ulr.raw").toRequest();
+        final var builder = ulr.createAnswer(ResultCode.DiameterSuccess2001).withAvpTemplate(template);
+
+        final DiameterMessage answer = builder.copy().build();
+        final GatheredDiameterMessage gathered = builder.copy().buildGathered();
+
+        assertThat(gathered.toBuffer(), is(answer.getBuffer()));
+        assertThat(gathered.getBuffers().contains(template.getBuffer()), is(true));
+    }
+}
@@ -0,0 +1,145 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.ProductName;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AvpIndexTest extends DiameterTestBase {
+
+    /**
+     * The index must give us the exact same result as if we were to scan through all the AVPs,
+     * including the order of those AVPs that are present multiple times.
+     */
+    @Test
+    public void testIndexMatchesLinearScan() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final DiameterMessage msg = loadDiameterMessage(raw.resource);
+            for (final FramedAvp avp : msg.getAllAvps()) {
+                ensureIndex(msg, avp.getCode());
+            }
+
+            // and some that shouldn't be there at all
+            ensureIndex(msg, 0);
+            ensureIndex(msg, 999999);
+        }
+    }
+
+    @Test
+    public void testIndexOnBuiltMessage() {
+        final var cea = someCea(ResultCode.DiameterSuccess2001);
+        assertThat(cea.getAvp(ProductName.CODE).get().ensure(), is(defaultProductName));
+        assertThat(cea.getAvps(ProductName.CODE).size(), is(1));
+    }
+
+    @Test
+    public void testMultipleAvpsSameCode() {
+        final AvpIndex index = AvpIndex.builder(2).add(10).add(20).add(10).add(30).add(10).build();
+        assertThat(index.count(10), is(3));
+        assertThat(index.first(10), is(0));
+        assertThat(index.next(0), is(2));
+        assertThat(index.next(2), is(4));
+        assertThat(index.next(4), is(AvpIndex.NONE));
+
+        assertThat(index.count(20), is(1));
+        assertThat(index.first(30), is(3));
+        assertThat(index.first(40), is(AvpIndex.NONE));
+        assertThat(index.count(40), is(0));
+    }
+
+    @Test
+    public void testVendorQualifiedKeys() {
+        final long tgpp = AvpHeader.key(10415, 264);
+        final long other = AvpHeader.key(5535, 264);
+        final AvpIndex index = AvpIndex.builder(2).add(264).add(tgpp).add(264).add(other).build();
+
+        // by code, all of them regardless of vendor
+        assertThat(index.count(264), is(4));
+
+        assertThat(index.countByKey(264), is(2));
+        assertThat(index.firstByKey(264), is(0));
+        assertThat(index.nextByKey(0), is(2));
+        assertThat(index.nextByKey(2), is(AvpIndex.NONE));
+
+        assertThat(index.countByKey(tgpp), is(1));
+        assertThat(index.firstByKey(tgpp), is(1));
+        assertThat(index.firstByKey(other), is(3));
+        assertThat(index.firstByKey(AvpHeader.key(1, 264)), is(AvpIndex.NONE));
+    }
+
+    @Test
+    public void testVendorQualifiedLookups() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        for (final FramedAvp avp : ulr.getAllAvps()) {
+            final long vendorId = avp.getHeader().isVendorSpecific() ? avp.getHeader().getVendorIdAsLong() : 0;
+            final List<FramedAvp> expected = ulr.getAllAvps().stream()
+                    .filter(a -> a.getKey() == avp.getKey())
+                    .collect(Collectors.toList());
+            assertThat(ulr.getAvp(vendorId, avp.getCode()).get() == expected.get(0), is(true));
+            assertThat(ulr.getAvps(vendorId, avp.getCode()), is(expected));
+        }
+
+        // ULR-Flags is a 3GPP AVP
+        assertThat(ulr.getAvp(10415, 1405).isPresent(), is(true));
+        assertThat(ulr.getAvp(0, 1405).isPresent(), is(false));
+        assertThat(ulr.getAvp(5535, 1405).isPresent(), is(false));
+    }
+
+    /**
+     * A vendor specific AVP that happens to have the same code as one of the base protocol AVPs
+     * we keep track of must not be mistaken for it.
+     */
+    @Test
+    public void testVendorAvpWithSameCodeAsOriginHost() {
+        final Avp<DiameterIdentity> imposter = Avp.ofType(DiameterIdentity.class)
+                .withValue("not.the.origin.host")
+                .withAvpCode(OriginHost.CODE)
+                .withVendorId(5535)
+                .build();
+
+        final DiameterMessage cer = someCer().copy().withAvp(imposter).build();
+        assertThat(cer.getOriginHost(), is(defaultOriginHost));
+        assertThat(cer.getAvps(OriginHost.CODE).size(), is(2));
+        assertThat(cer.getAvps(0, OriginHost.CODE).size(), is(1));
+        assertThat(cer.getAvp(5535, OriginHost.CODE).get().getData(), is(imposter.getData()));
+
+        final DiameterMessage framed = serializeDeserialize(cer);
+        assertThat(framed.getOriginHost(), is(defaultOriginHost));
+        assertThat(framed.getAvps(OriginHost.CODE).size(), is(2));
+        assertThat(framed.getAvp(5535, OriginHost.CODE).get().getData(), is(imposter.getData()));
+    }
+
+    private static void ensureIndex(final DiameterMessage msg, final long code) {
+        final List<FramedAvp> expected = msg.getAllAvps().stream()
+                .filter(avp -> avp.getCode() == code)
+                .collect(Collectors.toList());
+
+        final Optional<FramedAvp> first = expected.isEmpty() ? Optional.empty() : Optional.of(expected.get(0));
+        assertThat(msg.getAvp(code), is(first));
+
+        final List<FramedAvp> actual = msg.getAvps(code);
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); ++i) {
+            assertThat(actual.get(i) == expected.get(i), is(true));
+        }
+
+        // and the same thing when iterating
+        final List<FramedAvp> iterated = new ArrayList<>();
+        actual.forEach(iterated::add);
+        assertThat(iterated, is(expected));
+    }
+}
@@ -0,0 +1,159 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AvpTableTest extends DiameterTestBase {
+
+    /**
+     * The table must describe the exact same AVPs as what we get when we frame the message,
+     * regardless of whether we scan a byte-array, a heap or a direct {@link ByteBuffer}.
+     */
+    @Test
+    public void testScan() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final byte[] bytes = loadBytes(raw.resource);
+            final DiameterMessage msg = DiameterMessage.frame(loadBuffer(raw.resource));
+
+            ensureTable(AvpTable.scan(bytes, 0), msg);
+
+            // also make sure that offsets are relative to the start of the message
+            final byte[] padded = new byte[bytes.length + 7];
+            System.arraycopy(bytes, 0, padded, 7, bytes.length);
+            ensureTable(AvpTable.scan(padded, 7), msg);
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+            direct.order(ByteOrder.LITTLE_ENDIAN); // shouldn't matter
+            direct.position(3);
+            direct.put(bytes);
+            direct.position(3);
+            ensureTable(AvpTable.scan(direct), msg);
+            assertThat(direct.position(), is(3));
+
+            ensureTable(AvpTable.scan(ByteBuffer.wrap(padded, 7, bytes.length)), msg);
+        }
+    }
+
+    /**
+     * Framing a message off of a byte-array must give us the same message as the regular framing.
+     */
+    @Test
+    public void testFrameByteArray() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final byte[] bytes = loadBytes(raw.resource);
+            final DiameterMessage expected = DiameterMessage.frame(loadBuffer(raw.resource));
+
+            final byte[] padded = new byte[bytes.length + 5];
+            System.arraycopy(bytes, 0, padded, 5, bytes.length);
+            final DiameterMessage msg = DiameterMessage.frame(padded, 5);
+
+            assertThat(msg.getBuffer(), is(expected.getBuffer()));
+            assertThat(msg.getHeader().getCommandCode(), is(raw.commandCode));
+            assertThat(msg.getAllAvps().size(), is(raw.avpCount));
+            assertThat(msg, is(expected));
+            for (int i = 0; i < raw.avpCount; ++i) {
+                final FramedAvp avp = msg.getAllAvps().get(i);
+                final FramedAvp expectedAvp = expected.getAllAvps().get(i);
+                assertThat(avp.getHeader().getBuffer(), is(expectedAvp.getHeader().getBuffer()));
+                assertThat(avp.getData(), is(expectedAvp.getData()));
+            }
+        }
+
+        final DiameterMessage ulr = DiameterMessage.frame(loadBytes("ulr.raw"), 0);
+        assertThat(ulr.getOriginHost().getValue().asString(), is("seagull.node.epc.mnc001.mcc001.3gppnetwork.org"));
+        assertThat(ulr.getDestinationRealm().get().getValue().asString(), is("epc.mnc062.mcc901.3gppnetwork.org"));
+    }
+
+    @Test
+    public void testIndexOf() throws Exception {
+        final AvpTable table = AvpTable.scan(loadBytes("ulr.raw"), 0);
+        assertThat(table.indexOf(DestinationRealm.CODE), is(5));
+        assertThat(table.indexOf(1407), is(9));
+        assertThat(table.getVendorId(9), is(10415L));
+        assertThat(table.indexOf(999999), is(-1));
+    }
+
+    @Test
+    public void testCorruptAvp() throws Exception {
+        final byte[] bytes = loadBytes("ulr.raw");
+        bytes[20 + 5] = (byte) 0xFF; // the length of the first AVP now goes beyond the message
+        try {
+            AvpTable.scan(bytes, 0);
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A heap buffer whose backing array holds more than what is within its limit, e.g. a pooled
+     * buffer that has been used before, must not have the message extend beyond the limit.
+     */
+    @Test
+    public void testHeapBufferLimit() throws Exception {
+        final byte[] bytes = loadBytes("ulr.raw");
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.limit(100);
+        try {
+            AvpTable.scan(buffer);
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+
+        // and the same with the message not starting at the beginning of the backing array
+        final byte[] padded = new byte[bytes.length + 7];
+        System.arraycopy(bytes, 0, padded, 7, bytes.length);
+        try {
+            AvpTable.scan(ByteBuffer.wrap(padded, 7, bytes.length - 4).slice());
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTruncatedMessage() throws Exception {
+        final byte[] bytes = loadBytes("ulr.raw");
+        final byte[] truncated = new byte[100];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            AvpTable.scan(truncated, 0);
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    private static void ensureTable(final AvpTable table, final DiameterMessage msg) {
+        final List<FramedAvp> avps = msg.getAllAvps();
+        assertThat(table.getMessageLength(), is(msg.getHeader().getLength()));
+        assertThat(table.size(), is(avps.size()));
+
+        int expectedOffset = 20;
+        for (int i = 0; i < avps.size(); ++i) {
+            final FramedAvp avp = avps.get(i);
+            assertThat(table.getOffset(i), is(expectedOffset));
+            assertThat(table.getCode(i), is(avp.getCode()));
+            assertThat(table.getLength(i), is(avp.getLength()));
+            assertThat(table.getHeaderLength(i), is(avp.getHeader().getHeaderLength()));
+            assertThat(table.isVendorSpecific(i), is(avp.getHeader().isVendorSpecific()));
+            assertThat(table.isMandatory(i), is(avp.getHeader().isMandatory()));
+            assertThat(table.isProtected(i), is(avp.getHeader().isProtected()));
+            assertThat(table.getVendorId(i), is(avp.getHeader().getVendorId().orElse(0L)));
+            expectedOffset += avp.getLength() + avp.getPadding();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+import io.snice.codecs.codec.diameter.avp.api.UserName;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CompactDiameterMessageTest extends DiameterTestBase {
+
+    private static final long TGPP = 10415;
+
+    /**
+     * A compact message must give us the exact same information as the message it was compacted from.
+     */
+    @Test
+    public void testCompactMatchesFramedMessage() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final DiameterMessage framed = DiameterMessage.frame(loadBuffer(raw.resource).toBuffer());
+            final DiameterMessage compact = framed.compact();
+
+            assertThat(((ImmutableDiameterMessage) compact).isCompact(), is(true));
+            assertThat(compact.isRequest(), is(framed.isRequest()));
+            assertThat(compact.getHeader().getLength(), is(raw.length));
+            assertThat(compact.getHeader().getCommandCode(), is(raw.commandCode));
+            assertThat(compact.getBuffer(), is(framed.getBuffer()));
+            assertThat(compact.getSessionIdHash(), is(framed.getSessionIdHash()));
+
+            final List<FramedAvp> avps = compact.getAllAvps();
+            assertThat(avps.size(), is(raw.avpCount));
+            for (int i = 0; i < avps.size(); ++i) {
+                final FramedAvp expected = framed.getAllAvps().get(i);
+                assertThat(avps.get(i).getCode(), is(expected.getCode()));
+                assertThat(avps.get(i).getHeader().getVendorId(), is(expected.getHeader().getVendorId()));
+                assertThat(avps.get(i).getData(), is(expected.getData()));
+                assertThat(compact.getAvps(expected.getCode()).size(), is(framed.getAvps(expected.getCode()).size()));
+            }
+
+            assertThat(compact.equals(framed), is(true));
+            assertThat(framed.equals(compact), is(true));
+
+            // the AVPs are never framed, they are sliced out every time they are asked for.
+            assertThat(((ImmutableDiameterMessage) compact).isFramed(), is(false));
+        }
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw").compact();
+
+        final var userName = (UserName) ulr.getAvp(UserName.CODE).get().ensure();
+        assertThat(userName.getValue().getValue(), is("999999900"));
+        assertThat(ulr.getDestinationRealm().get().getValue().asString(), is("epc.mnc062.mcc901.3gppnetwork.org"));
+        assertThat(ulr.getDestinationHost().isPresent(), is(false));
+
+        // ULR-Flags is a 3GPP AVP
+        assertThat(ulr.getAvp(TGPP, 1405).isPresent(), is(true));
+        assertThat(ulr.getAvps(TGPP, 1405).size(), is(1));
+        assertThat(ulr.getAvp(1405).isPresent(), is(true));
+        assertThat(ulr.getAvp(0, 1405).isPresent(), is(false));
+        assertThat(ulr.getAvps(RouteRecord.CODE).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testRepeatedAvps() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        final DiameterMessage relayed = ulr.relay()
+                .withRouteRecord("a.epc.example.com")
+                .withRouteRecord("b.epc.example.com")
+                .build()
+                .toDiameterMessage()
+                .compact();
+
+        final List<FramedAvp> routeRecords = relayed.getAvps(RouteRecord.CODE);
+        assertThat(routeRecords.size(), is(2));
+        assertThat(((RouteRecord) routeRecords.get(0).ensure()).getValue().asString(), is("a.epc.example.com"));
+        assertThat(((RouteRecord) routeRecords.get(1).ensure()).getValue().asString(), is("b.epc.example.com"));
+    }
+
+    /**
+     * Compacting an already compact message is a no-op while a lazily framed message can be compacted
+     * without ever framing its AVPs.
+     */
+    @Test
+    public void testCompactTwice() throws Exception {
+        final DiameterMessage lazy = DiameterMessage.frameLazy(loadBuffer("ula.raw"));
+        final DiameterMessage compact = lazy.compact();
+        assertThat(((ImmutableDiameterMessage) lazy).isFramed(), is(false));
+        assertThat(compact, not(sameInstance(lazy)));
+        assertThat(compact.compact(), sameInstance(compact));
+
+        assertThat(compact.isAnswer(), is(true));
+        assertThat(compact.toAnswer().getResultCode().get().getAsEnum().get(), is(ResultCode.DiameterSuccess2001.getAsEnum().get()));
+        assertThat(compact.getOriginHost(), is(lazy.getOriginHost()));
+    }
+}
@@ -0,0 +1,90 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiameterBuilderReuseTest extends DiameterTestBase {
+
+    /**
+     * An answer built from a re-used builder must be the same as if it was built
+     * using a brand new builder.
+     */
+    @Test
+    public void testReuseAnswerBuilder() throws Exception {
+        final DiameterAnswer.Builder builder = DiameterAnswer.withResultCode(ResultCode.DiameterSuccess2001);
+
+        for (final String resource : new String[]{"ulr.raw", "001_diameter_auth_info_request.raw", "ulr.raw"}) {
+            final DiameterRequest req = loadDiameterMessage(resource).toRequest();
+
+            final DiameterAnswer reused = req.createAnswer(ResultCode.DiameterSuccess2001, builder)
+                    .withOriginHost(defaultOriginHost)
+                    .withOriginRealm(defaultOriginRealm)
+                    .build();
+
+            final DiameterAnswer fresh = req.createAnswer(ResultCode.DiameterSuccess2001)
+                    .withOriginHost(defaultOriginHost)
+                    .withOriginRealm(defaultOriginRealm)
+                    .build();
+
+            assertThat(reused.getBuffer(), is(fresh.getBuffer()));
+            assertThat(reused.getHeader().getHopByHopId(), is(req.getHeader().getHopByHopId()));
+            assertThat(reused.getResultCode().get(), is(ResultCode.DiameterSuccess2001));
+            assertThat(reused.getAvp(SessionId.CODE).isPresent(), is(true));
+
+            // Session-Id, Result-Code, Origin-Host and Origin-Realm. Nothing left over from the last round
+            assertThat(reused.getAllAvps().size(), is(4));
+        }
+    }
+
+    /**
+     * Writing into the same buffer over and over must produce the exact same bytes as
+     * building a brand new message every time.
+     */
+    @Test
+    public void testWriteTo() throws Exception {
+        final byte[] array = new byte[256];
+        final var builder = DiameterRequest.createULR();
+
+        for (int i = 0; i < 3; ++i) {
+            final var sessionId = "node.epc.mnc001.mcc001.3gppnetwork.org;1234;" + i;
+            final int written = builder.reset()
+                    .withDiameterHeader(DiameterHeader.createULR().withHopToHopId(i).withEndToEndId(i))
+                    .withSessionId(sessionId)
+                    .withOriginHost("node.epc.mnc001.mcc001.3gppnetwork.org")
+                    .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                    .writeTo(WritableBuffer.of(array));
+
+            final DiameterMessage fresh = DiameterRequest.createRequest(DiameterHeader.createULR().withHopToHopId(i).withEndToEndId(i))
+                    .withSessionId(sessionId)
+                    .withOriginHost("node.epc.mnc001.mcc001.3gppnetwork.org")
+                    .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                    .build();
+
+            final Buffer reused = Buffers.wrap(array).slice(written);
+            assertThat(written, is(fresh.getBuffer().capacity()));
+            assertThat(reused, is(fresh.getBuffer()));
+            assertThat(DiameterMessage.frame(reused).getAllAvps().size(), is(3));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteToBufferTooSmall() throws Exception {
+        DiameterRequest.createULR()
+                .withSessionId("node.epc.mnc001.mcc001.3gppnetwork.org;1234;1")
+                .withOriginHost("node.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .writeTo(WritableBuffer.of(new byte[32]));
+    }
+}
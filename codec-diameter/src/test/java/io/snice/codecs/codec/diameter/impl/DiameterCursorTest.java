@@ -0,0 +1,126 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.Avp;
+import io.snice.codecs.codec.diameter.avp.AvpHeader;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiameterCursorTest extends DiameterTestBase {
+
+    /**
+     * Walking the message with the cursor must give us the exact same information as
+     * when we fully frame the message.
+     */
+    @Test
+    public void testCursorMatchesFramedMessage() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final var buffer = loadBuffer(raw.resource);
+            final DiameterMessage msg = DiameterMessage.frame(buffer.toBuffer());
+            final DiameterCursor cursor = DiameterMessage.cursor(buffer.toBuffer());
+
+            assertThat(cursor.getMessageLength(), is(msg.getHeader().getLength()));
+            assertThat(cursor.getCommandCode(), is(msg.getHeader().getCommandCode()));
+            assertThat(cursor.getApplicationId(), is(msg.getHeader().getApplicationId()));
+            assertThat(cursor.getHopByHopId(), is(msg.getHeader().getHopByHopId()));
+            assertThat(cursor.getEndToEndId(), is(msg.getHeader().getEndToEndId()));
+            assertThat(cursor.isRequest(), is(msg.getHeader().isRequest()));
+
+            final List<FramedAvp> avps = msg.getAllAvps();
+            for (final FramedAvp avp : avps) {
+                assertThat(cursor.next(), is(true));
+                ensureSameHeader(cursor, avp.getHeader());
+                assertThat(cursor.getData(), is(avp.getData()));
+                assertThat(cursor.getPadding(), is(avp.getPadding()));
+                ensureSameHeader(cursor.toFramedAvp().getHeader(), avp.getHeader());
+            }
+
+            assertThat(cursor.next(), is(false));
+        }
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        final DiameterCursor cursor = DiameterMessage.cursor(loadBuffer("ulr.raw"));
+        assertThat(cursor.find(DestinationRealm.CODE), is(true));
+        final var destRealm = (DestinationRealm) cursor.toFramedAvp().ensure();
+        assertThat(destRealm.getValue().asString(), is("epc.mnc062.mcc901.3gppnetwork.org"));
+
+        cursor.reset();
+        assertThat(cursor.find(999999), is(false));
+    }
+
+    /**
+     * A vendor specific AVP that reuses the code of a base protocol AVP is only found by
+     * {@link DiameterCursor#find(long)}, which ignores the vendor, never by {@link DiameterCursor#find(long, long)}
+     * when asking for the base AVP.
+     */
+    @Test
+    public void testFindVendorSpecific() throws Exception {
+        final Avp<DiameterIdentity> imposter = Avp.ofType(DiameterIdentity.class)
+                .withValue("not.the.origin.host")
+                .withAvpCode(OriginHost.CODE)
+                .withVendorId(5535)
+                .build();
+        final DiameterMessage cer = someCer().copy().withAvp(imposter).build();
+        final DiameterCursor cursor = DiameterMessage.cursor(cer.getBuffer());
+
+        assertThat(cursor.find(0, OriginHost.CODE), is(true));
+        assertThat(cursor.isVendorSpecific(), is(false));
+        assertThat(cursor.getData(), is(cer.getAvp(0, OriginHost.CODE).get().getData()));
+        assertThat(cursor.find(0, OriginHost.CODE), is(false));
+
+        cursor.reset();
+        assertThat(cursor.find(5535, OriginHost.CODE), is(true));
+        assertThat(cursor.getVendorIdAsLong(), is(5535L));
+        assertThat(cursor.getData(), is(imposter.getData()));
+
+        cursor.reset();
+        assertThat(cursor.find(10415, OriginHost.CODE), is(false));
+
+        cursor.reset();
+        int matches = 0;
+        while (cursor.find(OriginHost.CODE)) {
+            ++matches;
+        }
+        assertThat(matches, is(2));
+    }
+
+    @Test
+    public void testNotPositioned() throws Exception {
+        final DiameterCursor cursor = DiameterMessage.cursor(loadBuffer("ulr.raw"));
+        try {
+            cursor.getCode();
+            fail("Expected an IllegalStateException since we haven't called next()");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = DiameterParseException.class)
+    public void testTruncatedMessage() throws Exception {
+        DiameterMessage.cursor(loadBuffer("ulr.raw").slice(100));
+    }
+
+    private static void ensureSameHeader(final AvpHeader actual, final AvpHeader expected) {
+        assertThat(actual.getCode(), is(expected.getCode()));
+        assertThat(actual.getLength(), is(expected.getLength()));
+        assertThat(actual.getHeaderLength(), is(expected.getHeaderLength()));
+        assertThat(actual.getVendorId(), is(expected.getVendorId()));
+        assertThat(actual.getVendorIdAsLong(), is(expected.getVendorIdAsLong()));
+        assertThat(actual.isVendorSpecific(), is(expected.isVendorSpecific()));
+        assertThat(actual.isMandatory(), is(expected.isMandatory()));
+        assertThat(actual.isProtected(), is(expected.isProtected()));
+    }
+}
@@ -0,0 +1,195 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.DiameterViolation;
+import io.snice.codecs.codec.diameter.DiameterViolations;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.ExperimentalResult;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.functional.Either;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiameterFrameValidationTest extends DiameterTestBase {
+
+    private static final String[] MESSAGES = {
+            "001_diameter_auth_info_request.raw",
+            "002_diameter_auth_info_answer.raw",
+            "003_diameter_update_location_request.raw",
+            "004_diameter_update_location_answer.raw",
+            "009_diameter_purge_ue_request.raw",
+            "010_diameter_credit_control_request.raw",
+            "011_diameter_purge_ue_answer.raw",
+            "014_diameter_device_watchdog_answer.raw",
+            "015_ula_imsi_unknown.raw",
+            "capabilities_exchange_request.raw",
+            "capabilities_exchange_answer.raw",
+            "ula.raw",
+            "ulr.raw"
+    };
+
+    /**
+     * All our captured messages are valid and must frame to the exact same message as the regular framing.
+     */
+    @Test
+    public void testValidMessages() throws Exception {
+        for (final String resource : MESSAGES) {
+            final Either<DiameterViolations, DiameterMessage> result = DiameterMessage.frameValidated(loadBuffer(resource));
+            assertThat(resource, result.isRight(), is(true));
+
+            final DiameterMessage expected = DiameterMessage.frame(loadBuffer(resource));
+            final DiameterMessage msg = result.get();
+            assertThat(msg, is(expected));
+            assertThat(msg.getAllAvps().size(), is(expected.getAllAvps().size()));
+            assertThat(msg.getOriginHost() == expected.getOriginHost(), is(true));
+            assertThat(msg.getSessionIdHash(), is(expected.getSessionIdHash()));
+            assertThat(msg.validate().isRight(), is(true));
+        }
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        ula[0] = 2;
+        ensureViolation(ula, DiameterViolation.UNSUPPORTED_VERSION, 0, 2);
+    }
+
+    @Test
+    public void testInvalidMessageLength() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        ula[3] = (byte) (ula[3] - 1);
+        ensureViolation(ula, DiameterViolation.INVALID_MESSAGE_LENGTH, 1, ula.length - 1);
+
+        ensureViolation(new byte[10], DiameterViolation.INVALID_MESSAGE_LENGTH, 0, 10);
+    }
+
+    @Test
+    public void testInvalidAvpLength() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int offset = offsetOf(ula, OriginHost.CODE);
+        ula[offset + 7] = (byte) 0xFF;
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_LENGTH, offset, OriginHost.CODE);
+    }
+
+    /**
+     * The Origin-Host of the ULA is "127.0.0.1", which is padded with three bytes.
+     */
+    @Test
+    public void testInvalidPadding() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int offset = offsetOf(ula, OriginHost.CODE);
+        ula[offset + 18] = 1;
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_PADDING, offset, OriginHost.CODE);
+    }
+
+    @Test
+    public void testInvalidMandatoryBit() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int offset = offsetOf(ula, OriginHost.CODE);
+        ula[offset + 4] = 0;
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_BITS, offset, OriginHost.CODE);
+    }
+
+    /**
+     * The Result-Code is an Unsigned32 so a 3 byte Result-Code must be reported, not blow up when parsed.
+     */
+    @Test
+    public void testInvalidResultCodeLength() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int offset = offsetOf(ula, ResultCode.CODE);
+        ula[offset + 7] = 11;
+        ula[offset + 11] = 0; // now part of the padding
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_LENGTH, offset, ResultCode.CODE);
+    }
+
+    /**
+     * The Experimental-Result of the ULA is at offset 40 and its Experimental-Result-Code, which
+     * is the second AVP within it, at offset 60.
+     */
+    @Test
+    public void testInvalidExperimentalResult() throws Exception {
+        final byte[] ula = loadBytes("015_ula_imsi_unknown.raw");
+        assertThat(offsetOf(ula, ExperimentalResult.CODE), is(40));
+        ula[60 + 7] = 11;
+        ula[60 + 11] = 0;
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_LENGTH, 40, ExperimentalResult.CODE);
+    }
+
+    @Test
+    public void testEmptyOriginHost() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int offset = offsetOf(ula, OriginHost.CODE);
+
+        // the 12 bytes that were "127.0.0.1" and its padding are then reported as a broken AVP as well.
+        ula[offset + 7] = 8;
+        for (int i = offset + 8; i < offset + 20; ++i) {
+            ula[i] = 0;
+        }
+        ensureViolation(ula, DiameterViolation.INVALID_AVP_LENGTH, offset, OriginHost.CODE);
+    }
+
+    @Test
+    public void testErrorBitOnRequest() throws Exception {
+        final byte[] ulr = loadBytes("ulr.raw");
+        ulr[4] = (byte) (ulr[4] | 0b00100000);
+        ensureViolation(ulr, DiameterViolation.INVALID_HEADER_BITS, 4, 316);
+    }
+
+    @Test
+    public void testDuplicateOriginHost() throws Exception {
+        final byte[] ula = loadBytes("ula.raw");
+        final int realm = offsetOf(ula, 296);
+
+        // turn the Origin-Realm into a second Origin-Host
+        ula[realm + 3] = (byte) OriginHost.CODE;
+        final DiameterViolations violations = ensureViolation(ula, DiameterViolation.AVP_OCCURS_TOO_MANY_TIMES, realm, OriginHost.CODE);
+        assertThat(violations.size(), is(2));
+        assertThat(violations.getViolation(1), is(DiameterViolation.MISSING_AVP));
+        assertThat(violations.getValue(1), is(296L));
+    }
+
+    /**
+     * Turning the ULR into an answer means it has a Destination-Realm, which
+     * is not allowed, and it is missing the Result-Code. All of them must be reported.
+     */
+    @Test
+    public void testAllViolationsReported() throws Exception {
+        final byte[] ulr = loadBytes("ulr.raw");
+        ulr[4] = (byte) (ulr[4] & 0b01111111);
+
+        final DiameterViolations violations = DiameterMessage.frameValidated(Buffers.wrap(ulr)).getLeft();
+        assertThat(violations.size(), is(2));
+        assertThat(violations.getViolation(0), is(DiameterViolation.AVP_NOT_ALLOWED));
+        assertThat(violations.getValue(0), is(DestinationRealm.CODE));
+        assertThat(violations.getOffset(0), is(offsetOf(ulr, DestinationRealm.CODE)));
+        assertThat(violations.getViolation(1), is(DiameterViolation.MISSING_AVP));
+        assertThat(violations.getValue(1), is(ResultCode.CODE));
+        assertThat(violations.getViolation(1).getResultCode(), is(5005L));
+
+        assertThat(violations.getMessage(1), is("Mandatory AVP 268 is missing"));
+        assertThat(violations.toValidationError().getErrors(), is(violations.getMessages()));
+    }
+
+    private static DiameterViolations ensureViolation(final byte[] msg, final DiameterViolation violation,
+                                                      final int offset, final long value) {
+        final Either<DiameterViolations, DiameterMessage> result = DiameterMessage.frameValidated(Buffers.wrap(msg));
+        assertThat(result.isLeft(), is(true));
+
+        final DiameterViolations violations = result.getLeft();
+        assertThat(violations.getViolation(0), is(violation));
+        assertThat(violations.getOffset(0), is(offset));
+        assertThat(violations.getValue(0), is(value));
+        return violations;
+    }
+
+    private static int offsetOf(final byte[] msg, final long code) throws Exception {
+        final DiameterCursor cursor = DiameterParser.cursor(Buffers.wrap(msg));
+        assertThat(cursor.find(code), is(true));
+        return cursor.getOffset();
+    }
+}
@@ -0,0 +1,105 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.OriginHost;
+import io.snice.codecs.codec.diameter.avp.api.OriginRealm;
+import io.snice.codecs.codec.diameter.avp.type.DiameterIdentity;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiameterIdentityCacheTest extends DiameterTestBase {
+
+    private byte[] ula;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        ula = loadBytes("ula.raw");
+    }
+
+    /**
+     * Two messages from the same peer should share the very same identity AVPs, no matter
+     * which way the messages were framed.
+     */
+    @Test
+    public void testSameInstanceAcrossMessages() throws Exception {
+        final DiameterMessage a = DiameterMessage.frame(loadBuffer("ula.raw"));
+        final DiameterMessage b = DiameterMessage.frame(loadBuffer("ula.raw"));
+        final DiameterMessage c = DiameterParser.frame(ula.clone(), 0);
+        final DiameterMessage d = DiameterParser.frameLazy(loadBuffer("ula.raw"));
+
+        assertThat(a.getOriginHost() == b.getOriginHost(), is(true));
+        assertThat(a.getOriginHost() == c.getOriginHost(), is(true));
+        assertThat(a.getOriginHost() == d.getOriginHost(), is(true));
+        assertThat(a.getOriginRealm() == c.getOriginRealm(), is(true));
+        assertThat(a.getOriginRealm() == d.getOriginRealm(), is(true));
+
+        assertThat(c.getOriginHost().getValue().asString(), is("127.0.0.1"));
+        assertThat(c.getOriginRealm().getValue().asString(), is("epc.mnc001.mcc001.3gppnetwork.org"));
+    }
+
+    /**
+     * The cached AVPs are backed by their own copy of the bytes so changing the
+     * array of the message they were first seen in must not affect them.
+     */
+    @Test
+    public void testCopiesTheBytes() throws Exception {
+        final DiameterIdentityCache cache = new DiameterIdentityCache(16);
+        final byte[] array = ula.clone();
+        final AvpTable table = AvpTable.scan(array, 0);
+        final int avp = table.indexOf(0, OriginHost.CODE);
+        final int offset = table.getOffset(avp);
+        final int length = table.getLength(avp);
+
+        final FramedAvp originHost = cache.intern(array, offset, length);
+        assertThat(originHost.ensure().toOriginHost().getValue().asString(), is("127.0.0.1"));
+
+        array[offset + 8] = '9';
+        assertThat(originHost.ensure().toOriginHost().getValue().asString(), is("127.0.0.1"));
+
+        final FramedAvp changed = cache.intern(array, offset, length);
+        assertThat(changed == originHost, is(false));
+        assertThat(changed.ensure().toOriginHost().getValue().asString(), is("927.0.0.1"));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void testBounded() {
+        final DiameterIdentityCache cache = new DiameterIdentityCache(4);
+        assertThat(cache.capacity(), is(4));
+
+        for (int i = 0; i < 100; ++i) {
+            final FramedAvp avp = cache.intern(OriginHost.of("node" + i + ".example.com"));
+            assertThat(avp.ensure().toOriginHost().getValue().asString(), is("node" + i + ".example.com"));
+            assertThat(cache.size() <= 4, is(true));
+        }
+
+        cache.clear();
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testSameValueDifferentAvps() {
+        final DiameterIdentityCache cache = new DiameterIdentityCache(16);
+        final FramedAvp originHost = cache.intern(OriginHost.of("hello.example.com"));
+        final FramedAvp originRealm = cache.intern(OriginRealm.of("hello.example.com"));
+
+        assertThat(originHost.ensure().isOriginHost(), is(true));
+        assertThat(originRealm.ensure().isOriginRealm(), is(true));
+        assertThat(cache.intern(OriginHost.of("hello.example.com")) == originHost, is(true));
+        assertThat(cache.intern(OriginRealm.of("hello.example.com")) == originRealm, is(true));
+    }
+
+    @Test
+    public void testIdentityCachesString() {
+        final DiameterIdentity identity = DiameterIdentity.parse("hello.example.com");
+        assertThat(identity.asString() == identity.asString(), is(true));
+        assertThat(identity.hashCode(), is(DiameterIdentity.parse("hello.example.com").hashCode()));
+        assertThat(identity, is(DiameterIdentity.parse("hello.example.com")));
+    }
+}
@@ -0,0 +1,129 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.UserName;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiameterLazyFrameTest extends DiameterTestBase {
+
+    /**
+     * A lazily framed message must give us the exact same information as
+     * a message that was fully framed up front.
+     */
+    @Test
+    public void testLazyMatchesFramedMessage() throws Exception {
+        for (final RawDiameterMessageHolder raw : RAW_DIAMETER_MESSAGES) {
+            final var buffer = loadBuffer(raw.resource).toBuffer();
+            final DiameterMessage eager = DiameterMessage.frame(buffer);
+            final DiameterMessage lazy = DiameterMessage.frameLazy(buffer);
+
+            assertThat(lazy.getHeader().getLength(), is(raw.length));
+            assertThat(lazy.getHeader().getCommandCode(), is(raw.commandCode));
+            assertThat(lazy.getBuffer(), is(eager.getBuffer()));
+
+            // the tracked AVPs are resolved without framing everything else
+            ensureSameAvp(lazy.getOriginHost(), eager.getOriginHost());
+            ensureSameAvp(lazy.getOriginRealm(), eager.getOriginRealm());
+            ensureSameAvp(lazy.getDestinationRealm(), eager.getDestinationRealm());
+            ensureSameAvp(lazy.getDestinationHost(), eager.getDestinationHost());
+            assertThat(((ImmutableDiameterMessage) lazy).isFramed(), is(false));
+
+            final List<FramedAvp> avps = lazy.getAllAvps();
+            assertThat(((ImmutableDiameterMessage) lazy).isFramed(), is(true));
+            assertThat(avps.size(), is(raw.avpCount));
+            for (int i = 0; i < avps.size(); ++i) {
+                assertThat(avps.get(i).getCode(), is(eager.getAllAvps().get(i).getCode()));
+                assertThat(avps.get(i).getData(), is(eager.getAllAvps().get(i).getData()));
+            }
+
+            assertThat(lazy.equals(eager), is(true));
+        }
+    }
+
+    @Test
+    public void testLookupFramesAvps() throws Exception {
+        final DiameterMessage ulr = DiameterMessage.frameLazy(loadBuffer("ulr.raw"));
+        assertThat(((ImmutableDiameterMessage) ulr).isFramed(), is(false));
+
+        final var userName = (UserName) ulr.getAvp(UserName.CODE).get().ensure();
+        assertThat(userName.getValue().getValue(), is("999999900"));
+        assertThat(((ImmutableDiameterMessage) ulr).isFramed(), is(true));
+
+        // since the AVPs now are framed, the tracked AVPs come straight from them.
+        final DestinationRealm destRealm = ulr.getDestinationRealm().get();
+        assertThat(destRealm.getValue().asString(), is("epc.mnc062.mcc901.3gppnetwork.org"));
+        assertThat(ulr.getDestinationHost().isPresent(), is(false));
+    }
+
+    /**
+     * Logging a lazy message must not be what causes it to be framed.
+     */
+    @Test
+    public void testToStringDoesNotFrame() throws Exception {
+        final DiameterMessage ulr = DiameterMessage.frameLazy(loadBuffer("ulr.raw"));
+        assertThat(ulr.toString().endsWith("AVP Count: lazy"), is(true));
+        assertThat(((ImmutableDiameterMessage) ulr).isFramed(), is(false));
+
+        ulr.getAllAvps();
+        assertThat(ulr.toString().endsWith("AVP Count: " + ulr.getAllAvps().size()), is(true));
+    }
+
+    /**
+     * Corrupt AVPs are not detected until we actually try to frame them.
+     */
+    @Test
+    public void testCorruptAvp() throws Exception {
+        final byte[] bytes = loadBytes("ulr.raw");
+
+        // the first AVP is the Session-Id, make its length go beyond the end of the message.
+        bytes[20 + 5] = (byte) 0xFF;
+
+        final DiameterMessage lazy = DiameterMessage.frameLazy(Buffers.wrap(bytes));
+        assertThat(lazy.getHeader().getCommandCode(), is(316));
+
+        try {
+            lazy.getOriginHost();
+            fail("Expected to blow up on the corrupt Session-Id");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTooShort() throws Exception {
+        final var buffer = loadBuffer("ulr.raw").toBuffer();
+        try {
+            DiameterMessage.frameLazy(buffer.slice(100));
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+    }
+
+    private static void ensureSameAvp(final Optional<? extends FramedAvp> actual, final Optional<? extends FramedAvp> expected) {
+        assertThat(actual.isPresent(), is(expected.isPresent()));
+        expected.ifPresent(avp -> ensureSameAvp(actual.get(), avp));
+    }
+
+    private static void ensureSameAvp(final FramedAvp actual, final FramedAvp expected) {
+        if (expected == null) {
+            assertThat(actual, nullValue());
+            return;
+        }
+        assertThat(actual.getCode(), is(expected.getCode()));
+        assertThat(actual.getData(), is(expected.getData()));
+    }
+}
@@ -0,0 +1,188 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterHeader;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterMetrics;
+import io.snice.codecs.codec.diameter.DiameterMetrics.CommandSnapshot;
+import io.snice.codecs.codec.diameter.DiameterMetrics.LatencySnapshot;
+import io.snice.codecs.codec.diameter.DiameterParseException;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiameterMetricsTest extends DiameterTestBase {
+
+    private static final long S6A = 16777251;
+
+    private DiameterMetrics.Recorder recorder;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        recorder = DiameterMetrics.recorder();
+        DiameterMetrics.install(recorder);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        DiameterMetrics.uninstall();
+    }
+
+    @Test
+    public void testFrameAndBuild() throws Exception {
+        final DiameterMessage ulr = DiameterMessage.frame(loadBuffer("ulr.raw"));
+        DiameterMessage.frame(loadBuffer("ula.raw"));
+        DiameterMessage.frameLazy(loadBuffer("ula.raw"));
+
+        final DiameterAnswer answer = ulr.createAnswer(ResultCode.DiameterSuccess2001)
+                .withOriginHost(defaultOriginHost)
+                .withOriginRealm(defaultOriginRealm)
+                .build();
+
+        final DiameterMetrics.Snapshot snapshot = recorder.snapshot();
+        assertThat(snapshot.getFrameFailures(), is(0L));
+        assertThat(snapshot.getFrameViolations(), is(0L));
+        assertThat(snapshot.getCommands().size(), is(1));
+
+        final CommandSnapshot command = snapshot.getCommands().get(0);
+        assertThat(command.getCommandCode(), is(316));
+        assertThat(command.getApplicationId(), is(S6A));
+        assertThat(command.getFramedRequests(), is(1L));
+        assertThat(command.getFramedAnswers(), is(2L));
+
+        // the lazily framed ULA doesn't count towards the AVPs
+        assertThat(command.getFramedAvps(), is(11L + 7L));
+        assertThat(command.getBytesIn(), is(360L + 984L + 984L));
+        assertThat(command.getFrameLatency().getCount(), is(3L));
+
+        assertThat(command.getBuiltRequests(), is(0L));
+        assertThat(command.getBuiltAnswers(), is(1L));
+        assertThat(command.getBuiltAvps(), is((long) answer.getAllAvps().size()));
+        assertThat(command.getBytesOut(), is((long) answer.getHeader().getLength()));
+        assertThat(command.getBuildLatency().getCount(), is(1L));
+    }
+
+    @Test
+    public void testFrameFailure() throws Exception {
+        try {
+            DiameterMessage.frame(Buffers.wrap(new byte[10]));
+            fail("Expected a DiameterParseException");
+        } catch (final DiameterParseException e) {
+            // expected
+        }
+
+        assertThat(recorder.snapshot().getFrameFailures(), is(1L));
+        assertThat(recorder.snapshot().getCommands().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFrameValidated() throws Exception {
+        assertThat(DiameterMessage.frameValidated(loadBuffer("ulr.raw")).isRight(), is(true));
+        assertThat(DiameterMessage.frameValidated(Buffers.wrap(new byte[10])).isLeft(), is(true));
+
+        // a violation is not a failure to frame, those are only for the exceptions of the regular framing.
+        final DiameterMetrics.Snapshot snapshot = recorder.snapshot();
+        assertThat(snapshot.getFrameFailures(), is(0L));
+        assertThat(snapshot.getFrameViolations(), is(1L));
+        assertThat(snapshot.getCommands().get(0).getFramedRequests(), is(1L));
+        assertThat(snapshot.getCommands().get(0).getFramedAvps(), is(11L));
+    }
+
+    @Test
+    public void testUninstall() throws Exception {
+        DiameterMetrics.uninstall();
+        DiameterMessage.frame(loadBuffer("ulr.raw"));
+        assertThat(recorder.snapshot().getCommands().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testManyCommands() throws Exception {
+        final DiameterMessage ulr = DiameterMessage.frame(loadBuffer("ulr.raw"));
+        for (int i = 0; i < 100; ++i) {
+            recorder.onFramed(ulr.getHeader(), 1, 10);
+            recorder.onBuilt(ulr.getHeader(), 1, 10);
+        }
+
+        final CommandSnapshot command = recorder.snapshot().getCommands().get(0);
+        assertThat(command.getFramedRequests(), is(101L));
+        assertThat(command.getBuiltRequests(), is(100L));
+    }
+
+    /**
+     * The command codes and application ids are controlled by the peer so only so many of them are
+     * tracked, everything else ends up in a single entry.
+     */
+    @Test
+    public void testCommandLimit() {
+        final DiameterMetrics.Recorder limited = DiameterMetrics.recorder(2);
+        for (int i = 0; i < 100; ++i) {
+            final DiameterHeader header = DiameterHeader.createHeader(1000 + i).withApplicationId(i).build();
+            limited.onFramed(header, 1, 10);
+        }
+
+        final List<CommandSnapshot> commands = limited.snapshot().getCommands();
+        assertThat(commands.size(), is(3));
+        assertThat(commands.get(0).getCommandCode(), is(1000));
+        assertThat(commands.get(1).getCommandCode(), is(1001));
+        assertThat(commands.get(1).getFramedRequests(), is(1L));
+
+        final CommandSnapshot other = commands.get(2);
+        assertThat(other.getCommandCode(), is(DiameterMetrics.OTHER));
+        assertThat(other.getApplicationId(), is((long) DiameterMetrics.OTHER));
+        assertThat(other.getFramedRequests(), is(98L));
+    }
+
+    @Test
+    public void testHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i * 1000L);
+        }
+
+        final LatencySnapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(1000L));
+        assertThat(snapshot.getMax(), is(1000000L));
+        assertThat(snapshot.getSum(), is(500500000L));
+        assertThat(snapshot.getValueAtPercentile(100), is(1000000L));
+        ensureWithin(snapshot.getValueAtPercentile(50), 500000);
+        ensureWithin(snapshot.getValueAtPercentile(99), 990000);
+
+        long count = 0;
+        for (int i = 0; i < snapshot.getBucketCount(); ++i) {
+            count += snapshot.getCount(i);
+        }
+        assertThat(count, is(1000L));
+        assertThat(snapshot.getUpperBound(snapshot.getBucketCount() - 1) >= 1000000L, is(true));
+    }
+
+    /**
+     * Every value must end up in a bucket whose bounds contain the value and the buckets must
+     * cover the entire range of a long without any gaps.
+     */
+    @Test
+    public void testBuckets() {
+        long expectedLowerBound = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; ++i) {
+            assertThat(LatencyHistogram.lowerBound(i), is(expectedLowerBound));
+            assertThat(LatencyHistogram.bucket(LatencyHistogram.lowerBound(i)), is(i));
+            assertThat(LatencyHistogram.bucket(LatencyHistogram.upperBound(i)), is(i));
+            expectedLowerBound = LatencyHistogram.upperBound(i) + 1;
+        }
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1), is(Long.MAX_VALUE));
+    }
+
+    private static void ensureWithin(final long actual, final long expected) {
+        assertThat(actual + " vs " + expected, Math.abs(actual - expected) <= expected / 8, is(true));
+    }
+}
@@ -0,0 +1,84 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRelay;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.RouteRecord;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DiameterRelayTest extends DiameterTestBase {
+
+    @Test
+    public void testRelay() throws Exception {
+        final DiameterMessage ulr = DiameterMessage.frame(loadBuffer("ulr.raw"));
+        final DiameterRelay relay = ulr.relay()
+                .withHopByHopId(0x11223344L)
+                .withRouteRecord("dra.epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+
+        // the header, the original AVPs and then the Route-Record
+        assertThat(relay.getBuffers().size(), is(3));
+        assertThat(relay.getBuffers().get(0).capacity(), is(20));
+        assertThat(relay.getBuffers().get(1), is(ulr.getBuffer().slice(20, 360)));
+
+        final RouteRecord routeRecord = RouteRecord.of("dra.epc.mnc001.mcc001.3gppnetwork.org");
+        final int expectedLength = 360 + routeRecord.getLength() + routeRecord.getPadding();
+        assertThat(relay.getLength(), is(expectedLength));
+        assertThat(relay.getHeader().getLength(), is(expectedLength));
+        assertThat(relay.getHeader().getHopByHopId(), is(0x11223344L));
+        assertThat(relay.getHeader().getEndToEndId(), is(ulr.getHeader().getEndToEndId()));
+        assertThat(relay.getHeader().getCommandCode(), is(ulr.getHeader().getCommandCode()));
+        assertThat(relay.getHeader().isRequest(), is(true));
+        assertThat(relay.getHeader().isProxiable(), is(true));
+
+        final DiameterMessage relayed = relay.toDiameterMessage();
+        assertThat(relayed.getHeader().getHopByHopId(), is(0x11223344L));
+
+        final List<FramedAvp> avps = relayed.getAllAvps();
+        assertThat(avps.size(), is(ulr.getAllAvps().size() + 1));
+        for (int i = 0; i < ulr.getAllAvps().size(); ++i) {
+            assertThat(avps.get(i).getCode(), is(ulr.getAllAvps().get(i).getCode()));
+            assertThat(avps.get(i).getData(), is(ulr.getAllAvps().get(i).getData()));
+        }
+
+        final RouteRecord rr = (RouteRecord) relayed.getAvp(RouteRecord.CODE).get().ensure();
+        assertThat(rr.getValue().asString(), is("dra.epc.mnc001.mcc001.3gppnetwork.org"));
+
+        // and the original must be left untouched
+        assertThat(ulr.getHeader().getHopByHopId(), is(0x0098f24eL));
+        assertThat(ulr.getHeader().getLength(), is(360));
+    }
+
+    /**
+     * If nothing is appended then the relayed message is just the new header + the original AVPs.
+     */
+    @Test
+    public void testRelayNoAppendedAvps() throws Exception {
+        final DiameterMessage ula = DiameterMessage.frameLazy(loadBuffer("ula.raw"));
+        final DiameterRelay relay = ula.relay()
+                .withPossiblyRetransmission(true)
+                .build();
+
+        assertThat(relay.getBuffers().size(), is(2));
+        assertThat(relay.getLength(), is(984));
+        assertThat(relay.getHeader().isPossiblyRetransmission(), is(true));
+        assertThat(relay.getHeader().getHopByHopId(), is(ula.getHeader().getHopByHopId()));
+
+        // relaying must not need the AVPs to be framed.
+        assertThat(((ImmutableDiameterMessage) ula).isFramed(), is(false));
+
+        final WritableBuffer out = WritableBuffer.of(relay.getLength());
+        relay.writeTo(out);
+        final DiameterMessage relayed = DiameterMessage.frame(out.build());
+        assertThat(relayed.getHeader().isPossiblyRetransmission(), is(true));
+        assertThat(relayed.getAllAvps().size(), is(7));
+        assertThat(relayed.getOriginHost().getValue().asString(), is("127.0.0.1"));
+    }
+}
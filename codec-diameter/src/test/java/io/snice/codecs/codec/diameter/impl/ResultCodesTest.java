@@ -0,0 +1,71 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import org.junit.Test;
+
+import static io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode.DiameterErrorInvalidApplicationCode5632;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ResultCodesTest extends DiameterTestBase {
+
+    @Test
+    public void testResultCode() throws Exception {
+        final Buffer raw = loadBuffer("ula.raw").toBuffer();
+        ensureResultCode(DiameterMessage.frame(raw).toAnswer(), 2001);
+        ensureResultCode(DiameterMessage.frameLazy(raw).toAnswer(), 2001);
+        ensureResultCode(DiameterMessage.frame(loadBytes("ula.raw"), 0).toAnswer(), 2001);
+    }
+
+    @Test
+    public void testExperimentalResult() throws Exception {
+        final Buffer raw = loadBuffer("015_ula_imsi_unknown.raw").toBuffer();
+        ensureExperimentalResult(DiameterMessage.frame(raw).toAnswer(), 5001, 10415);
+        ensureExperimentalResult(DiameterMessage.frameLazy(raw).toAnswer(), 5001, 10415);
+        ensureExperimentalResult(DiameterMessage.frame(loadBytes("015_ula_imsi_unknown.raw"), 0).toAnswer(), 5001, 10415);
+    }
+
+    @Test
+    public void testBuiltAnswer() throws Exception {
+        final DiameterMessage ulr = loadDiameterMessage("ulr.raw");
+        ensureResultCode(ulr.createAnswer(ResultCode.DiameterSuccess2001).build(), 2001);
+        ensureExperimentalResult(ulr.createAnswer(DiameterErrorInvalidApplicationCode5632).build(),
+                DiameterErrorInvalidApplicationCode5632.getCode(), 10415);
+    }
+
+    /**
+     * A malformed AVP is treated as if the value wasn't there at all.
+     */
+    @Test
+    public void testMalformed() {
+        assertThat(ResultCodes.resultCode(Buffers.wrap(new byte[]{0, 0, 7})), is(-1L));
+        assertThat(ResultCodes.resultCode(Buffers.wrap(new byte[]{0, 0, 7, (byte) 0xD1})), is(2001L));
+
+        // Experimental-Result-Code (298) claiming to be longer than the grouped AVP
+        final byte[] tooLong = new byte[]{0, 0, 1, 42, 0x40, 0, 0, 16, 0, 0, 0x13, (byte) 0x89};
+        assertThat(ResultCodes.experimentalResultCode(Buffers.wrap(tooLong)), is(-1L));
+
+        tooLong[7] = 12;
+        assertThat(ResultCodes.experimentalResultCode(Buffers.wrap(tooLong)), is(5001L));
+        assertThat(ResultCodes.vendorId(Buffers.wrap(tooLong)), is(-1L));
+    }
+
+    private static void ensureResultCode(final DiameterAnswer answer, final long expected) {
+        assertThat(answer.getResultCodeValue(), is(expected));
+        assertThat(answer.getAnyResultCodeValue(), is(expected));
+        assertThat(answer.getExperimentalResultCodeValue(), is(-1L));
+        assertThat(answer.getExperimentalResultVendorId(), is(-1L));
+    }
+
+    private static void ensureExperimentalResult(final DiameterAnswer answer, final long expected, final long vendorId) {
+        assertThat(answer.getResultCodeValue(), is(-1L));
+        assertThat(answer.getExperimentalResultCodeValue(), is(expected));
+        assertThat(answer.getExperimentalResultVendorId(), is(vendorId));
+        assertThat(answer.getAnyResultCodeValue(), is(expected));
+    }
+}
@@ -0,0 +1,111 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.buffer.Buffer;
+import io.snice.buffer.Buffers;
+import io.snice.buffer.WritableBuffer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.avp.api.ResultCode;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class SessionIdHashTest extends DiameterTestBase {
+
+    /**
+     * The hash is part of the contract so make sure it is FNV-1a.
+     */
+    @Test
+    public void testFnv1a() {
+        assertThat(SessionIdHash.of(new byte[0], 0, 0), is(0x811C9DC5));
+        assertThat(SessionIdHash.of("a".getBytes(StandardCharsets.US_ASCII), 0, 1), is(0xE40C292C));
+        assertThat(SessionIdHash.of("foobar".getBytes(StandardCharsets.US_ASCII), 0, 6), is(0xBF9CF968));
+        assertThat(SessionIdHash.of(Buffers.wrap("foobar"), 0, 6), is(0xBF9CF968));
+    }
+
+    /**
+     * No matter how the message is framed, the hash must be the same.
+     */
+    @Test
+    public void testAllFramingPaths() throws Exception {
+        final Buffer raw = loadBuffer("ulr.raw").toBuffer();
+        final DiameterMessage ulr = DiameterMessage.frame(raw);
+        final Buffer sessionId = ulr.getAvp(SessionId.CODE).get().getData();
+        final int expected = SessionIdHash.of(sessionId, 0, sessionId.capacity());
+        assertThat(expected, not(0));
+
+        assertThat(ulr.getSessionIdHash(), is(expected));
+        assertThat(DiameterMessage.frameLazy(raw).getSessionIdHash(), is(expected));
+
+        final byte[] array = new byte[raw.capacity() + 7];
+        System.arraycopy(loadBytes("ulr.raw"), 0, array, 7, raw.capacity());
+        assertThat(DiameterMessage.frame(array, 7).getSessionIdHash(), is(expected));
+
+        // the answer carries the same Session-Id so it must end up on the same shard.
+        final DiameterMessage ula = ulr.toRequest().createAnswer(ResultCode.DiameterSuccess2001).build();
+        assertThat(ula.getSessionIdHash(), is(expected));
+        assertThat(ula.getShardIndex(16), is(ulr.getShardIndex(16)));
+    }
+
+    /**
+     * A message with more than one Session-Id must end up on the same shard no matter how it is framed,
+     * which means that the first Session-Id is the one that counts, everywhere.
+     */
+    @Test
+    public void testMultipleSessionIds() throws Exception {
+        final DiameterMessage built = DiameterRequest.createULR()
+                .withAvp(SessionId.of("first.epc.mnc001.mcc001.3gppnetwork.org;1;1"))
+                .withAvp(SessionId.of("second.epc.mnc001.mcc001.3gppnetwork.org;2;2"))
+                .withOriginHost("mme.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+
+        final Buffer first = built.getAvps(SessionId.CODE).get(0).getData();
+        final int expected = SessionIdHash.of(first, 0, first.capacity());
+        final Buffer raw = built.getBuffer();
+
+        assertThat(built.getSessionIdHash(), is(expected));
+        assertThat(DiameterMessage.frame(raw).getSessionIdHash(), is(expected));
+        assertThat(DiameterMessage.frameLazy(raw).getSessionIdHash(), is(expected));
+        assertThat(DiameterMessage.frame(raw).compact().getSessionIdHash(), is(expected));
+        assertThat(DiameterMessage.frameValidated(raw).get().getSessionIdHash(), is(expected));
+
+        final byte[] array = new byte[raw.capacity()];
+        raw.writeTo(WritableBuffer.of(array));
+        assertThat(DiameterMessage.frame(array, 0).getSessionIdHash(), is(expected));
+    }
+
+    @Test
+    public void testNoSessionId() throws Exception {
+        final DiameterMessage cer = loadDiameterMessage("capabilities_exchange_request.raw");
+        assertThat(cer.getSessionIdHash(), is(0));
+        assertThat(cer.getShardIndex(8), is(SessionIdHash.shard(0, 8)));
+        assertThat(someCer().getSessionIdHash(), is(0));
+    }
+
+    @Test
+    public void testShard() {
+        final int shards = 8;
+        final int[] counts = new int[shards];
+        for (int i = 0; i < 80_000; ++i) {
+            final byte[] sessionId = ("pcef.example.com;1234;" + i).getBytes(StandardCharsets.US_ASCII);
+            final int shard = SessionIdHash.shard(SessionIdHash.of(sessionId, 0, sessionId.length), shards);
+            assertThat(shard >= 0 && shard < shards, is(true));
+            ++counts[shard];
+        }
+
+        // sequential session ids should be spread out more or less evenly
+        for (final int count : counts) {
+            assertThat(count > 9_000 && count < 11_000, is(true));
+        }
+
+        assertThat(SessionIdHash.shard(-1, 1), is(0));
+        assertThat(SessionIdHash.shard(0x12345678, 3) < 3, is(true));
+    }
+}
@@ -0,0 +1,145 @@
+package io.snice.codecs.codec.diameter.impl;
+
+import io.snice.codecs.codec.diameter.DiameterAnswer;
+import io.snice.codecs.codec.diameter.DiameterMessage;
+import io.snice.codecs.codec.diameter.DiameterRequest;
+import io.snice.codecs.codec.diameter.DiameterTestBase;
+import io.snice.codecs.codec.diameter.GatheredDiameterMessage;
+import io.snice.codecs.codec.diameter.avp.FramedAvp;
+import io.snice.codecs.codec.diameter.avp.api.AuthSessionState;
+import io.snice.codecs.codec.diameter.avp.api.DestinationRealm;
+import io.snice.codecs.codec.diameter.avp.api.ProductName;
+import io.snice.codecs.codec.diameter.avp.api.SessionId;
+import io.snice.codecs.codec.diameter.avp.api.VendorSpecificApplicationId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.snice.codecs.codec.diameter.avp.api.ExperimentalResultCode.DiameterErrorUserUnknown5001;
+import static io.snice.codecs.codec.diameter.avp.api.ResultCode.DiameterSuccess2001;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SlicedDiameterAnswerBuilderTest extends DiameterTestBase {
+
+    private DiameterMessage ulr;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        ulr = DiameterMessage.frame(loadBuffer("ulr.raw"));
+    }
+
+    @Test
+    public void testCreateAnswer() throws Exception {
+        final DiameterAnswer answer = ulr.createSlicedAnswer(DiameterSuccess2001)
+                .withOriginHost("hss.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .withCopiedAvp(AuthSessionState.CODE)
+                .withCopiedAvp(VendorSpecificApplicationId.CODE)
+                .withAvp(ProductName.of("snice"))
+                .build();
+
+        assertThat(answer.isAnswer(), is(true));
+        assertThat(answer.getHeader().getHopByHopId(), is(ulr.getHeader().getHopByHopId()));
+        assertThat(answer.getHeader().getEndToEndId(), is(ulr.getHeader().getEndToEndId()));
+        assertThat(answer.getHeader().getCommandCode(), is(ulr.getHeader().getCommandCode()));
+        assertThat(answer.getHeader().getApplicationId(), is(ulr.getHeader().getApplicationId()));
+        assertThat(answer.getHeader().getLength(), is(answer.getBuffer().capacity()));
+        assertThat(answer.getResultCodeValue(), is(2001L));
+
+        final List<FramedAvp> avps = answer.getAllAvps();
+        assertThat(avps.get(0).getCode(), is(SessionId.CODE));
+        assertThat(avps.get(0).getData(), is(ulr.getAvp(SessionId.CODE).get().getData()));
+
+        assertThat(answer.getOriginHost().getValue().asString(), is("hss.epc.mnc001.mcc001.3gppnetwork.org"));
+        assertThat(answer.getOriginRealm().getValue().asString(), is("epc.mnc001.mcc001.3gppnetwork.org"));
+        assertThat(answer.getAvp(AuthSessionState.CODE).get().getData(), is(ulr.getAvp(AuthSessionState.CODE).get().getData()));
+        assertThat(answer.getAvp(VendorSpecificApplicationId.CODE).get().getData(),
+                is(ulr.getAvp(VendorSpecificApplicationId.CODE).get().getData()));
+        assertThat(answer.getAvp(ProductName.CODE).isPresent(), is(true));
+        assertThat(answer.getAvp(DestinationRealm.CODE).isPresent(), is(false));
+
+        // the request must be left untouched
+        assertThat(ulr.isRequest(), is(true));
+        assertThat(ulr.getHeader().getLength(), is(360));
+    }
+
+    /**
+     * Nothing is copied out of the request for a gathered answer, the Session-Id is a slice of it.
+     */
+    @Test
+    public void testBuildGathered() throws Exception {
+        final GatheredDiameterMessage gathered = ulr.createSlicedAnswer(DiameterSuccess2001)
+                .withOriginHost("hss.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .withCopiedAvp(AuthSessionState.CODE)
+                .buildGathered();
+
+        assertThat(gathered.getHeader().isAnswer(), is(true));
+        assertThat(gathered.getLength(), is(gathered.getHeader().getLength()));
+        assertThat(gathered.toBuffer().capacity(), is(gathered.getLength()));
+
+        // header, Session-Id, the new AVPs and the Auth-Session-State
+        assertThat(gathered.getBuffers().size(), is(4));
+        final FramedAvp sessionId = ulr.getAvp(SessionId.CODE).get();
+        assertThat(gathered.getBuffers().get(1).capacity(), is(sessionId.getLength() + sessionId.getPadding()));
+
+        final DiameterAnswer answer = gathered.toDiameterMessage().toAnswer();
+        assertThat(answer.getResultCodeValue(), is(2001L));
+        assertThat(answer.getAvp(AuthSessionState.CODE).isPresent(), is(true));
+    }
+
+    @Test
+    public void testExperimentalResult() throws Exception {
+        final DiameterAnswer answer = ulr.createSlicedAnswer(DiameterErrorUserUnknown5001)
+                .withOriginHost("hss.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+
+        assertThat(answer.getResultCodeValue(), is(-1L));
+        assertThat(answer.getExperimentalResultCodeValue(), is(5001L));
+        assertThat(answer.getExperimentalResultVendorId(), is(10415L));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testCreateFromAnswer() throws Exception {
+        DiameterMessage.frame(loadBuffer("ula.raw")).createSlicedAnswer(DiameterSuccess2001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingOriginRealm() throws Exception {
+        ulr.createSlicedAnswer(DiameterSuccess2001)
+                .withOriginHost("hss.epc.mnc001.mcc001.3gppnetwork.org")
+                .buildGathered();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingOriginHost() throws Exception {
+        ulr.createSlicedAnswer(DiameterSuccess2001)
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+    }
+
+    /**
+     * There should only be one Session-Id but if there are more, the first one is the one that counts.
+     */
+    @Test
+    public void testMultipleSessionIds() throws Exception {
+        final DiameterMessage request = DiameterRequest.createULR()
+                .withAvp(SessionId.of("first.epc.mnc001.mcc001.3gppnetwork.org;1;1"))
+                .withAvp(SessionId.of("second.epc.mnc001.mcc001.3gppnetwork.org;2;2"))
+                .withOriginHost("mme.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+
+        final DiameterAnswer answer = request.createSlicedAnswer(DiameterSuccess2001)
+                .withOriginHost("hss.epc.mnc001.mcc001.3gppnetwork.org")
+                .withOriginRealm("epc.mnc001.mcc001.3gppnetwork.org")
+                .build();
+
+        assertThat(answer.getAvps(SessionId.CODE).size(), is(1));
+        assertThat(answer.getAvp(SessionId.CODE).get().getData(), is(request.getAvp(SessionId.CODE).get().getData()));
+    }
+}